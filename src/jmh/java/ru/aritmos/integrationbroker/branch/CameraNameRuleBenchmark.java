@@ -0,0 +1,92 @@
+package ru.aritmos.integrationbroker.branch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Определение отделения по имени камеры: 1000 правил {@code cameraNameRules} и 10000 различных имён камер.
+ * <p>
+ * Правила — по одному на отделение ({@code ^(BR0042)_CAM_[0-9]+$}) и одно общее правило в конце
+ * ({@code ^([A-Z]{2,5})_.*$}), около 5% имён совпадают только с ним. {@code sequential} — прежний перебор
+ * с {@link Pattern#compile} на каждое правило при каждом вызове, {@code compiled} — {@link CameraNameRuleEngine}
+ * без кэша (trie по литеральным префиксам), {@code cached} — с кэшем по имени камеры на все 10000 имён.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CameraNameRuleBenchmark {
+
+    private static final int RULES = 1_000;
+    private static final int NAMES = 10_000;
+
+    @Param({"sequential", "compiled", "cached"})
+    public String mode;
+
+    private List<RuntimeConfigStore.CameraNameRule> rules;
+    private CameraNameRuleEngine engine;
+    private String[] names;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rules = new ArrayList<>(RULES);
+        for (int i = 0; i < RULES - 1; i++) {
+            rules.add(new RuntimeConfigStore.CameraNameRule("branch-" + i, String.format("^(BR%04d)_CAM_[0-9]+$", i), 1,
+                    RuntimeConfigStore.CameraNameRuleMode.BRANCH_PREFIX));
+        }
+        rules.add(new RuntimeConfigStore.CameraNameRule("generic", "^([A-Z]{2,5})_.*$", 1,
+                RuntimeConfigStore.CameraNameRuleMode.BRANCH_PREFIX));
+
+        List<String> all = new ArrayList<>(NAMES);
+        for (int i = 0; i < NAMES; i++) {
+            all.add(i % 20 == 0
+                    ? String.format("TVR_HALL_%04d", i)
+                    : String.format("BR%04d_CAM_%d", i % (RULES - 1), i / (RULES - 1)));
+        }
+        Collections.shuffle(all, new Random(42));
+        names = all.toArray(new String[0]);
+        engine = "sequential".equals(mode) ? null : new CameraNameRuleEngine(rules, "cached".equals(mode) ? NAMES : 0);
+    }
+
+    @Benchmark
+    public String resolve() {
+        String name = names[next];
+        next = next + 1 == names.length ? 0 : next + 1;
+        if (engine != null) {
+            CameraNameRuleEngine.Match m = engine.match(name);
+            return m == null ? null : m.extracted();
+        }
+        for (RuntimeConfigStore.CameraNameRule r : rules) {
+            Matcher m = Pattern.compile(r.regex()).matcher(name);
+            if (m.matches()) {
+                String g = m.group(Math.max(0, r.group()));
+                if (g != null && !g.isBlank()) {
+                    return g.trim();
+                }
+            }
+        }
+        return null;
+    }
+}
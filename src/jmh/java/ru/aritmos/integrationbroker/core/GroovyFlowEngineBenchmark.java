@@ -0,0 +1,97 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.context.ApplicationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность {@link FlowEngine.GroovyFlowEngine#execute} (executions/sec).
+ * <p>
+ * {@code cachedTemplate} — текущий путь: реестр alias → bean и статическая часть binding собраны один раз.
+ * {@code legacyBeanScan} — воспроизводит прежнее поведение: полный обход BeanContext и сборка binding
+ * на каждое сообщение. Разница между ними и есть выигрыш от кеширования.
+ * <p>
+ * Контекст поднимается в профиле {@code test} (H2, без startup-checks и dispatcher), чтобы число
+ * bean definitions соответствовало реальному приложению.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroovyFlowEngineBenchmark {
+
+    private static final String SCRIPT = """
+            output.branchId = input.branchId
+            output.type = meta.type
+            return [handled: true]
+            """;
+
+    private ApplicationContext context;
+    private FlowEngine.GroovyFlowEngine engine;
+    private InboundEnvelope envelope;
+    private RuntimeConfigStore.FlowConfig flow;
+    private Map<String, Object> meta;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = ApplicationContext.run("test");
+        engine = context.getBean(FlowEngine.GroovyFlowEngine.class);
+        envelope = new InboundEnvelope(
+                InboundEnvelope.Kind.EVENT,
+                "visit.created",
+                new ObjectMapper().readTree("{\"visitId\":\"V-1\",\"serviceId\":\"S-1\"}"),
+                Map.of("X-Correlation-Id", "corr-1"),
+                "msg-1",
+                "corr-1",
+                "BR-1",
+                "user-1",
+                Map.of("source", "bench")
+        );
+        flow = new RuntimeConfigStore.FlowConfig("bench-flow", true,
+                new RuntimeConfigStore.Selector("EVENT", "visit.created"), Map.of(), SCRIPT);
+        meta = new HashMap<>();
+        meta.put("type", "visit.created");
+        meta.put("idempotencyKey", "idem-1");
+        // Прогреваем кеш компиляции, чтобы измерять исполнение, а не компиляцию.
+        engine.execute(envelope, flow, meta);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> cachedTemplate() {
+        return engine.execute(envelope, flow, meta);
+    }
+
+    @Benchmark
+    public void legacyBeanScan(Blackhole bh) {
+        bh.consume(FlowEngine.GroovyFlowEngine.BindingTemplate.of(
+                FlowEngine.GroovyFlowEngine.scanExecutableBeans(context)));
+        bh.consume(engine.execute(envelope, flow, meta));
+    }
+}
@@ -0,0 +1,80 @@
+package ru.aritmos.integrationbroker.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накладные расходы записи таймера горячего пути ({@link HotPathMetrics}) на одно сообщение.
+ * <p>
+ * Замер повторяет то, что делает {@link InboundProcessingService} на этап: {@link System#nanoTime()} до и после,
+ * поиск таймера по flow id (64 различных flow) и запись в гистограмму. {@code off} — метрики выключены,
+ * {@code handle} — таймер получен заранее, {@code lookup} — поиск таймера на каждый вызов.
+ * {@code contended} — то же в 8 потоках на общих таймерах (проверка {@link java.util.concurrent.atomic.LongAdder}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotPathMetricsBenchmark {
+
+    private static final int FLOWS = 64;
+
+    @Param({"off", "handle", "lookup"})
+    public String mode;
+
+    private HotPathMetrics metrics;
+    private String[] flowIds;
+    private HotPathMetrics.Timer[] timers;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        metrics = "off".equals(mode) ? HotPathMetrics.noop() : new HotPathMetrics(true, 200);
+        flowIds = new String[FLOWS];
+        timers = new HotPathMetrics.Timer[FLOWS];
+        for (int i = 0; i < FLOWS; i++) {
+            flowIds[i] = "flow-" + i;
+            timers[i] = metrics.timer(HotPathMetrics.Stage.FLOW_EXECUTE, flowIds[i]);
+        }
+    }
+
+    @Benchmark
+    public long record(Cursor cursor) {
+        return recordOnce(cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long contended(Cursor cursor) {
+        return recordOnce(cursor);
+    }
+
+    private long recordOnce(Cursor cursor) {
+        int i = cursor.next++ & (FLOWS - 1);
+        long startedAt = System.nanoTime();
+        HotPathMetrics.Timer timer = "lookup".equals(mode)
+                ? metrics.timer(HotPathMetrics.Stage.FLOW_EXECUTE, flowIds[i])
+                : timers[i];
+        timer.recordSince(startedAt);
+        return startedAt;
+    }
+}
@@ -0,0 +1,141 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пропускная способность пути {@code /api/inbound} ({@link InboundProcessingService#process}) в зависимости от
+ * режима идемпотентности.
+ * <p>
+ * Режимы ({@code mode}):
+ * <ul>
+ *   <li>{@code off} — идемпотентность выключена (верхняя граница);</li>
+ *   <li>{@code db} — прежний путь: INSERT на каждое сообщение, SELECT + UPDATE на повтор, UPDATE на завершение;</li>
+ *   <li>{@code tiered} — {@link IdempotencyFastPath}: повторы из памяти, переходы статусов пачками;</li>
+ *   <li>{@code tiered-local} — то же плюс локальный захват новых ключей (без синхронного INSERT).</li>
+ * </ul>
+ * Каждое пятое сообщение — повтор недавнего. H2 поднимается TCP-сервером на loopback (реальный round-trip,
+ * как с PostgreSQL), схема — штатные Flyway-миграции. Flow подменён заглушкой: стоимость Groovy измеряет
+ * {@code GroovyFlowEngineBenchmark}, здесь — только накладные расходы идемпотентности.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InboundIdempotencyBenchmark {
+
+    @Param({"off", "db", "tiered", "tiered-local"})
+    public String mode;
+
+    private Server h2;
+    private HikariDataSource dataSource;
+    private IdempotencyFastPath fastPath;
+    private InboundProcessingService service;
+    private JsonNode payload;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        h2 = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        HikariConfig hc = new HikariConfig();
+        hc.setJdbcUrl("jdbc:h2:tcp://127.0.0.1:" + h2.getPort() + "/mem:inbound_idem_bench_" + mode.replace('-', '_')
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        hc.setUsername("sa");
+        hc.setPassword("");
+        hc.setMaximumPoolSize(4);
+        dataSource = new HikariDataSource(hc);
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+
+        ObjectMapper mapper = new ObjectMapper();
+        payload = mapper.readTree("{\"visitId\":\"V-1\",\"serviceId\":\"S-1\"}");
+        boolean tiered = mode.startsWith("tiered");
+        fastPath = new IdempotencyFastPath(dataSource, tiered, "tiered-local".equals(mode), 100_000, 600, 1_000_000, 200, 0);
+        IdempotencyService idempotency = new IdempotencyService(dataSource, mapper, fastPath);
+
+        RuntimeConfigStore.RuntimeConfig runtime = new RuntimeConfigStore.RuntimeConfig(
+                "bench",
+                List.of(new RuntimeConfigStore.FlowConfig("bench-flow", true,
+                        new RuntimeConfigStore.Selector("EVENT", "visit.created"), Map.of(), "return [:]")),
+                new RuntimeConfigStore.IdempotencyConfig(!"off".equals(mode), RuntimeConfigStore.IdempotencyStrategy.MESSAGE_ID, 60),
+                new RuntimeConfigStore.InboundDlqConfig(false, 1, true),
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null
+        ).normalize();
+        RuntimeConfigStore store = new RuntimeConfigStore(null, null, null, null, false, null) {
+            @Override
+            public RuntimeConfig getEffective() {
+                return runtime;
+            }
+        };
+        FlowEngine.GroovyFlowEngine flowStub = new FlowEngine.GroovyFlowEngine(null, mapper, store, null, null, null, 0) {
+            @Override
+            public Map<String, Object> execute(InboundEnvelope envelope, RuntimeConfigStore.FlowConfig flow, Map<String, Object> meta) {
+                return Map.of("handled", true);
+            }
+        };
+        service = new InboundProcessingService(store, new FlowEngine.ConfigBasedFlowResolver(store), flowStub,
+                idempotency, new InboundDlqService(dataSource, mapper),
+                new KeycloakProxyEnrichmentService(new KeycloakProxyClient(mapper)), mapper);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fastPath.flush();
+        dataSource.close();
+        h2.stop();
+    }
+
+    @Benchmark
+    public InboundProcessingService.ProcessingResult process() {
+        long n = sequence.incrementAndGet();
+        // Каждое пятое сообщение — повторная доставка сообщения, обработанного чуть раньше.
+        long id = n % 5 == 0 ? n - 3 : n;
+        return service.process(new InboundEnvelope(
+                InboundEnvelope.Kind.EVENT,
+                "visit.created",
+                payload,
+                Map.of(),
+                "msg-" + id,
+                "corr-" + id,
+                "BR-1",
+                "user-1",
+                Map.of()
+        ));
+    }
+}
@@ -0,0 +1,175 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Скорость разбора backlog REST outbox: время одного тика {@link OutboxDispatcher#dispatchRest()} на пачке
+ * из {@code BATCH} записей. Drain rate (записей/сек) = {@code BATCH * 1000 / score(ms/op)}.
+ * <p>
+ * Отправка идёт через реальный {@link JdkRestOutboundSender} в локальный stub HTTP-сервер ({@link HttpServer}):
+ * коннектор {@code slow} отвечает за {@code SLOW_MS}, {@code fast} — за {@code FAST_MS}. Каждая пятая запись
+ * идёт в slow-коннектор, каждая десятая входит в общую цепочку correlation_id.
+ * БД не участвует: {@link RestOutboxService} подменён in-memory вариантом, чтобы измерялся именно диспетчер.
+ * <p>
+ * Режим {@code async} — неблокирующая отправка ({@code rest-async=true}): те же лимиты на коннектор,
+ * но ожидание ответа не занимает потоки пула.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OutboxDispatcherDrainBenchmark {
+
+    private static final int BATCH = 200;
+    private static final long SLOW_MS = 50;
+    private static final long FAST_MS = 2;
+
+    @Param({"sequential", "parallel", "async"})
+    public String mode;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ExecutorService clientExecutor;
+    private OutboxDispatcher dispatcher;
+    private OutboxDispatchPool pool;
+    private InMemoryRestOutbox outbox;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        serverExecutor = Executors.newFixedThreadPool(64);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/slow", ex -> respond(ex, SLOW_MS));
+        server.createContext("/fast", ex -> respond(ex, FAST_MS));
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        RuntimeConfigStore.RestConnectorAuth noAuth = new RuntimeConfigStore.RestConnectorAuth(
+                RuntimeConfigStore.RestConnectorAuthType.NONE,
+                null, null, null, null, null,
+                null, null, null, null, null
+        );
+        RuntimeConfigStore.RuntimeConfig runtime = new RuntimeConfigStore.RuntimeConfig(
+                "bench",
+                List.of(),
+                null,
+                null,
+                null,
+                null,
+                new RuntimeConfigStore.RestOutboxConfig(true, "ALWAYS", 10, 10, 120, BATCH, "Idempotency-Key", null),
+                Map.of(
+                        "slow", new RuntimeConfigStore.RestConnectorConfig(base + "/slow", noAuth, null, null, null),
+                        "fast", new RuntimeConfigStore.RestConnectorConfig(base + "/fast", noAuth, null, null, null)
+                ),
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null
+        ).normalize();
+        RuntimeConfigStore store = new RuntimeConfigStore(null, null, null, null, false, null) {
+            @Override
+            public RuntimeConfig getEffective() {
+                return runtime;
+            }
+        };
+
+        clientExecutor = Executors.newCachedThreadPool();
+        outbox = new InMemoryRestOutbox(new JdkRestOutboundSender(8000, clientExecutor));
+        pool = new OutboxDispatchPool("async".equals(mode) ? "parallel" : mode, 16, 8, 8);
+        dispatcher = new OutboxDispatcher(store, null, outbox, new MessagingProviderRegistry(List.of()),
+                new OutboundDryRunState(false, null), pool);
+        dispatcher.restAsync = "async".equals(mode);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        clientExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int drainBatch() {
+        outbox.sent.set(0);
+        dispatcher.dispatchRest();
+        return outbox.sent.get();
+    }
+
+    private static void respond(com.sun.net.httpserver.HttpExchange ex, long delayMs) throws java.io.IOException {
+        try {
+            ex.getRequestBody().readAllBytes();
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ex.sendResponseHeaders(200, -1);
+        ex.close();
+    }
+
+    /**
+     * REST outbox без БД: каждая выборка возвращает одну и ту же пачку, статусы только считаются.
+     */
+    static final class InMemoryRestOutbox extends RestOutboxService {
+
+        private final List<RestRecord> batch = new ArrayList<>();
+        private final AtomicInteger sent = new AtomicInteger();
+
+        InMemoryRestOutbox(RestOutboundSender sender) {
+            super(null, new ObjectMapper(), sender, null);
+            String next = Instant.EPOCH.toString();
+            for (int i = 0; i < BATCH; i++) {
+                String connector = i % 5 == 0 ? "slow" : "fast";
+                String corr = i % 10 == 0 ? "chain-1" : "c-" + i;
+                batch.add(new RestRecord(i + 1, Status.PENDING.name(), "POST", null, connector, "/op",
+                        null, "{\"n\":" + i + "}", "idem-" + i, "m-" + i, corr, "k-" + i,
+                        0, 10, next, null, null, null, null, next));
+            }
+        }
+
+        @Override
+        public List<RestRecord> claimDue(int limit, String owner, int leaseSec) {
+            return batch;
+        }
+
+        @Override
+        public void applyOutcomes(List<Outcome> outcomes) {
+            for (Outcome o : outcomes) {
+                if (o.sent()) {
+                    sent.incrementAndGet();
+                }
+            }
+        }
+    }
+}
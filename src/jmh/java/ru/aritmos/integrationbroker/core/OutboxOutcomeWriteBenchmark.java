@@ -0,0 +1,116 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись результатов пачки REST outbox в H2 через Hikari (схема — штатные Flyway-миграции).
+ * <p>
+ * H2 поднимается в режиме TCP-сервера на loopback: каждое обращение к БД — реальный сетевой round-trip,
+ * как с PostgreSQL. Во встроенном режиме H2 round-trip ничего не стоит, и сравнение теряет смысл.
+ * <p>
+ * {@code perRow} — прежний путь: {@code markSent}/{@code markFailed} на каждую запись (соединение + UPDATE на запись).
+ * {@code batched} — {@link RestOutboxService#applyOutcomes(List)}: SENT одним {@code UPDATE ... ANY(?)},
+ * ошибки одним JDBC-batch. В пачке каждая десятая запись — ошибка.
+ * <p>
+ * Счётчик {@link RestOutboxService#dispatchRoundTrips()} после прогона показывает число обращений к БД на запись.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutboxOutcomeWriteBenchmark {
+
+    @Param({"50", "200"})
+    public int batchSize;
+
+    private Server h2;
+    private HikariDataSource dataSource;
+    private RestOutboxService service;
+    private List<RestOutboxService.Outcome> outcomes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        h2 = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        HikariConfig hc = new HikariConfig();
+        hc.setJdbcUrl("jdbc:h2:tcp://127.0.0.1:" + h2.getPort() + "/mem:outbox_outcome_bench_" + batchSize
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        hc.setUsername("sa");
+        hc.setPassword("");
+        hc.setMaximumPoolSize(4);
+        dataSource = new HikariDataSource(hc);
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+
+        Instant now = Instant.now();
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "INSERT INTO ib_rest_outbox (status, created_at, updated_at, http_method, url, attempts, max_attempts, next_attempt_at) " +
+                             "VALUES ('SENDING', ?, ?, 'POST', 'http://bench', 0, 10, ?)")) {
+            for (int i = 0; i < batchSize; i++) {
+                ps.setTimestamp(1, Timestamp.from(now));
+                ps.setTimestamp(2, Timestamp.from(now));
+                ps.setTimestamp(3, Timestamp.from(now));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        service = new RestOutboxService(dataSource, new ObjectMapper(), null, null);
+        outcomes = new ArrayList<>(batchSize);
+        Instant next = now.plusSeconds(60);
+        for (long id = 1; id <= batchSize; id++) {
+            outcomes.add(id % 10 == 0
+                    ? RestOutboxService.Outcome.failed(id, 1, 10, next, "UPSTREAM", "temporary", 503, false)
+                    : RestOutboxService.Outcome.sent(id, 200));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+        h2.stop();
+    }
+
+    @Benchmark
+    public void perRow() {
+        for (RestOutboxService.Outcome o : outcomes) {
+            if (o.sent()) {
+                service.markSent(o.id(), o.httpStatus());
+            } else {
+                service.markFailed(o.id(), o.attempts(), o.maxAttempts(), o.nextAttemptAt(),
+                        o.errorCode(), o.errorMessage(), o.httpStatus(), o.dead());
+            }
+        }
+    }
+
+    @Benchmark
+    public void batched() {
+        service.applyOutcomes(outcomes);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хеширование payload для стратегии идемпотентности PAYLOAD_HASH.
+ * <p>
+ * {@code serializeThenHash} — прежний способ (сериализация в {@code byte[]} и новый {@link MessageDigest} на вызов),
+ * {@code streamingCanonical} — {@link PayloadHasher}. Payload похож на событие VisionLabs: несколько служебных полей
+ * и base64-изображение, размер которого задаёт {@code payloadSize}. Для оценки аллокаций запускать с {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadHashBenchmark {
+
+    @Param({"1KB", "100KB", "5MB"})
+    public String payloadSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private JsonNode payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int bytes = switch (payloadSize) {
+            case "1KB" -> 1024;
+            case "100KB" -> 100 * 1024;
+            default -> 5 * 1024 * 1024;
+        };
+        byte[] image = new byte[bytes * 3 / 4];
+        new Random(42).nextBytes(image);
+        ObjectNode node = mapper.createObjectNode();
+        node.put("event_type", "match");
+        node.put("camera", "BR-1/entrance");
+        node.put("timestamp", "2024-05-01T10:00:00Z");
+        node.putObject("face").put("score", 0.97).put("age", 31);
+        node.put("image", Base64.getEncoder().encodeToString(image));
+        payload = node;
+    }
+
+    @Benchmark
+    public String serializeThenHash() throws Exception {
+        byte[] bytes = mapper.writeValueAsBytes(payload);
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    @Benchmark
+    public String streamingCanonical() {
+        return PayloadHasher.sha256Hex(payload);
+    }
+}
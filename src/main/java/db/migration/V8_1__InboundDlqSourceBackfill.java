@@ -0,0 +1,77 @@
+package db.migration;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import ru.aritmos.integrationbroker.core.InboundDlqService;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Заполнение колонки {@code ib_inbound_dlq.source} (V8) для записей, сохранённых до её появления.
+ * <p>
+ * Источник извлекается из {@code source_meta_json} тем же правилом, что и при записи
+ * ({@link InboundDlqService#sourceOf}). Миграция на Java, а не SQL: разбор JSON в SQL зависит от СУБД
+ * (jsonb есть только в PostgreSQL), а миграции выполняются и на H2. Записи обрабатываются порциями по id.
+ */
+public class V8_1__InboundDlqSourceBackfill extends BaseJavaMigration {
+
+    private static final int CHUNK = 1000;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Connection c = context.getConnection();
+        long afterId = 0;
+        while (true) {
+            Map<Long, String> sources = new LinkedHashMap<>();
+            int read = 0;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT id, source_meta_json FROM ib_inbound_dlq WHERE id>? AND source IS NULL AND source_meta_json IS NOT NULL ORDER BY id ASC LIMIT ?")) {
+                ps.setLong(1, afterId);
+                ps.setInt(2, CHUNK);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        read++;
+                        afterId = rs.getLong(1);
+                        String source = sourceOf(mapper, rs.getString(2));
+                        if (source != null) {
+                            sources.put(afterId, source.length() > 128 ? source.substring(0, 128) : source);
+                        }
+                    }
+                }
+            }
+            if (!sources.isEmpty()) {
+                try (PreparedStatement ps = c.prepareStatement("UPDATE ib_inbound_dlq SET source=? WHERE id=?")) {
+                    for (Map.Entry<Long, String> e : sources.entrySet()) {
+                        ps.setString(1, e.getValue());
+                        ps.setLong(2, e.getKey());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+            if (read < CHUNK) {
+                return;
+            }
+        }
+    }
+
+    private static String sourceOf(ObjectMapper mapper, String sourceMetaJson) {
+        if (sourceMetaJson == null || sourceMetaJson.isBlank()) {
+            return null;
+        }
+        try {
+            return InboundDlqService.sourceOf(mapper.readValue(sourceMetaJson, new TypeReference<Map<String, Object>>() {
+            }));
+        } catch (Exception e) {
+            // Некорректный JSON: источник неизвестен, запись остаётся без source.
+            return null;
+        }
+    }
+}
@@ -10,6 +10,10 @@ import io.micronaut.http.annotation.Get;
 import io.micronaut.http.annotation.PathVariable;
 import io.micronaut.http.annotation.Post;
 import io.micronaut.http.annotation.Produces;
+import io.micronaut.http.exceptions.HttpStatusException;
+import io.micronaut.http.server.types.files.StreamedFile;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
 import io.micronaut.security.annotation.Secured;
 import io.micronaut.serde.annotation.Serdeable;
 import io.swagger.v3.oas.annotations.Operation;
@@ -24,21 +28,41 @@ import org.slf4j.LoggerFactory;
 import ru.aritmos.integrationbroker.adapters.VisitManagerConflictMetrics;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 import ru.aritmos.integrationbroker.core.InboundDlqService;
+import ru.aritmos.integrationbroker.core.InboundDlqReplayJobs;
 import ru.aritmos.integrationbroker.core.IdempotencyService;
+import ru.aritmos.integrationbroker.core.IdempotencyFastPath;
+import ru.aritmos.integrationbroker.core.InboundBatchIngress;
+import ru.aritmos.integrationbroker.core.InboundPipeline;
 import ru.aritmos.integrationbroker.core.InboundProcessingService;
 import ru.aritmos.integrationbroker.core.CorrelationContext;
 import ru.aritmos.integrationbroker.core.KeycloakProxyEnrichmentService;
+import ru.aritmos.integrationbroker.core.KeysetCursor;
 import ru.aritmos.integrationbroker.core.MessagingOutboxService;
+import ru.aritmos.integrationbroker.core.NdjsonExportStreamer;
+import ru.aritmos.integrationbroker.core.OutboxDispatchPool;
+import ru.aritmos.integrationbroker.core.HotPathMetrics;
+import ru.aritmos.integrationbroker.core.HttpClientRegistry;
+import ru.aritmos.integrationbroker.core.OAuth2ClientCredentialsService;
+import ru.aritmos.integrationbroker.core.QueueDepthSampler;
+import ru.aritmos.integrationbroker.core.TtlCache;
 import ru.aritmos.integrationbroker.core.RestOutboxService;
+import ru.aritmos.integrationbroker.core.RetentionService;
 import ru.aritmos.integrationbroker.core.SensitiveDataSanitizer;
 import ru.aritmos.integrationbroker.core.AdminOperationsMetrics;
+import ru.aritmos.integrationbroker.core.FlowEngine;
+import ru.aritmos.integrationbroker.identity.IdentityResultCache;
 import ru.aritmos.integrationbroker.model.InboundEnvelope;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -52,6 +76,13 @@ import java.util.concurrent.ConcurrentHashMap;
 @Tag(name = "Integration Broker — публичный API", description = "Приём входящих событий/команд и получение результата выполнения flow")
 public class InboundController {
 
+    private static final Logger log = LoggerFactory.getLogger(InboundController.class);
+
+    /**
+     * Media type NDJSON (пакетный приём).
+     */
+    static final String NDJSON = "application/x-ndjson";
+
     private final InboundProcessingService processingService;
     private final IdempotencyService idempotencyService;
     private final InboundDlqService inboundDlqService;
@@ -60,6 +91,15 @@ public class InboundController {
     private final RestOutboxService restOutboxService;
     private final VisitManagerConflictMetrics visitManagerConflictMetrics;
     private final AdminOperationsMetrics adminOperationsMetrics;
+    private final FlowEngine.ConfigBasedFlowResolver flowResolver;
+    private final OutboxDispatchPool outboxDispatchPool;
+    private final HttpClientRegistry httpClientRegistry;
+    private final OAuth2ClientCredentialsService oauth2Service;
+    private final InboundPipeline inboundPipeline;
+    private final InboundBatchIngress batchIngress;
+    private final IdentityResultCache identityResultCache;
+    private final HotPathMetrics hotPathMetrics;
+    private final QueueDepthSampler queueDepthSampler;
     private final ObjectMapper objectMapper;
     private final boolean inboundRateLimitEnabled;
     private final int inboundRateLimitPerMinute;
@@ -74,6 +114,15 @@ public class InboundController {
                              RestOutboxService restOutboxService,
                              VisitManagerConflictMetrics visitManagerConflictMetrics,
                              AdminOperationsMetrics adminOperationsMetrics,
+                             FlowEngine.ConfigBasedFlowResolver flowResolver,
+                             OutboxDispatchPool outboxDispatchPool,
+                             HttpClientRegistry httpClientRegistry,
+                             OAuth2ClientCredentialsService oauth2Service,
+                             InboundPipeline inboundPipeline,
+                             InboundBatchIngress batchIngress,
+                             IdentityResultCache identityResultCache,
+                             HotPathMetrics hotPathMetrics,
+                             QueueDepthSampler queueDepthSampler,
                              ObjectMapper objectMapper,
                              @Value("${integrationbroker.inbound.rate-limit.enabled:false}") boolean inboundRateLimitEnabled,
                              @Value("${integrationbroker.inbound.rate-limit.per-source-per-minute:120}") int inboundRateLimitPerMinute) {
@@ -85,6 +134,15 @@ public class InboundController {
         this.restOutboxService = restOutboxService;
         this.visitManagerConflictMetrics = visitManagerConflictMetrics;
         this.adminOperationsMetrics = adminOperationsMetrics;
+        this.flowResolver = flowResolver;
+        this.outboxDispatchPool = outboxDispatchPool;
+        this.httpClientRegistry = httpClientRegistry;
+        this.oauth2Service = oauth2Service;
+        this.inboundPipeline = inboundPipeline;
+        this.batchIngress = batchIngress;
+        this.identityResultCache = identityResultCache;
+        this.hotPathMetrics = hotPathMetrics;
+        this.queueDepthSampler = queueDepthSampler;
         this.objectMapper = objectMapper;
         this.inboundRateLimitEnabled = inboundRateLimitEnabled;
         this.inboundRateLimitPerMinute = Math.max(1, inboundRateLimitPerMinute);
@@ -96,11 +154,14 @@ public class InboundController {
             summary = "Принять входящее сообщение (событие или команда)",
             description = "Сообщение приводится к единому контракту InboundEnvelope, затем выбирается flow и выполняется Groovy-логика. " +
                     "Идемпотентность применяется до выполнения flow (PROCESS/SKIP_COMPLETED/LOCKED). " +
-                    "Если включён KeycloakProxy enrichment, meta дополняется полями user/principal без хранения и логирования сырых токенов."
+                    "Если включён KeycloakProxy enrichment, meta дополняется полями user/principal без хранения и логирования сырых токенов. " +
+                    "В асинхронном режиме (integrationbroker.inbound.async.enabled=true) сообщение ставится в очередь и сразу возвращается 202 " +
+                    "с ключом идемпотентности; итог обработки доступен через GET /api/inbound/status/{idempotencyKey}."
     )
     @ApiResponse(responseCode = "200", description = "Сообщение обработано или пропущено как уже обработанное", content = @Content(schema = @Schema(implementation = InboundResult.class)))
-    @ApiResponse(responseCode = "202", description = "Сообщение уже обрабатывается (LOCKED). Это не poison message", content = @Content(schema = @Schema(implementation = InboundResult.class)))
+    @ApiResponse(responseCode = "202", description = "Сообщение уже обрабатывается (LOCKED) или принято в асинхронную обработку (ACCEPTED). Это не poison message", content = @Content(schema = @Schema(implementation = InboundResult.class)))
     @ApiResponse(responseCode = "400", description = "Некорректный запрос или не найден flow")
+    @ApiResponse(responseCode = "503", description = "Асинхронный режим: очередь переполнена, сообщение не принято (повторите позже)", content = @Content(schema = @Schema(implementation = InboundResult.class)))
     @ApiResponse(responseCode = "500", description = "Выполнение flow завершилось ошибкой. Если включён inbound DLQ, сообщение сохранено для replay", content = @Content(schema = @Schema(implementation = InboundResult.class)))
     public HttpResponse<InboundResult> inbound(@Body InboundEnvelope envelope) {
         try {
@@ -116,6 +177,9 @@ public class InboundController {
                 );
                 return HttpResponse.status(HttpStatus.TOO_MANY_REQUESTS).body(rateLimited);
             }
+            if (inboundPipeline != null && inboundPipeline.enabled()) {
+                return enqueue(normalized);
+            }
             InboundProcessingService.ProcessingResult res = processingService.process(normalized);
             InboundResult body = new InboundResult(res.outcome(), res.idempotencyKey(), res.output(), null, null, null);
 
@@ -159,6 +223,89 @@ public class InboundController {
 
 
 
+    @Post(uri = "/inbound/batch", consumes = {MediaType.APPLICATION_JSON, NDJSON})
+    @Produces(NDJSON)
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    @Operation(
+            summary = "Принять пачку входящих сообщений (JSON-массив или NDJSON)",
+            description = "Тело — JSON-массив InboundEnvelope или NDJSON (по envelope на строку), читается потоково. " +
+                    "Сообщения обрабатываются порциями: решения идемпотентности — на порцию сразу, flow — с ограниченным параллелизмом. " +
+                    "Ответ — NDJSON, по строке на элемент (index, outcome, idempotencyKey, output, dlqId, errorCode, errorMessage), " +
+                    "строки порции отправляются сразу после её обработки. Ошибка элемента не влияет на остальные; " +
+                    "при ошибке flow элемент сохраняется в inbound DLQ (если включён)."
+    )
+    @ApiResponse(responseCode = "200", description = "Пачка принята; результаты элементов — в теле ответа (NDJSON)")
+    public HttpResponse<StreamedFile> inboundBatch(@Body InputStream body) throws IOException {
+        PipedInputStream responseBody = new PipedInputStream(64 * 1024);
+        PipedOutputStream results = new PipedOutputStream(responseBody);
+        batchIngress.executor().execute(() -> {
+            try (results; body) {
+                batchIngress.process(body, results, this::normalizeCorrelation, this::allowInboundByRateLimit);
+            } catch (Exception e) {
+                log.warn("[INBOUND] пакетный приём прерван: {}", SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+            }
+        });
+        return HttpResponse.ok(new StreamedFile(responseBody, MediaType.of(NDJSON)));
+    }
+
+    private HttpResponse<InboundResult> enqueue(InboundEnvelope envelope) {
+        InboundPipeline.Admission admission = inboundPipeline.submit(envelope);
+        if (!admission.accepted()) {
+            InboundResult overloaded = new InboundResult(
+                    "OVERLOADED",
+                    admission.idempotencyKey(),
+                    Map.of("note", "Очередь асинхронной обработки переполнена, повторите позже"),
+                    null,
+                    "QUEUE_FULL",
+                    "Очередь асинхронной обработки переполнена"
+            );
+            return HttpResponse.status(HttpStatus.SERVICE_UNAVAILABLE).body(overloaded);
+        }
+        InboundResult accepted = new InboundResult(
+                "ACCEPTED",
+                admission.idempotencyKey(),
+                Map.of("note", "Сообщение принято в асинхронную обработку",
+                        "statusUrl", "/api/inbound/status/" + admission.idempotencyKey()),
+                null,
+                null,
+                null
+        );
+        return HttpResponse.status(HttpStatus.ACCEPTED).body(accepted);
+    }
+
+    @Get(uri = "/inbound/status/{idempotencyKey}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            summary = "Статус обработки входящего сообщения",
+            description = "Для сообщений, принятых этим узлом в асинхронном режиме, возвращается статус из памяти узла " +
+                    "(QUEUED/PROCESSING/итог обработки с output или ошибкой). Иначе статус берётся из записи идемпотентности " +
+                    "(IN_PROGRESS/COMPLETED/FAILED) без output. Ответ содержит output flow и текст ошибки, поэтому эндпоинт " +
+                    "не входит в анонимный allow-list и требует аутентификации в режиме KEYCLOAK_OPTIONAL."
+    )
+    @ApiResponse(responseCode = "200", description = "Статус найден", content = @Content(schema = @Schema(implementation = InboundPipeline.InboundStatus.class)))
+    @ApiResponse(responseCode = "404", description = "Сообщение с таким ключом неизвестно")
+    public HttpResponse<InboundPipeline.InboundStatus> inboundStatus(
+            @Parameter(description = "Ключ идемпотентности (SHA-256) из ответа POST /api/inbound")
+            @PathVariable("idempotencyKey") String idempotencyKey) {
+        if (inboundPipeline != null) {
+            InboundPipeline.InboundStatus local = inboundPipeline.status(idempotencyKey).orElse(null);
+            if (local != null) {
+                return HttpResponse.ok(local);
+            }
+        }
+        IdempotencyService.IdempotencyRecord rec = idempotencyService == null ? null : idempotencyService.get(idempotencyKey);
+        if (rec == null) {
+            return HttpResponse.notFound();
+        }
+        String state = switch (rec.status()) {
+            case "COMPLETED" -> "PROCESSED";
+            case "IN_PROGRESS" -> "PROCESSING";
+            default -> rec.status();
+        };
+        return HttpResponse.ok(new InboundPipeline.InboundStatus(
+                rec.idemKey(), state, null, rec.updatedAt(), null, null, null, null, null));
+    }
+
     private boolean allowInboundByRateLimit(InboundEnvelope envelope) {
         if (!inboundRateLimitEnabled || envelope == null) {
             return true;
@@ -235,21 +382,10 @@ public class InboundController {
     )
     @ApiResponse(responseCode = "200", description = "Метрики", content = @Content(schema = @Schema(implementation = IntegrationMetrics.class)))
     public IntegrationMetrics metrics() {
-        long inProgress = idempotencyService.countByStatus(IdempotencyService.Status.IN_PROGRESS);
-        long completed = idempotencyService.countByStatus(IdempotencyService.Status.COMPLETED);
-        long failed = idempotencyService.countByStatus(IdempotencyService.Status.FAILED);
-
-        long dlqPending = inboundDlqService.countByStatus(InboundDlqService.Status.PENDING);
-        long dlqReplayed = inboundDlqService.countByStatus(InboundDlqService.Status.REPLAYED);
-        long dlqDead = inboundDlqService.countByStatus(InboundDlqService.Status.DEAD);
-
-        long msgPending = messagingOutboxService.countByStatus(MessagingOutboxService.Status.PENDING);
-        long msgSent = messagingOutboxService.countByStatus(MessagingOutboxService.Status.SENT);
-        long msgDead = messagingOutboxService.countByStatus(MessagingOutboxService.Status.DEAD);
-
-        long restPending = restOutboxService.countByStatus(RestOutboxService.Status.PENDING);
-        long restSent = restOutboxService.countByStatus(RestOutboxService.Status.SENT);
-        long restDead = restOutboxService.countByStatus(RestOutboxService.Status.DEAD);
+        // Глубины очередей берутся из снимка по расписанию, а не считаются COUNT(1) на каждый запрос.
+        QueueDepthSampler.Depths depths = queueDepthSampler != null
+                ? queueDepthSampler.current()
+                : QueueDepthSampler.query(idempotencyService, inboundDlqService, messagingOutboxService, restOutboxService);
 
         long kcHits = keycloakProxyEnrichmentService.cacheHits();
         long kcMiss = keycloakProxyEnrichmentService.cacheMisses();
@@ -259,14 +395,34 @@ public class InboundController {
         Map<String, Map<String, Long>> restConnectorLatencyHistogram = restOutboxService.connectorLatencyHistogram();
         AdminOperationsMetrics.Snapshot adminOps = adminOperationsMetrics.snapshot();
 
-        return new IntegrationMetrics(inProgress, completed, failed,
-                dlqPending, dlqReplayed, dlqDead,
-                msgPending, msgSent, msgDead,
-                restPending, restSent, restDead,
+        long flowHits = flowResolver == null ? 0L : flowResolver.hits();
+        long flowMisses = flowResolver == null ? 0L : flowResolver.misses();
+        OutboxDispatchPool.Snapshot outboxDispatch = outboxDispatchPool == null ? null : outboxDispatchPool.snapshot();
+        long outboxRoundTrips = messagingOutboxService.dispatchRoundTrips() + restOutboxService.dispatchRoundTrips();
+        long dispatched = outboxDispatch == null ? 0L : outboxDispatch.dispatchedTotal();
+        double roundTripsPerMessage = dispatched == 0L ? 0.0 : (double) outboxRoundTrips / dispatched;
+
+        return new IntegrationMetrics(depths.idempotencyInProgress(), depths.idempotencyCompleted(), depths.idempotencyFailed(),
+                depths.dlqPending(), depths.dlqReplayed(), depths.dlqDead(),
+                depths.messagingOutboxPending(), depths.messagingOutboxSent(), depths.messagingOutboxDead(),
+                depths.restOutboxPending(), depths.restOutboxSent(), depths.restOutboxDead(),
                 kcHits, kcMiss, kcErr,
                 vmConflicts409,
                 restConnectorLatencyHistogram,
-                adminOps);
+                adminOps,
+                flowHits,
+                flowMisses,
+                outboxDispatch,
+                outboxRoundTrips,
+                roundTripsPerMessage,
+                keycloakProxyEnrichmentService.cacheStats(),
+                idempotencyService.fastPathSnapshot(),
+                httpClientRegistry == null ? List.of() : httpClientRegistry.snapshot(),
+                oauth2Service == null ? null : oauth2Service.snapshot(),
+                inboundPipeline == null ? null : inboundPipeline.snapshot(),
+                identityResultCache == null ? null : identityResultCache.snapshot(),
+                depths.sampledAt(),
+                hotPathMetrics == null ? List.of() : hotPathMetrics.snapshot());
     }
 
     /**
@@ -333,7 +489,33 @@ public class InboundController {
             @Schema(description = "Гистограмма латентности outbound по connectorId (lt100ms/lt300ms/lt1000ms/gte1000ms)")
             Map<String, Map<String, Long>> restConnectorLatencyHistogram,
             @Schema(description = "Сводные метрики admin batch-операций (DLQ/Outbox)")
-            AdminOperationsMetrics.Snapshot adminOperations
+            AdminOperationsMetrics.Snapshot adminOperations,
+            @Schema(description = "Разрешение flow: найден маршрут")
+            long flowResolveHits,
+            @Schema(description = "Разрешение flow: маршрут не найден")
+            long flowResolveMisses,
+            @Schema(description = "Диспетчер outbox: загрузка пула воркеров и отправки в полёте по коннектору/провайдеру")
+            OutboxDispatchPool.Snapshot outboxDispatch,
+            @Schema(description = "Диспетчер outbox: обращения к БД (claim + запись результатов) с момента старта")
+            long outboxDbRoundTrips,
+            @Schema(description = "Диспетчер outbox: обращения к БД на одно отправленное сообщение")
+            double outboxDbRoundTripsPerMessage,
+            @Schema(description = "KeycloakProxy enrichment: состояние кэша (размер, вытеснения, истечения, время загрузки)")
+            TtlCache.Stats keycloakProxyCache,
+            @Schema(description = "Идемпотентность: быстрый in-process уровень и отложенная запись в ib_idempotency")
+            IdempotencyFastPath.Snapshot idempotencyFastPath,
+            @Schema(description = "Исходящий HTTP: общие клиенты по REST-коннекторам (пулы, запросы в полёте, версия HTTP, латентность)")
+            List<HttpClientRegistry.ConnectorStats> httpClients,
+            @Schema(description = "OAuth2 client_credentials: кэш токенов, ожидания вызывающих и латентность обновлений")
+            OAuth2ClientCredentialsService.Snapshot oauth2Tokens,
+            @Schema(description = "Асинхронный inbound: глубина очередей партиций, ожидание в очереди, отказы при переполнении")
+            InboundPipeline.Snapshot inboundPipeline,
+            @Schema(description = "Идентификация: кэш ответов провайдеров (попадания, NO_MATCH из кэша, промахи, сбросы по ревизии)")
+            IdentityResultCache.Snapshot identityCache,
+            @Schema(description = "Момент снятия глубин очередей (idempotency/DLQ/outbox обновляются по расписанию)")
+            String depthsSampledAt,
+            @Schema(description = "Таймеры горячего пути по flow/коннекторам: число замеров, сумма и перцентили, мс")
+            List<HotPathMetrics.TimerSnapshot> hotPath
     ) {
     }
 }
@@ -349,10 +531,16 @@ public class InboundController {
 class AdminIdempotencyController {
 
     private final IdempotencyService idempotencyService;
+    private final NdjsonExportStreamer exportStreamer;
 
     @Inject
-    AdminIdempotencyController(IdempotencyService idempotencyService) {
+    AdminIdempotencyController(IdempotencyService idempotencyService, NdjsonExportStreamer exportStreamer) {
         this.idempotencyService = idempotencyService;
+        this.exportStreamer = exportStreamer;
+    }
+
+    AdminIdempotencyController(IdempotencyService idempotencyService) {
+        this(idempotencyService, null);
     }
 
     @Get(uri = "/{key}")
@@ -444,17 +632,45 @@ class AdminIdempotencyController {
     @Produces(MediaType.APPLICATION_JSON)
     @Operation(
             summary = "Список записей идемпотентности",
-            description = "Фильтрация по статусу опциональна. Лимит ограничен для эксплуатационной безопасности."
+            description = "Фильтрация по статусу опциональна. Лимит ограничен для эксплуатационной безопасности. " +
+                    "Постраничный обход — по непрозрачному курсору nextCursor (keyset по updatedAt/ключу, без OFFSET)."
     )
     @ApiResponse(responseCode = "200", description = "Список", content = @Content(schema = @Schema(implementation = IdempotencyListResponse.class)))
+    @ApiResponse(responseCode = "400", description = "Некорректный cursor")
     public IdempotencyListResponse list(
             @Parameter(description = "Фильтр статуса (IN_PROGRESS/COMPLETED/FAILED)") String status,
             @Parameter(description = "Фильтр skippedReason (DUPLICATE/LOCKED/EXPIRED)") String skippedReason,
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)") String cursor,
             @Parameter(description = "Лимит (1..200)") Integer limit) {
 
         int lim = (limit == null) ? 50 : limit;
-        List<IdempotencyService.IdempotencyRecord> items = idempotencyService.list(status, skippedReason, lim);
-        return new IdempotencyListResponse(items);
+        KeysetCursor.Slice<IdempotencyService.IdempotencyRecord> page;
+        try {
+            page = idempotencyService.page(status, skippedReason, cursor, lim);
+        } catch (IllegalArgumentException e) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return new IdempotencyListResponse(page.items(), page.nextCursor());
+    }
+
+    public IdempotencyListResponse list(String status, String skippedReason, Integer limit) {
+        return list(status, skippedReason, null, limit);
+    }
+
+    @Get(uri = "/export")
+    @Produces(InboundController.NDJSON)
+    @Operation(
+            summary = "Потоковый экспорт записей идемпотентности (NDJSON)",
+            description = "Выгружает все записи по фильтрам, по строке JSON на запись, в порядке списка. " +
+                    "Выборка читается страницами по курсору и не накапливается в памяти."
+    )
+    @ApiResponse(responseCode = "200", description = "Экспорт (NDJSON)")
+    public HttpResponse<StreamedFile> export(
+            @Parameter(description = "Фильтр статуса (IN_PROGRESS/COMPLETED/FAILED)") String status,
+            @Parameter(description = "Фильтр skippedReason (DUPLICATE/LOCKED/EXPIRED)") String skippedReason) throws IOException {
+        InputStream body = exportStreamer.stream("idempotency",
+                sink -> idempotencyService.export(status, skippedReason, sink));
+        return HttpResponse.ok(new StreamedFile(body, MediaType.of(InboundController.NDJSON)));
     }
 
     @Post(uri = "/{key}/unlock", consumes = MediaType.APPLICATION_JSON)
@@ -524,7 +740,9 @@ class AdminIdempotencyController {
     @Schema(name = "IdempotencyListResponse", description = "Ответ со списком записей идемпотентности")
     record IdempotencyListResponse(
             @Schema(description = "Список записей")
-            List<IdempotencyService.IdempotencyRecord> items
+            List<IdempotencyService.IdempotencyRecord> items,
+            @Schema(description = "Курсор следующей страницы (null — страница последняя)")
+            String nextCursor
     ) {
     }
 
@@ -629,6 +847,8 @@ class AdminInboundDlqController {
     private final InboundProcessingService processingService;
     private final ObjectMapper objectMapper;
     private final AdminOperationsMetrics adminOperationsMetrics;
+    private final InboundDlqReplayJobs replayJobs;
+    private final NdjsonExportStreamer exportStreamer;
     private final int replayBatchLimitMax;
 
     @Inject
@@ -636,14 +856,26 @@ class AdminInboundDlqController {
                               InboundProcessingService processingService,
                               ObjectMapper objectMapper,
                               AdminOperationsMetrics adminOperationsMetrics,
+                              InboundDlqReplayJobs replayJobs,
+                              NdjsonExportStreamer exportStreamer,
                               @Value("${integrationbroker.admin.dlq.replay-batch.max-limit:100}") int replayBatchLimitMax) {
         this.inboundDlqService = inboundDlqService;
         this.processingService = processingService;
         this.objectMapper = objectMapper;
         this.adminOperationsMetrics = adminOperationsMetrics;
+        this.replayJobs = replayJobs;
+        this.exportStreamer = exportStreamer;
         this.replayBatchLimitMax = Math.max(1, replayBatchLimitMax);
     }
 
+    AdminInboundDlqController(InboundDlqService inboundDlqService,
+                              InboundProcessingService processingService,
+                              ObjectMapper objectMapper,
+                              AdminOperationsMetrics adminOperationsMetrics,
+                              int replayBatchLimitMax) {
+        this(inboundDlqService, processingService, objectMapper, adminOperationsMetrics, null, null, replayBatchLimitMax);
+    }
+
     @Get(uri = "/{id}")
     @Produces(MediaType.APPLICATION_JSON)
     @Operation(
@@ -665,9 +897,11 @@ class AdminInboundDlqController {
     @Produces(MediaType.APPLICATION_JSON)
     @Operation(
             summary = "Список inbound DLQ",
-            description = "Список DLQ-записей с опциональной фильтрацией по статусу. Payload в список не включается."
+            description = "Список DLQ-записей с опциональной фильтрацией по статусу. Payload в список не включается. " +
+                    "Постраничный обход — по непрозрачному курсору nextCursor (keyset по updatedAt/id, без OFFSET)."
     )
     @ApiResponse(responseCode = "200", description = "Список", content = @Content(schema = @Schema(implementation = DlqListResponse.class)))
+    @ApiResponse(responseCode = "400", description = "Некорректный cursor")
     public DlqListResponse list(
             @Parameter(description = "Фильтр статуса (PENDING/REPLAYED/DEAD)") String status,
             @Parameter(description = "Фильтр по типу сообщения") String type,
@@ -675,9 +909,46 @@ class AdminInboundDlqController {
             @Parameter(description = "Фильтр по branchId") String branchId,
             @Parameter(description = "Фильтр причины ignored (поиск по errorMessage для IGNORED_BY_ADMIN)") String ignoredReason,
             @Parameter(description = "Фильтр по correlationId") String correlationId,
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)") String cursor,
             @Parameter(description = "Лимит (1..200)") Integer limit) {
         int lim = (limit == null) ? 50 : limit;
-        return new DlqListResponse(inboundDlqService.list(status, type, source, branchId, ignoredReason, correlationId, lim));
+        KeysetCursor.Slice<InboundDlqService.DlqRecord> page;
+        try {
+            page = inboundDlqService.page(status, type, source, branchId, ignoredReason, correlationId, cursor, lim);
+        } catch (IllegalArgumentException e) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return new DlqListResponse(page.items(), page.nextCursor());
+    }
+
+    public DlqListResponse list(String status,
+                                String type,
+                                String source,
+                                String branchId,
+                                String ignoredReason,
+                                String correlationId,
+                                Integer limit) {
+        return list(status, type, source, branchId, ignoredReason, correlationId, null, limit);
+    }
+
+    @Get(uri = "/export")
+    @Produces(InboundController.NDJSON)
+    @Operation(
+            summary = "Потоковый экспорт inbound DLQ (NDJSON)",
+            description = "Выгружает все DLQ-записи по фильтрам (без payload), по строке JSON на запись, в порядке списка. " +
+                    "Выборка читается страницами по курсору и не накапливается в памяти."
+    )
+    @ApiResponse(responseCode = "200", description = "Экспорт (NDJSON)")
+    public HttpResponse<StreamedFile> export(
+            @Parameter(description = "Фильтр статуса (PENDING/REPLAYED/DEAD)") String status,
+            @Parameter(description = "Фильтр по типу сообщения") String type,
+            @Parameter(description = "Фильтр по источнику (source/sourceSystem/system)") String source,
+            @Parameter(description = "Фильтр по branchId") String branchId,
+            @Parameter(description = "Фильтр причины ignored (поиск по errorMessage для IGNORED_BY_ADMIN)") String ignoredReason,
+            @Parameter(description = "Фильтр по correlationId") String correlationId) throws IOException {
+        InputStream body = exportStreamer.stream("dlq",
+                sink -> inboundDlqService.export(status, type, source, branchId, ignoredReason, correlationId, sink));
+        return HttpResponse.ok(new StreamedFile(body, MediaType.of(InboundController.NDJSON)));
     }
 
 
@@ -809,8 +1080,7 @@ class AdminInboundDlqController {
         int failed = 0;
         int dead = 0;
 
-        for (InboundDlqService.DlqRecord rec : records) {
-            DlqReplayResponse res = replayOne(rec.id());
+        for (DlqReplayResponse res : replayAll(records)) {
             items.add(res);
             if ("PROCESSED".equals(res.outcome()) || "SKIP_COMPLETED".equals(res.outcome()) || "REPLAYED".equals(res.outcome())) {
                 ok++;
@@ -840,8 +1110,117 @@ class AdminInboundDlqController {
         return new DlqReplayBatchResponse(records.size(), ok, locked, failed, dead, items, requestedLimit, lim, limitClamped);
     }
 
+    @Post(uri = "/replay-jobs")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            summary = "Запустить фоновый replay inbound DLQ",
+            description = "Запускает задание, которое проходит всю выборку DLQ страницами (keyset по id) и переигрывает записи " +
+                    "с ограниченным параллелизмом, сохраняя порядок внутри correlationId. Пока открыт circuit breaker " +
+                    "какого-либо REST-коннектора, задание приостанавливается. Одновременно выполняется не более одного задания."
+    )
+    @ApiResponse(responseCode = "202", description = "Задание запущено", content = @Content(schema = @Schema(implementation = InboundDlqReplayJobs.JobStatus.class)))
+    @ApiResponse(responseCode = "409", description = "Уже выполняется другое задание")
+    public HttpResponse<InboundDlqReplayJobs.JobStatus> startReplayJob(@Body DlqReplayJobRequest request) {
+        try {
+            InboundDlqReplayJobs.JobStatus job = replayJobs.start(
+                    request == null ? null : request.status(),
+                    request == null ? null : request.type(),
+                    request == null ? null : request.source(),
+                    request == null ? null : request.branchId(),
+                    request == null ? null : request.maxRecords(),
+                    request == null ? null : request.parallelism());
+            return HttpResponse.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalStateException e) {
+            return HttpResponse.status(HttpStatus.CONFLICT);
+        }
+    }
+
+    @Get(uri = "/replay-jobs")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Задания фонового replay", description = "Текущее и последние завершённые задания (последние сначала).")
+    public List<InboundDlqReplayJobs.JobStatus> replayJobs() {
+        return replayJobs.list();
+    }
+
+    @Get(uri = "/replay-jobs/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Состояние задания фонового replay", description = "Прогресс: просмотрено/успешно/LOCKED/FAILED/DEAD, курсор, скорость, приостановка.")
+    @ApiResponse(responseCode = "404", description = "Задание не найдено")
+    public HttpResponse<InboundDlqReplayJobs.JobStatus> replayJob(@PathVariable("jobId") String jobId) {
+        return replayJobs.get(jobId).map(HttpResponse::ok).orElseGet(HttpResponse::notFound);
+    }
+
+    @Post(uri = "/replay-jobs/{jobId}/cancel")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Отменить задание фонового replay", description = "Отмена применяется после текущей страницы.")
+    @ApiResponse(responseCode = "404", description = "Задание не найдено")
+    public HttpResponse<InboundDlqReplayJobs.JobStatus> cancelReplayJob(@PathVariable("jobId") String jobId) {
+        Optional<InboundDlqReplayJobs.JobStatus> job = replayJobs.cancel(jobId);
+        if (job.isPresent()) {
+            log.info("DLQ_REPLAY_JOB cancel requested actor=admin jobId={}", jobId);
+        }
+        return job.map(HttpResponse::ok).orElseGet(HttpResponse::notFound);
+    }
+
     private DlqReplayResponse replayOne(long id) {
         InboundDlqService.DlqFull full = inboundDlqService.getFull(id);
+        DlqReplayResponse rejected = replayRejection(id, full);
+        if (rejected != null) {
+            return rejected;
+        }
+        try {
+            return replayed(id, full, processingService.process(InboundDlqService.replayEnvelope(full)));
+        } catch (Exception ex) {
+            return replayFailed(id, full, ex);
+        }
+    }
+
+    /**
+     * Replay пачки DLQ-записей: решения идемпотентности и запись итогов выполняются пачкой
+     * ({@link InboundProcessingService#processAll}), записи переигрываются последовательно в порядке выборки.
+     */
+    private List<DlqReplayResponse> replayAll(List<InboundDlqService.DlqRecord> records) {
+        DlqReplayResponse[] out = new DlqReplayResponse[records.size()];
+        List<Integer> pending = new ArrayList<>();
+        List<InboundDlqService.DlqFull> fulls = new ArrayList<>();
+        List<InboundEnvelope> envelopes = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            long id = records.get(i).id();
+            InboundDlqService.DlqFull full = inboundDlqService.getFull(id);
+            out[i] = replayRejection(id, full);
+            if (out[i] != null) {
+                continue;
+            }
+            try {
+                envelopes.add(InboundDlqService.replayEnvelope(full));
+            } catch (Exception ex) {
+                out[i] = replayFailed(id, full, ex);
+                continue;
+            }
+            pending.add(i);
+            fulls.add(full);
+        }
+
+        List<InboundProcessingService.ItemOutcome> outcomes = envelopes.isEmpty()
+                ? List.of()
+                : processingService.processAll(envelopes, null, 1);
+        for (int k = 0; k < pending.size(); k++) {
+            int i = pending.get(k);
+            long id = records.get(i).id();
+            InboundProcessingService.ItemOutcome outcome = outcomes.get(k);
+            try {
+                if (outcome.error() != null) {
+                    throw outcome.error();
+                }
+                out[i] = replayed(id, fulls.get(k), outcome.result());
+            } catch (Exception ex) {
+                out[i] = replayFailed(id, fulls.get(k), ex);
+            }
+        }
+        return List.of(out);
+    }
+
+    private static DlqReplayResponse replayRejection(long id, InboundDlqService.DlqFull full) {
         if (full == null) {
             return new DlqReplayResponse("NOT_FOUND", id, 0, 0, null, "DLQ_NOT_FOUND", "Запись не найдена");
         }
@@ -849,42 +1228,23 @@ class AdminInboundDlqController {
         if (InboundDlqService.Status.DEAD.name().equals(full.record().status())) {
             return new DlqReplayResponse("DEAD", id, full.record().attempts(), full.record().maxAttempts(), null, "DLQ_DEAD", "Лимит попыток исчерпан");
         }
+        return null;
+    }
 
-        InboundEnvelope env = new InboundEnvelope(
-                InboundEnvelope.Kind.valueOf(full.record().kind()),
-                full.record().type(),
-                full.payload(),
-                SensitiveDataSanitizer.sanitizeHeadersForAdminProxy(full.headers()),
-                full.record().messageId(),
-                full.record().correlationId(),
-                full.record().branchId(),
-                full.record().userId(),
-                mergeReplayMeta(full.sourceMeta(), id)
-        );
-
-        try {
-            InboundProcessingService.ProcessingResult res = processingService.process(env);
-            if ("LOCKED".equals(res.outcome())) {
-                return new DlqReplayResponse("LOCKED", id, full.record().attempts(), full.record().maxAttempts(), res.output(), null, null);
-            }
-
-            String replayJson = objectMapper.writeValueAsString(res);
-            inboundDlqService.markReplayed(id, replayJson);
-            return new DlqReplayResponse(res.outcome(), id, full.record().attempts(), full.record().maxAttempts(), res.output(), null, null);
-        } catch (Exception ex) {
-            String safeMsg = SensitiveDataSanitizer.sanitizeText(ex.getMessage());
-            inboundDlqService.markReplayFailed(id, "REPLAY_FAILED", safeMsg);
-            return new DlqReplayResponse("FAILED", id, full.record().attempts() + 1, full.record().maxAttempts(), null, "REPLAY_FAILED", safeMsg);
+    private DlqReplayResponse replayed(long id, InboundDlqService.DlqFull full, InboundProcessingService.ProcessingResult res) throws Exception {
+        if ("LOCKED".equals(res.outcome())) {
+            return new DlqReplayResponse("LOCKED", id, full.record().attempts(), full.record().maxAttempts(), res.output(), null, null);
         }
+
+        String replayJson = objectMapper.writeValueAsString(res);
+        inboundDlqService.markReplayed(id, replayJson);
+        return new DlqReplayResponse(res.outcome(), id, full.record().attempts(), full.record().maxAttempts(), res.output(), null, null);
     }
 
-    private Map<String, Object> mergeReplayMeta(Map<String, Object> sourceMeta, long dlqId) {
-        if (sourceMeta == null || sourceMeta.isEmpty()) {
-            return Map.of("dlqReplayId", dlqId);
-        }
-        // Важно: сохраняем исходные метаданные источника, добавляя маркер replay.
-        sourceMeta.put("dlqReplayId", dlqId);
-        return sourceMeta;
+    private DlqReplayResponse replayFailed(long id, InboundDlqService.DlqFull full, Exception ex) {
+        String safeMsg = SensitiveDataSanitizer.sanitizeText(ex.getMessage());
+        inboundDlqService.markReplayFailed(id, "REPLAY_FAILED", safeMsg);
+        return new DlqReplayResponse("FAILED", id, full.record().attempts() + 1, full.record().maxAttempts(), null, "REPLAY_FAILED", safeMsg);
     }
 
     @Serdeable
@@ -901,7 +1261,8 @@ class AdminInboundDlqController {
     @Serdeable
     @Schema(name = "DlqListResponse", description = "Список записей inbound DLQ")
     record DlqListResponse(
-            @Schema(description = "Элементы") List<InboundDlqService.DlqRecord> items
+            @Schema(description = "Элементы") List<InboundDlqService.DlqRecord> items,
+            @Schema(description = "Курсор следующей страницы (null — страница последняя)") String nextCursor
     ) {
     }
 
@@ -1000,6 +1361,18 @@ class AdminInboundDlqController {
     ) {
     }
 
+    @Serdeable
+    @Schema(name = "DlqReplayJobRequest", description = "Параметры фонового replay inbound DLQ")
+    record DlqReplayJobRequest(
+            @Schema(description = "Фильтр статуса (по умолчанию PENDING)") String status,
+            @Schema(description = "Фильтр по type") String type,
+            @Schema(description = "Фильтр по source/sourceSystem/system") String source,
+            @Schema(description = "Фильтр по branchId") String branchId,
+            @Schema(description = "Максимум записей (по умолчанию без ограничения)") Integer maxRecords,
+            @Schema(description = "Параллелизм flow (по умолчанию из конфигурации)") Integer parallelism
+    ) {
+    }
+
     @Serdeable
     @Schema(name = "DlqReplayBatchResponse", description = "Результат пакетного replay inbound DLQ")
     record DlqReplayBatchResponse(
@@ -1035,10 +1408,12 @@ class AdminInboundDlqController {
 class AdminMessagingOutboxController {
 
     private final MessagingOutboxService messagingOutboxService;
+    private final NdjsonExportStreamer exportStreamer;
 
     @Inject
-    AdminMessagingOutboxController(MessagingOutboxService messagingOutboxService) {
+    AdminMessagingOutboxController(MessagingOutboxService messagingOutboxService, NdjsonExportStreamer exportStreamer) {
         this.messagingOutboxService = messagingOutboxService;
+        this.exportStreamer = exportStreamer;
     }
 
     @Get(uri = "/{id}")
@@ -1064,12 +1439,40 @@ class AdminMessagingOutboxController {
             description = "Список возвращается без payload_json для уменьшения риска утечек и нагрузки. Фильтр по статусу опционален."
     )
     @ApiResponse(responseCode = "200", description = "Список", content = @Content(schema = @Schema(implementation = MessagingOutboxListResponse.class)))
+    @ApiResponse(responseCode = "400", description = "Некорректный cursor")
     public MessagingOutboxListResponse list(
             @Parameter(description = "Фильтр статуса (PENDING/SENDING/SENT/DEAD)") String status,
             @Parameter(description = "Фильтр по correlationId") String correlationId,
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)") String cursor,
             @Parameter(description = "Лимит (1..200)") Integer limit) {
         int lim = (limit == null) ? 50 : limit;
-        return new MessagingOutboxListResponse(messagingOutboxService.list(status, correlationId, lim));
+        KeysetCursor.Slice<MessagingOutboxService.OutboxListItem> page;
+        try {
+            page = messagingOutboxService.page(status, correlationId, cursor, lim);
+        } catch (IllegalArgumentException e) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return new MessagingOutboxListResponse(page.items(), page.nextCursor());
+    }
+
+    public MessagingOutboxListResponse list(String status, String correlationId, Integer limit) {
+        return list(status, correlationId, null, limit);
+    }
+
+    @Get(uri = "/export")
+    @Produces(InboundController.NDJSON)
+    @Operation(
+            summary = "Потоковый экспорт messaging outbox (NDJSON)",
+            description = "Выгружает все записи по фильтрам (без payload_json), по строке JSON на запись, в порядке списка. " +
+                    "Выборка читается страницами по курсору и не накапливается в памяти."
+    )
+    @ApiResponse(responseCode = "200", description = "Экспорт (NDJSON)")
+    public HttpResponse<StreamedFile> export(
+            @Parameter(description = "Фильтр статуса (PENDING/SENDING/SENT/DEAD)") String status,
+            @Parameter(description = "Фильтр по correlationId") String correlationId) throws IOException {
+        InputStream body = exportStreamer.stream("messaging-outbox",
+                sink -> messagingOutboxService.export(status, correlationId, sink));
+        return HttpResponse.ok(new StreamedFile(body, MediaType.of(InboundController.NDJSON)));
     }
 
     @Post(uri = "/{id}/replay")
@@ -1118,7 +1521,8 @@ class AdminMessagingOutboxController {
     @Serdeable
     @Schema(name = "MessagingOutboxListResponse", description = "Ответ со списком записей messaging outbox (без payload)")
     record MessagingOutboxListResponse(
-            @Schema(description = "Элементы списка") List<MessagingOutboxService.OutboxListItem> items
+            @Schema(description = "Элементы списка") List<MessagingOutboxService.OutboxListItem> items,
+            @Schema(description = "Курсор следующей страницы (null — страница последняя)") String nextCursor
     ) {
     }
 
@@ -1168,14 +1572,17 @@ class AdminRestOutboxController {
 
     private final RestOutboxService restOutboxService;
     private final AdminOperationsMetrics adminOperationsMetrics;
+    private final NdjsonExportStreamer exportStreamer;
     private final int cancelBatchLimitMax;
 
     @Inject
     AdminRestOutboxController(RestOutboxService restOutboxService,
                               AdminOperationsMetrics adminOperationsMetrics,
+                              NdjsonExportStreamer exportStreamer,
                               @Value("${integrationbroker.admin.outbox.rest.cancel-batch.max-limit:200}") int cancelBatchLimitMax) {
         this.restOutboxService = restOutboxService;
         this.adminOperationsMetrics = adminOperationsMetrics;
+        this.exportStreamer = exportStreamer;
         this.cancelBatchLimitMax = Math.max(1, cancelBatchLimitMax);
     }
 
@@ -1202,13 +1609,42 @@ class AdminRestOutboxController {
             description = "Список возвращается без body_json для уменьшения риска утечек и нагрузки. Фильтр по статусу опционален."
     )
     @ApiResponse(responseCode = "200", description = "Список", content = @Content(schema = @Schema(implementation = RestOutboxListResponse.class)))
+    @ApiResponse(responseCode = "400", description = "Некорректный cursor")
     public RestOutboxListResponse list(
             @Parameter(description = "Фильтр статуса (PENDING/SENDING/SENT/DEAD)") String status,
             @Parameter(description = "Фильтр connectorId (опционально)") String connectorId,
             @Parameter(description = "Фильтр по correlationId") String correlationId,
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)") String cursor,
             @Parameter(description = "Лимит (1..200)") Integer limit) {
         int lim = (limit == null) ? 50 : limit;
-        return new RestOutboxListResponse(restOutboxService.list(status, connectorId, correlationId, lim));
+        KeysetCursor.Slice<RestOutboxService.RestListItem> page;
+        try {
+            page = restOutboxService.page(status, connectorId, correlationId, cursor, lim);
+        } catch (IllegalArgumentException e) {
+            throw new HttpStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return new RestOutboxListResponse(page.items(), page.nextCursor());
+    }
+
+    public RestOutboxListResponse list(String status, String connectorId, String correlationId, Integer limit) {
+        return list(status, connectorId, correlationId, null, limit);
+    }
+
+    @Get(uri = "/export")
+    @Produces(InboundController.NDJSON)
+    @Operation(
+            summary = "Потоковый экспорт REST outbox (NDJSON)",
+            description = "Выгружает все записи по фильтрам (без body_json), по строке JSON на запись, в порядке списка. " +
+                    "Выборка читается страницами по курсору и не накапливается в памяти."
+    )
+    @ApiResponse(responseCode = "200", description = "Экспорт (NDJSON)")
+    public HttpResponse<StreamedFile> export(
+            @Parameter(description = "Фильтр статуса (PENDING/SENDING/SENT/DEAD)") String status,
+            @Parameter(description = "Фильтр connectorId (опционально)") String connectorId,
+            @Parameter(description = "Фильтр по correlationId") String correlationId) throws IOException {
+        InputStream body = exportStreamer.stream("rest-outbox",
+                sink -> restOutboxService.export(status, connectorId, correlationId, sink));
+        return HttpResponse.ok(new StreamedFile(body, MediaType.of(InboundController.NDJSON)));
     }
 
     @Post(uri = "/{id}/replay")
@@ -1297,7 +1733,8 @@ class AdminRestOutboxController {
     @Serdeable
     @Schema(name = "RestOutboxListResponse", description = "Ответ со списком записей REST outbox (без body)")
     record RestOutboxListResponse(
-            @Schema(description = "Элементы списка") List<RestOutboxService.RestListItem> items
+            @Schema(description = "Элементы списка") List<RestOutboxService.RestListItem> items,
+            @Schema(description = "Курсор следующей страницы (null — страница последняя)") String nextCursor
     ) {
     }
 
@@ -1323,3 +1760,49 @@ class AdminRestOutboxController {
     }
 
 }
+
+/**
+ * Admin API: очистка служебных таблиц по сроку хранения (retention).
+ */
+@Secured("IB_ADMIN")
+@Controller("/admin/retention")
+@Tag(name = "Integration Broker — Admin API (Retention)", description = "Сроки хранения idempotency/outbox/DLQ, размеры таблиц и ручной запуск очистки")
+class AdminRetentionController {
+
+    private final RetentionService retentionService;
+
+    @Inject
+    AdminRetentionController(RetentionService retentionService) {
+        this.retentionService = retentionService;
+    }
+
+    @Get
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(
+            summary = "Состояние retention",
+            description = "Политики хранения, итог последнего прогона, скорость удаления, суммарные паузы бюджета " +
+                    "rows-per-second, размеры и оценка числа строк служебных таблиц."
+    )
+    @ApiResponse(responseCode = "200", description = "Состояние", content = @Content(schema = @Schema(implementation = RetentionService.Snapshot.class)))
+    public RetentionService.Snapshot status() {
+        return retentionService.snapshot();
+    }
+
+    @Post(uri = "/run")
+    @Produces(MediaType.APPLICATION_JSON)
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    @Operation(
+            summary = "Запустить прогон retention",
+            description = "Выполняет один прогон очистки синхронно (с тем же бюджетом rows-per-second, что и фоновый). " +
+                    "Работает и при integrationbroker.retention.enabled=false."
+    )
+    @ApiResponse(responseCode = "200", description = "Прогон выполнен", content = @Content(schema = @Schema(implementation = RetentionService.RunSummary.class)))
+    @ApiResponse(responseCode = "409", description = "Прогон уже выполняется")
+    public HttpResponse<RetentionService.RunSummary> run() {
+        RetentionService.RunSummary summary = retentionService.runOnce();
+        if (summary == null) {
+            return HttpResponse.status(HttpStatus.CONFLICT);
+        }
+        return HttpResponse.ok(summary);
+    }
+}
@@ -0,0 +1,179 @@
+package ru.aritmos.integrationbroker.api;
+
+import io.micronaut.management.endpoint.annotation.Endpoint;
+import io.micronaut.management.endpoint.annotation.Read;
+import ru.aritmos.integrationbroker.adapters.VisitManagerConflictMetrics;
+import ru.aritmos.integrationbroker.core.FlowEngine;
+import ru.aritmos.integrationbroker.core.HotPathMetrics;
+import ru.aritmos.integrationbroker.core.IdempotencyService;
+import ru.aritmos.integrationbroker.core.KeycloakProxyEnrichmentService;
+import ru.aritmos.integrationbroker.core.MessagingOutboxService;
+import ru.aritmos.integrationbroker.core.QueueDepthSampler;
+import ru.aritmos.integrationbroker.core.RestOutboxService;
+import ru.aritmos.integrationbroker.identity.IdentityResultCache;
+import ru.aritmos.integrationbroker.identity.IdentityService;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Метрики в текстовом формате Prometheus ({@code GET /prometheus}).
+ * <p>
+ * Отдаёт таймеры горячего пути ({@link HotPathMetrics}), глубины очередей из последнего снимка
+ * {@link QueueDepthSampler} (без запросов к БД на каждый scrape) и накопительные счётчики подсистем:
+ * решения идемпотентности по источникам, кэши flow/KeycloakProxy/идентификации, конфликты VisitManager,
+ * длительности вызовов провайдеров идентификации.
+ * Включение/чувствительность — стандартные {@code endpoints.prometheus.*}; по умолчанию требуется аутентификация
+ * (в метках есть идентификаторы flow, коннекторов и источников).
+ */
+@Endpoint(id = "prometheus", defaultSensitive = true)
+public class PrometheusEndpoint {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HotPathMetrics hotPathMetrics;
+    private final QueueDepthSampler queueDepthSampler;
+    private final IdempotencyService idempotencyService;
+    private final FlowEngine.ConfigBasedFlowResolver flowResolver;
+    private final KeycloakProxyEnrichmentService keycloakProxyEnrichmentService;
+    private final VisitManagerConflictMetrics visitManagerConflictMetrics;
+    private final MessagingOutboxService messagingOutboxService;
+    private final RestOutboxService restOutboxService;
+    private final IdentityResultCache identityResultCache;
+    private final IdentityService identityService;
+
+    public PrometheusEndpoint(HotPathMetrics hotPathMetrics,
+                              QueueDepthSampler queueDepthSampler,
+                              IdempotencyService idempotencyService,
+                              FlowEngine.ConfigBasedFlowResolver flowResolver,
+                              KeycloakProxyEnrichmentService keycloakProxyEnrichmentService,
+                              VisitManagerConflictMetrics visitManagerConflictMetrics,
+                              MessagingOutboxService messagingOutboxService,
+                              RestOutboxService restOutboxService,
+                              IdentityResultCache identityResultCache,
+                              IdentityService identityService) {
+        this.hotPathMetrics = hotPathMetrics;
+        this.queueDepthSampler = queueDepthSampler;
+        this.idempotencyService = idempotencyService;
+        this.flowResolver = flowResolver;
+        this.keycloakProxyEnrichmentService = keycloakProxyEnrichmentService;
+        this.visitManagerConflictMetrics = visitManagerConflictMetrics;
+        this.messagingOutboxService = messagingOutboxService;
+        this.restOutboxService = restOutboxService;
+        this.identityResultCache = identityResultCache;
+        this.identityService = identityService;
+    }
+
+    @Read(produces = CONTENT_TYPE)
+    public String scrape() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        if (hotPathMetrics != null) {
+            hotPathMetrics.writePrometheus(out);
+        }
+        if (queueDepthSampler != null) {
+            writeDepths(out, queueDepthSampler.current());
+        }
+        if (idempotencyService != null) {
+            List<IdempotencyService.SourceConflictShare> sources = idempotencyService.conflictSharePerSource(200);
+            if (!sources.isEmpty()) {
+                header(out, "ib_idempotency_decisions_total", "Решения идемпотентности по источнику", "counter");
+                for (IdempotencyService.SourceConflictShare s : sources) {
+                    sample(out, "ib_idempotency_decisions_total", "source", s.source(), s.totalDecisions());
+                }
+                header(out, "ib_idempotency_conflicts_total", "Конфликты идемпотентности (DUPLICATE/LOCKED) по источнику", "counter");
+                for (IdempotencyService.SourceConflictShare s : sources) {
+                    sample(out, "ib_idempotency_conflicts_total", "source", s.source(), "reason", "duplicate", s.duplicate());
+                    sample(out, "ib_idempotency_conflicts_total", "source", s.source(), "reason", "locked", s.locked());
+                }
+            }
+        }
+        if (flowResolver != null) {
+            counter(out, "ib_flow_resolver_cache_hits_total", "Попадания в кэш разрешения flow", flowResolver.hits());
+            counter(out, "ib_flow_resolver_cache_misses_total", "Промахи кэша разрешения flow", flowResolver.misses());
+        }
+        if (keycloakProxyEnrichmentService != null) {
+            counter(out, "ib_keycloak_enrichment_cache_hits_total", "Попадания в кэш KeycloakProxy enrichment", keycloakProxyEnrichmentService.cacheHits());
+            counter(out, "ib_keycloak_enrichment_cache_misses_total", "Промахи кэша KeycloakProxy enrichment", keycloakProxyEnrichmentService.cacheMisses());
+            counter(out, "ib_keycloak_enrichment_errors_total", "Ошибки KeycloakProxy enrichment", keycloakProxyEnrichmentService.errors());
+        }
+        if (visitManagerConflictMetrics != null) {
+            counter(out, "ib_visit_manager_conflicts_409_total", "Ответы 409 от VisitManager", visitManagerConflictMetrics.conflicts409());
+        }
+        if (messagingOutboxService != null && restOutboxService != null) {
+            counter(out, "ib_outbox_dispatch_round_trips_total", "Обращения к БД при диспетчеризации outbox",
+                    messagingOutboxService.dispatchRoundTrips() + restOutboxService.dispatchRoundTrips());
+            counter(out, "ib_outbox_stale_outcomes_total", "Результаты отправки, отброшенные из-за потери lease",
+                    messagingOutboxService.staleOutcomes() + restOutboxService.staleOutcomes());
+        }
+        if (identityResultCache != null && identityResultCache.enabled()) {
+            IdentityResultCache.Snapshot ic = identityResultCache.snapshot();
+            counter(out, "ib_identity_cache_hits_total", "Попадания в кэш результатов идентификации", ic.hits());
+            counter(out, "ib_identity_cache_negative_hits_total", "NO_MATCH из кэша результатов идентификации", ic.negativeHits());
+            counter(out, "ib_identity_cache_misses_total", "Промахи кэша результатов идентификации", ic.misses());
+            gauge(out, "ib_identity_cache_size", "Записей в кэше результатов идентификации", ic.size());
+        }
+        if (identityService != null) {
+            Map<String, Map<String, Long>> latency = identityService.providerLatencyHistogram();
+            if (!latency.isEmpty()) {
+                header(out, "ib_identity_provider_calls_total", "Вызовы провайдеров идентификации по диапазону длительности", "counter");
+                for (Map.Entry<String, Map<String, Long>> p : latency.entrySet()) {
+                    for (Map.Entry<String, Long> bucket : p.getValue().entrySet()) {
+                        sample(out, "ib_identity_provider_calls_total", "provider", p.getKey(), "latency", bucket.getKey(), bucket.getValue());
+                    }
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeDepths(StringBuilder out, QueueDepthSampler.Depths d) {
+        if (d == null) {
+            return;
+        }
+        header(out, "ib_queue_depth", "Записи служебных таблиц по статусу (снимок по расписанию)", "gauge");
+        sample(out, "ib_queue_depth", "queue", "idempotency", "status", "IN_PROGRESS", d.idempotencyInProgress());
+        sample(out, "ib_queue_depth", "queue", "idempotency", "status", "COMPLETED", d.idempotencyCompleted());
+        sample(out, "ib_queue_depth", "queue", "idempotency", "status", "FAILED", d.idempotencyFailed());
+        sample(out, "ib_queue_depth", "queue", "inbound_dlq", "status", "PENDING", d.dlqPending());
+        sample(out, "ib_queue_depth", "queue", "inbound_dlq", "status", "REPLAYED", d.dlqReplayed());
+        sample(out, "ib_queue_depth", "queue", "inbound_dlq", "status", "DEAD", d.dlqDead());
+        sample(out, "ib_queue_depth", "queue", "messaging_outbox", "status", "PENDING", d.messagingOutboxPending());
+        sample(out, "ib_queue_depth", "queue", "messaging_outbox", "status", "SENT", d.messagingOutboxSent());
+        sample(out, "ib_queue_depth", "queue", "messaging_outbox", "status", "DEAD", d.messagingOutboxDead());
+        sample(out, "ib_queue_depth", "queue", "rest_outbox", "status", "PENDING", d.restOutboxPending());
+        sample(out, "ib_queue_depth", "queue", "rest_outbox", "status", "SENT", d.restOutboxSent());
+        sample(out, "ib_queue_depth", "queue", "rest_outbox", "status", "DEAD", d.restOutboxDead());
+        if (d.sampledAt() != null) {
+            gauge(out, "ib_queue_depth_sampled_timestamp_seconds", "Момент снятия глубин очередей (unix time)",
+                    String.format(Locale.ROOT, "%.3f", Instant.parse(d.sampledAt()).toEpochMilli() / 1000.0));
+        }
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, Object value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, long v) {
+        out.append(name).append('{').append(label).append("=\"").append(HotPathMetrics.escapeLabel(value)).append("\"} ").append(v).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label1, String value1, String label2, String value2, long v) {
+        out.append(name).append('{')
+                .append(label1).append("=\"").append(HotPathMetrics.escapeLabel(value1)).append("\",")
+                .append(label2).append("=\"").append(HotPathMetrics.escapeLabel(value2)).append("\"} ")
+                .append(v).append('\n');
+    }
+}
@@ -73,7 +73,8 @@ public class RuntimeConfigAdminController {
                     connector.baseUrl(),
                     sanitizedAuth,
                     connector.retryPolicy(),
-                    connector.circuitBreaker()
+                    connector.circuitBreaker(),
+                    connector.http()
             ));
         }
         return new RuntimeConfigStore.RuntimeConfig(
@@ -3,6 +3,7 @@ package ru.aritmos.integrationbroker.appointment;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.inject.Singleton;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.core.HttpClientRegistry;
 import ru.aritmos.integrationbroker.core.OAuth2ClientCredentialsService;
 
 import java.time.Instant;
@@ -30,14 +31,15 @@ public class AppointmentClients {
 
     public AppointmentClients(ObjectMapper objectMapper,
                               RuntimeConfigStore configStore,
-                              OAuth2ClientCredentialsService oauth2Service) {
+                              OAuth2ClientCredentialsService oauth2Service,
+                              HttpClientRegistry httpClients) {
         // objectMapper оставлен на будущее (маппинг под реальные API), но сейчас не используется.
         this.emiasAppointment = new DelegatingAppointmentClient("EMIAS_APPOINTMENT");
         this.medtochkaLike = new DelegatingAppointmentClient("MEDTOCHKA_LIKE");
         this.prodoctorovLike = new DelegatingAppointmentClient("PRODOCTOROV_LIKE");
         this.yclientsLike = new DelegatingAppointmentClient("YCLIENTS_LIKE");
         this.napopravkuLike = new DelegatingAppointmentClient("NAPOPRAVKU_LIKE");
-        this.customConnector = new AppointmentCustomConnectorClient(configStore::getEffective, objectMapper, oauth2Service);
+        this.customConnector = new AppointmentCustomConnectorClient(configStore::getEffective, objectMapper, oauth2Service, httpClients);
         this.generic = new GenericAppointmentClient();
     }
 
@@ -1,15 +1,14 @@
 package ru.aritmos.integrationbroker.appointment;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 import ru.aritmos.integrationbroker.core.CorrelationContext;
+import ru.aritmos.integrationbroker.core.HttpClientRegistry;
 import ru.aritmos.integrationbroker.core.OAuth2ClientCredentialsService;
 import ru.aritmos.integrationbroker.core.SensitiveDataSanitizer;
 
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
@@ -23,29 +22,39 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.function.Supplier;
 
 /**
  * CUSTOM_CONNECTOR реализация для appointment через runtime-config шаблоны.
+ * <p>
+ * Операции {@code settings.customClient.operations} компилируются в {@link AppointmentOperationPlan} один раз
+ * на ревизию настроек appointment и переиспользуются всеми вызовами.
  */
 final class AppointmentCustomConnectorClient implements AppointmentClient {
 
-    private static final Pattern TEMPLATE_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
+    private static final String OK_EMPTY_BODY = "{\"data\":{\"items\":[]}}";
 
     private final Supplier<RuntimeConfigStore.RuntimeConfig> configSupplier;
     private final ObjectMapper objectMapper;
     private final OAuth2ClientCredentialsService oauth2Service;
-    private final HttpClient httpClient;
+    private final HttpClientRegistry httpClients;
+
+    private volatile CompiledClient compiled;
 
     AppointmentCustomConnectorClient(Supplier<RuntimeConfigStore.RuntimeConfig> configSupplier,
                                      ObjectMapper objectMapper,
-                                     OAuth2ClientCredentialsService oauth2Service) {
+                                     OAuth2ClientCredentialsService oauth2Service,
+                                     HttpClientRegistry httpClients) {
         this.configSupplier = Objects.requireNonNull(configSupplier, "configSupplier");
         this.objectMapper = objectMapper == null ? new ObjectMapper() : objectMapper;
         this.oauth2Service = oauth2Service;
-        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(3)).build();
+        this.httpClients = httpClients == null ? HttpClientRegistry.standalone() : httpClients;
+    }
+
+    AppointmentCustomConnectorClient(Supplier<RuntimeConfigStore.RuntimeConfig> configSupplier,
+                                     ObjectMapper objectMapper,
+                                     OAuth2ClientCredentialsService oauth2Service) {
+        this(configSupplier, objectMapper, oauth2Service, null);
     }
 
     @Override
@@ -55,7 +64,7 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         if (!call.success()) {
             return AppointmentModels.AppointmentOutcome.error(call.message(), call.details());
         }
-        List<AppointmentModels.Appointment> mapped = mapAppointments(call.body(), call.operation());
+        List<AppointmentModels.Appointment> mapped = mapAppointments(call);
         return new AppointmentModels.AppointmentOutcome<>(true, "OK", "", mapped, call.details());
     }
 
@@ -91,7 +100,7 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         if (!call.success()) {
             return AppointmentModels.AppointmentOutcome.error(call.message(), call.details());
         }
-        List<AppointmentModels.Slot> mapped = mapSlots(call.body(), call.operation());
+        List<AppointmentModels.Slot> mapped = mapSlots(call);
         return new AppointmentModels.AppointmentOutcome<>(true, "OK", "", mapped, call.details());
     }
 
@@ -107,7 +116,7 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         if (!call.success()) {
             return AppointmentModels.AppointmentOutcome.error(call.message(), call.details());
         }
-        AppointmentModels.Appointment first = mapSingleAppointment(call.body(), call.operation());
+        AppointmentModels.Appointment first = mapSingleAppointment(call);
         return new AppointmentModels.AppointmentOutcome<>(true, "OK", "", first, call.details());
     }
 
@@ -138,7 +147,7 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
             return AppointmentModels.AppointmentOutcome.error(call.message(), call.details());
         }
         // Для baseline: если внешняя операция возвращает запись — строим минимальный план.
-        AppointmentModels.Appointment appt = mapSingleAppointment(call.body(), call.operation());
+        AppointmentModels.Appointment appt = mapSingleAppointment(call);
         String appointmentId = request == null ? null : request.appointmentId();
         if (appt != null && appt.appointmentId() != null) {
             appointmentId = appt.appointmentId();
@@ -172,13 +181,12 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
             return VendorCallResult.error("Не найден restConnectors." + ac.connectorId(), Map.of());
         }
 
-        Map<String, Object> customClient = asMap(ac.settings() == null ? null : ac.settings().get("customClient"));
-        if (!asBoolean(customClient.get("enabled"), true)) {
+        CompiledClient client = compiled(ac.settings());
+        if (!client.enabled()) {
             return VendorCallResult.error("appointment.settings.customClient.enabled=false", Map.of());
         }
-        Map<String, Object> operations = asMap(customClient.get("operations"));
-        Map<String, Object> operation = asMap(operations.get(operationName));
-        if (operation.isEmpty()) {
+        AppointmentOperationPlan operation = client.operations().get(operationName);
+        if (operation == null) {
             return VendorCallResult.error("Операция customClient не настроена: " + operationName, Map.of());
         }
 
@@ -193,10 +201,10 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
             vars.putAll(extraVars);
         }
 
-        String path = substituteString(asString(operation.get("path"), ""), vars);
-        String url = buildUrl(connector.baseUrl(), path, materializeStringMap(operation.get("queryTemplate"), vars));
+        Map<String, Object> flatVars = AppointmentOperationPlan.flatten(vars);
+        String url = buildUrl(connector.baseUrl(), operation.path(flatVars), operation.query(flatVars));
 
-        Map<String, String> headers = materializeStringMap(operation.get("headersTemplate"), vars);
+        Map<String, String> headers = operation.headers(flatVars);
         headers.putIfAbsent("X-Correlation-Id", cc.correlationId());
         headers.putIfAbsent("X-Request-Id", cc.requestId());
         String idempotency = metaString(meta, "idempotencyKey");
@@ -206,7 +214,7 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         headers.putIfAbsent("Accept", "application/json");
         applyAuth(headers, connector.auth());
 
-        Object requestBody = materializeObject(operation.get("requestTemplate"), vars);
+        Object requestBody = operation.requestBody(flatVars);
         String bodyJson;
         try {
             bodyJson = requestBody == null ? "{}" : objectMapper.writeValueAsString(requestBody);
@@ -214,9 +222,10 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
             return VendorCallResult.error("Ошибка сериализации requestTemplate: " + safe(e.getMessage()), Map.of("operation", operationName));
         }
 
-        String method = asString(operation.get("method"), "POST").toUpperCase();
+        String method = operation.method();
         try {
-            HttpRequest.Builder rb = HttpRequest.newBuilder().uri(URI.create(url)).timeout(Duration.ofSeconds(10));
+            HttpRequest.Builder rb = HttpRequest.newBuilder().uri(URI.create(url))
+                    .timeout(HttpClientRegistry.requestTimeout(connector, Duration.ofSeconds(10)));
             headers.forEach(rb::header);
             if ("GET".equals(method) || "DELETE".equals(method)) {
                 rb.method(method, HttpRequest.BodyPublishers.noBody());
@@ -226,16 +235,15 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
                     rb.header("Content-Type", "application/json");
                 }
             }
-            HttpResponse<String> resp = httpClient.send(rb.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            HttpResponse<String> resp = httpClients.send(ac.connectorId(), connector, rb.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
             int status = resp.statusCode();
             if (status >= 200 && status < 300) {
-                JsonNode body = parseJson(resp.body());
                 Map<String, Object> okDetails = new LinkedHashMap<>();
                 okDetails.put("httpStatus", status);
                 okDetails.put("operation", operationName);
                 okDetails.put("correlationId", cc.correlationId());
                 okDetails.put("requestId", cc.requestId());
-                return VendorCallResult.ok(body, operation, okDetails);
+                return VendorCallResult.ok(resp.body(), operation, okDetails);
             }
             String mapped = mapHttpError(operation, status);
             if ("OK_EMPTY".equals(mapped)) {
@@ -245,7 +253,7 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
                 emptyDetails.put("mappedOutcome", mapped);
                 emptyDetails.put("correlationId", cc.correlationId());
                 emptyDetails.put("requestId", cc.requestId());
-                return VendorCallResult.ok(parseJson("{\"data\":{\"items\":[]}}"), operation, emptyDetails);
+                return VendorCallResult.ok(OK_EMPTY_BODY, operation, emptyDetails);
             }
             boolean retriable = "ERROR_RETRYABLE".equals(mapped);
             Map<String, Object> details = new LinkedHashMap<>();
@@ -270,84 +278,69 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         }
     }
 
-    private List<AppointmentModels.Appointment> mapAppointments(JsonNode body, Map<String, Object> operation) {
-        if (body == null) {
-            return List.of();
-        }
-        Map<String, Object> responseMapping = asMap(operation.get("responseMapping"));
-        String vendorTraceId = readByPath(body, asString(responseMapping.get("vendorTraceId"), "$.traceId"));
-        String itemsPath = asString(responseMapping.get("itemsPath"), "$.data.items[*]");
-        List<JsonNode> items = resolveItems(body, itemsPath);
-        List<AppointmentModels.Appointment> out = new ArrayList<>();
-        for (JsonNode it : items) {
-            String id = readByPath(it, asString(responseMapping.get("appointmentId"), "$.id"));
-            Instant startAt = parseInstant(readByPath(it, asString(responseMapping.get("startAt"), "$.start")));
-            Instant endAt = parseInstant(readByPath(it, asString(responseMapping.get("endAt"), "$.end")));
-            String serviceCode = readByPath(it, asString(responseMapping.get("serviceCode"), "$.service.code"));
-            String doctor = readByPath(it, asString(responseMapping.get("specialistName"), "$.doctor.name"));
-            String room = readByPath(it, asString(responseMapping.get("room"), "$.cabinet"));
-            String status = readByPath(it, asString(responseMapping.get("status"), "$.status"));
-            Map<String, Object> attributes = new LinkedHashMap<>();
-            attributes.put("source", "customConnector");
-            if (!isBlank(vendorTraceId)) {
-                attributes.put("vendorTraceId", vendorTraceId);
-            }
-            out.add(new AppointmentModels.Appointment(id, startAt, endAt, serviceCode, doctor, room, status,
-                    attributes));
+    private List<AppointmentModels.Appointment> mapAppointments(VendorCallResult call) {
+        AppointmentOperationPlan.Extract extract = call.operation().appointments().read(objectMapper, call.body(), false);
+        List<AppointmentModels.Appointment> out = new ArrayList<>(extract.items().size());
+        for (String[] it : extract.items()) {
+            out.add(toAppointment(it, extract.traceId()));
         }
         return out;
     }
 
-    private AppointmentModels.Appointment mapSingleAppointment(JsonNode body, Map<String, Object> operation) {
-        List<AppointmentModels.Appointment> fromList = mapAppointments(body, operation);
-        if (!fromList.isEmpty()) {
-            return fromList.get(0);
+    private AppointmentModels.Appointment mapSingleAppointment(VendorCallResult call) {
+        // Один проход по ответу: и список itemsPath, и поля маппинга от корня (ответ-одиночная запись).
+        AppointmentOperationPlan.Extract extract = call.operation().appointments().read(objectMapper, call.body(), true);
+        if (!extract.items().isEmpty()) {
+            return toAppointment(extract.items().get(0), extract.traceId());
         }
-        if (body == null || body.isArray()) {
+        if (extract.rootIsArray()) {
             return null;
         }
-        Map<String, Object> responseMapping = asMap(operation.get("responseMapping"));
-        String vendorTraceId = readByPath(body, asString(responseMapping.get("vendorTraceId"), "$.traceId"));
-        String id = readByPath(body, asString(responseMapping.get("appointmentId"), "$.id"));
-        Instant startAt = parseInstant(readByPath(body, asString(responseMapping.get("startAt"), "$.start")));
-        Instant endAt = parseInstant(readByPath(body, asString(responseMapping.get("endAt"), "$.end")));
-        String serviceCode = readByPath(body, asString(responseMapping.get("serviceCode"), "$.service.code"));
-        String doctor = readByPath(body, asString(responseMapping.get("specialistName"), "$.doctor.name"));
-        String room = readByPath(body, asString(responseMapping.get("room"), "$.cabinet"));
-        String status = readByPath(body, asString(responseMapping.get("status"), "$.status"));
-        if (id == null && startAt == null && endAt == null && serviceCode == null && doctor == null && room == null && status == null) {
+        AppointmentModels.Appointment a = toAppointment(extract.root(), extract.traceId());
+        if (a.appointmentId() == null && a.startAt() == null && a.endAt() == null && a.serviceCode() == null
+                && a.specialistName() == null && a.room() == null && a.status() == null) {
             return null;
         }
+        return a;
+    }
+
+    private static AppointmentModels.Appointment toAppointment(String[] it, String vendorTraceId) {
+        // Порядок полей — AppointmentOperationPlan.APPOINTMENT_FIELDS.
+        return new AppointmentModels.Appointment(it[0], parseInstant(it[1]), parseInstant(it[2]), it[3], it[4], it[5], it[6],
+                attributes(vendorTraceId));
+    }
+
+    private List<AppointmentModels.Slot> mapSlots(VendorCallResult call) {
+        AppointmentOperationPlan.Extract extract = call.operation().slots().read(objectMapper, call.body(), false);
+        List<AppointmentModels.Slot> out = new ArrayList<>(extract.items().size());
+        for (String[] it : extract.items()) {
+            // Порядок полей — AppointmentOperationPlan.SLOT_FIELDS.
+            out.add(new AppointmentModels.Slot(it[0], parseInstant(it[1]), parseInstant(it[2]), it[3], attributes(extract.traceId())));
+        }
+        return out;
+    }
+
+    private static Map<String, Object> attributes(String vendorTraceId) {
         Map<String, Object> attributes = new LinkedHashMap<>();
         attributes.put("source", "customConnector");
         if (!isBlank(vendorTraceId)) {
             attributes.put("vendorTraceId", vendorTraceId);
         }
-        return new AppointmentModels.Appointment(id, startAt, endAt, serviceCode, doctor, room, status, attributes);
-    }
-
-    private List<AppointmentModels.Slot> mapSlots(JsonNode body, Map<String, Object> operation) {
-        if (body == null) {
-            return List.of();
-        }
-        Map<String, Object> responseMapping = asMap(operation.get("responseMapping"));
-        String vendorTraceId = readByPath(body, asString(responseMapping.get("vendorTraceId"), "$.traceId"));
-        String itemsPath = asString(responseMapping.get("itemsPath"), "$.data.items[*]");
-        List<JsonNode> items = resolveItems(body, itemsPath);
-        List<AppointmentModels.Slot> out = new ArrayList<>();
-        for (JsonNode it : items) {
-            String slotId = readByPath(it, asString(responseMapping.get("slotId"), "$.id"));
-            Instant startAt = parseInstant(readByPath(it, asString(responseMapping.get("startAt"), "$.start")));
-            Instant endAt = parseInstant(readByPath(it, asString(responseMapping.get("endAt"), "$.end")));
-            String serviceCode = readByPath(it, asString(responseMapping.get("serviceCode"), "$.service.code"));
-            Map<String, Object> attributes = new LinkedHashMap<>();
-            attributes.put("source", "customConnector");
-            if (!isBlank(vendorTraceId)) {
-                attributes.put("vendorTraceId", vendorTraceId);
-            }
-            out.add(new AppointmentModels.Slot(slotId, startAt, endAt, serviceCode, attributes));
+        return attributes;
+    }
+
+    /**
+     * Скомпилированные операции для текущих настроек appointment; пересобираются только при смене объекта настроек.
+     */
+    private CompiledClient compiled(Map<String, Object> settings) {
+        CompiledClient c = compiled;
+        if (c == null || c.source() != settings) {
+            Map<String, Object> customClient = asMap(settings == null ? null : settings.get("customClient"));
+            c = new CompiledClient(settings, asBoolean(customClient.get("enabled"), true),
+                    AppointmentOperationPlan.compileAll(customClient.get("operations")));
+            compiled = c;
         }
-        return out;
+        return c;
     }
 
     private static boolean isRetryableTransportError(Exception ex) {
@@ -392,44 +385,6 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         }
     }
 
-    private static List<JsonNode> resolveItems(JsonNode body, String itemsPath) {
-        String p = itemsPath == null ? "" : itemsPath.trim();
-        if (p.startsWith("$.") && p.endsWith("[*]")) {
-            String fieldPath = p.substring(2, p.length() - 3);
-            JsonNode cursor = body;
-            for (String seg : fieldPath.split("\\.")) {
-                if (seg.isBlank()) {
-                    continue;
-                }
-                cursor = cursor == null ? null : cursor.path(seg);
-            }
-            if (cursor != null && cursor.isArray()) {
-                List<JsonNode> out = new ArrayList<>();
-                cursor.forEach(out::add);
-                return out;
-            }
-        }
-        return List.of();
-    }
-
-    private static String readByPath(JsonNode node, String jsonPath) {
-        if (node == null || jsonPath == null || !jsonPath.startsWith("$.")) {
-            return null;
-        }
-        String p = jsonPath.substring(2);
-        JsonNode cursor = node;
-        for (String seg : p.split("\\.")) {
-            if (seg.isBlank()) {
-                continue;
-            }
-            cursor = cursor.path(seg);
-        }
-        if (cursor.isMissingNode() || cursor.isNull()) {
-            return null;
-        }
-        return cursor.isValueNode() ? cursor.asText() : cursor.toString();
-    }
-
     private static Instant parseInstant(String value) {
         if (isBlank(value)) {
             return null;
@@ -441,17 +396,6 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         }
     }
 
-    private JsonNode parseJson(String value) {
-        if (isBlank(value)) {
-            return null;
-        }
-        try {
-            return objectMapper.readTree(value);
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
     private static Map<String, Object> mergeMeta(Map<String, Object> meta, CorrelationContext cc) {
         Map<String, Object> out = new LinkedHashMap<>();
         if (meta != null) {
@@ -476,113 +420,6 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         return out;
     }
 
-    private static Object materializeObject(Object template, Map<String, Object> vars) {
-        if (template == null) {
-            return null;
-        }
-        if (template instanceof Map<?, ?> m) {
-            Map<String, Object> out = new LinkedHashMap<>();
-            for (Map.Entry<?, ?> e : m.entrySet()) {
-                if (e.getKey() == null) {
-                    continue;
-                }
-                out.put(String.valueOf(e.getKey()), materializeObject(e.getValue(), vars));
-            }
-            return out;
-        }
-        if (template instanceof List<?> list) {
-            List<Object> out = new ArrayList<>(list.size());
-            for (Object item : list) {
-                out.add(materializeObject(item, vars));
-            }
-            return out;
-        }
-        if (template instanceof String s) {
-            return resolveStringOrValue(s, vars);
-        }
-        return template;
-    }
-
-    private static Map<String, String> materializeStringMap(Object template, Map<String, Object> vars) {
-        Map<String, String> out = new LinkedHashMap<>();
-        if (!(template instanceof Map<?, ?> m)) {
-            return out;
-        }
-        for (Map.Entry<?, ?> e : m.entrySet()) {
-            if (e.getKey() == null || e.getValue() == null) {
-                continue;
-            }
-            Object mat = materializeObject(e.getValue(), vars);
-            String v = mat == null ? "" : String.valueOf(mat);
-            if (!v.isBlank() && !"null".equals(v)) {
-                out.put(String.valueOf(e.getKey()), v);
-            }
-        }
-        return out;
-    }
-
-    private static Object resolveStringOrValue(String raw, Map<String, Object> vars) {
-        if (raw == null) {
-            return null;
-        }
-        Matcher m = TEMPLATE_PATTERN.matcher(raw.trim());
-        if (m.matches()) {
-            return resolveToken(m.group(1), vars);
-        }
-        return substituteString(raw, vars);
-    }
-
-    private static String substituteString(String raw, Map<String, Object> vars) {
-        if (raw == null || raw.isBlank()) {
-            return raw;
-        }
-        String out = raw;
-        Matcher matcher = TEMPLATE_PATTERN.matcher(raw);
-        while (matcher.find()) {
-            Object resolved = resolveToken(matcher.group(1), vars);
-            out = out.replace("${" + matcher.group(1) + "}", resolved == null ? "" : String.valueOf(resolved));
-        }
-        return out;
-    }
-
-    private static Object resolveToken(String token, Map<String, Object> vars) {
-        if (token == null) {
-            return "";
-        }
-        String key = token;
-        String def = null;
-        int idx = token.indexOf(':');
-        if (idx >= 0) {
-            key = token.substring(0, idx);
-            def = token.substring(idx + 1);
-        }
-        Object found = flatten(vars).get(key);
-        if (found == null || String.valueOf(found).isBlank()) {
-            return def == null ? "" : def;
-        }
-        return found;
-    }
-
-    private static Map<String, Object> flatten(Map<String, Object> src) {
-        Map<String, Object> out = new LinkedHashMap<>();
-        flattenRec("", src, out);
-        return out;
-    }
-
-    private static void flattenRec(String prefix, Object value, Map<String, Object> out) {
-        if (value instanceof Map<?, ?> m) {
-            for (Map.Entry<?, ?> e : m.entrySet()) {
-                if (e.getKey() == null) {
-                    continue;
-                }
-                String next = prefix.isBlank() ? String.valueOf(e.getKey()) : prefix + "." + e.getKey();
-                flattenRec(next, e.getValue(), out);
-            }
-            return;
-        }
-        out.put(prefix, value == null ? "" : value);
-    }
-
     private static boolean hasHeaderIgnoreCase(Map<String, String> headers, String name) {
         if (headers == null || headers.isEmpty() || isBlank(name)) {
             return false;
@@ -606,9 +443,8 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         return cleaned.substring(0, 240) + "...";
     }
 
-    private static String mapHttpError(Map<String, Object> operation, int status) {
-        Map<String, Object> mapping = asMap(operation.get("errorMapping"));
-        String mapped = asString(mapping.get(String.valueOf(status)), "");
+    private static String mapHttpError(AppointmentOperationPlan operation, int status) {
+        String mapped = operation.errorOutcome(status);
         if (!isBlank(mapped)) {
             return mapped;
         }
@@ -669,14 +505,6 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         return out;
     }
 
-    private static String asString(Object value, String def) {
-        if (value == null) {
-            return def;
-        }
-        String s = String.valueOf(value);
-        return s.isBlank() ? def : s;
-    }
-
     private static boolean asBoolean(Object value, boolean def) {
         if (value == null) {
             return def;
@@ -695,17 +523,22 @@ final class AppointmentCustomConnectorClient implements AppointmentClient {
         return SensitiveDataSanitizer.sanitizeText(s == null ? "" : s);
     }
 
+    private record CompiledClient(Map<String, Object> source,
+                                  boolean enabled,
+                                  Map<String, AppointmentOperationPlan> operations) {
+    }
+
     private record VendorCallResult(boolean success,
                                     String message,
-                                    JsonNode body,
-                                    Map<String, Object> operation,
+                                    String body,
+                                    AppointmentOperationPlan operation,
                                     Map<String, Object> details) {
-        static VendorCallResult ok(JsonNode body, Map<String, Object> operation, Map<String, Object> details) {
+        static VendorCallResult ok(String body, AppointmentOperationPlan operation, Map<String, Object> details) {
             return new VendorCallResult(true, "", body, operation, details);
         }
 
         static VendorCallResult error(String message, Map<String, Object> details) {
-            return new VendorCallResult(false, message, null, Map.of(), details == null ? Map.of() : details);
+            return new VendorCallResult(false, message, null, null, details == null ? Map.of() : details);
         }
     }
 }
@@ -0,0 +1,528 @@
+package ru.aritmos.integrationbroker.appointment;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Скомпилированная операция {@code appointment.settings.customClient.operations.<name>}.
+ * <p>
+ * Строится один раз на ревизию настроек и дальше только исполняется:
+ * <ul>
+ *   <li>шаблоны path/queryTemplate/headersTemplate/requestTemplate заранее разбиты на литералы и токены {@code ${key:default}};</li>
+ *   <li>пути {@code responseMapping} ({@code $.data.items[*]}, {@code $.start}, ...) заранее разобраны на сегменты;</li>
+ *   <li>ответ разбирается потоково ({@link JsonParser}): читаются только нужные поля, остальное пропускается без построения
+ *   дерева {@link JsonNode} всего ответа — это важно для больших списков слотов.</li>
+ * </ul>
+ * Семантика шаблонов и путей совпадает с прежней построчной интерпретацией конфигурации.
+ */
+final class AppointmentOperationPlan {
+
+    private static final Pattern TEMPLATE_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
+
+    private static final String[] APPOINTMENT_FIELDS = {"appointmentId", "startAt", "endAt", "serviceCode", "specialistName", "room", "status"};
+    private static final String[] APPOINTMENT_DEFAULTS = {"$.id", "$.start", "$.end", "$.service.code", "$.doctor.name", "$.cabinet", "$.status"};
+    private static final String[] SLOT_FIELDS = {"slotId", "startAt", "endAt", "serviceCode"};
+    private static final String[] SLOT_DEFAULTS = {"$.id", "$.start", "$.end", "$.service.code"};
+
+    private final String method;
+    private final StringTemplate path;
+    private final Map<String, ValueTemplate> query;
+    private final Map<String, ValueTemplate> headers;
+    private final ValueTemplate requestTemplate;
+    private final Map<String, String> errorMapping;
+    private final ResponseMapping appointments;
+    private final ResponseMapping slots;
+
+    private AppointmentOperationPlan(Map<String, Object> operation) {
+        this.method = asString(operation.get("method"), "POST").toUpperCase();
+        this.path = StringTemplate.compile(asString(operation.get("path"), ""));
+        this.query = compileStringMap(operation.get("queryTemplate"));
+        this.headers = compileStringMap(operation.get("headersTemplate"));
+        Object body = operation.get("requestTemplate");
+        this.requestTemplate = body == null ? null : compileValue(body);
+        Map<String, String> errors = new LinkedHashMap<>();
+        if (operation.get("errorMapping") instanceof Map<?, ?> m) {
+            m.forEach((k, v) -> {
+                String mapped = asString(v, "");
+                if (k != null && !mapped.isBlank()) {
+                    errors.put(String.valueOf(k), mapped);
+                }
+            });
+        }
+        this.errorMapping = Map.copyOf(errors);
+        Map<?, ?> responseMapping = operation.get("responseMapping") instanceof Map<?, ?> rm ? rm : Map.of();
+        this.appointments = new ResponseMapping(responseMapping, APPOINTMENT_FIELDS, APPOINTMENT_DEFAULTS);
+        this.slots = new ResponseMapping(responseMapping, SLOT_FIELDS, SLOT_DEFAULTS);
+    }
+
+    /**
+     * Скомпилировать все операции customClient; операции с пустым описанием пропускаются (считаются ненастроенными).
+     */
+    static Map<String, AppointmentOperationPlan> compileAll(Object operations) {
+        Map<String, AppointmentOperationPlan> out = new LinkedHashMap<>();
+        if (operations instanceof Map<?, ?> ops) {
+            for (Map.Entry<?, ?> e : ops.entrySet()) {
+                if (e.getKey() != null && e.getValue() instanceof Map<?, ?> op && !op.isEmpty()) {
+                    out.put(String.valueOf(e.getKey()), new AppointmentOperationPlan(stringKeys(op)));
+                }
+            }
+        }
+        return Map.copyOf(out);
+    }
+
+    String method() {
+        return method;
+    }
+
+    String path(Map<String, Object> flatVars) {
+        return path.render(flatVars);
+    }
+
+    Map<String, String> query(Map<String, Object> flatVars) {
+        return renderStringMap(query, flatVars);
+    }
+
+    Map<String, String> headers(Map<String, Object> flatVars) {
+        return renderStringMap(headers, flatVars);
+    }
+
+    Object requestBody(Map<String, Object> flatVars) {
+        return requestTemplate == null ? null : requestTemplate.render(flatVars);
+    }
+
+    /**
+     * @return исход из {@code errorMapping} для HTTP-статуса или {@code null}
+     */
+    String errorOutcome(int status) {
+        return errorMapping.get(String.valueOf(status));
+    }
+
+    ResponseMapping appointments() {
+        return appointments;
+    }
+
+    ResponseMapping slots() {
+        return slots;
+    }
+
+    /**
+     * Плоское представление переменных шаблона ({@code context.segment}, {@code keys.clientId}, ...).
+     * Строится один раз на вызов и используется всеми токенами операции.
+     */
+    static Map<String, Object> flatten(Map<String, Object> vars) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        flattenRec("", vars, out);
+        return out;
+    }
+
+    private static void flattenRec(String prefix, Object value, Map<String, Object> out) {
+        if (value instanceof Map<?, ?> m) {
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                if (e.getKey() == null) {
+                    continue;
+                }
+                String next = prefix.isBlank() ? String.valueOf(e.getKey()) : prefix + "." + e.getKey();
+                flattenRec(next, e.getValue(), out);
+            }
+            return;
+        }
+        out.put(prefix, value == null ? "" : value);
+    }
+
+    private static Map<String, ValueTemplate> compileStringMap(Object template) {
+        Map<String, ValueTemplate> out = new LinkedHashMap<>();
+        if (template instanceof Map<?, ?> m) {
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                if (e.getKey() != null && e.getValue() != null) {
+                    out.put(String.valueOf(e.getKey()), compileValue(e.getValue()));
+                }
+            }
+        }
+        return out;
+    }
+
+    private static Map<String, String> renderStringMap(Map<String, ValueTemplate> templates, Map<String, Object> flatVars) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (Map.Entry<String, ValueTemplate> e : templates.entrySet()) {
+            Object mat = e.getValue().render(flatVars);
+            String v = mat == null ? "" : String.valueOf(mat);
+            if (!v.isBlank() && !"null".equals(v)) {
+                out.put(e.getKey(), v);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Шаблон значения: строка целиком из одного токена отдаёт значение переменной как есть (число, список),
+     * строка с литералами — подставленную строку, Map/List — рекурсивно, прочее — без изменений.
+     */
+    private static ValueTemplate compileValue(Object template) {
+        if (template instanceof Map<?, ?> m) {
+            Map<String, ValueTemplate> fields = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                if (e.getKey() != null) {
+                    fields.put(String.valueOf(e.getKey()), e.getValue() == null ? vars -> null : compileValue(e.getValue()));
+                }
+            }
+            return vars -> {
+                Map<String, Object> out = new LinkedHashMap<>();
+                fields.forEach((k, v) -> out.put(k, v.render(vars)));
+                return out;
+            };
+        }
+        if (template instanceof List<?> list) {
+            List<ValueTemplate> items = new ArrayList<>(list.size());
+            for (Object item : list) {
+                items.add(item == null ? vars -> null : compileValue(item));
+            }
+            return vars -> {
+                List<Object> out = new ArrayList<>(items.size());
+                for (ValueTemplate item : items) {
+                    out.add(item.render(vars));
+                }
+                return out;
+            };
+        }
+        if (template instanceof String s) {
+            Matcher m = TEMPLATE_PATTERN.matcher(s.trim());
+            if (m.matches()) {
+                Token token = Token.parse(m.group(1));
+                return token::resolve;
+            }
+            StringTemplate st = StringTemplate.compile(s);
+            return st.constant() ? vars -> s : st::render;
+        }
+        return vars -> template;
+    }
+
+    private static Map<String, Object> stringKeys(Map<?, ?> m) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        m.forEach((k, v) -> {
+            if (k != null) {
+                out.put(String.valueOf(k), v);
+            }
+        });
+        return out;
+    }
+
+    private static String asString(Object value, String def) {
+        if (value == null) {
+            return def;
+        }
+        String s = String.valueOf(value);
+        return s.isBlank() ? def : s;
+    }
+
+    @FunctionalInterface
+    private interface ValueTemplate {
+        Object render(Map<String, Object> flatVars);
+    }
+
+    /**
+     * Токен {@code ${key}} или {@code ${key:default}}: пустое значение переменной заменяется default (или пустой строкой).
+     */
+    private record Token(String key, String def) {
+        static Token parse(String token) {
+            int idx = token.indexOf(':');
+            return idx < 0 ? new Token(token, null) : new Token(token.substring(0, idx), token.substring(idx + 1));
+        }
+
+        Object resolve(Map<String, Object> flatVars) {
+            Object found = flatVars.get(key);
+            if (found == null || String.valueOf(found).isBlank()) {
+                return def == null ? "" : def;
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Строковый шаблон: чередование литералов и токенов, разбитое один раз.
+     */
+    private static final class StringTemplate {
+        private final String raw;
+        private final String[] literals;
+        private final Token[] tokens;
+
+        private StringTemplate(String raw, String[] literals, Token[] tokens) {
+            this.raw = raw;
+            this.literals = literals;
+            this.tokens = tokens;
+        }
+
+        static StringTemplate compile(String raw) {
+            if (raw == null || raw.isBlank()) {
+                return new StringTemplate(raw, new String[0], new Token[0]);
+            }
+            List<String> literals = new ArrayList<>();
+            List<Token> tokens = new ArrayList<>();
+            Matcher m = TEMPLATE_PATTERN.matcher(raw);
+            int last = 0;
+            while (m.find()) {
+                literals.add(raw.substring(last, m.start()));
+                tokens.add(Token.parse(m.group(1)));
+                last = m.end();
+            }
+            literals.add(raw.substring(last));
+            return new StringTemplate(raw, literals.toArray(new String[0]), tokens.toArray(new Token[0]));
+        }
+
+        boolean constant() {
+            return tokens.length == 0;
+        }
+
+        String render(Map<String, Object> flatVars) {
+            if (tokens.length == 0) {
+                return raw;
+            }
+            StringBuilder sb = new StringBuilder(raw.length() + 32);
+            for (int i = 0; i < tokens.length; i++) {
+                sb.append(literals[i]);
+                Object resolved = tokens[i].resolve(flatVars);
+                sb.append(resolved == null ? "" : String.valueOf(resolved));
+            }
+            return sb.append(literals[tokens.length]).toString();
+        }
+    }
+
+    /**
+     * Результат потокового разбора ответа.
+     *
+     * @param traceId     значение {@code responseMapping.vendorTraceId}
+     * @param items       значения полей для каждого элемента {@code itemsPath} (в порядке полей маппинга)
+     * @param root        значения тех же полей от корня ответа (только если запрошены)
+     * @param rootIsArray корень ответа — JSON-массив
+     */
+    record Extract(String traceId, List<String[]> items, String[] root, boolean rootIsArray) {
+    }
+
+    /**
+     * Скомпилированный {@code responseMapping} для одного вида результата (записи или слоты).
+     */
+    static final class ResponseMapping {
+        private static final int TRACE_SLOT = -1;
+        private static final int ITEMS_SLOT = -2;
+
+        private final int fieldCount;
+        private final Target[] itemTargets;
+        private final Target[] rootTargets;
+        private final Target[] rootTargetsWithFields;
+
+        private ResponseMapping(Map<?, ?> responseMapping, String[] fields, String[] defaults) {
+            this.fieldCount = fields.length;
+            List<Target> item = new ArrayList<>();
+            for (int i = 0; i < fields.length; i++) {
+                String[] segments = valuePath(asString(responseMapping.get(fields[i]), defaults[i]));
+                if (segments != null) {
+                    item.add(new Target(segments, i));
+                }
+            }
+            this.itemTargets = item.toArray(new Target[0]);
+            List<Target> root = new ArrayList<>();
+            String[] trace = valuePath(asString(responseMapping.get("vendorTraceId"), "$.traceId"));
+            if (trace != null) {
+                root.add(new Target(trace, TRACE_SLOT));
+            }
+            String[] items = itemsPath(asString(responseMapping.get("itemsPath"), "$.data.items[*]"));
+            if (items != null) {
+                root.add(new Target(items, ITEMS_SLOT));
+            }
+            this.rootTargets = root.toArray(new Target[0]);
+            root.addAll(item);
+            this.rootTargetsWithFields = root.toArray(new Target[0]);
+        }
+
+        /**
+         * Разобрать тело ответа. Пустое или некорректное тело даёт пустой результат — как и прежде,
+         * когда такое тело не превращалось в {@link JsonNode}.
+         *
+         * @param withRoot дополнительно прочитать поля маппинга от корня (ответ-одиночная запись)
+         */
+        Extract read(ObjectMapper mapper, String body, boolean withRoot) {
+            Sink sink = new Sink(fieldCount);
+            if (body == null || body.isBlank()) {
+                return sink.extract(false);
+            }
+            try (JsonParser p = mapper.createParser(body)) {
+                JsonToken first = p.nextToken();
+                if (first == null) {
+                    return new Sink(fieldCount).extract(false);
+                }
+                walk(p, withRoot ? rootTargetsWithFields : rootTargets, 0, sink, sink.root);
+                return sink.extract(first == JsonToken.START_ARRAY);
+            } catch (Exception e) {
+                return new Sink(fieldCount).extract(false);
+            }
+        }
+
+        /**
+         * Обработать значение, на котором стоит парсер. Цели, путь которых закончился на этой глубине, читают значение;
+         * остальные спускаются по полям объекта. Ненужные поддеревья пропускаются {@link JsonParser#skipChildren()}.
+         */
+        private void walk(JsonParser p, Target[] targets, int depth, Sink sink, String[] values) throws IOException {
+            JsonToken t = p.currentToken();
+            boolean container = t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY;
+            boolean captureHere = false;
+            boolean itemsHere = false;
+            for (Target target : targets) {
+                if (target.segments.length == depth) {
+                    if (target.slot == ITEMS_SLOT) {
+                        itemsHere = true;
+                    } else {
+                        captureHere = true;
+                    }
+                }
+            }
+            if (captureHere && container) {
+                // Поле маппинга указывает на объект/массив: как и раньше, значение — его JSON. Редкий случай,
+                // поэтому поддерево читается деревом, а остальные цели обходятся по нему тем же алгоритмом.
+                JsonNode node = p.readValueAsTree();
+                String json = node.toString();
+                List<Target> rest = new ArrayList<>();
+                for (Target target : targets) {
+                    if (target.segments.length == depth && target.slot != ITEMS_SLOT) {
+                        sink.put(values, target.slot, json);
+                    } else {
+                        rest.add(target);
+                    }
+                }
+                if (!rest.isEmpty()) {
+                    try (JsonParser sub = node.traverse(p.getCodec())) {
+                        sub.nextToken();
+                        walk(sub, rest.toArray(new Target[0]), depth, sink, values);
+                    }
+                }
+                return;
+            }
+            if (!container) {
+                if (captureHere) {
+                    String v = scalarText(p, t);
+                    for (Target target : targets) {
+                        if (target.segments.length == depth && target.slot != ITEMS_SLOT) {
+                            sink.put(values, target.slot, v);
+                        }
+                    }
+                }
+                return;
+            }
+            if (t == JsonToken.START_ARRAY) {
+                if (!itemsHere) {
+                    p.skipChildren();
+                    return;
+                }
+                List<String[]> items = new ArrayList<>();
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    String[] item = new String[fieldCount];
+                    walk(p, itemTargets, 0, sink, item);
+                    items.add(item);
+                }
+                sink.items = items;
+                return;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                p.nextToken();
+                Target[] sub = deeper(targets, depth, name);
+                if (sub.length == 0) {
+                    p.skipChildren();
+                } else {
+                    walk(p, sub, depth + 1, sink, values);
+                }
+            }
+        }
+
+        private static Target[] deeper(Target[] targets, int depth, String name) {
+            Target[] out = null;
+            int n = 0;
+            for (Target target : targets) {
+                if (target.segments.length > depth && target.segments[depth].equals(name)) {
+                    if (out == null) {
+                        out = new Target[targets.length];
+                    }
+                    out[n++] = target;
+                }
+            }
+            return out == null ? new Target[0] : Arrays.copyOf(out, n);
+        }
+
+        private static String scalarText(JsonParser p, JsonToken t) throws IOException {
+            if (t == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (t == JsonToken.VALUE_STRING) {
+                return p.getText();
+            }
+            // Числа и boolean — через узел, чтобы текст совпадал с JsonNode.asText() (например, 1.50 → 1.5).
+            JsonNode node = p.readValueAsTree();
+            return node == null || node.isNull() ? null : node.asText();
+        }
+
+        /**
+         * Путь значения {@code $.a.b}; пустые сегменты игнорируются, путь без {@code $.} никогда не совпадает.
+         */
+        private static String[] valuePath(String jsonPath) {
+            if (jsonPath == null || !jsonPath.startsWith("$.")) {
+                return null;
+            }
+            return segments(jsonPath.substring(2));
+        }
+
+        /**
+         * Путь списка {@code $.a.b[*]}; другие формы не поддерживаются и дают пустой список.
+         */
+        private static String[] itemsPath(String itemsPath) {
+            String p = itemsPath == null ? "" : itemsPath.trim();
+            if (!p.startsWith("$.") || !p.endsWith("[*]")) {
+                return null;
+            }
+            return segments(p.substring(2, p.length() - 3));
+        }
+
+        private static String[] segments(String path) {
+            List<String> out = new ArrayList<>();
+            for (String seg : path.split("\\.")) {
+                if (!seg.isBlank()) {
+                    out.add(seg);
+                }
+            }
+            return out.toArray(new String[0]);
+        }
+
+        private record Target(String[] segments, int slot) {
+        }
+
+        private static final class Sink {
+            private final String[] root;
+            private String traceId;
+            private List<String[]> items = List.of();
+
+            private Sink(int fieldCount) {
+                this.root = new String[fieldCount];
+            }
+
+            private void put(String[] values, int slot, String value) {
+                if (slot == TRACE_SLOT) {
+                    traceId = value;
+                } else {
+                    values[slot] = value;
+                }
+            }
+
+            private Extract extract(boolean rootIsArray) {
+                return new Extract(traceId, items, root, rootIsArray);
+            }
+        }
+    }
+}
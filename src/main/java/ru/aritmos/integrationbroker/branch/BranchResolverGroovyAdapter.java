@@ -1,14 +1,15 @@
 package ru.aritmos.integrationbroker.branch;
 
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 import ru.aritmos.integrationbroker.core.FlowEngine;
 import ru.aritmos.integrationbroker.model.InboundEnvelope;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Инструмент определения отделения (branchId) для входящих событий.
@@ -33,9 +34,22 @@ import java.util.regex.Pattern;
 public class BranchResolverGroovyAdapter {
 
     private final RuntimeConfigStore configStore;
+    private final int cameraNameCacheSize;
+
+    /**
+     * Правила cameraNameRules текущей ревизии конфигурации: regex скомпилированы один раз, префиксы собраны в trie.
+     */
+    private volatile CameraNameRuleEngine cameraNameRules;
 
     public BranchResolverGroovyAdapter(RuntimeConfigStore configStore) {
+        this(configStore, 10_000);
+    }
+
+    @Inject
+    public BranchResolverGroovyAdapter(RuntimeConfigStore configStore,
+                                       @Value("${integrationbroker.branch.camera-name-cache-size:10000}") int cameraNameCacheSize) {
         this.configStore = configStore;
+        this.cameraNameCacheSize = cameraNameCacheSize;
     }
 
     /**
@@ -85,37 +99,19 @@ public class BranchResolverGroovyAdapter {
         }
 
         String cameraName = readCameraName(input);
-        if (cameraName != null && cfg.cameraNameRules() != null) {
-            for (RuntimeConfigStore.CameraNameRule r : cfg.cameraNameRules()) {
-                if (r == null || r.regex() == null || r.regex().isBlank()) {
-                    continue;
-                }
-                Pattern p = Pattern.compile(r.regex());
-                Matcher m = p.matcher(cameraName);
-                if (!m.matches()) {
-                    continue;
-                }
-                int g = Math.max(0, r.group());
-                String extracted;
-                try {
-                    extracted = safeTrim(m.group(g));
-                } catch (Exception ex) {
-                    extracted = null;
-                }
-                if (extracted == null) {
-                    continue;
-                }
-
-                if (r.mode() == RuntimeConfigStore.CameraNameRuleMode.BRANCH_ID) {
-                    return Map.of("branchId", extracted, "strategy", "CAMERA_NAME_BRANCH_ID", "details", "branchId извлечён из cameraName по правилу: " + safeTrim(r.name()));
-                }
-                if (r.mode() == RuntimeConfigStore.CameraNameRuleMode.BRANCH_PREFIX) {
-                    String mapped = safeTrim(cfg.prefixToBranchId() == null ? null : cfg.prefixToBranchId().get(extracted));
-                    if (mapped != null) {
-                        return Map.of("branchId", mapped, "strategy", "CAMERA_NAME_PREFIX", "details", "branchId сопоставлен по cameraName-префиксу " + extracted + " (" + safeTrim(r.name()) + ")");
-                    }
-                    return Map.of("branchId", null, "strategy", "CAMERA_NAME_PREFIX_NOT_MAPPED", "details", "Префикс из cameraName не найден в prefixToBranchId: " + extracted);
+        CameraNameRuleEngine.Match hit = cameraName == null ? null : cameraNameRules(cfg.cameraNameRules()).match(cameraName);
+        if (hit != null) {
+            RuntimeConfigStore.CameraNameRule r = hit.rule();
+            String extracted = hit.extracted();
+            if (r.mode() == RuntimeConfigStore.CameraNameRuleMode.BRANCH_ID) {
+                return Map.of("branchId", extracted, "strategy", "CAMERA_NAME_BRANCH_ID", "details", "branchId извлечён из cameraName по правилу: " + safeTrim(r.name()));
+            }
+            if (r.mode() == RuntimeConfigStore.CameraNameRuleMode.BRANCH_PREFIX) {
+                String mapped = safeTrim(cfg.prefixToBranchId() == null ? null : cfg.prefixToBranchId().get(extracted));
+                if (mapped != null) {
+                    return Map.of("branchId", mapped, "strategy", "CAMERA_NAME_PREFIX", "details", "branchId сопоставлен по cameraName-префиксу " + extracted + " (" + safeTrim(r.name()) + ")");
                 }
+                return Map.of("branchId", null, "strategy", "CAMERA_NAME_PREFIX_NOT_MAPPED", "details", "Префикс из cameraName не найден в prefixToBranchId: " + extracted);
             }
         }
 
@@ -161,6 +157,18 @@ public class BranchResolverGroovyAdapter {
         );
     }
 
+    /**
+     * Скомпилированные правила для списка из текущей конфигурации; пересобираются только при смене списка.
+     */
+    private CameraNameRuleEngine cameraNameRules(List<RuntimeConfigStore.CameraNameRule> rules) {
+        CameraNameRuleEngine engine = cameraNameRules;
+        if (engine == null || !engine.builtFrom(rules)) {
+            engine = new CameraNameRuleEngine(rules, cameraNameCacheSize);
+            cameraNameRules = engine;
+        }
+        return engine;
+    }
+
     private static String readCameraName(InboundEnvelope input) {
         if (input == null || input.sourceMeta() == null) {
             return null;
@@ -0,0 +1,342 @@
+package ru.aritmos.integrationbroker.branch;
+
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.core.TtlCache;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Скомпилированный набор правил {@code cameraNameRules} (одна ревизия конфигурации).
+ * <p>
+ * Семантика совпадает с последовательным перебором правил: побеждает первое по порядку правило, regex которого
+ * совпадает с именем камеры целиком и чья группа не пуста. Отличия — только в стоимости:
+ * <ul>
+ *   <li>regex компилируются один раз при построении набора; некорректный regex пропускается (как и пустой);</li>
+ *   <li>для каждого regex вычисляется обязательный литеральный префикс (например, {@code ^(BR12)_cam.*} → {@code BR12_cam});
+ *   префиксы собраны в trie, поэтому на имя камеры проверяются только правила, чей префикс с ним совпадает, и правила
+ *   без литерального префикса;</li>
+ *   <li>результат по имени камеры кэшируется в ограниченном LRU-кэше (имён камер на площадке конечное число).</li>
+ * </ul>
+ * Экземпляр неизменяем (кроме кэша) и потокобезопасен; при смене конфигурации строится новый.
+ */
+final class CameraNameRuleEngine {
+
+    /**
+     * Срок жизни записи кэша: правила неизменны в пределах экземпляра, TTL лишь освобождает память от редких имён.
+     */
+    private static final long CACHE_TTL_SECONDS = 3600;
+
+    private static final Match NO_MATCH = new Match(-1, null, null);
+
+    private final List<RuntimeConfigStore.CameraNameRule> source;
+    private final RuntimeConfigStore.CameraNameRule[] rules;
+    private final Pattern[] patterns;
+    private final int[] groups;
+    /** Правила без литерального префикса (проверяются всегда), по возрастанию индекса. */
+    private final int[] unanchored;
+    private final Node root;
+    private final TtlCache<String, Match> cache;
+
+    CameraNameRuleEngine(List<RuntimeConfigStore.CameraNameRule> source, int cacheSize) {
+        this.source = source;
+        List<RuntimeConfigStore.CameraNameRule> in = source == null ? List.of() : source;
+        this.rules = new RuntimeConfigStore.CameraNameRule[in.size()];
+        this.patterns = new Pattern[in.size()];
+        this.groups = new int[in.size()];
+        List<Integer> always = new ArrayList<>();
+        Builder trie = new Builder();
+        for (int i = 0; i < in.size(); i++) {
+            RuntimeConfigStore.CameraNameRule r = in.get(i);
+            rules[i] = r;
+            // Правило без режима никогда не даёт результата — проверять его не нужно.
+            if (r == null || r.mode() == null || r.regex() == null || r.regex().isBlank()) {
+                continue;
+            }
+            try {
+                patterns[i] = Pattern.compile(r.regex());
+            } catch (PatternSyntaxException e) {
+                continue;
+            }
+            groups[i] = Math.max(0, r.group());
+            String prefix = literalPrefix(r.regex());
+            if (prefix.isEmpty()) {
+                always.add(i);
+            } else {
+                trie.add(prefix, i);
+            }
+        }
+        this.unanchored = always.stream().mapToInt(Integer::intValue).toArray();
+        this.root = trie.build();
+        this.cache = cacheSize > 0 ? new TtlCache<>(Clock.systemUTC(), cacheSize) : null;
+    }
+
+    /**
+     * Набор построен из этого списка правил (сравнение по ссылке: новая ревизия конфигурации — новый список).
+     */
+    boolean builtFrom(List<RuntimeConfigStore.CameraNameRule> rules) {
+        return source == rules;
+    }
+
+    /**
+     * Первое сработавшее правило для имени камеры.
+     *
+     * @return совпадение или {@code null}
+     */
+    Match match(String cameraName) {
+        if (cameraName == null) {
+            return null;
+        }
+        if (cache != null) {
+            Match cached = cache.get(cameraName).orElse(null);
+            if (cached != null) {
+                return cached == NO_MATCH ? null : cached;
+            }
+        }
+        Match m = evaluate(cameraName);
+        if (cache != null) {
+            cache.put(cameraName, m == null ? NO_MATCH : m, CACHE_TTL_SECONDS);
+        }
+        return m;
+    }
+
+    TtlCache.Stats cacheStats() {
+        return cache == null ? null : cache.stats();
+    }
+
+    private Match evaluate(String cameraName) {
+        int[] anchored = candidates(cameraName);
+        // Слияние двух возрастающих списков: порядок проверки = порядок правил в конфигурации.
+        int a = 0;
+        int u = 0;
+        while (a < anchored.length || u < unanchored.length) {
+            int idx;
+            if (u >= unanchored.length || (a < anchored.length && anchored[a] < unanchored[u])) {
+                idx = anchored[a++];
+            } else {
+                idx = unanchored[u++];
+            }
+            Matcher m = patterns[idx].matcher(cameraName);
+            if (!m.matches()) {
+                continue;
+            }
+            String extracted;
+            try {
+                extracted = safeTrim(m.group(groups[idx]));
+            } catch (RuntimeException ex) {
+                extracted = null;
+            }
+            if (extracted != null) {
+                return new Match(idx, rules[idx], extracted);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Правила, литеральный префикс которых является префиксом имени камеры (по возрастанию индекса).
+     */
+    private int[] candidates(String cameraName) {
+        Node node = root;
+        int[] out = node.rules;
+        for (int i = 0; i < cameraName.length() && node != null; i++) {
+            node = node.child(cameraName.charAt(i));
+            if (node != null && node.rules.length > 0) {
+                out = out.length == 0 ? node.rules : merge(out, node.rules);
+            }
+        }
+        return out;
+    }
+
+    private static int[] merge(int[] x, int[] y) {
+        int[] out = new int[x.length + y.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < x.length && j < y.length) {
+            out[k++] = x[i] < y[j] ? x[i++] : y[j++];
+        }
+        while (i < x.length) {
+            out[k++] = x[i++];
+        }
+        while (j < y.length) {
+            out[k++] = y[j++];
+        }
+        return out;
+    }
+
+    /**
+     * Литеральный префикс, с которого обязано начинаться любое имя, совпадающее с regex целиком.
+     * <p>
+     * Разбор консервативен: при любой неоднозначности (альтернатива, флаги, классы символов, необязательные элементы)
+     * префикс обрезается на этом месте — короткий префикс лишь расширяет список кандидатов, но не меняет результат.
+     */
+    static String literalPrefix(String regex) {
+        if (regex == null || hasTopLevelAlternation(regex)) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '(') {
+                // Захватывающая группа без альтернатив и без квантификатора «0 раз» не меняет обязательный префикс.
+                int close = groupEnd(regex, i);
+                if (i + 1 >= regex.length() || regex.charAt(i + 1) == '?' || close < 0
+                        || regex.substring(i + 1, close).indexOf('|') >= 0 || optionalQuantifier(regex, close + 1)) {
+                    break;
+                }
+                i++;
+                continue;
+            }
+            if (c == ')') {
+                i++;
+                continue;
+            }
+            char literal;
+            int next;
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    break;
+                }
+                literal = regex.charAt(i + 1);
+                next = i + 2;
+            } else if (".[]{}*+?^$|".indexOf(c) >= 0 || Character.isSurrogate(c)) {
+                break;
+            } else {
+                literal = c;
+                next = i + 1;
+            }
+            if (optionalQuantifier(regex, next)) {
+                break;
+            }
+            prefix.append(literal);
+            if (next < regex.length() && regex.charAt(next) == '+') {
+                break;
+            }
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    private static boolean optionalQuantifier(String regex, int at) {
+        if (at >= regex.length()) {
+            return false;
+        }
+        char q = regex.charAt(at);
+        return q == '?' || q == '*' || q == '{';
+    }
+
+    /**
+     * Индекс закрывающей скобки группы, открытой в {@code open}, или -1.
+     */
+    private static int groupEnd(String regex, int open) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = open; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String safeTrim(String s) {
+        if (s == null) {
+            return null;
+        }
+        String t = s.trim();
+        return t.isEmpty() ? null : t;
+    }
+
+    /**
+     * Сработавшее правило и извлечённое значение группы.
+     */
+    record Match(int index, RuntimeConfigStore.CameraNameRule rule, String extracted) {
+    }
+
+    /**
+     * Узел trie: дети в отсортированном массиве символов (бинарный поиск), правила, префикс которых заканчивается здесь.
+     */
+    private static final class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final int[] rules;
+
+        private Node(char[] keys, Node[] children, int[] rules) {
+            this.keys = keys;
+            this.children = children;
+            this.rules = rules;
+        }
+
+        private Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+    }
+
+    private static final class Builder {
+        private final Map<Character, Builder> children = new HashMap<>();
+        private final List<Integer> rules = new ArrayList<>();
+
+        private void add(String prefix, int rule) {
+            Builder node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), k -> new Builder());
+            }
+            node.rules.add(rule);
+        }
+
+        private Node build() {
+            char[] keys = new char[children.size()];
+            int k = 0;
+            for (Character c : children.keySet()) {
+                keys[k++] = c;
+            }
+            Arrays.sort(keys);
+            Node[] nodes = new Node[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                nodes[i] = children.get(keys[i]).build();
+            }
+            return new Node(keys, nodes, rules.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package ru.aritmos.integrationbroker.checks;
 
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.core.HttpClientRegistry;
 import ru.aritmos.integrationbroker.core.OAuth2ClientCredentialsService;
 
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
@@ -18,7 +19,8 @@ import java.util.Map;
 /**
  * Проверка доступности REST-коннекторов из runtime-config.
  * <p>
- * Проверка выполняется вызовом health endpoint для каждого коннектора.
+ * Проверка выполняется вызовом health endpoint для каждого коннектора через общий клиент коннектора
+ * ({@link HttpClientRegistry}), так что установленные при проверке соединения затем переиспользуются.
  * Важно: секреты (API-key, bearer, basic) могут быть использованы для вызова, но не логируются.
  */
 @Singleton
@@ -26,10 +28,19 @@ public class RestConnectorsChecker {
 
     private final RuntimeConfigStore configStore;
     private final OAuth2ClientCredentialsService oauth2Service;
+    private final HttpClientRegistry httpClients;
 
-    public RestConnectorsChecker(RuntimeConfigStore configStore, OAuth2ClientCredentialsService oauth2Service) {
+    @Inject
+    public RestConnectorsChecker(RuntimeConfigStore configStore,
+                                 OAuth2ClientCredentialsService oauth2Service,
+                                 HttpClientRegistry httpClients) {
         this.configStore = configStore;
         this.oauth2Service = oauth2Service;
+        this.httpClients = httpClients == null ? HttpClientRegistry.standalone() : httpClients;
+    }
+
+    public RestConnectorsChecker(RuntimeConfigStore configStore, OAuth2ClientCredentialsService oauth2Service) {
+        this(configStore, oauth2Service, null);
     }
 
     /**
@@ -47,10 +58,6 @@ public class RestConnectorsChecker {
         String healthPath = (cfg.getHealthPath() == null || cfg.getHealthPath().isBlank()) ? "/health" : cfg.getHealthPath();
         String normalizedHealthPath = healthPath.startsWith("/") ? healthPath : ("/" + healthPath);
 
-        HttpClient client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofMillis(Math.max(200, cfg.getTimeoutMs())))
-                .build();
-
         List<String> failures = new ArrayList<>();
 
         for (Map.Entry<String, RuntimeConfigStore.RestConnectorConfig> e : connectors.entrySet()) {
@@ -88,7 +95,7 @@ public class RestConnectorsChecker {
 
                 applyConnectorAuthHeaders(c.auth(), b);
 
-                HttpResponse<String> resp = client.send(b.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                HttpResponse<String> resp = httpClients.send(id, c, b.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
                 int sc = resp.statusCode();
                 if (cfg.getExpectedStatus() != null && !cfg.getExpectedStatus().isEmpty()) {
                     if (!cfg.getExpectedStatus().contains(sc)) {
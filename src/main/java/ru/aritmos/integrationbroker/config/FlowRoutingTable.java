@@ -0,0 +1,106 @@
+package ru.aritmos.integrationbroker.config;
+
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемая таблица маршрутизации flow для конкретной effective-конфигурации.
+ * <p>
+ * Таблица строится один раз при установке новой effective-конфигурации в {@link RuntimeConfigStore}
+ * (local init, applyManual, refreshRemote) и подменяется атомарно вместе с ней.
+ * <p>
+ * Поиск не создаёт объектов: используется {@link EnumMap} по {@link InboundEnvelope.Kind} и вложенная карта по type,
+ * поэтому строковый ключ вида {@code "KIND:TYPE"} на горячем пути не формируется.
+ * <p>
+ * Семантика совпадает с {@link RuntimeConfigStore.RuntimeConfig#flowIndex()}:
+ * учитываются только enabled-flow с заполненным selector, при дублировании выигрывает первый flow.
+ */
+public final class FlowRoutingTable {
+
+    private static final FlowRoutingTable EMPTY = new FlowRoutingTable(null, new EnumMap<>(InboundEnvelope.Kind.class));
+
+    private final RuntimeConfigStore.RuntimeConfig config;
+    private final EnumMap<InboundEnvelope.Kind, Map<String, RuntimeConfigStore.FlowConfig>> byKind;
+
+    private FlowRoutingTable(RuntimeConfigStore.RuntimeConfig config,
+                             EnumMap<InboundEnvelope.Kind, Map<String, RuntimeConfigStore.FlowConfig>> byKind) {
+        this.config = config;
+        this.byKind = byKind;
+    }
+
+    /**
+     * Построить таблицу маршрутизации для конфигурации.
+     *
+     * @param config effective-конфигурация (может быть {@code null})
+     * @return таблица маршрутизации (никогда не {@code null})
+     */
+    public static FlowRoutingTable build(RuntimeConfigStore.RuntimeConfig config) {
+        if (config == null) {
+            return EMPTY;
+        }
+        EnumMap<InboundEnvelope.Kind, Map<String, RuntimeConfigStore.FlowConfig>> byKind = new EnumMap<>(InboundEnvelope.Kind.class);
+        List<RuntimeConfigStore.FlowConfig> flows = config.flows() == null ? List.of() : config.flows();
+        for (RuntimeConfigStore.FlowConfig f : flows) {
+            if (f == null || !f.enabled() || f.selector() == null
+                    || f.selector().kind() == null || f.selector().type() == null) {
+                continue;
+            }
+            InboundEnvelope.Kind kind = parseKind(f.selector().kind());
+            if (kind == null) {
+                // Такой flow недостижим и при строковом индексе: envelope.kind() всегда одно из значений enum.
+                continue;
+            }
+            byKind.computeIfAbsent(kind, k -> new HashMap<>()).putIfAbsent(f.selector().type(), f);
+        }
+        for (Map.Entry<InboundEnvelope.Kind, Map<String, RuntimeConfigStore.FlowConfig>> e : byKind.entrySet()) {
+            e.setValue(Map.copyOf(e.getValue()));
+        }
+        return new FlowRoutingTable(config, byKind);
+    }
+
+    /**
+     * Найти flow по kind и type.
+     *
+     * @param kind тип сообщения
+     * @param type тип события/команды
+     * @return flow или {@code null}, если маршрут не найден
+     */
+    public RuntimeConfigStore.FlowConfig find(InboundEnvelope.Kind kind, String type) {
+        if (kind == null || type == null) {
+            return null;
+        }
+        Map<String, RuntimeConfigStore.FlowConfig> byType = byKind.get(kind);
+        return byType == null ? null : byType.get(type);
+    }
+
+    /**
+     * @return конфигурация, для которой построена таблица
+     */
+    public RuntimeConfigStore.RuntimeConfig config() {
+        return config;
+    }
+
+    /**
+     * @return количество маршрутов в таблице
+     */
+    public int size() {
+        int n = 0;
+        for (Map<String, RuntimeConfigStore.FlowConfig> m : byKind.values()) {
+            n += m.size();
+        }
+        return n;
+    }
+
+    private static InboundEnvelope.Kind parseKind(String raw) {
+        for (InboundEnvelope.Kind k : InboundEnvelope.Kind.values()) {
+            if (k.name().equals(raw)) {
+                return k;
+            }
+        }
+        return null;
+    }
+}
@@ -50,7 +50,7 @@ public class IntegrationBrokerSecurityProperties {
     @ConfigurationProperties("anonymous")
     public static class Anonymous {
         private boolean enabled = true;
-        private List<String> allowPaths = List.of("/api/inbound", "/api/identity/resolve", "/health", "/swagger-ui/**");
+        private List<String> allowPaths = List.of("/api/inbound", "/api/inbound/batch", "/api/identity/resolve", "/health", "/swagger-ui/**");
 
         public boolean isEnabled() {
             return enabled;
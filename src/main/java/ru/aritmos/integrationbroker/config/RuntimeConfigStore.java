@@ -59,7 +59,7 @@ public class RuntimeConfigStore {
     private final boolean remoteEnabled;
     private final String remotePath;
 
-    private final AtomicReference<RuntimeConfig> effective = new AtomicReference<>();
+    private final AtomicReference<Installed> effective = new AtomicReference<>();
     private final AtomicReference<RuntimeConfig> baseline = new AtomicReference<>();
     private volatile String lastEtag;
     private final Deque<RuntimeConfigAuditEntry> auditTrail = new ArrayDeque<>();
@@ -88,7 +88,7 @@ public class RuntimeConfigStore {
     void init() {
         RuntimeConfig local = loadLocal();
         baseline.set(local);
-        effective.set(local);
+        install(local);
         appendAudit("system", "LOCAL_INIT", null, local, "Загружен baseline из local-config");
         if (remoteEnabled) {
             refreshRemote();
@@ -113,7 +113,8 @@ public class RuntimeConfigStore {
      * @return актуальная effective-конфигурация (никогда не {@code null} после init)
      */
     public RuntimeConfig getEffective() {
-        RuntimeConfig cfg = effective.get();
+        Installed installed = effective.get();
+        RuntimeConfig cfg = installed == null ? null : installed.config();
         if (cfg == null) {
             // На практике этого быть не должно: init всегда устанавливает baseline.
             return new RuntimeConfig(
@@ -150,6 +151,14 @@ public class RuntimeConfigStore {
         return cfg;
     }
 
+    /**
+     * @return таблица маршрутизации flow, построенная для текущей effective-конфигурации
+     */
+    public FlowRoutingTable routingTable() {
+        Installed installed = effective.get();
+        return installed == null ? FlowRoutingTable.build(null) : installed.routing();
+    }
+
     /**
      * @return baseline-конфигурация (локальная), загруженная на старте
      */
@@ -207,7 +216,7 @@ public class RuntimeConfigStore {
             throw new IllegalArgumentException(String.join("; ", errors));
         }
 
-        RuntimeConfig prev = effective.getAndSet(normalized);
+        RuntimeConfig prev = install(normalized);
         appendAudit(actor, "MANUAL_UPDATE", prev, normalized, reason == null ? "Ручное обновление" : reason);
         return normalized;
     }
@@ -270,7 +279,7 @@ public class RuntimeConfigStore {
             JsonNode root = objectMapper.readTree(new String(body, StandardCharsets.UTF_8));
             JsonNode cfgNode = unwrapEnvelope(root);
             RuntimeConfig parsed = objectMapper.treeToValue(cfgNode, RuntimeConfig.class).normalize();
-            RuntimeConfig prev = effective.getAndSet(parsed);
+            RuntimeConfig prev = install(parsed);
             appendAudit("system", "REMOTE_ASSERT", prev, parsed, "Проверка доступности remote-config");
         } catch (IllegalStateException e) {
             throw e;
@@ -279,6 +288,19 @@ public class RuntimeConfigStore {
         }
     }
 
+    /**
+     * Установить новую effective-конфигурацию.
+     * <p>
+     * Таблица маршрутизации flow строится до публикации и подменяется одной атомарной операцией вместе с конфигурацией,
+     * поэтому читатели никогда не видят конфигурацию одной ревизии с маршрутами другой.
+     *
+     * @return предыдущая effective-конфигурация или {@code null}
+     */
+    private RuntimeConfig install(RuntimeConfig cfg) {
+        Installed prev = effective.getAndSet(new Installed(cfg, FlowRoutingTable.build(cfg)));
+        return prev == null ? null : prev.config();
+    }
+
     private RuntimeConfig loadLocal() {
         Optional<InputStream> streamOpt = resourceResolver.getResourceAsStream(localPath);
         if (streamOpt.isEmpty() && localPath != null && !localPath.startsWith("classpath:")) {
@@ -331,7 +353,7 @@ public class RuntimeConfigStore {
             JsonNode root = objectMapper.readTree(new String(body, StandardCharsets.UTF_8));
             JsonNode cfgNode = unwrapEnvelope(root);
             RuntimeConfig parsed = objectMapper.treeToValue(cfgNode, RuntimeConfig.class).normalize();
-            RuntimeConfig prev = effective.getAndSet(parsed);
+            RuntimeConfig prev = install(parsed);
             appendAudit("system", "REMOTE_REFRESH", prev, parsed, "Периодическое обновление remote-config");
         } catch (Exception e) {
             // Важно: не логируем потенциально чувствительные данные.
@@ -551,6 +573,9 @@ public class RuntimeConfigStore {
         return s.isBlank() ? null : s.trim();
     }
 
+    private record Installed(RuntimeConfig config, FlowRoutingTable routing) {
+    }
+
     public record RuntimeConfigAuditEntry(
             String changedAt,
             String actor,
@@ -661,8 +686,11 @@ public class RuntimeConfigStore {
 
         /**
          * Индекс flow по ключу "KIND:TYPE".
+         * <p>
+         * Карта строится заново при каждом вызове. Для разрешения flow на горячем пути используется
+         * {@link FlowRoutingTable}, предвычисленная при установке конфигурации.
          *
-         * @return карта flow, пригодная для быстрого разрешения
+         * @return карта flow (для диагностики и admin-инструментов)
          */
         public Map<String, FlowConfig> flowIndex() {
             return flows.stream()
@@ -810,7 +838,8 @@ public class RuntimeConfigStore {
      * <ul>
      *   <li>базовый URL (baseUrl);</li>
      *   <li>тип авторизации (NONE/BASIC/BEARER/API_KEY_HEADER);</li>
-     *   <li>параметры авторизации.</li>
+     *   <li>параметры авторизации;</li>
+     *   <li>параметры HTTP-клиента (таймауты, HTTP/2) — необязательно.</li>
      * </ul>
      * <p>
      * Важно: секреты хранятся только в конфигурации, но НЕ сохраняются в outbox-таблицах.
@@ -819,7 +848,21 @@ public class RuntimeConfigStore {
             String baseUrl,
             RestConnectorAuth auth,
             RetryPolicy retryPolicy,
-            CircuitBreakerPolicy circuitBreaker
+            CircuitBreakerPolicy circuitBreaker,
+            HttpPolicy http
+    ) {
+    }
+
+    /**
+     * Параметры HTTP-клиента REST-коннектора.
+     * <p>
+     * Все поля необязательны: незаданные берутся из {@code integrationbroker.http.*}
+     * (таймаут запроса — из настроек вызывающего компонента).
+     */
+    public record HttpPolicy(
+            Integer connectTimeoutMs,
+            Integer requestTimeoutMs,
+            Boolean http2
     ) {
     }
 
@@ -11,6 +11,7 @@ import jakarta.inject.Singleton;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.aritmos.integrationbroker.config.FlowRoutingTable;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 import ru.aritmos.integrationbroker.visitmanager.VisitManagerGroovyAdapter;
 import ru.aritmos.integrationbroker.medical.MedicalGroovyAdapter;
@@ -36,6 +37,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 /**
@@ -69,17 +71,54 @@ public final class FlowEngine {
     }
 
     /**
-     * Базовая реализация: выбирает flow по ключу "KIND:TYPE" из runtime-конфига.
+     * Базовая реализация: выбирает flow по kind/type из runtime-конфига.
+     * <p>
+     * Для effective-конфигурации используется предвычисленная {@link FlowRoutingTable}, которую
+     * {@link RuntimeConfigStore} строит при установке новой ревизии. Поиск по таблице не создаёт объектов.
+     * Если передана конфигурация, отличная от установленной (например, в тестах или сценариях предпросмотра),
+     * таблица строится для неё на месте.
      */
     @Singleton
     public static class ConfigBasedFlowResolver implements FlowResolver {
+
+        private final RuntimeConfigStore configStore;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        public ConfigBasedFlowResolver(RuntimeConfigStore configStore) {
+            this.configStore = configStore;
+        }
+
         @Override
         public Optional<RuntimeConfigStore.FlowConfig> resolve(InboundEnvelope envelope, RuntimeConfigStore.RuntimeConfig config) {
             if (envelope == null || config == null) {
                 return Optional.empty();
             }
-            String key = envelope.kind() + ":" + envelope.type();
-            return Optional.ofNullable(config.flowIndex().get(key));
+            FlowRoutingTable table = configStore == null ? null : configStore.routingTable();
+            if (table == null || table.config() != config) {
+                table = FlowRoutingTable.build(config);
+            }
+            RuntimeConfigStore.FlowConfig flow = table.find(envelope.kind(), envelope.type());
+            if (flow == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(flow);
+        }
+
+        /**
+         * @return число успешных разрешений flow
+         */
+        public long hits() {
+            return hits.sum();
+        }
+
+        /**
+         * @return число сообщений, для которых flow не найден
+         */
+        public long misses() {
+            return misses.sum();
         }
     }
 
@@ -279,6 +318,8 @@ public final class FlowEngine {
         private final GroovyClassLoader classLoader;
         private final ScriptClassCache cache;
 
+        private volatile BindingTemplate bindingTemplate;
+
         public GroovyFlowEngine(BeanContext beanContext,
                                ObjectMapper objectMapper,
                                RuntimeConfigStore configStore,
@@ -323,39 +364,34 @@ public final class FlowEngine {
                     meta == null || meta.get("idempotencyKey") == null ? null : String.valueOf(meta.get("idempotencyKey"))
             );
 
-            Map<String, Object> beans = buildBeansMap();
+            BindingTemplate tpl = bindingTemplate();
 
-            Binding binding = new Binding();
-            binding.setVariable("input", envelope);
-            binding.setVariable("meta", meta);
-            binding.setVariable("output", output);
-            binding.setVariable("ctx", ctx);
-            binding.setVariable("beans", beans);
+            // Статическая часть binding (beans, алиасы бинов и заглушки) берётся из предсобранного шаблона;
+            // на каждое сообщение создаются только input/meta/output/ctx и алиасы, привязанные к контексту сообщения.
+            Map<String, Object> vars = tpl.newVariables();
+            vars.put("input", envelope);
+            vars.put("meta", meta);
+            vars.put("output", output);
+            vars.put("ctx", ctx);
 
             // Для удобства Groovy-flow дополнительно экспортируем user/principal как отдельные переменные.
             // Эти значения формируются на этапе enrichment (например, через KeycloakProxy) и при этом
             // не должны содержать сырых токенов.
-            if (meta != null) {
-                binding.setVariable("user", meta.get("user"));
-                binding.setVariable("principal", meta.get("principal"));
-            } else {
-                binding.setVariable("user", null);
-                binding.setVariable("principal", null);
-            }
-
-            // Алиасы типизированных адаптеров.
-            // На старте реализуем базовые msg/rest через outbox, а остальные оставляем заглушками.
-            binding.setVariable("msg", beans.getOrDefault("msg", new MsgAlias(ctx)));
-            binding.setVariable("rest", beans.getOrDefault("rest", new RestAlias(ctx)));
-            binding.setVariable("crm", beans.getOrDefault("crm", new CrmAliasFallback()));
-            binding.setVariable("identity", beans.getOrDefault("identity", new IdentityAlias(identityService, meta)));
-            binding.setVariable("medical", beans.getOrDefault("medical", new MedicalAliasFallback()));
-            binding.setVariable("appointment", beans.getOrDefault("appointment", new AppointmentAliasFallback()));
-            binding.setVariable("visit", beans.getOrDefault("visit", new AdapterAliasStub("visit")) );
-            binding.setVariable("visitManager", beans.getOrDefault("visitManager", beans.getOrDefault("visit", new AdapterAliasStub("visitManager"))) );
-            binding.setVariable("bus", beans.getOrDefault("bus", new AdapterAliasStub("bus")) );
-            binding.setVariable("dataBus", beans.getOrDefault("dataBus", beans.getOrDefault("bus", new AdapterAliasStub("dataBus"))) );
-            binding.setVariable("branch", beans.getOrDefault("branch", new AdapterAliasStub("branch")) );
+            vars.put("user", meta == null ? null : meta.get("user"));
+            vars.put("principal", meta == null ? null : meta.get("principal"));
+
+            // Алиасы msg/rest/identity по умолчанию делегируют в контекст конкретного сообщения.
+            if (!tpl.hasMsgBean()) {
+                vars.put("msg", new MsgAlias(ctx));
+            }
+            if (!tpl.hasRestBean()) {
+                vars.put("rest", new RestAlias(ctx));
+            }
+            if (!tpl.hasIdentityBean()) {
+                vars.put("identity", new IdentityAlias(identityService, meta));
+            }
+
+            Binding binding = new Binding(vars);
 
             Script script = newScript(flow.groovy());
             script.setBinding(binding);
@@ -495,12 +531,34 @@ public final class FlowEngine {
             }
         }
 
+        /**
+         * Получить шаблон binding.
+         * <p>
+         * Реестр alias → bean разрешается один раз при первом исполнении flow (а не на старте),
+         * чтобы не создавать циклических зависимостей с адаптерами, которые сами используют движок.
+         */
+        BindingTemplate bindingTemplate() {
+            BindingTemplate tpl = bindingTemplate;
+            if (tpl == null) {
+                synchronized (this) {
+                    tpl = bindingTemplate;
+                    if (tpl == null) {
+                        tpl = BindingTemplate.of(scanExecutableBeans(beanContext));
+                        bindingTemplate = tpl;
+                        log.debug("Сформирован шаблон Groovy binding: aliases={}", tpl.beans().keySet());
+                    }
+                }
+            }
+            return tpl;
+        }
+
         /**
          * Собрать карту экспортируемых бинов.
          * <p>
          * Бин попадает в карту, если его класс помечен аннотацией {@link GroovyExecutable}.
+         * Метод обходит все определения бинов контекста, поэтому вызывается однократно (см. {@link #bindingTemplate()}).
          */
-        private Map<String, Object> buildBeansMap() {
+        static Map<String, Object> scanExecutableBeans(BeanContext beanContext) {
             Map<String, Object> map = new HashMap<>();
             for (var def : beanContext.getBeanDefinitions(Object.class)) {
                 Class<?> beanType = def.getBeanType();
@@ -515,22 +573,98 @@ public final class FlowEngine {
                 Object bean = beanContext.getBean(beanType);
                 map.put(alias, bean);
             }
-            putIfPresent(map, "crm", CrmGroovyAdapter.class);
-            putIfPresent(map, "medical", MedicalGroovyAdapter.class);
-            putIfPresent(map, "appointment", AppointmentGroovyAdapter.class);
-            putIfPresent(map, "visit", VisitManagerGroovyAdapter.class);
-            putIfPresent(map, "bus", DataBusGroovyAdapter.class);
-            putIfPresent(map, "branch", BranchResolverGroovyAdapter.class);
+            putIfPresent(beanContext, map, "crm", CrmGroovyAdapter.class);
+            putIfPresent(beanContext, map, "medical", MedicalGroovyAdapter.class);
+            putIfPresent(beanContext, map, "appointment", AppointmentGroovyAdapter.class);
+            putIfPresent(beanContext, map, "visit", VisitManagerGroovyAdapter.class);
+            putIfPresent(beanContext, map, "bus", DataBusGroovyAdapter.class);
+            putIfPresent(beanContext, map, "branch", BranchResolverGroovyAdapter.class);
             return map;
         }
 
-        private <T> void putIfPresent(Map<String, Object> map, String alias, Class<T> beanType) {
+        private static <T> void putIfPresent(BeanContext beanContext, Map<String, Object> map, String alias, Class<T> beanType) {
             if (map.containsKey(alias)) {
                 return;
             }
             beanContext.findBean(beanType).ifPresent(bean -> map.put(alias, bean));
         }
 
+        /**
+         * Предсобранная неизменяемая часть Groovy binding.
+         * <p>
+         * Содержит карту {@code beans} и все алиасы, не зависящие от конкретного сообщения:
+         * экспортированные бины, fallback-реализации и заглушки неподключённых адаптеров.
+         * Сам шаблон не передаётся в скрипт — исполнение работает с копией из {@link #newVariables()}.
+         *
+         * @param beans     неизменяемая карта alias → bean
+         * @param variables неизменяемые переменные binding
+         */
+        record BindingTemplate(Map<String, Object> beans, Map<String, Object> variables) {
+
+            /**
+             * Переменные, которые дополнительно добавляются для каждого сообщения.
+             */
+            private static final int PER_MESSAGE_VARIABLES = 9;
+
+            static BindingTemplate of(Map<String, Object> scanned) {
+                Map<String, Object> beans = Map.copyOf(scanned);
+                Map<String, Object> vars = new HashMap<>();
+                vars.put("beans", beans);
+                putBeanIfPresent(vars, beans, "msg");
+                putBeanIfPresent(vars, beans, "rest");
+                putBeanIfPresent(vars, beans, "identity");
+                vars.put("crm", beans.getOrDefault("crm", new CrmAliasFallback()));
+                vars.put("medical", beans.getOrDefault("medical", new MedicalAliasFallback()));
+                vars.put("appointment", beans.getOrDefault("appointment", new AppointmentAliasFallback()));
+                vars.put("visit", beans.getOrDefault("visit", new AdapterAliasStub("visit")));
+                vars.put("visitManager", beans.getOrDefault("visitManager", beans.getOrDefault("visit", new AdapterAliasStub("visitManager"))));
+                vars.put("bus", beans.getOrDefault("bus", new AdapterAliasStub("bus")));
+                vars.put("dataBus", beans.getOrDefault("dataBus", beans.getOrDefault("bus", new AdapterAliasStub("dataBus"))));
+                vars.put("branch", beans.getOrDefault("branch", new AdapterAliasStub("branch")));
+                return new BindingTemplate(beans, Map.copyOf(vars));
+            }
+
+            private static void putBeanIfPresent(Map<String, Object> vars, Map<String, Object> beans, String alias) {
+                Object bean = beans.get(alias);
+                if (bean != null) {
+                    vars.put(alias, bean);
+                }
+            }
+
+            /**
+             * Изменяемые переменные binding для одного исполнения.
+             * <p>
+             * Скрипты могут дописывать переменные и карту {@code beans}, поэтому каждое исполнение получает
+             * поверхностную копию {@link #variables()} со своей копией {@code beans}: шаблон и параллельные
+             * исполнения таких записей не видят.
+             */
+            Map<String, Object> newVariables() {
+                Map<String, Object> vars = new HashMap<>(capacity());
+                vars.putAll(variables);
+                vars.put("beans", new HashMap<>(beans));
+                return vars;
+            }
+
+            boolean hasMsgBean() {
+                return beans.containsKey("msg");
+            }
+
+            boolean hasRestBean() {
+                return beans.containsKey("rest");
+            }
+
+            boolean hasIdentityBean() {
+                return beans.containsKey("identity");
+            }
+
+            /**
+             * @return начальная ёмкость HashMap для binding без перехеширования
+             */
+            int capacity() {
+                return (int) ((variables.size() + PER_MESSAGE_VARIABLES) / 0.75f) + 1;
+            }
+        }
+
         private static String sha256Hex(String input) {
             try {
                 MessageDigest md = MessageDigest.getInstance("SHA-256");
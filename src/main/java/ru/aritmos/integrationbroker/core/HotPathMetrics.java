@@ -0,0 +1,318 @@
+package ru.aritmos.integrationbroker.core;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Таймеры горячего пути inbound → flow → outbox с тегом flow/коннектора и гистограммой в стиле HDR.
+ * <p>
+ * Корзины log-linear: четыре поддиапазона на каждую степень двойки микросекунд (погрешность перцентиля не более 25%),
+ * от 1 мкс до ~67 с; всё, что дольше, попадает в последнюю корзину. Запись ({@link Timer#record(long)}) — сдвиги
+ * и два {@link LongAdder#increment()}: без аллокаций и блокировок. Хэндл таймера берётся через {@link #timer}
+ * (один lookup в {@link ConcurrentHashMap}); число значений тега на таймер ограничено {@code max-tags-per-timer},
+ * лишние значения сводятся в {@value #OVERFLOW_TAG}.
+ */
+@Singleton
+public class HotPathMetrics {
+
+    /**
+     * Значение тега для значений сверх лимита {@code max-tags-per-timer}.
+     */
+    public static final String OVERFLOW_TAG = "_other";
+
+    private static final int SUB_BITS = 2;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 25;
+    static final int BUCKETS = SUB_COUNT + (MAX_EXPONENT - SUB_BITS + 1) * SUB_COUNT + 1;
+
+    private static final HotPathMetrics NOOP = new HotPathMetrics(false, 1);
+    private static final Timer NOOP_TIMER = new Timer(false);
+
+    /**
+     * Этапы горячего пути: имя метрики Prometheus, имя тега, описание.
+     */
+    public enum Stage {
+        FLOW_RESOLVE("ib_flow_resolve_seconds", "flow", "Разрешение flow по kind/type"),
+        IDEMPOTENCY_DECIDE("ib_idempotency_decide_seconds", "flow", "Решение идемпотентности (_batch — пачка целиком)"),
+        ENRICHMENT("ib_enrichment_seconds", "flow", "Enrichment через KeycloakProxy"),
+        FLOW_EXECUTE("ib_flow_execute_seconds", "flow", "Выполнение Groovy flow"),
+        OUTBOX_ENQUEUE("ib_outbox_enqueue_seconds", "connector", "Постановка в outbox (rest:<connector> / msg:<provider>)"),
+        OUTBOX_DISPATCH("ib_outbox_dispatch_seconds", "connector", "Отправка записи outbox (rest:<connector> / rest-host:<host> / msg:<provider>)");
+
+        private final String metricName;
+        private final String tagName;
+        private final String description;
+
+        Stage(String metricName, String tagName, String description) {
+            this.metricName = metricName;
+            this.tagName = tagName;
+            this.description = description;
+        }
+
+        public String metricName() {
+            return metricName;
+        }
+
+        public String tagName() {
+            return tagName;
+        }
+
+        public String description() {
+            return description;
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxTagsPerTimer;
+    private final ConcurrentHashMap<String, Timer>[] timers;
+
+    @Inject
+    public HotPathMetrics(@Value("${integrationbroker.metrics.hot-path.enabled:true}") boolean enabled,
+                          @Value("${integrationbroker.metrics.hot-path.max-tags-per-timer:200}") int maxTagsPerTimer) {
+        this.enabled = enabled;
+        this.maxTagsPerTimer = Math.max(1, maxTagsPerTimer);
+        @SuppressWarnings("unchecked")
+        ConcurrentHashMap<String, Timer>[] byStage = new ConcurrentHashMap[Stage.values().length];
+        for (int i = 0; i < byStage.length; i++) {
+            byStage[i] = new ConcurrentHashMap<>();
+        }
+        this.timers = byStage;
+    }
+
+    /**
+     * Выключенный экземпляр для конструкторов без DI (тесты, ручная сборка сервисов).
+     */
+    public static HotPathMetrics noop() {
+        return NOOP;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Таймер этапа для значения тега ({@code null}/пустое — {@code "-"}).
+     */
+    public Timer timer(Stage stage, String tag) {
+        if (!enabled) {
+            return NOOP_TIMER;
+        }
+        String t = tag == null || tag.isBlank() ? "-" : tag;
+        ConcurrentHashMap<String, Timer> byTag = timers[stage.ordinal()];
+        Timer timer = byTag.get(t);
+        if (timer != null) {
+            return timer;
+        }
+        if (byTag.size() >= maxTagsPerTimer) {
+            t = OVERFLOW_TAG;
+        }
+        return byTag.computeIfAbsent(t, k -> new Timer(true));
+    }
+
+    /**
+     * Снимок всех таймеров: число замеров, сумма и перцентили в миллисекундах.
+     */
+    public List<TimerSnapshot> snapshot() {
+        List<TimerSnapshot> out = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            for (Map.Entry<String, Timer> e : new TreeMap<>(timers[stage.ordinal()]).entrySet()) {
+                Timer t = e.getValue();
+                long[] counts = t.counts();
+                long count = 0;
+                for (long c : counts) {
+                    count += c;
+                }
+                out.add(new TimerSnapshot(
+                        stage.metricName(),
+                        e.getKey(),
+                        count,
+                        t.sumNanos.sum() / 1_000_000.0,
+                        percentileMs(counts, count, 0.50),
+                        percentileMs(counts, count, 0.90),
+                        percentileMs(counts, count, 0.99),
+                        percentileMs(counts, count, 0.999)
+                ));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Записать все таймеры в текстовом формате Prometheus (histogram: корзины по степеням двойки, _sum, _count).
+     */
+    public void writePrometheus(StringBuilder out) {
+        for (Stage stage : Stage.values()) {
+            Map<String, Timer> byTag = new TreeMap<>(timers[stage.ordinal()]);
+            if (byTag.isEmpty()) {
+                continue;
+            }
+            String name = stage.metricName();
+            out.append("# HELP ").append(name).append(' ').append(stage.description()).append('\n');
+            out.append("# TYPE ").append(name).append(" histogram\n");
+            for (Map.Entry<String, Timer> e : byTag.entrySet()) {
+                String label = stage.tagName() + "=\"" + escapeLabel(e.getKey()) + "\"";
+                long[] counts = e.getValue().counts();
+                long cumulative = 0;
+                for (int i = 0; i < BUCKETS - 1; i++) {
+                    cumulative += counts[i];
+                    // Границы le — каждая степень двойки микросекунд: границы внутренних корзин совпадают, счёт точный.
+                    if (i >= SUB_COUNT - 1 && (i + 1) % SUB_COUNT == 0) {
+                        out.append(name).append("_bucket{").append(label).append(",le=\"")
+                                .append(formatSeconds(upperBoundMicros(i))).append("\"} ").append(cumulative).append('\n');
+                    }
+                }
+                cumulative += counts[BUCKETS - 1];
+                out.append(name).append("_bucket{").append(label).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+                out.append(name).append("_sum{").append(label).append("} ")
+                        .append(formatSeconds(e.getValue().sumNanos.sum() / 1000.0)).append('\n');
+                out.append(name).append("_count{").append(label).append("} ").append(cumulative).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Индекс корзины для длительности в микросекундах.
+     */
+    static int bucketIndex(long micros) {
+        if (micros < SUB_COUNT) {
+            return (int) Math.max(0L, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * Верхняя (исключающая) граница корзины в микросекундах.
+     */
+    static long upperBoundMicros(int index) {
+        if (index < SUB_COUNT) {
+            return index + 1L;
+        }
+        if (index >= BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        int sub = index % SUB_COUNT;
+        return (long) (SUB_COUNT + sub + 1) << (exponent - SUB_BITS);
+    }
+
+    private static double percentileMs(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // Последняя корзина не ограничена сверху: отдаём её нижнюю границу.
+                long micros = i == BUCKETS - 1 ? upperBoundMicros(i - 1) : upperBoundMicros(i);
+                return micros / 1000.0;
+            }
+        }
+        return upperBoundMicros(BUCKETS - 2) / 1000.0;
+    }
+
+    private static String formatSeconds(double micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1_000_000.0);
+    }
+
+    /**
+     * Экранирование значения метки Prometheus.
+     */
+    public static String escapeLabel(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '"' -> sb.append("\\\"");
+                case '\n' -> sb.append("\\n");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Таймер одного значения тега.
+     */
+    public static final class Timer {
+        private final LongAdder[] buckets;
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Timer(boolean active) {
+            if (active) {
+                buckets = new LongAdder[BUCKETS];
+                for (int i = 0; i < BUCKETS; i++) {
+                    buckets[i] = new LongAdder();
+                }
+            } else {
+                buckets = null;
+            }
+        }
+
+        /**
+         * Записать длительность в наносекундах.
+         */
+        public void record(long nanos) {
+            LongAdder[] b = buckets;
+            if (b == null) {
+                return;
+            }
+            long n = Math.max(0L, nanos);
+            b[bucketIndex(n / 1000L)].increment();
+            sumNanos.add(n);
+        }
+
+        /**
+         * Записать длительность от {@code startNanos} ({@link System#nanoTime()}) до текущего момента.
+         */
+        public void recordSince(long startNanos) {
+            if (buckets != null) {
+                record(System.nanoTime() - startNanos);
+            }
+        }
+
+        private long[] counts() {
+            long[] out = new long[BUCKETS];
+            if (buckets == null) {
+                return out;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                out[i] = buckets[i].sum();
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Снимок таймера для {@code /api/metrics/integration}.
+     */
+    @Serdeable
+    public record TimerSnapshot(
+            String name,
+            String tag,
+            long count,
+            double sumMs,
+            double p50Ms,
+            double p90Ms,
+            double p99Ms,
+            double p999Ms
+    ) {
+    }
+}
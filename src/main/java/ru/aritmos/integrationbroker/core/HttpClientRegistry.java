@@ -0,0 +1,270 @@
+package ru.aritmos.integrationbroker.core;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Общий реестр HTTP-клиентов для исходящих вызовов, по одному клиенту на REST-коннектор ({@code restConnectors[id]}).
+ * <p>
+ * Зачем:
+ * <ul>
+ *   <li>{@link HttpClient} держит пул keep-alive соединений (и мультиплексирует запросы по HTTP/2), поэтому
+ *   повторные вызовы к одному коннектору не платят за TCP/TLS-рукопожатие — при условии, что клиент переиспользуется;</li>
+ *   <li>все клиенты работают на общем IO-executor Micronaut и не создают собственных пулов потоков;</li>
+ *   <li>таймауты и версия HTTP задаются на уровне коннектора ({@link RuntimeConfigStore.HttpPolicy}),
+ *   при изменении политики в runtime-config клиент коннектора пересоздаётся.</li>
+ * </ul>
+ * <p>
+ * Вызовы вне реестра коннекторов (например, token endpoint OAuth2) используют клиент {@link #SHARED}.
+ * <p>
+ * Метрики по коннектору ({@link #snapshot()}): созданные клиенты (пулы соединений), запросы, запросы «в полёте»
+ * и их пик, ошибки транспорта, ответы по HTTP/2 и HTTP/1.1, средняя латентность. Число открытых соединений
+ * JDK-клиент не публикует; косвенно его отражают {@code clientsCreated} и доля HTTP/2.
+ */
+@Singleton
+public class HttpClientRegistry {
+
+    /**
+     * Ключ клиента для вызовов, не привязанных к REST-коннектору.
+     */
+    public static final String SHARED = "_shared";
+
+    private final RuntimeConfigStore configStore;
+    private final ExecutorService executor;
+    private final int defaultConnectTimeoutMs;
+    private final boolean defaultHttp2;
+    private final ConcurrentHashMap<String, Pooled> clients = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConnectorCounters> counters = new ConcurrentHashMap<>();
+
+    @Inject
+    public HttpClientRegistry(RuntimeConfigStore configStore,
+                              @Named(TaskExecutors.IO) ExecutorService executor,
+                              @Value("${integrationbroker.http.connect-timeout-ms:3000}") int defaultConnectTimeoutMs,
+                              @Value("${integrationbroker.http.http2:true}") boolean defaultHttp2) {
+        this.configStore = configStore;
+        this.executor = executor;
+        this.defaultConnectTimeoutMs = Math.max(200, defaultConnectTimeoutMs);
+        this.defaultHttp2 = defaultHttp2;
+    }
+
+    /**
+     * Реестр без runtime-config и общего executor (для компонентов, созданных вне DI, и тестов).
+     */
+    public static HttpClientRegistry standalone() {
+        return new HttpClientRegistry(null, null, 3000, true);
+    }
+
+    /**
+     * Клиент коннектора; политика берётся из текущего runtime-config.
+     */
+    public HttpClient client(String connectorId) {
+        return client(connectorId, null);
+    }
+
+    /**
+     * Клиент коннектора с явно переданной конфигурацией (если вызывающий уже получил её из runtime-config);
+     * при {@code connector == null} конфигурация берётся из текущего runtime-config.
+     */
+    public HttpClient client(String connectorId, RuntimeConfigStore.RestConnectorConfig connector) {
+        String key = key(connectorId);
+        RuntimeConfigStore.RestConnectorConfig effective = connector == null ? connector(connectorId) : connector;
+        RuntimeConfigStore.HttpPolicy policy = effective == null ? null : effective.http();
+        int connectTimeoutMs = policy == null || policy.connectTimeoutMs() == null
+                ? defaultConnectTimeoutMs
+                : Math.max(200, policy.connectTimeoutMs());
+        boolean http2 = policy == null || policy.http2() == null ? defaultHttp2 : policy.http2();
+
+        Pooled current = clients.get(key);
+        if (current != null && current.connectTimeoutMs == connectTimeoutMs && current.http2 == http2) {
+            return current.client;
+        }
+        return clients.compute(key, (k, existing) -> {
+            if (existing != null && existing.connectTimeoutMs == connectTimeoutMs && existing.http2 == http2) {
+                return existing;
+            }
+            counters(k).clientsCreated.increment();
+            return new Pooled(build(connectTimeoutMs, http2), connectTimeoutMs, http2);
+        }).client;
+    }
+
+    /**
+     * Таймаут запроса для коннектора из текущего runtime-config, иначе {@code fallback}.
+     */
+    public Duration requestTimeout(String connectorId, Duration fallback) {
+        return requestTimeout(connector(connectorId), fallback);
+    }
+
+    /**
+     * Таймаут запроса для коннектора: из {@link RuntimeConfigStore.HttpPolicy#requestTimeoutMs()}, иначе {@code fallback}.
+     */
+    public static Duration requestTimeout(RuntimeConfigStore.RestConnectorConfig connector, Duration fallback) {
+        RuntimeConfigStore.HttpPolicy policy = connector == null ? null : connector.http();
+        if (policy == null || policy.requestTimeoutMs() == null || policy.requestTimeoutMs() <= 0) {
+            return fallback;
+        }
+        return Duration.ofMillis(Math.max(200, policy.requestTimeoutMs()));
+    }
+
+    /**
+     * Синхронный вызов через клиент коннектора с учётом метрик ({@code connector} может быть {@code null}).
+     */
+    public <T> HttpResponse<T> send(String connectorId,
+                                    RuntimeConfigStore.RestConnectorConfig connector,
+                                    HttpRequest request,
+                                    HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        HttpClient client = client(connectorId, connector);
+        ConnectorCounters c = counters(key(connectorId));
+        long started = c.begin();
+        try {
+            HttpResponse<T> resp = client.send(request, handler);
+            c.response(resp);
+            return resp;
+        } catch (IOException | RuntimeException e) {
+            c.failures.increment();
+            throw e;
+        } finally {
+            c.end(started);
+        }
+    }
+
+    /**
+     * Асинхронный вызов через клиент коннектора с учётом метрик (политика — из текущего runtime-config).
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(String connectorId,
+                                                            HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> handler) {
+        HttpClient client = client(connectorId);
+        ConnectorCounters c = counters(key(connectorId));
+        long started = c.begin();
+        CompletableFuture<HttpResponse<T>> future;
+        try {
+            future = client.sendAsync(request, handler);
+        } catch (RuntimeException e) {
+            c.failures.increment();
+            c.end(started);
+            throw e;
+        }
+        return future.whenComplete((resp, ex) -> {
+            if (ex != null) {
+                c.failures.increment();
+            } else {
+                c.response(resp);
+            }
+            c.end(started);
+        });
+    }
+
+    /**
+     * Метрики по коннекторам (по алфавиту).
+     */
+    public List<ConnectorStats> snapshot() {
+        List<ConnectorStats> out = new ArrayList<>(counters.size());
+        for (Map.Entry<String, ConnectorCounters> e : counters.entrySet()) {
+            out.add(e.getValue().stats(e.getKey()));
+        }
+        out.sort(Comparator.comparing(ConnectorStats::connectorId));
+        return out;
+    }
+
+    private RuntimeConfigStore.RestConnectorConfig connector(String connectorId) {
+        if (configStore == null || connectorId == null) {
+            return null;
+        }
+        RuntimeConfigStore.RuntimeConfig cfg = configStore.getEffective();
+        return cfg == null || cfg.restConnectors() == null ? null : cfg.restConnectors().get(connectorId);
+    }
+
+    private HttpClient build(int connectTimeoutMs, boolean http2) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs));
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        return builder.build();
+    }
+
+    private ConnectorCounters counters(String key) {
+        return counters.computeIfAbsent(key, k -> new ConnectorCounters());
+    }
+
+    private static String key(String connectorId) {
+        return connectorId == null || connectorId.isBlank() ? SHARED : connectorId;
+    }
+
+    private record Pooled(HttpClient client, int connectTimeoutMs, boolean http2) {
+    }
+
+    private static final class ConnectorCounters {
+        private final LongAdder clientsCreated = new LongAdder();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder http2Responses = new LongAdder();
+        private final LongAdder http1Responses = new LongAdder();
+        private final LongAdder latencyNanos = new LongAdder();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+
+        private long begin() {
+            requests.increment();
+            int now = inFlight.incrementAndGet();
+            peakInFlight.accumulateAndGet(now, Math::max);
+            return System.nanoTime();
+        }
+
+        private void end(long started) {
+            inFlight.decrementAndGet();
+            latencyNanos.add(System.nanoTime() - started);
+        }
+
+        private void response(HttpResponse<?> resp) {
+            if (resp.version() == HttpClient.Version.HTTP_2) {
+                http2Responses.increment();
+            } else {
+                http1Responses.increment();
+            }
+        }
+
+        private ConnectorStats stats(String connectorId) {
+            long total = requests.sum();
+            double avgMs = total == 0 ? 0.0 : latencyNanos.sum() / 1_000_000.0 / total;
+            return new ConnectorStats(connectorId, clientsCreated.sum(), total, inFlight.get(), peakInFlight.get(),
+                    failures.sum(), http2Responses.sum(), http1Responses.sum(), avgMs);
+        }
+    }
+
+    /**
+     * Метрики HTTP-клиента коннектора.
+     */
+    @Serdeable
+    public record ConnectorStats(String connectorId,
+                                 long clientsCreated,
+                                 long requests,
+                                 int inFlight,
+                                 int peakInFlight,
+                                 long failures,
+                                 long http2Responses,
+                                 long http1Responses,
+                                 double averageLatencyMs) {
+    }
+}
@@ -0,0 +1,610 @@
+package ru.aritmos.integrationbroker.core;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.event.ApplicationEventListener;
+import io.micronaut.runtime.event.ApplicationStartupEvent;
+import io.micronaut.scheduling.annotation.Scheduled;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Быстрый in-process уровень идемпотентности с отложенной (write-behind) записью в {@code ib_idempotency}.
+ * <p>
+ * Включается настройкой {@code integrationbroker.idempotency.tiered.enabled=true}. Что меняется для
+ * {@link IdempotencyService}:
+ * <ul>
+ *   <li>недавние ключи и их статус хранятся в ограниченном LRU-кэше: повторная доставка недавно обработанного
+ *   сообщения решается без SELECT (SKIP_COMPLETED/LOCKED), отметка {@code skipped_reason} пишется отложенно;</li>
+ *   <li>{@code markCompleted} не ждёт UPDATE: переходы статусов накапливаются и записываются JDBC-пачками
+ *   по расписанию ({@code flush-interval}) или при достижении {@code flush-size}. {@code markFailed} пишется
+ *   синхронно ({@link #writeStatusNow}): иначе запись в БД до сброса пачки остаётся IN_PROGRESS с будущим
+ *   {@code lock_until}, и немедленный повтор/replay из DLQ получает LOCKED;</li>
+ *   <li>при {@code local-claim=true} ключ, которого точно не было на узле (Bloom-фильтр отвечает «нет»),
+ *   захватывается локально, а INSERT выполняется отложенно. Синхронный INSERT остаётся только для ключей,
+ *   которые могут конфликтовать (Bloom-фильтр отвечает «возможно»).</li>
+ * </ul>
+ * <p>
+ * Важно:
+ * <ul>
+ *   <li>{@code local-claim} безопасен, только если один ключ доставляется на один узел (партиционированные
+ *   потребители). Bloom-фильтр прогревается на старте ключами из БД за {@code warmup-window-sec}; более старые
+ *   повторы и одновременная доставка одного нового ключа на два узла обнаруживаются только при отложенном INSERT
+ *   (счётчик {@code claimConflicts}); статусы по таким ключам не перезаписываются;</li>
+ *   <li>при падении узла до записи пачки запись останется IN_PROGRESS до {@code lock_until} и будет обработана
+ *   повторно — та же семантика at-least-once, что и при падении во время выполнения flow;</li>
+ *   <li>пачка пишется одной транзакцией: при ошибке она откатывается целиком и повторяется, поэтому собственные
+ *   INSERT узла не принимаются при повторе за чужой захват;</li>
+ *   <li>очередь ограничена {@code max-pending}: при недоступной БД новые локальные захваты не выполняются
+ *   (синхронный INSERT), переходы статусов пишутся синхронно, отметки {@code skipped_reason} отбрасываются.</li>
+ * </ul>
+ */
+@Singleton
+public class IdempotencyFastPath implements ApplicationEventListener<ApplicationStartupEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyFastPath.class);
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+    private final boolean localClaim;
+    private final long localTtlSec;
+    private final int flushSize;
+    private final int maxPending;
+    private final int capacity;
+    private final int expectedKeys;
+    private final long warmupWindowSec;
+    private final TtlCache<String, LocalState> recent;
+    private final TtlCache<String, Boolean> conflicted;
+    private final BloomFilter seen;
+
+    private final ConcurrentLinkedQueue<Write> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingSize = new AtomicInteger();
+    private final List<Write> retry = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Boolean postgres;
+
+    private final LongAdder localDecisions = new LongAdder();
+    private final LongAdder localClaims = new LongAdder();
+    private final LongAdder flushedWrites = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder claimConflicts = new LongAdder();
+    private final LongAdder rejectedWrites = new LongAdder();
+
+    public IdempotencyFastPath(DataSource dataSource,
+                               boolean enabled,
+                               boolean localClaim,
+                               int maxEntries,
+                               long localTtlSec,
+                               int expectedKeys,
+                               int flushSize,
+                               long warmupWindowSec) {
+        this(dataSource, enabled, localClaim, maxEntries, localTtlSec, expectedKeys, flushSize, warmupWindowSec, 20_000);
+    }
+
+    @Inject
+    public IdempotencyFastPath(DataSource dataSource,
+                               @Value("${integrationbroker.idempotency.tiered.enabled:false}") boolean enabled,
+                               @Value("${integrationbroker.idempotency.tiered.local-claim:false}") boolean localClaim,
+                               @Value("${integrationbroker.idempotency.tiered.max-entries:100000}") int maxEntries,
+                               @Value("${integrationbroker.idempotency.tiered.local-ttl-sec:600}") long localTtlSec,
+                               @Value("${integrationbroker.idempotency.tiered.expected-keys:1000000}") int expectedKeys,
+                               @Value("${integrationbroker.idempotency.tiered.flush-size:200}") int flushSize,
+                               @Value("${integrationbroker.idempotency.tiered.warmup-window-sec:86400}") long warmupWindowSec,
+                               @Value("${integrationbroker.idempotency.tiered.max-pending:20000}") int maxQueued) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.localClaim = enabled && localClaim;
+        this.localTtlSec = Math.max(1, localTtlSec);
+        this.flushSize = Math.max(1, flushSize);
+        this.maxPending = this.flushSize * 20;
+        this.capacity = Math.max(this.flushSize, maxQueued);
+        this.expectedKeys = Math.max(1000, expectedKeys);
+        this.warmupWindowSec = Math.max(0, warmupWindowSec);
+        this.recent = new TtlCache<>(Clock.systemUTC(), Math.max(1, maxEntries));
+        this.conflicted = new TtlCache<>(Clock.systemUTC(), 10_000);
+        this.seen = new BloomFilter(this.localClaim ? this.expectedKeys : 1, 0.01);
+    }
+
+    /**
+     * Выключенный быстрый уровень (все решения — через БД).
+     */
+    public static IdempotencyFastPath disabled() {
+        return new IdempotencyFastPath(null, false, false, 1, 1, 1000, 1, 0);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationStartupEvent event) {
+        if (localClaim) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Недавнее локальное состояние ключа.
+     */
+    public Optional<LocalState> recent(String idemKey) {
+        return recent.get(idemKey);
+    }
+
+    /**
+     * Может ли ключ быть захвачен локально (без синхронного INSERT).
+     * <p>
+     * {@code true} только при {@code local-claim=true} и ответе Bloom-фильтра «ключа точно не было».
+     */
+    public boolean canClaimLocally(String idemKey) {
+        return localClaim && !seen.mightContain(idemKey);
+    }
+
+    /**
+     * Зафиксировать локальное решение (попадание в кэш недавних ключей).
+     */
+    public void countLocalDecision() {
+        localDecisions.increment();
+    }
+
+    /**
+     * Захватить новый ключ локально; INSERT будет выполнен отложенно.
+     *
+     * @return {@code false}, если очередь отложенной записи заполнена: ключ нужно захватить синхронным INSERT
+     */
+    public boolean claimLocally(String idemKey, String strategy, Instant now, Instant lockUntil) {
+        if (!enqueue(new Write(WriteKind.INSERT, sequence.incrementAndGet(), idemKey, strategy, IdempotencyService.Status.IN_PROGRESS,
+                now, lockUntil, null, null, null, null))) {
+            return false;
+        }
+        localClaims.increment();
+        remember(idemKey, IdempotencyService.Status.IN_PROGRESS, lockUntil, null);
+        return true;
+    }
+
+    /**
+     * Запомнить актуальный статус ключа.
+     */
+    public void remember(String idemKey, IdempotencyService.Status status, Instant lockUntil, String resultJson) {
+        if (idemKey == null) {
+            return;
+        }
+        if (localClaim) {
+            seen.put(idemKey);
+        }
+        recent.put(idemKey, new LocalState(status, lockUntil, resultJson), localTtlSec);
+    }
+
+    /**
+     * Сбросить локальное состояние ключа (следующее решение пойдёт через БД).
+     */
+    public void forget(String idemKey) {
+        recent.invalidate(idemKey);
+    }
+
+    /**
+     * Отложенная запись перехода статуса (COMPLETED/FAILED).
+     * <p>
+     * Если очередь заполнена (БД не успевает или недоступна), переход пишется синхронно ({@link #writeStatusNow}).
+     */
+    public void writeStatus(String idemKey, IdempotencyService.Status status, Instant now, String resultJson,
+                            String errorCode, String errorMessage) {
+        remember(idemKey, status, now, resultJson);
+        if (!enqueue(statusWrite(idemKey, status, now, resultJson, errorCode, errorMessage))) {
+            writeStatusNow(idemKey, status, now, resultJson, errorCode, errorMessage);
+        }
+    }
+
+    /**
+     * Синхронная запись перехода статуса.
+     * <p>
+     * Сначала сбрасываются накопленные переходы (в том числе отложенный INSERT локально захваченного ключа),
+     * затем выполняется UPDATE. Если БД недоступна, переход ставится в очередь, а при заполненной очереди
+     * отбрасывается (счётчик {@code rejectedWrites}): запись останется IN_PROGRESS до {@code lock_until},
+     * как при падении узла.
+     *
+     * @return {@code true}, если статус записан в БД (или ключ принадлежит чужой записи и не перезаписывается)
+     */
+    public boolean writeStatusNow(String idemKey, IdempotencyService.Status status, Instant now, String resultJson,
+                                  String errorCode, String errorMessage) {
+        Write w = statusWrite(idemKey, status, now, resultJson, errorCode, errorMessage);
+        synchronized (retry) {
+            flush();
+            if (retry.isEmpty()) {
+                if (localClaim && conflicted.get(idemKey).isPresent()) {
+                    recent.invalidate(idemKey);
+                    return true;
+                }
+                try (Connection c = dataSource.getConnection()) {
+                    List<Write> one = List.of(w);
+                    updateStatuses(c, status == IdempotencyService.Status.COMPLETED ? one : List.of(),
+                            status == IdempotencyService.Status.COMPLETED ? List.of() : one);
+                    remember(idemKey, status, now, resultJson);
+                    return true;
+                } catch (Exception e) {
+                    log.warn("[IDEMPOTENCY] ошибка синхронной записи {}: {}", status,
+                            SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+                }
+            }
+        }
+        remember(idemKey, status, now, resultJson);
+        if (!enqueue(w)) {
+            log.warn("[IDEMPOTENCY] очередь отложенной записи заполнена, переход {} не записан", status);
+        }
+        return false;
+    }
+
+    /**
+     * Отложенная запись {@code skipped_reason} (при заполненной очереди отметка отбрасывается).
+     */
+    public void writeSkippedReason(String idemKey, IdempotencyService.SkippedReason reason, Instant now) {
+        enqueue(new Write(WriteKind.SKIP, sequence.incrementAndGet(), idemKey, null, null, now, null, null, null, null, reason));
+    }
+
+    private Write statusWrite(String idemKey, IdempotencyService.Status status, Instant now, String resultJson,
+                              String errorCode, String errorMessage) {
+        return new Write(WriteKind.STATUS, sequence.incrementAndGet(), idemKey, null, status, now, now, resultJson,
+                errorCode, errorMessage, null);
+    }
+
+    private boolean enqueue(Write w) {
+        if (pendingSize.get() >= capacity) {
+            rejectedWrites.increment();
+            return false;
+        }
+        pending.add(w);
+        if (pendingSize.incrementAndGet() >= maxPending) {
+            // Backpressure: при отставании записи в БД вызывающий поток дописывает пачку сам.
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * Записать накопленные переходы в БД.
+     */
+    @Scheduled(fixedDelay = "${integrationbroker.idempotency.tiered.flush-interval:200ms}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (retry) {
+            while (pendingSize.get() > 0 || !retry.isEmpty()) {
+                List<Write> batch = new ArrayList<>(retry);
+                retry.clear();
+                Write w;
+                while (batch.size() < flushSize && (w = pending.poll()) != null) {
+                    pendingSize.decrementAndGet();
+                    batch.add(w);
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                if (!writeBatch(batch)) {
+                    // Пачка сохраняется и будет записана первой на следующем запуске (порядок переходов не нарушается).
+                    retry.addAll(batch);
+                    return;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private boolean writeBatch(List<Write> batch) {
+        Map<String, Write> inserts = new LinkedHashMap<>();
+        Map<String, Write> statuses = new LinkedHashMap<>();
+        Map<String, Write> skips = new LinkedHashMap<>();
+        for (Write w : batch) {
+            Map<String, Write> target = w.kind == WriteKind.INSERT ? inserts : (w.kind == WriteKind.STATUS ? statuses : skips);
+            target.put(w.idemKey, w);
+        }
+        // skipped_reason, записанный до перехода статуса, перекрывается этим переходом (он сбрасывает skipped_reason).
+        skips.values().removeIf(s -> {
+            Write st = statuses.get(s.idemKey);
+            return st != null && st.seq > s.seq;
+        });
+
+        try (Connection c = dataSource.getConnection()) {
+            // Одна транзакция на пачку: если UPDATE упадёт после INSERT, повтор не увидит свои же ключи как конфликт.
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            Set<String> conflicts;
+            try {
+                conflicts = insertClaims(c, inserts);
+                List<Write> completed = new ArrayList<>();
+                List<Write> failed = new ArrayList<>();
+                for (Write w : statuses.values()) {
+                    if (isConflicted(conflicts, w.idemKey)) {
+                        continue;
+                    }
+                    (w.status == IdempotencyService.Status.COMPLETED ? completed : failed).add(w);
+                }
+                updateStatuses(c, completed, failed);
+                if (!skips.isEmpty()) {
+                    try (PreparedStatement ps = c.prepareStatement("UPDATE ib_idempotency SET skipped_reason=?, updated_at=? WHERE idem_key=?")) {
+                        for (Write w : skips.values()) {
+                            if (isConflicted(conflicts, w.idemKey)) {
+                                continue;
+                            }
+                            ps.setString(1, w.reason.name());
+                            ps.setTimestamp(2, Timestamp.from(w.at));
+                            ps.setString(3, w.idemKey);
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+                c.commit();
+            } catch (Exception e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+            registerConflicts(conflicts);
+            flushes.increment();
+            flushedWrites.add(batch.size());
+            return true;
+        } catch (Exception e) {
+            flushFailures.increment();
+            log.warn("[IDEMPOTENCY] ошибка отложенной записи ({} переходов): {}", batch.size(),
+                    SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+            return false;
+        }
+    }
+
+    private static void updateStatuses(Connection c, List<Write> completed, List<Write> failed) throws Exception {
+        if (!completed.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE ib_idempotency SET status=?, updated_at=?, lock_until=?, result_json=?, last_error_code=NULL, last_error_message=NULL, skipped_reason=NULL WHERE idem_key=?")) {
+                for (Write w : completed) {
+                    ps.setString(1, IdempotencyService.Status.COMPLETED.name());
+                    ps.setTimestamp(2, Timestamp.from(w.at));
+                    ps.setTimestamp(3, Timestamp.from(w.lockUntil));
+                    ps.setString(4, w.resultJson);
+                    ps.setString(5, w.idemKey);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+        if (!failed.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE ib_idempotency SET status=?, updated_at=?, lock_until=?, last_error_code=?, last_error_message=?, skipped_reason=NULL WHERE idem_key=?")) {
+                for (Write w : failed) {
+                    ps.setString(1, IdempotencyService.Status.FAILED.name());
+                    ps.setTimestamp(2, Timestamp.from(w.at));
+                    ps.setTimestamp(3, Timestamp.from(w.lockUntil));
+                    ps.setString(4, w.errorCode);
+                    ps.setString(5, w.errorMessage);
+                    ps.setString(6, w.idemKey);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    private Set<String> insertClaims(Connection c, Map<String, Write> inserts) throws Exception {
+        Set<String> conflicts = new HashSet<>();
+        if (inserts.isEmpty()) {
+            return conflicts;
+        }
+        String sql = isPostgres(c)
+                ? "INSERT INTO ib_idempotency (idem_key, strategy, status, created_at, updated_at, lock_until) VALUES (?,?,?,?,?,?) ON CONFLICT (idem_key) DO NOTHING"
+                : "INSERT INTO ib_idempotency (idem_key, strategy, status, created_at, updated_at, lock_until) "
+                + "SELECT CAST(? AS VARCHAR(128)), CAST(? AS VARCHAR(32)), CAST(? AS VARCHAR(32)), CAST(? AS TIMESTAMP WITH TIME ZONE), "
+                + "CAST(? AS TIMESTAMP WITH TIME ZONE), CAST(? AS TIMESTAMP WITH TIME ZONE) WHERE NOT EXISTS (SELECT 1 FROM ib_idempotency WHERE idem_key=?)";
+        boolean pg = isPostgres(c);
+        List<Write> ordered = new ArrayList<>(inserts.values());
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (Write w : ordered) {
+                ps.setString(1, w.idemKey);
+                ps.setString(2, w.strategy);
+                ps.setString(3, w.status.name());
+                ps.setTimestamp(4, Timestamp.from(w.at));
+                ps.setTimestamp(5, Timestamp.from(w.at));
+                ps.setTimestamp(6, Timestamp.from(w.lockUntil));
+                if (!pg) {
+                    ps.setString(7, w.idemKey);
+                }
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            for (int i = 0; i < counts.length && i < ordered.size(); i++) {
+                if (counts[i] == 0) {
+                    conflicts.add(ordered.get(i).idemKey);
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    private void registerConflicts(Set<String> conflicts) {
+        if (conflicts.isEmpty()) {
+            return;
+        }
+        claimConflicts.add(conflicts.size());
+        for (String key : conflicts) {
+            recent.invalidate(key);
+            // Переходы по ключу из следующих пачек тоже не должны перезаписать чужую запись.
+            conflicted.put(key, Boolean.TRUE, localTtlSec);
+        }
+        log.warn("[IDEMPOTENCY] {} локально захваченных ключей уже были в БД (другой узел или старый повтор)", conflicts.size());
+    }
+
+    private boolean isConflicted(Set<String> batchConflicts, String idemKey) {
+        return batchConflicts.contains(idemKey) || (localClaim && conflicted.get(idemKey).isPresent());
+    }
+
+    private void warmUp() {
+        Instant since = Instant.now().minusSeconds(warmupWindowSec);
+        int loaded = 0;
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT idem_key FROM ib_idempotency WHERE updated_at >= ? ORDER BY updated_at DESC LIMIT ?")) {
+            ps.setTimestamp(1, Timestamp.from(since));
+            ps.setInt(2, expectedKeys);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    seen.put(rs.getString(1));
+                    loaded++;
+                }
+            }
+            log.info("[IDEMPOTENCY] Bloom-фильтр прогрет ключами из БД: {}", loaded);
+        } catch (Exception e) {
+            log.warn("[IDEMPOTENCY] не удалось прогреть Bloom-фильтр: {}", SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+        }
+    }
+
+    private boolean isPostgres(Connection c) throws Exception {
+        Boolean v = postgres;
+        if (v == null) {
+            String product = c.getMetaData().getDatabaseProductName();
+            v = product != null && product.toLowerCase().contains("postgresql");
+            postgres = v;
+        }
+        return v;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(enabled, localClaim, recent.size(), localDecisions.sum(), localClaims.sum(),
+                pendingSize.get(), flushedWrites.sum(), flushes.sum(), flushFailures.sum(), claimConflicts.sum(),
+                rejectedWrites.sum());
+    }
+
+    /**
+     * Локальное состояние ключа.
+     */
+    public record LocalState(IdempotencyService.Status status, Instant lockUntil, String resultJson) {
+    }
+
+    /**
+     * Метрики быстрого уровня идемпотентности.
+     */
+    @Serdeable
+    public record Snapshot(boolean enabled,
+                           boolean localClaim,
+                           int localEntries,
+                           long localDecisions,
+                           long localClaims,
+                           int pendingWrites,
+                           long flushedWrites,
+                           long flushes,
+                           long flushFailures,
+                           long claimConflicts,
+                           long rejectedWrites) {
+    }
+
+    private enum WriteKind {
+        INSERT,
+        STATUS,
+        SKIP
+    }
+
+    private record Write(WriteKind kind,
+                         long seq,
+                         String idemKey,
+                         String strategy,
+                         IdempotencyService.Status status,
+                         Instant at,
+                         Instant lockUntil,
+                         String resultJson,
+                         String errorCode,
+                         String errorMessage,
+                         IdempotencyService.SkippedReason reason) {
+    }
+
+    /**
+     * Bloom-фильтр ключей, встречавшихся на узле: ответ «нет» точный, «да» — с вероятностью ложного срабатывания.
+     * <p>
+     * Фильтр не очищается: после {@code expected-keys} вставок доля ложных «да» растёт и быстрый захват
+     * постепенно переходит на синхронный INSERT (безопасная деградация).
+     */
+    static final class BloomFilter {
+
+        private final AtomicLongArray bits;
+        private final int bitCount;
+        private final int hashes;
+
+        BloomFilter(int expectedInsertions, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bitCount = (int) Math.max(64, Math.min(Integer.MAX_VALUE - 63, m));
+            this.hashes = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+            this.bits = new AtomicLongArray((bitCount + 63) / 64);
+        }
+
+        void put(String key) {
+            long h = hash64(key);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                int idx = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+                long mask = 1L << idx;
+                int word = idx >>> 6;
+                long prev;
+                do {
+                    prev = bits.get(word);
+                    if ((prev & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, prev, prev | mask));
+            }
+        }
+
+        boolean mightContain(String key) {
+            long h = hash64(key);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 1; i <= hashes; i++) {
+                int idx = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+                if ((bits.get(idx >>> 6) & (1L << idx)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long hash64(String key) {
+            // FNV-1a 64 + финальное перемешивание (splitmix64): ключи идемпотентности уже хорошо распределены.
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
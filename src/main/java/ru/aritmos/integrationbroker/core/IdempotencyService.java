@@ -2,22 +2,26 @@ package ru.aritmos.integrationbroker.core;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 import ru.aritmos.integrationbroker.model.InboundEnvelope;
 
 import javax.sql.DataSource;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HexFormat;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Objects;
 import java.util.regex.Pattern;
 import java.util.concurrent.ConcurrentHashMap;
@@ -46,6 +50,11 @@ import java.util.concurrent.atomic.LongAdder;
 @Singleton
 public class IdempotencyService {
 
+    /**
+     * Строк в одном многострочном INSERT (6 параметров на строку — с запасом до лимита протокола PostgreSQL).
+     */
+    private static final int MULTI_ROW_CHUNK = 1000;
+
     private static final Pattern IDEMPOTENCY_KEY_PATTERN = Pattern.compile("^[^:\\s]+:[^:\\s]+:[^:\\s]+$");
 
     private final DataSource dataSource;
@@ -53,10 +62,18 @@ public class IdempotencyService {
     private final ConcurrentHashMap<String, LongAdder> decisionsBySource = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, LongAdder> duplicateBySource = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, LongAdder> lockedBySource = new ConcurrentHashMap<>();
+    private final IdempotencyFastPath fastPath;
+    private volatile Boolean postgres;
 
-    public IdempotencyService(DataSource dataSource, ObjectMapper objectMapper) {
+    @Inject
+    public IdempotencyService(DataSource dataSource, ObjectMapper objectMapper, IdempotencyFastPath fastPath) {
         this.dataSource = dataSource;
         this.objectMapper = objectMapper;
+        this.fastPath = fastPath == null ? IdempotencyFastPath.disabled() : fastPath;
+    }
+
+    public IdempotencyService(DataSource dataSource, ObjectMapper objectMapper) {
+        this(dataSource, objectMapper, null);
     }
 
     /**
@@ -117,43 +134,282 @@ public class IdempotencyService {
         Instant now = Instant.now();
         Instant lockUntil = now.plusSeconds(Math.max(1, config.lockTtlSec()));
 
+        // 0) Быстрый уровень: недавние ключи этого узла решаются без обращения к БД.
+        IdempotencyDecision local = decideLocally(idemKey, source, config, now, lockUntil);
+        if (local != null) {
+            return skipIfNeeded(local, now);
+        }
+
         // 1) Пытаемся вставить новую запись.
         boolean inserted = tryInsert(idemKey, config.strategy().name(), Status.IN_PROGRESS, now, lockUntil);
         if (inserted) {
+            remember(idemKey, Status.IN_PROGRESS, lockUntil, null);
             return new IdempotencyDecision(idemKey, Decision.PROCESS, null, null);
         }
 
-        // 2) Читаем существующую.
-        Row row = getRow(idemKey);
+        // 2) Читаем существующую и решаем по её статусу.
+        return skipIfNeeded(decideExisting(idemKey, source, getRow(idemKey), now, lockUntil), now);
+    }
+
+    /**
+     * Принять решения по пачке inbound-сообщений (batch ingress, replay).
+     * <p>
+     * Семантика та же, что у последовательных вызовов {@link #decide} в порядке списка (в том числе для повторов
+     * одного ключа внутри пачки: первое вхождение получает решение хранилища, остальные — LOCKED/SKIP_COMPLETED),
+     * но обращения к БД выполняются пачками: вставка новых ключей — одним многострочным
+     * {@code INSERT ... ON CONFLICT DO NOTHING RETURNING idem_key} (PostgreSQL) или JDBC batch (остальные БД),
+     * чтение уже существующих — одним {@code SELECT ... WHERE idem_key = ANY(?)}, отметки skipped_reason — одним
+     * JDBC batch. Итоги обработки записываются обратно пачкой через {@link #markCompletedAll}.
+     * <p>
+     * Ключи идемпотентности должны быть корректны: некорректный переданный клиентом ключ приводит к
+     * {@link IllegalArgumentException} для всей пачки, поэтому вызывающий проверяет их заранее ({@link #keyFor}).
+     *
+     * @return решения в порядке {@code envelopes}
+     */
+    public List<IdempotencyDecision> decideAll(List<InboundEnvelope> envelopes, RuntimeConfigStore.IdempotencyConfig config) {
+        int n = envelopes == null ? 0 : envelopes.size();
+        List<IdempotencyDecision> out = new ArrayList<>(n);
+        if (n == 0) {
+            return out;
+        }
+        if (config == null || !config.enabled()) {
+            for (int i = 0; i < n; i++) {
+                out.add(new IdempotencyDecision(null, Decision.PROCESS, null, null));
+            }
+            return out;
+        }
+
+        Instant now = Instant.now();
+        Instant lockUntil = now.plusSeconds(Math.max(1, config.lockTtlSec()));
+        String[] keys = new String[n];
+        String[] sources = new String[n];
+        IdempotencyDecision[] decisions = new IdempotencyDecision[n];
+        // Первое вхождение ключа, решение по которому принимается через хранилище.
+        Map<String, Integer> pending = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            InboundEnvelope envelope = envelopes.get(i);
+            validateProvidedIdempotencyKey(envelope);
+            sources[i] = resolveSource(envelope);
+            recordDecision(decisionsBySource, sources[i]);
+            keys[i] = computeKey(envelope, config.strategy());
+            if (pending.containsKey(keys[i])) {
+                continue;
+            }
+            IdempotencyDecision local = decideLocally(keys[i], sources[i], config, now, lockUntil);
+            if (local != null) {
+                decisions[i] = local;
+            } else {
+                pending.put(keys[i], i);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            decidePending(pending, keys, sources, decisions, config, now, lockUntil);
+        }
+
+        // Повторы ключа внутри пачки: как если бы они пришли сразу после первого вхождения.
+        Map<String, IdempotencyDecision> first = new HashMap<>();
+        Map<String, SkippedReason> skips = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            IdempotencyDecision d = decisions[i];
+            if (d == null) {
+                IdempotencyDecision head = first.get(keys[i]);
+                if (head == null || head.decision() != Decision.SKIP_COMPLETED) {
+                    recordDecision(lockedBySource, sources[i]);
+                    d = new IdempotencyDecision(keys[i], Decision.LOCKED, null, SkippedReason.LOCKED);
+                } else {
+                    recordDecision(duplicateBySource, sources[i]);
+                    d = new IdempotencyDecision(keys[i], Decision.SKIP_COMPLETED, head.existingResultJson(), SkippedReason.DUPLICATE);
+                }
+                decisions[i] = d;
+            } else {
+                first.putIfAbsent(keys[i], d);
+            }
+            if (d.skippedReason() != null) {
+                skips.put(keys[i], d.skippedReason());
+            }
+            out.add(d);
+        }
+        skipAll(skips, now);
+        return out;
+    }
+
+    private void decidePending(Map<String, Integer> pending,
+                               String[] keys,
+                               String[] sources,
+                               IdempotencyDecision[] decisions,
+                               RuntimeConfigStore.IdempotencyConfig config,
+                               Instant now,
+                               Instant lockUntil) {
+        Set<String> inserted = tryInsertAll(pending.keySet(), config.strategy().name(), now, lockUntil);
+        if (inserted == null) {
+            // Пакетная вставка не удалась целиком — решаем по одному ключу, как decide.
+            for (int i : pending.values()) {
+                String key = keys[i];
+                if (tryInsert(key, config.strategy().name(), Status.IN_PROGRESS, now, lockUntil)) {
+                    remember(key, Status.IN_PROGRESS, lockUntil, null);
+                    decisions[i] = new IdempotencyDecision(key, Decision.PROCESS, null, null);
+                } else {
+                    decisions[i] = decideExisting(key, sources[i], getRow(key), now, lockUntil);
+                }
+            }
+            return;
+        }
+
+        List<String> existing = new ArrayList<>();
+        for (Map.Entry<String, Integer> e : pending.entrySet()) {
+            if (inserted.contains(e.getKey())) {
+                remember(e.getKey(), Status.IN_PROGRESS, lockUntil, null);
+                decisions[e.getValue()] = new IdempotencyDecision(e.getKey(), Decision.PROCESS, null, null);
+            } else {
+                existing.add(e.getKey());
+            }
+        }
+        if (existing.isEmpty()) {
+            return;
+        }
+        Map<String, Row> rows = getRows(existing);
+        for (String key : existing) {
+            int i = pending.get(key);
+            decisions[i] = decideExisting(key, sources[i], rows.get(key), now, lockUntil);
+        }
+    }
+
+    /**
+     * Решение быстрого уровня ({@link IdempotencyFastPath}) или {@code null}, если нужно обращение к БД.
+     */
+    private IdempotencyDecision decideLocally(String idemKey,
+                                              String source,
+                                              RuntimeConfigStore.IdempotencyConfig config,
+                                              Instant now,
+                                              Instant lockUntil) {
+        if (!fastPath.enabled()) {
+            return null;
+        }
+        IdempotencyFastPath.LocalState local = fastPath.recent(idemKey).orElse(null);
+        if (local != null && local.status() == Status.COMPLETED) {
+            fastPath.countLocalDecision();
+            recordDecision(duplicateBySource, source);
+            return new IdempotencyDecision(idemKey, Decision.SKIP_COMPLETED, local.resultJson(), SkippedReason.DUPLICATE);
+        }
+        if (local != null && local.status() == Status.IN_PROGRESS && local.lockUntil() != null && local.lockUntil().isAfter(now)) {
+            fastPath.countLocalDecision();
+            recordDecision(lockedBySource, source);
+            return new IdempotencyDecision(idemKey, Decision.LOCKED, null, SkippedReason.LOCKED);
+        }
+        if (local == null && fastPath.canClaimLocally(idemKey)
+                && fastPath.claimLocally(idemKey, config.strategy().name(), now, lockUntil)) {
+            return new IdempotencyDecision(idemKey, Decision.PROCESS, null, null);
+        }
+        return null;
+    }
+
+    /**
+     * Решение по уже существующей записи (вставка нового ключа не прошла).
+     */
+    private IdempotencyDecision decideExisting(String idemKey, String source, Row row, Instant now, Instant lockUntil) {
         if (row == null) {
             // Теоретически возможно только при гонке. В этом случае безопаснее обработать.
             return new IdempotencyDecision(idemKey, Decision.PROCESS, null, null);
         }
 
         if (row.status == Status.COMPLETED) {
-            markSkippedReason(idemKey, SkippedReason.DUPLICATE, now);
+            remember(idemKey, Status.COMPLETED, row.lockUntil, row.resultJson);
             recordDecision(duplicateBySource, source);
             return new IdempotencyDecision(idemKey, Decision.SKIP_COMPLETED, row.resultJson, SkippedReason.DUPLICATE);
         }
 
         if (row.status == Status.IN_PROGRESS && row.lockUntil != null && row.lockUntil.isAfter(now)) {
-            markSkippedReason(idemKey, SkippedReason.LOCKED, now);
             recordDecision(lockedBySource, source);
             return new IdempotencyDecision(idemKey, Decision.LOCKED, null, SkippedReason.LOCKED);
         }
 
-        // 3) FAILED или истёкший IN_PROGRESS -> пробуем «захватить» обработку.
+        // FAILED или истёкший IN_PROGRESS -> пробуем «захватить» обработку.
         boolean updated = tryUpdateToInProgress(idemKey, now, lockUntil);
         if (updated) {
             clearSkippedReason(idemKey);
+            remember(idemKey, Status.IN_PROGRESS, lockUntil, null);
             return new IdempotencyDecision(idemKey, Decision.PROCESS, null, null);
         }
 
         // Если не удалось — считаем LOCKED (не poison).
-        markSkippedReason(idemKey, SkippedReason.LOCKED, now);
         return new IdempotencyDecision(idemKey, Decision.LOCKED, null, SkippedReason.LOCKED);
     }
 
+    private IdempotencyDecision skipIfNeeded(IdempotencyDecision decision, Instant now) {
+        if (decision.skippedReason() != null) {
+            skip(decision.idemKey(), decision.skippedReason(), now);
+        }
+        return decision;
+    }
+
+    private void remember(String idemKey, Status status, Instant lockUntil, String resultJson) {
+        if (fastPath.enabled()) {
+            fastPath.remember(idemKey, status, lockUntil, resultJson);
+        }
+    }
+
+    private void skip(String idemKey, SkippedReason reason, Instant now) {
+        if (fastPath.enabled()) {
+            fastPath.writeSkippedReason(idemKey, reason, now);
+        } else {
+            markSkippedReason(idemKey, reason, now);
+        }
+    }
+
+    private void skipAll(Map<String, SkippedReason> reasons, Instant now) {
+        if (reasons.isEmpty()) {
+            return;
+        }
+        if (fastPath.enabled()) {
+            reasons.forEach((key, reason) -> fastPath.writeSkippedReason(key, reason, now));
+            return;
+        }
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement("UPDATE ib_idempotency SET skipped_reason=?, updated_at=? WHERE idem_key=?")) {
+            for (Map.Entry<String, SkippedReason> e : reasons.entrySet()) {
+                ps.setString(1, e.getValue().name());
+                ps.setTimestamp(2, Timestamp.from(now));
+                ps.setString(3, e.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (Exception e) {
+            // no-op
+        }
+    }
+
+    /**
+     * Проверить переданный клиентом ключ идемпотентности (если идемпотентность включена).
+     *
+     * @throws IllegalArgumentException если ключ некорректен
+     */
+    void validateKey(InboundEnvelope envelope, RuntimeConfigStore.IdempotencyConfig config) {
+        if (config != null && config.enabled()) {
+            validateProvidedIdempotencyKey(envelope);
+        }
+    }
+
+    /**
+     * Ключ идемпотентности сообщения без обращения к хранилищу (тот же, что вернёт {@link #decide}).
+     * <p>
+     * Используется асинхронным ingress для ответа клиенту до начала обработки. Ключ рассчитывается и при
+     * выключенной идемпотентности — как идентификатор для отслеживания статуса.
+     *
+     * @throws IllegalArgumentException если переданный клиентом ключ идемпотентности некорректен
+     */
+    public String keyFor(InboundEnvelope envelope, RuntimeConfigStore.IdempotencyConfig config) {
+        validateKey(envelope, config);
+        return computeKey(envelope, config == null ? null : config.strategy());
+    }
+
+    /**
+     * Метрики быстрого уровня идемпотентности ({@code integrationbroker.idempotency.tiered}).
+     */
+    public IdempotencyFastPath.Snapshot fastPathSnapshot() {
+        return fastPath.snapshot();
+    }
+
     /**
      * Отметить выполнение как успешное.
      *
@@ -173,6 +429,10 @@ public class IdempotencyService {
         }
 
         Instant now = Instant.now();
+        if (fastPath.enabled()) {
+            fastPath.writeStatus(idemKey, Status.COMPLETED, now, json, null, null);
+            return;
+        }
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(
                      "UPDATE ib_idempotency SET status=?, updated_at=?, lock_until=?, result_json=?, last_error_code=NULL, last_error_message=NULL, skipped_reason=NULL WHERE idem_key=?")) {
@@ -187,6 +447,58 @@ public class IdempotencyService {
         }
     }
 
+    /**
+     * Отметить выполнение пачки ключей как успешное (одним JDBC batch).
+     * <p>
+     * Семантика та же, что у {@link #markCompleted} для каждого ключа; ключи {@code null} пропускаются.
+     *
+     * @param results результат выполнения по ключу идемпотентности
+     * @return {@code false}, если пачку записать не удалось (вызывающий может повторить по одному ключу)
+     */
+    public boolean markCompletedAll(Map<String, ?> results) {
+        if (results == null || results.isEmpty()) {
+            return true;
+        }
+        Instant now = Instant.now();
+        Map<String, String> jsonByKey = new LinkedHashMap<>();
+        for (Map.Entry<String, ?> e : results.entrySet()) {
+            if (e.getKey() == null) {
+                continue;
+            }
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(e.getValue());
+            } catch (Exception ex) {
+                json = "{\"note\":\"Результат не сериализован\"}";
+            }
+            jsonByKey.put(e.getKey(), json);
+        }
+        if (fastPath.enabled()) {
+            jsonByKey.forEach((key, json) -> fastPath.writeStatus(key, Status.COMPLETED, now, json, null, null));
+            return true;
+        }
+        if (jsonByKey.isEmpty()) {
+            return true;
+        }
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "UPDATE ib_idempotency SET status=?, updated_at=?, lock_until=?, result_json=?, last_error_code=NULL, last_error_message=NULL, skipped_reason=NULL WHERE idem_key=?")) {
+            for (Map.Entry<String, String> e : jsonByKey.entrySet()) {
+                ps.setString(1, Status.COMPLETED.name());
+                ps.setTimestamp(2, Timestamp.from(now));
+                ps.setTimestamp(3, Timestamp.from(now));
+                ps.setString(4, e.getValue());
+                ps.setString(5, e.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            return true;
+        } catch (Exception e) {
+            // Идемпотентность не должна ломать основной сценарий.
+            return false;
+        }
+    }
+
     /**
      * Отметить выполнение как ошибочное.
      * <p>
@@ -203,6 +515,11 @@ public class IdempotencyService {
         Instant now = Instant.now();
         String code = safeShort(SensitiveDataSanitizer.sanitizeText(errorCode), 64);
         String msg = safeShort(SensitiveDataSanitizer.sanitizeText(errorMessage), 500);
+        if (fastPath.enabled()) {
+            // FAILED пишется синхронно: повтор/replay сразу после ошибки должен захватить запись, а не получить LOCKED.
+            fastPath.writeStatusNow(idemKey, Status.FAILED, now, null, code, msg);
+            return;
+        }
 
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(
@@ -245,7 +562,39 @@ public class IdempotencyService {
     }
 
     public List<IdempotencyRecord> list(String status, String skippedReason, int limit) {
+        return page(status, skippedReason, null, limit).items();
+    }
+
+    /**
+     * Страница списка записей идемпотентности (keyset по {@code (updated_at, idem_key)}, см. {@link KeysetCursor}).
+     *
+     * @param cursor курсор из предыдущей страницы ({@code null} — первая страница)
+     * @throws IllegalArgumentException курсор повреждён
+     */
+    public KeysetCursor.Slice<IdempotencyRecord> page(String status, String skippedReason, String cursor, int limit) {
         int lim = Math.min(Math.max(1, limit), 200);
+        KeysetCursor.Position after = KeysetCursor.decode(cursor);
+        try {
+            return KeysetCursor.Slice.of(fetch(status, skippedReason, after, lim + 1), lim,
+                    IdempotencyRecord::updatedAt, IdempotencyRecord::idemKey);
+        } catch (Exception e) {
+            // no-op
+            return new KeysetCursor.Slice<>(List.of(), null);
+        }
+    }
+
+    /**
+     * Потоково выгрузить все записи по фильтрам (в порядке списка), не загружая выборку в память целиком.
+     *
+     * @return количество выгруженных записей
+     */
+    public long export(String status, String skippedReason, java.util.function.Consumer<? super IdempotencyRecord> sink) {
+        return KeysetCursor.walk((after, lim) -> fetch(status, skippedReason, after, lim),
+                IdempotencyRecord::updatedAt, IdempotencyRecord::idemKey, sink);
+    }
+
+    private List<IdempotencyRecord> fetch(String status, String skippedReason, KeysetCursor.Position after, int limit)
+            throws java.sql.SQLException {
         List<IdempotencyRecord> out = new ArrayList<>();
         String normalizedStatus = normalizeFilter(status);
         String normalizedSkippedReason = normalizeFilter(skippedReason);
@@ -260,10 +609,13 @@ public class IdempotencyService {
         if (filterSkippedReason) {
             where.add("skipped_reason=?");
         }
+        if (after != null) {
+            where.add(KeysetCursor.Position.condition("idem_key"));
+        }
         if (!where.isEmpty()) {
             sql.append(" WHERE ").append(String.join(" AND ", where));
         }
-        sql.append(" ORDER BY updated_at DESC LIMIT ?");
+        sql.append(" ORDER BY updated_at DESC, idem_key DESC LIMIT ?");
 
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(sql.toString())) {
@@ -275,7 +627,10 @@ public class IdempotencyService {
             if (filterSkippedReason) {
                 ps.setString(idx++, normalizedSkippedReason);
             }
-            ps.setInt(idx, lim);
+            if (after != null) {
+                idx = after.bind(ps, idx, false);
+            }
+            ps.setInt(idx, limit);
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -290,10 +645,7 @@ public class IdempotencyService {
                             recSkippedReason));
                 }
             }
-        } catch (Exception e) {
-            // no-op
         }
-
         return out;
     }
 
@@ -408,6 +760,11 @@ public class IdempotencyService {
         }
         Instant now = Instant.now();
         String audit = "manualUnlock actor=" + safeShort(actor, 120) + "; reason=" + safeShort(reason, 500);
+        if (fastPath.enabled()) {
+            // Отложенные переходы по ключу должны попасть в БД до ручной разблокировки, локальное состояние — сброшено.
+            fastPath.flush();
+            fastPath.forget(idemKey.trim());
+        }
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(
                      "UPDATE ib_idempotency SET status=?, updated_at=?, lock_until=?, last_error_code=?, last_error_message=?, skipped_reason=? WHERE idem_key=? AND status=?")) {
@@ -443,6 +800,132 @@ public class IdempotencyService {
         }
     }
 
+    /**
+     * Вставка новых ключей пачкой: на PostgreSQL — многострочным {@code INSERT ... ON CONFLICT DO NOTHING RETURNING idem_key}
+     * (вставленные ключи возвращает сама БД), на остальных БД — JDBC batch с разбором числа вставленных строк.
+     *
+     * <p>
+     * Пачка выполняется в одной транзакции: если результат по ключам неизвестен, вставка откатывается целиком,
+     * иначе уже вставленные строки при решении по одному ключу выглядели бы как чужой захват (LOCKED).
+     *
+     * @return вставленные ключи или {@code null}, если результат по ключам неизвестен (ошибка пачки,
+     * драйвер не сообщил число строк) и решать нужно по одному ключу; в этом случае ни одна строка не вставлена
+     */
+    private Set<String> tryInsertAll(Collection<String> keys, String strategy, Instant now, Instant lockUntil) {
+        List<String> ordered = new ArrayList<>(keys);
+        try (Connection c = dataSource.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                Set<String> inserted = isPostgres(c)
+                        ? insertReturning(c, ordered, strategy, now, lockUntil)
+                        : insertBatch(c, ordered, strategy, now, lockUntil);
+                if (inserted == null) {
+                    c.rollback();
+                } else {
+                    c.commit();
+                }
+                return inserted;
+            } catch (Exception e) {
+                c.rollback();
+                return null;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Set<String> insertReturning(Connection c, List<String> keys, String strategy, Instant now, Instant lockUntil)
+            throws java.sql.SQLException {
+        Set<String> inserted = new HashSet<>();
+        for (int from = 0; from < keys.size(); from += MULTI_ROW_CHUNK) {
+            List<String> part = keys.subList(from, Math.min(keys.size(), from + MULTI_ROW_CHUNK));
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO ib_idempotency (idem_key, strategy, status, created_at, updated_at, lock_until) VALUES ");
+            for (int i = 0; i < part.size(); i++) {
+                sql.append(i == 0 ? "(?,?,?,?,?,?)" : ",(?,?,?,?,?,?)");
+            }
+            sql.append(" ON CONFLICT (idem_key) DO NOTHING RETURNING idem_key");
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                int p = 1;
+                for (String key : part) {
+                    ps.setString(p++, key);
+                    ps.setString(p++, strategy);
+                    ps.setString(p++, Status.IN_PROGRESS.name());
+                    ps.setTimestamp(p++, Timestamp.from(now));
+                    ps.setTimestamp(p++, Timestamp.from(now));
+                    ps.setTimestamp(p++, Timestamp.from(lockUntil));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        inserted.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+        return inserted;
+    }
+
+    private static Set<String> insertBatch(Connection c, List<String> keys, String strategy, Instant now, Instant lockUntil)
+            throws java.sql.SQLException {
+        String sql = "INSERT INTO ib_idempotency (idem_key, strategy, status, created_at, updated_at, lock_until) "
+                + "VALUES (?,?,?,?,?,?) ON CONFLICT DO NOTHING";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            for (String key : keys) {
+                ps.setString(1, key);
+                ps.setString(2, strategy);
+                ps.setString(3, Status.IN_PROGRESS.name());
+                ps.setTimestamp(4, Timestamp.from(now));
+                ps.setTimestamp(5, Timestamp.from(now));
+                ps.setTimestamp(6, Timestamp.from(lockUntil));
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            if (counts.length != keys.size()) {
+                return null;
+            }
+            Set<String> inserted = new HashSet<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                    return null;
+                }
+                if (counts[i] > 0) {
+                    inserted.add(keys.get(i));
+                }
+            }
+            return inserted;
+        }
+    }
+
+    private Map<String, Row> getRows(List<String> keys) {
+        Map<String, Row> out = new HashMap<>();
+        String sql = "SELECT idem_key, status, lock_until, result_json, updated_at, skipped_reason FROM ib_idempotency WHERE idem_key = ANY(?)";
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setArray(1, c.createArrayOf("varchar", keys.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.put(rs.getString(1), readRow(rs, 2));
+                }
+            }
+        } catch (Exception e) {
+            // Недостающие записи решаются как при гонке (см. decideExisting).
+        }
+        return out;
+    }
+
+    private boolean isPostgres(Connection c) throws Exception {
+        Boolean v = postgres;
+        if (v == null) {
+            String product = c.getMetaData().getDatabaseProductName();
+            v = product != null && product.toLowerCase().contains("postgresql");
+            postgres = v;
+        }
+        return v;
+    }
+
     private boolean tryUpdateToInProgress(String key, Instant now, Instant lockUntil) {
         String sql = "UPDATE ib_idempotency SET status=?, updated_at=?, lock_until=?, skipped_reason=NULL WHERE idem_key=?";
         try (Connection c = dataSource.getConnection();
@@ -466,24 +949,28 @@ public class IdempotencyService {
                 if (!rs.next()) {
                     return null;
                 }
-                String st = rs.getString(1);
-                Timestamp lock = rs.getTimestamp(2);
-                String resultJson = rs.getString(3);
-                Timestamp upd = rs.getTimestamp(4);
-                String skippedReasonRaw = rs.getString(5);
-                Status status = Status.valueOf(st);
-                SkippedReason skippedReason = skippedReasonRaw == null || skippedReasonRaw.isBlank() ? null : SkippedReason.valueOf(skippedReasonRaw);
-                return new Row(status,
-                        lock == null ? null : lock.toInstant(),
-                        resultJson,
-                        upd == null ? null : upd.toInstant(),
-                        skippedReason);
+                return readRow(rs, 1);
             }
         } catch (Exception e) {
             return null;
         }
     }
 
+    private static Row readRow(ResultSet rs, int first) throws java.sql.SQLException {
+        String st = rs.getString(first);
+        Timestamp lock = rs.getTimestamp(first + 1);
+        String resultJson = rs.getString(first + 2);
+        Timestamp upd = rs.getTimestamp(first + 3);
+        String skippedReasonRaw = rs.getString(first + 4);
+        Status status = Status.valueOf(st);
+        SkippedReason skippedReason = skippedReasonRaw == null || skippedReasonRaw.isBlank() ? null : SkippedReason.valueOf(skippedReasonRaw);
+        return new Row(status,
+                lock == null ? null : lock.toInstant(),
+                resultJson,
+                upd == null ? null : upd.toInstant(),
+                skippedReason);
+    }
+
     private void markSkippedReason(String idemKey, SkippedReason reason, Instant now) {
         if (idemKey == null || reason == null) {
             return;
@@ -591,30 +1078,23 @@ public class IdempotencyService {
         return sha256Hex(material);
     }
 
-    private String payloadHash(JsonNode payload) {
+    /**
+     * Хеш payload для стратегии PAYLOAD_HASH: канонический (порядок полей не важен) и потоковый,
+     * без промежуточной сериализации payload в массив байт (см. {@link PayloadHasher}).
+     */
+    private static String payloadHash(JsonNode payload) {
         try {
             if (payload == null) {
                 return "";
             }
-            byte[] bytes = objectMapper.writeValueAsBytes(payload);
-            return sha256HexBytes(bytes);
+            return PayloadHasher.sha256Hex(payload);
         } catch (Exception e) {
             return "";
         }
     }
 
     private static String sha256Hex(String input) {
-        return sha256HexBytes(input.getBytes(StandardCharsets.UTF_8));
-    }
-
-    private static String sha256HexBytes(byte[] bytes) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(bytes);
-            return HexFormat.of().formatHex(digest);
-        } catch (Exception e) {
-            throw new IllegalStateException("Не удалось вычислить SHA-256", e);
-        }
+        return PayloadHasher.sha256Hex(input);
     }
 
     private static String nullToEmpty(String s) {
@@ -0,0 +1,284 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Пакетный приём inbound-сообщений ({@code POST /api/inbound/batch}).
+ * <p>
+ * Тело запроса — JSON-массив {@link InboundEnvelope} или NDJSON (по одному envelope на строку); формат определяется
+ * по первому непробельному символу. Тело читается потоково (Jackson streaming parser / построчно), целиком в памяти
+ * не держится: сообщения набираются в порции по {@code chunk-size} и обрабатываются
+ * {@link InboundProcessingService#processAll} — решения идемпотентности принимаются на порцию сразу,
+ * flow выполняются с ограниченным параллелизмом.
+ * <p>
+ * Ответ — NDJSON, по строке {@link ItemResult} на каждый элемент, в порядке элементов; строки порции
+ * отправляются клиенту сразу после её обработки. Ошибка элемента (некорректный JSON строки, не найден flow,
+ * ошибка flow — с сохранением в inbound DLQ) касается только этого элемента. Исключение — синтаксическая ошибка
+ * внутри JSON-массива: продолжить разбор после неё нельзя, поэтому на ней приём останавливается.
+ */
+@Singleton
+public class InboundBatchIngress {
+
+    private final InboundProcessingService processingService;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int maxItems;
+
+    @Inject
+    public InboundBatchIngress(InboundProcessingService processingService,
+                               ObjectMapper objectMapper,
+                               @Named(TaskExecutors.IO) ExecutorService executor,
+                               @Value("${integrationbroker.inbound.batch.chunk-size:100}") int chunkSize,
+                               @Value("${integrationbroker.inbound.batch.parallelism:4}") int parallelism,
+                               @Value("${integrationbroker.inbound.batch.max-items:100000}") int maxItems) {
+        this.processingService = processingService;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = Math.max(1, parallelism);
+        this.maxItems = Math.max(1, maxItems);
+    }
+
+    /**
+     * Executor, на котором выполняются flow пачки (и фоновая запись ответа в REST-слое).
+     */
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * Прочитать пачку из {@code in}, обработать и записать результаты в {@code out} (NDJSON).
+     *
+     * @param normalize нормализация envelope перед обработкой (например, correlationId)
+     * @param allow     допуск элемента (например, rate limit); недопущенный элемент получает outcome RATE_LIMITED
+     * @return итог пачки
+     */
+    public Summary process(InputStream in,
+                           OutputStream out,
+                           UnaryOperator<InboundEnvelope> normalize,
+                           Predicate<InboundEnvelope> allow) throws IOException {
+        Writer writer = new Writer(out, normalize, allow);
+        PushbackInputStream body = new PushbackInputStream(in, 1);
+        int first = firstNonWhitespace(body);
+        if (first == '[') {
+            readArray(body, writer);
+        } else if (first != -1) {
+            readLines(body, writer);
+        }
+        writer.flushChunk();
+        return new Summary(writer.total, writer.failed);
+    }
+
+    private void readArray(InputStream body, Writer writer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            parser.nextToken();
+            while (true) {
+                JsonToken token;
+                try {
+                    token = parser.nextToken();
+                } catch (IOException e) {
+                    writer.reject(null, "BAD_JSON", "Некорректный JSON в элементе массива: приём пачки остановлен");
+                    return;
+                }
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    return;
+                }
+                JsonNode node;
+                try {
+                    node = parser.readValueAsTree();
+                } catch (IOException e) {
+                    writer.reject(null, "BAD_JSON", "Некорректный JSON в элементе массива: приём пачки остановлен");
+                    return;
+                }
+                if (!writer.add(node)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void readLines(InputStream body, Writer writer) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (IOException e) {
+                writer.reject(null, "BAD_JSON", "Некорректный JSON в строке NDJSON");
+                continue;
+            }
+            if (!writer.add(node)) {
+                return;
+            }
+        }
+    }
+
+    private static int firstNonWhitespace(PushbackInputStream in) throws IOException {
+        int c;
+        do {
+            c = in.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        if (c != -1) {
+            in.unread(c);
+        }
+        return c;
+    }
+
+    /**
+     * Накопление порции, её обработка и запись результатов.
+     */
+    private final class Writer {
+        private final OutputStream out;
+        private final UnaryOperator<InboundEnvelope> normalize;
+        private final Predicate<InboundEnvelope> allow;
+        private final List<InboundEnvelope> chunk = new ArrayList<>();
+        private final List<Integer> chunkIndexes = new ArrayList<>();
+        private final List<ItemResult> ready = new ArrayList<>();
+        private int total;
+        private int failed;
+
+        private Writer(OutputStream out, UnaryOperator<InboundEnvelope> normalize, Predicate<InboundEnvelope> allow) {
+            this.out = out;
+            this.normalize = normalize;
+            this.allow = allow;
+        }
+
+        /**
+         * @return {@code false}, если достигнут {@code max-items} и чтение нужно прекратить
+         */
+        private boolean add(JsonNode node) throws IOException {
+            if (total >= maxItems) {
+                reject(null, "BATCH_TOO_LARGE", "Превышен максимальный размер пачки (" + maxItems + "): остальные элементы не приняты");
+                return false;
+            }
+            InboundEnvelope envelope;
+            try {
+                envelope = objectMapper.treeToValue(node, InboundEnvelope.class);
+                if (envelope == null || envelope.kind() == null || envelope.type() == null || envelope.type().isBlank()) {
+                    throw new IllegalArgumentException("envelope должен содержать kind и type");
+                }
+                if (normalize != null) {
+                    envelope = normalize.apply(envelope);
+                }
+            } catch (Exception e) {
+                reject(null, "BAD_REQUEST", SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+                return true;
+            }
+            if (allow != null && !allow.test(envelope)) {
+                int index = total++;
+                failed++;
+                ready.add(new ItemResult(index, "RATE_LIMITED", null, null, null, "RATE_LIMIT",
+                        "Превышен лимит входящих сообщений по источнику"));
+                return true;
+            }
+            chunkIndexes.add(total++);
+            chunk.add(envelope);
+            if (chunk.size() >= chunkSize) {
+                flushChunk();
+            }
+            return true;
+        }
+
+        private void reject(String idempotencyKey, String code, String message) throws IOException {
+            ready.add(new ItemResult(total++, "REJECTED", idempotencyKey, null, null, code, message));
+            failed++;
+            if (ready.size() >= chunkSize) {
+                flushChunk();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (!chunk.isEmpty()) {
+                List<InboundProcessingService.ItemOutcome> outcomes = processingService.processAll(chunk, executor, parallelism);
+                for (int k = 0; k < outcomes.size(); k++) {
+                    ItemResult r = toResult(chunkIndexes.get(k), outcomes.get(k));
+                    if (r.errorCode() != null) {
+                        failed++;
+                    }
+                    ready.add(r);
+                }
+                chunk.clear();
+                chunkIndexes.clear();
+            }
+            if (ready.isEmpty()) {
+                return;
+            }
+            ready.sort((a, b) -> Integer.compare(a.index(), b.index()));
+            for (ItemResult r : ready) {
+                out.write(objectMapper.writeValueAsBytes(r));
+                out.write('\n');
+            }
+            out.flush();
+            ready.clear();
+        }
+    }
+
+    private static ItemResult toResult(int index, InboundProcessingService.ItemOutcome outcome) {
+        if (outcome.result() != null) {
+            InboundProcessingService.ProcessingResult res = outcome.result();
+            return new ItemResult(index, res.outcome(), res.idempotencyKey(), res.output(), null, null, null);
+        }
+        RuntimeException error = outcome.error();
+        if (error instanceof InboundProcessingService.StoredInDlqException ex) {
+            return new ItemResult(index, "DLQ", ex.idempotencyKey(),
+                    Map.of("note", "Сообщение сохранено в inbound DLQ для последующего replay"),
+                    ex.dlqId(), ex.errorCode(), ex.safeMessage());
+        }
+        String safe = SensitiveDataSanitizer.sanitizeText(error == null ? null : error.getMessage());
+        if (error instanceof IllegalArgumentException) {
+            return new ItemResult(index, "REJECTED", null, null, null, "BAD_REQUEST", safe);
+        }
+        return new ItemResult(index, "FAILED", null, null, null, "INTERNAL_ERROR", safe);
+    }
+
+    /**
+     * Результат обработки элемента пачки (строка NDJSON ответа).
+     *
+     * @param index порядковый номер элемента в пачке (с 0)
+     */
+    @Serdeable
+    public record ItemResult(int index,
+                             String outcome,
+                             String idempotencyKey,
+                             Map<String, Object> output,
+                             Long dlqId,
+                             String errorCode,
+                             String errorMessage) {
+    }
+
+    /**
+     * Итог пачки.
+     */
+    public record Summary(int items, int failed) {
+    }
+}
@@ -0,0 +1,371 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновый replay inbound DLQ (задания replay).
+ * <p>
+ * В отличие от синхронного {@code POST /admin/dlq/replay-batch} (ограниченного {@code max-limit}), задание проходит
+ * всю выборку DLQ страницами с keyset-пагинацией по {@code id} ({@link InboundDlqService#listFullAfter}) и
+ * переигрывает каждую страницу через {@link InboundProcessingService#processAll}: решения идемпотентности пачкой,
+ * flow — параллельно (до {@code parallelism}), записи с общим {@code correlationId} — последовательно.
+ * <p>
+ * Пока у какого-либо REST-коннектора открыт circuit breaker ({@link RestOutboxService#openCircuits}), задание
+ * приостанавливается (состояние THROTTLED): replay в недоступную систему только переводил бы записи в DEAD.
+ * Отмена применяется между страницами — начатая страница дорабатывается.
+ * <p>
+ * Одновременно выполняется не более одного задания; последние {@code retained-jobs} завершённых доступны для просмотра.
+ */
+@Singleton
+public class InboundDlqReplayJobs {
+
+    private static final Logger log = LoggerFactory.getLogger(InboundDlqReplayJobs.class);
+
+    private final InboundDlqService inboundDlqService;
+    private final InboundProcessingService processingService;
+    private final RestOutboxService restOutboxService;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final int pageSize;
+    private final int defaultParallelism;
+    private final int maxParallelism;
+    private final long throttlePauseMs;
+    private final int retainedJobs;
+
+    private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>();
+    private Job active;
+
+    @Inject
+    public InboundDlqReplayJobs(InboundDlqService inboundDlqService,
+                                InboundProcessingService processingService,
+                                RestOutboxService restOutboxService,
+                                ObjectMapper objectMapper,
+                                @Named(TaskExecutors.IO) ExecutorService executor,
+                                @Value("${integrationbroker.admin.dlq.replay-job.page-size:200}") int pageSize,
+                                @Value("${integrationbroker.admin.dlq.replay-job.parallelism:4}") int defaultParallelism,
+                                @Value("${integrationbroker.admin.dlq.replay-job.max-parallelism:32}") int maxParallelism,
+                                @Value("${integrationbroker.admin.dlq.replay-job.throttle-pause-ms:2000}") long throttlePauseMs,
+                                @Value("${integrationbroker.admin.dlq.replay-job.retained-jobs:20}") int retainedJobs) {
+        this.inboundDlqService = inboundDlqService;
+        this.processingService = processingService;
+        this.restOutboxService = restOutboxService;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.pageSize = Math.max(1, pageSize);
+        this.maxParallelism = Math.max(1, maxParallelism);
+        this.defaultParallelism = Math.min(Math.max(1, defaultParallelism), this.maxParallelism);
+        this.throttlePauseMs = Math.max(10, throttlePauseMs);
+        this.retainedJobs = Math.max(1, retainedJobs);
+    }
+
+    /**
+     * Запустить задание replay.
+     *
+     * @param status      фильтр статуса (по умолчанию PENDING)
+     * @param type        фильтр type
+     * @param source      фильтр source/sourceSystem/system
+     * @param branchId    фильтр branchId
+     * @param maxRecords  максимум переигрываемых записей ({@code null} или ≤0 — без ограничения)
+     * @param parallelism параллелизм flow ({@code null} — по умолчанию из конфигурации)
+     * @return состояние запущенного задания
+     * @throws IllegalStateException если уже выполняется другое задание
+     */
+    public synchronized JobStatus start(String status,
+                                        String type,
+                                        String source,
+                                        String branchId,
+                                        Integer maxRecords,
+                                        Integer parallelism) {
+        if (active != null && !active.finished()) {
+            throw new IllegalStateException("Уже выполняется задание replay " + active.id);
+        }
+        String st = status == null || status.isBlank() ? InboundDlqService.Status.PENDING.name() : status.trim();
+        int par = parallelism == null ? defaultParallelism : Math.min(Math.max(1, parallelism), maxParallelism);
+        long max = maxRecords == null || maxRecords <= 0 ? Long.MAX_VALUE : maxRecords;
+        Job job = new Job(UUID.randomUUID().toString(), st, type, source, branchId, max, par);
+        jobs.put(job.id, job);
+        active = job;
+        evictFinished();
+        executor.execute(() -> run(job));
+        log.info("DLQ_REPLAY_JOB started jobId={} status={} type={} source={} branchId={} maxRecords={} parallelism={}",
+                job.id, st, type, source, branchId, maxRecords, par);
+        return job.status();
+    }
+
+    /**
+     * Состояние задания.
+     */
+    public synchronized Optional<JobStatus> get(String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null ? Optional.empty() : Optional.of(job.status());
+    }
+
+    /**
+     * Задания (последние сначала).
+     */
+    public synchronized List<JobStatus> list() {
+        List<JobStatus> out = new ArrayList<>(jobs.size());
+        for (Job job : jobs.values()) {
+            out.add(0, job.status());
+        }
+        return out;
+    }
+
+    /**
+     * Запросить отмену задания (применяется между страницами).
+     *
+     * @return состояние задания или пусто, если задание не найдено
+     */
+    public synchronized Optional<JobStatus> cancel(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        if (!job.finished()) {
+            job.cancelRequested = true;
+        }
+        return Optional.of(job.status());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Job job;
+        synchronized (this) {
+            job = active;
+        }
+        if (job != null) {
+            job.cancelRequested = true;
+        }
+    }
+
+    private void run(Job job) {
+        try {
+            long afterId = 0;
+            while (!job.cancelRequested && job.scanned.get() < job.maxRecords) {
+                if (!awaitClosedCircuits(job)) {
+                    break;
+                }
+                int limit = (int) Math.min(pageSize, job.maxRecords - job.scanned.get());
+                InboundDlqService.Page page = inboundDlqService.listFullAfter(job.filterStatus, job.type, job.source, job.branchId, afterId, limit);
+                replayPage(job, page.records());
+                afterId = page.lastId();
+                job.lastId = afterId;
+                if (page.last()) {
+                    break;
+                }
+            }
+            job.state = job.cancelRequested ? State.CANCELLED : State.COMPLETED;
+        } catch (RuntimeException e) {
+            job.error = SensitiveDataSanitizer.sanitizeText(e.getMessage());
+            job.state = State.FAILED;
+        } finally {
+            job.finishedAt = Instant.now();
+            log.info("DLQ_REPLAY_JOB finished jobId={} state={} scanned={} ok={} locked={} failed={} dead={}",
+                    job.id, job.state, job.scanned.get(), job.ok.get(), job.locked.get(), job.failed.get(), job.dead.get());
+        }
+    }
+
+    /**
+     * Ждать, пока все circuit breaker REST-коннекторов закрыты.
+     *
+     * @return {@code false}, если во время ожидания запрошена отмена
+     */
+    private boolean awaitClosedCircuits(Job job) {
+        List<String> open = restOutboxService == null ? List.of() : restOutboxService.openCircuits();
+        while (!open.isEmpty()) {
+            if (job.cancelRequested) {
+                return false;
+            }
+            if (job.state != State.THROTTLED) {
+                log.info("DLQ_REPLAY_JOB throttled jobId={} openCircuits={}", job.id, open);
+            }
+            job.state = State.THROTTLED;
+            job.openCircuits = open;
+            job.throttledMs.addAndGet(throttlePauseMs);
+            try {
+                Thread.sleep(throttlePauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.cancelRequested = true;
+                return false;
+            }
+            open = restOutboxService.openCircuits();
+        }
+        job.state = State.RUNNING;
+        job.openCircuits = List.of();
+        return !job.cancelRequested;
+    }
+
+    private void replayPage(Job job, List<InboundDlqService.DlqFull> records) {
+        List<InboundDlqService.DlqFull> pending = new ArrayList<>(records.size());
+        List<InboundEnvelope> envelopes = new ArrayList<>(records.size());
+        for (InboundDlqService.DlqFull full : records) {
+            job.scanned.incrementAndGet();
+            if (InboundDlqService.Status.DEAD.name().equals(full.record().status())) {
+                job.dead.incrementAndGet();
+                continue;
+            }
+            try {
+                envelopes.add(InboundDlqService.replayEnvelope(full));
+                pending.add(full);
+            } catch (RuntimeException e) {
+                replayFailed(job, full, e);
+            }
+        }
+        if (envelopes.isEmpty()) {
+            return;
+        }
+
+        List<InboundProcessingService.ItemOutcome> outcomes = processingService.processAll(envelopes, executor, job.parallelism);
+        for (int k = 0; k < pending.size(); k++) {
+            InboundDlqService.DlqFull full = pending.get(k);
+            InboundProcessingService.ItemOutcome outcome = outcomes.get(k);
+            if (outcome.error() != null) {
+                replayFailed(job, full, outcome.error());
+                continue;
+            }
+            InboundProcessingService.ProcessingResult res = outcome.result();
+            if ("LOCKED".equals(res.outcome())) {
+                job.locked.incrementAndGet();
+                continue;
+            }
+            try {
+                inboundDlqService.markReplayed(full.record().id(), objectMapper.writeValueAsString(res));
+                job.ok.incrementAndGet();
+            } catch (Exception e) {
+                replayFailed(job, full, e);
+            }
+        }
+    }
+
+    private void replayFailed(Job job, InboundDlqService.DlqFull full, Exception e) {
+        inboundDlqService.markReplayFailed(full.record().id(), "REPLAY_FAILED", SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+        if (full.record().attempts() + 1 >= full.record().maxAttempts()) {
+            job.dead.incrementAndGet();
+        } else {
+            job.failed.incrementAndGet();
+        }
+    }
+
+    private void evictFinished() {
+        Iterator<Job> it = jobs.values().iterator();
+        while (jobs.size() > retainedJobs && it.hasNext()) {
+            if (it.next().finished()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Состояние задания.
+     */
+    public enum State {
+        RUNNING,
+        /** Приостановлено: открыт circuit breaker REST-коннектора. */
+        THROTTLED,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+
+    private static final class Job {
+        private final String id;
+        private final String filterStatus;
+        private final String type;
+        private final String source;
+        private final String branchId;
+        private final long maxRecords;
+        private final int parallelism;
+        private final Instant startedAt = Instant.now();
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong ok = new AtomicLong();
+        private final AtomicLong locked = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong dead = new AtomicLong();
+        private final AtomicLong throttledMs = new AtomicLong();
+        private volatile State state = State.RUNNING;
+        private volatile boolean cancelRequested;
+        private volatile long lastId;
+        private volatile List<String> openCircuits = List.of();
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        private Job(String id, String filterStatus, String type, String source, String branchId, long maxRecords, int parallelism) {
+            this.id = id;
+            this.filterStatus = filterStatus;
+            this.type = type;
+            this.source = source;
+            this.branchId = branchId;
+            this.maxRecords = maxRecords;
+            this.parallelism = parallelism;
+        }
+
+        private boolean finished() {
+            return finishedAt != null;
+        }
+
+        private JobStatus status() {
+            Instant end = finishedAt;
+            long elapsedMs = Math.max(1, (end == null ? Instant.now() : end).toEpochMilli() - startedAt.toEpochMilli());
+            long done = scanned.get();
+            return new JobStatus(id, state.name(), cancelRequested, filterStatus, type, source, branchId,
+                    maxRecords == Long.MAX_VALUE ? null : maxRecords, parallelism,
+                    startedAt.toString(), end == null ? null : end.toString(),
+                    done, ok.get(), locked.get(), failed.get(), dead.get(), lastId,
+                    done * 1000.0 / elapsedMs, throttledMs.get(), openCircuits, error);
+        }
+    }
+
+    /**
+     * Состояние задания replay для Admin API.
+     *
+     * @param scanned       просмотрено записей DLQ
+     * @param ok            успешно переиграно (PROCESSED/SKIP_COMPLETED)
+     * @param lastId        курсор keyset-пагинации (id последней прочитанной записи)
+     * @param recordsPerSec средняя скорость с начала задания
+     * @param throttledMs   суммарное время приостановки из-за открытых circuit breaker
+     */
+    @Serdeable
+    public record JobStatus(String jobId,
+                            String state,
+                            boolean cancelRequested,
+                            String status,
+                            String type,
+                            String source,
+                            String branchId,
+                            Long maxRecords,
+                            int parallelism,
+                            String startedAt,
+                            String finishedAt,
+                            long scanned,
+                            long ok,
+                            long locked,
+                            long failed,
+                            long dead,
+                            long lastId,
+                            double recordsPerSec,
+                            long throttledMs,
+                            List<String> openCircuits,
+                            String error) {
+    }
+}
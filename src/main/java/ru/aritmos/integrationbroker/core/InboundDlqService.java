@@ -16,9 +16,9 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
 /**
  * Сервис Inbound DLQ (Dead Letter Queue) для Integration Broker.
@@ -126,8 +126,8 @@ public class InboundDlqService {
 
         int maxAtt = Math.min(Math.max(1, maxAttempts), 100);
 
-        String sql = "INSERT INTO ib_inbound_dlq (status, created_at, updated_at, kind, type, message_id, correlation_id, branch_id, user_id, headers_json, payload_json, source_meta_json, idem_key, attempts, max_attempts, last_error_at, error_code, error_message) " +
-                "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+        String sql = "INSERT INTO ib_inbound_dlq (status, created_at, updated_at, kind, type, message_id, correlation_id, branch_id, user_id, headers_json, payload_json, source_meta_json, idem_key, attempts, max_attempts, last_error_at, error_code, error_message, source) " +
+                "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
 
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -149,6 +149,7 @@ public class InboundDlqService {
             ps.setTimestamp(16, Timestamp.from(now));
             ps.setString(17, safeShort(errorCode, 64));
             ps.setString(18, safeShort(errorMessage, 800));
+            ps.setString(19, safeShort(sourceOf(envelope.sourceMeta()), 128));
             ps.executeUpdate();
 
             try (ResultSet rs = ps.getGeneratedKeys()) {
@@ -184,63 +185,133 @@ public class InboundDlqService {
                 if (!rs.next()) {
                     return null;
                 }
-
-                String status = rs.getString(1);
-                Timestamp createdAt = rs.getTimestamp(2);
-                Timestamp updatedAt = rs.getTimestamp(3);
-                String kind = rs.getString(4);
-                String type = rs.getString(5);
-                String messageId = rs.getString(6);
-                String correlationId = rs.getString(7);
-                String branchId = rs.getString(8);
-                String userId = rs.getString(9);
-                String idemKey = rs.getString(10);
-                int attempts = rs.getInt(11);
-                int maxAttempts = rs.getInt(12);
-                Timestamp lastErrorAt = rs.getTimestamp(13);
-                String errorCode = rs.getString(14);
-                String errorMessage = rs.getString(15);
-                Timestamp replayedAt = rs.getTimestamp(16);
-
-                String headersJson = rs.getString(17);
-                String payloadJson = rs.getString(18);
-                String sourceMetaJson = rs.getString(19);
-                String replayResultJson = rs.getString(20);
-
-                DlqRecord record = new DlqRecord(
-                        id,
-                        status,
-                        createdAt == null ? null : createdAt.toInstant().toString(),
-                        updatedAt == null ? null : updatedAt.toInstant().toString(),
-                        kind,
-                        type,
-                        messageId,
-                        correlationId,
-                        branchId,
-                        userId,
-                        idemKey,
-                        attempts,
-                        maxAttempts,
-                        lastErrorAt == null ? null : lastErrorAt.toInstant().toString(),
-                        errorCode,
-                        errorMessage,
-                        replayedAt == null ? null : replayedAt.toInstant().toString()
-                );
-
-                Map<String, String> headers = fromJsonSafe(headersJson, new TypeReference<Map<String, String>>() {
-                });
-                JsonNode payload = fromJsonSafe(payloadJson, JsonNode.class);
-                Map<String, Object> sourceMeta = fromJsonSafe(sourceMetaJson, new TypeReference<Map<String, Object>>() {
-                });
-
-                return new DlqFull(record, headers, payload, sourceMeta, replayResultJson);
+                return readFull(id, rs, 1);
             }
         } catch (Exception e) {
             return null;
         }
     }
 
+    private DlqFull readFull(long id, ResultSet rs, int first) throws java.sql.SQLException {
+        String status = rs.getString(first);
+        Timestamp createdAt = rs.getTimestamp(first + 1);
+        Timestamp updatedAt = rs.getTimestamp(first + 2);
+        String kind = rs.getString(first + 3);
+        String type = rs.getString(first + 4);
+        String messageId = rs.getString(first + 5);
+        String correlationId = rs.getString(first + 6);
+        String branchId = rs.getString(first + 7);
+        String userId = rs.getString(first + 8);
+        String idemKey = rs.getString(first + 9);
+        int attempts = rs.getInt(first + 10);
+        int maxAttempts = rs.getInt(first + 11);
+        Timestamp lastErrorAt = rs.getTimestamp(first + 12);
+        String errorCode = rs.getString(first + 13);
+        String errorMessage = rs.getString(first + 14);
+        Timestamp replayedAt = rs.getTimestamp(first + 15);
+
+        String headersJson = rs.getString(first + 16);
+        String payloadJson = rs.getString(first + 17);
+        String sourceMetaJson = rs.getString(first + 18);
+        String replayResultJson = rs.getString(first + 19);
+
+        DlqRecord record = new DlqRecord(
+                id,
+                status,
+                createdAt == null ? null : createdAt.toInstant().toString(),
+                updatedAt == null ? null : updatedAt.toInstant().toString(),
+                kind,
+                type,
+                messageId,
+                correlationId,
+                branchId,
+                userId,
+                idemKey,
+                attempts,
+                maxAttempts,
+                lastErrorAt == null ? null : lastErrorAt.toInstant().toString(),
+                errorCode,
+                errorMessage,
+                replayedAt == null ? null : replayedAt.toInstant().toString()
+        );
+
+        Map<String, String> headers = fromJsonSafe(headersJson, new TypeReference<Map<String, String>>() {
+        });
+        JsonNode payload = fromJsonSafe(payloadJson, JsonNode.class);
+        Map<String, Object> sourceMeta = fromJsonSafe(sourceMetaJson, new TypeReference<Map<String, Object>>() {
+        });
+
+        return new DlqFull(record, headers, payload, sourceMeta, replayResultJson);
+    }
 
+    /**
+     * Сообщение для повторной обработки записи DLQ (ручной replay и фоновые задания replay).
+     * <p>
+     * Заголовки санитизируются повторно, исходные метаданные источника сохраняются и дополняются маркером
+     * {@code dlqReplayId}: повторная ошибка при replay не создаёт новую DLQ-запись.
+     */
+    public static InboundEnvelope replayEnvelope(DlqFull full) {
+        long id = full.record().id();
+        Map<String, Object> meta = full.sourceMeta() == null ? new HashMap<>() : new HashMap<>(full.sourceMeta());
+        meta.put("dlqReplayId", id);
+        return new InboundEnvelope(
+                InboundEnvelope.Kind.valueOf(full.record().kind()),
+                full.record().type(),
+                full.payload(),
+                SensitiveDataSanitizer.sanitizeHeadersForAdminProxy(full.headers()),
+                full.record().messageId(),
+                full.record().correlationId(),
+                full.record().branchId(),
+                full.record().userId(),
+                meta
+        );
+    }
+
+    /**
+     * Страница полных записей DLQ для фонового replay: keyset-пагинация по {@code id} (без OFFSET),
+     * записи с {@code id > afterId} в порядке возрастания id; курсор для следующей страницы — {@link Page#lastId()}.
+     * <p>
+     * Ошибка БД не маскируется пустой последней страницей: бросается {@link IllegalStateException}, чтобы задание
+     * replay завершилось FAILED с текущим курсором, а не COMPLETED.
+     */
+    public Page listFullAfter(String status, String type, String source, String branchId, long afterId, int limit) {
+        Filter filter = new Filter(status, type, source, branchId, null, null);
+        filter.conditions.add(0, "id>?");
+        filter.params.add(0, afterId);
+        int lim = Math.max(1, limit);
+        String sql = "SELECT id, status, created_at, updated_at, kind, type, message_id, correlation_id, branch_id, user_id, idem_key, attempts, max_attempts, last_error_at, error_code, error_message, replayed_at, headers_json, payload_json, source_meta_json, replay_result_json " +
+                "FROM ib_inbound_dlq" + filter.where() + " ORDER BY id ASC LIMIT ?";
+
+        List<DlqFull> out = new ArrayList<>();
+        long lastId = afterId;
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            int idx = filter.bind(ps, 1);
+            ps.setInt(idx, lim);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lastId = rs.getLong(1);
+                    out.add(readFull(lastId, rs, 2));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("DLQ page query failed: status={}, type={}, source={}, branchId={}, afterId={}",
+                    filter.status, filter.type, filter.source, filter.branchId, afterId, e);
+            throw new IllegalStateException("Не удалось прочитать страницу DLQ после id=" + afterId + ": "
+                    + SensitiveDataSanitizer.sanitizeText(e.getMessage()), e);
+        }
+        return new Page(out, lastId, out.size() < lim);
+    }
+
+    /**
+     * Страница keyset-пагинации.
+     *
+     * @param records записи страницы
+     * @param lastId  курсор для следующей страницы (id последней прочитанной записи)
+     * @param last    {@code true}, если записей дальше нет
+     */
+    public record Page(List<DlqFull> records, long lastId, boolean last) {
+    }
 
     public String sanitizedPayloadPreview(long id, int maxLen) {
         DlqFull full = getFull(id);
@@ -262,57 +333,58 @@ public class InboundDlqService {
 
     public int markIgnoredBatch(String status, String type, String source, String branchId, int limit, String reason) {
         int lim = Math.min(Math.max(1, limit), 200);
-        List<DlqRecord> records = list(status, type, source, branchId, null, lim);
-        int changed = 0;
         String msg = safeShort(reason == null ? "ignored by admin" : reason, 800);
         Instant now = Instant.now();
 
-        for (DlqRecord rec : records) {
-            if (!Status.PENDING.name().equals(rec.status()) && !Status.DEAD.name().equals(rec.status()) && !Status.REPLAYED.name().equals(rec.status())) {
-                continue;
-            }
-            try (Connection c = dataSource.getConnection();
-                 PreparedStatement ps = c.prepareStatement(
-                         "UPDATE ib_inbound_dlq SET status=?, updated_at=?, last_error_at=?, error_code=?, error_message=? WHERE id=?")) {
-                ps.setString(1, Status.DEAD.name());
-                ps.setTimestamp(2, Timestamp.from(now));
-                ps.setTimestamp(3, Timestamp.from(now));
-                ps.setString(4, "IGNORED_BY_ADMIN");
-                ps.setString(5, msg);
-                ps.setLong(6, rec.id());
-                changed += ps.executeUpdate();
-            } catch (Exception ignore) {
-                // no-op
-            }
+        Filter filter = new Filter(status, type, source, branchId, null, null);
+        filter.conditions.add("status IN (?,?,?)");
+        filter.params.add(Status.PENDING.name());
+        filter.params.add(Status.DEAD.name());
+        filter.params.add(Status.REPLAYED.name());
+        String sql = "UPDATE ib_inbound_dlq SET status=?, updated_at=?, last_error_at=?, error_code=?, error_message=? " +
+                "WHERE id IN (SELECT id FROM ib_inbound_dlq" + filter.where() + " ORDER BY updated_at DESC LIMIT ?)";
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, Status.DEAD.name());
+            ps.setTimestamp(2, Timestamp.from(now));
+            ps.setTimestamp(3, Timestamp.from(now));
+            ps.setString(4, "IGNORED_BY_ADMIN");
+            ps.setString(5, msg);
+            int idx = filter.bind(ps, 6);
+            ps.setInt(idx, lim);
+            return ps.executeUpdate();
+        } catch (Exception e) {
+            log.warn("DLQ mark-ignored failed: status={}, type={}, source={}, branchId={}, limit={}", status, type, source, branchId, lim, e);
+            return 0;
         }
-        return changed;
     }
 
 
     public int requeueIgnoredBatch(String type, String source, String branchId, String ignoredReason, int limit, String reason) {
         int lim = Math.min(Math.max(1, limit), 200);
-        List<DlqRecord> records = list(Status.DEAD.name(), type, source, branchId, ignoredReason, lim);
-        int changed = 0;
         Instant now = Instant.now();
-        for (DlqRecord rec : records) {
-            if (!Status.DEAD.name().equals(rec.status()) || !"IGNORED_BY_ADMIN".equals(rec.errorCode())) {
-                continue;
-            }
-            try (Connection c = dataSource.getConnection();
-                 PreparedStatement ps = c.prepareStatement(
-                         "UPDATE ib_inbound_dlq SET status=?, updated_at=?, error_code=?, error_message=?, last_error_at=?, replayed_at=NULL WHERE id=?")) {
-                ps.setString(1, Status.PENDING.name());
-                ps.setTimestamp(2, Timestamp.from(now));
-                ps.setString(3, "REQUEUED_BY_ADMIN");
-                ps.setString(4, safeShort(reason == null ? "requeued ignored by admin" : reason, 800));
-                ps.setTimestamp(5, Timestamp.from(now));
-                ps.setLong(6, rec.id());
-                changed += ps.executeUpdate();
-            } catch (Exception ignore) {
-                // no-op
-            }
+
+        Filter filter = new Filter(Status.DEAD.name(), type, source, branchId, ignoredReason, null);
+        if (filter.ignoredReason == null) {
+            filter.conditions.add("error_code=?");
+            filter.params.add("IGNORED_BY_ADMIN");
+        }
+        String sql = "UPDATE ib_inbound_dlq SET status=?, updated_at=?, error_code=?, error_message=?, last_error_at=?, replayed_at=NULL " +
+                "WHERE id IN (SELECT id FROM ib_inbound_dlq" + filter.where() + " ORDER BY updated_at DESC LIMIT ?)";
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, Status.PENDING.name());
+            ps.setTimestamp(2, Timestamp.from(now));
+            ps.setString(3, "REQUEUED_BY_ADMIN");
+            ps.setString(4, safeShort(reason == null ? "requeued ignored by admin" : reason, 800));
+            ps.setTimestamp(5, Timestamp.from(now));
+            int idx = filter.bind(ps, 6);
+            ps.setInt(idx, lim);
+            return ps.executeUpdate();
+        } catch (Exception e) {
+            log.warn("DLQ requeue-ignored failed: type={}, source={}, branchId={}, ignoredReason={}, limit={}", type, source, branchId, ignoredReason, lim, e);
+            return 0;
         }
-        return changed;
     }
 
 
@@ -381,58 +453,64 @@ public class InboundDlqService {
                                 String ignoredReason,
                                 String correlationId,
                                 int limit) {
-        String normalizedStatus = normalizeFilter(status);
-        String normalizedType = normalizeFilter(type);
-        String normalizedSource = normalizeFilter(source);
-        String normalizedBranchId = normalizeFilter(branchId);
-        String normalizedIgnoredReason = normalizeFilter(ignoredReason);
-        String normalizedCorrelationId = normalizeFilter(correlationId);
+        return page(status, type, source, branchId, ignoredReason, correlationId, null, limit).items();
+    }
 
+    /**
+     * Страница списка DLQ (keyset по {@code (updated_at, id)}, см. {@link KeysetCursor}).
+     *
+     * @param cursor курсор из предыдущей страницы ({@code null} — первая страница)
+     * @throws IllegalArgumentException курсор повреждён
+     */
+    public KeysetCursor.Slice<DlqRecord> page(String status,
+                                              String type,
+                                              String source,
+                                              String branchId,
+                                              String ignoredReason,
+                                              String correlationId,
+                                              String cursor,
+                                              int limit) {
         int lim = Math.min(Math.max(1, limit), 200);
-        boolean filterStatus = normalizedStatus != null;
-        boolean filterType = normalizedType != null;
-        boolean filterBranch = normalizedBranchId != null;
-        boolean filterSource = normalizedSource != null;
-        boolean filterIgnoredReason = normalizedIgnoredReason != null;
-        boolean filterCorrelation = normalizedCorrelationId != null;
-
-        StringBuilder sql = new StringBuilder("SELECT id, status, created_at, updated_at, kind, type, message_id, correlation_id, branch_id, user_id, idem_key, attempts, max_attempts, last_error_at, error_code, error_message, replayed_at, source_meta_json FROM ib_inbound_dlq");
-        List<String> conditions = new ArrayList<>();
-        if (filterStatus) {
-            conditions.add("status=?");
-        }
-        if (filterType) {
-            conditions.add("type=?");
-        }
-        if (filterBranch) {
-            conditions.add("branch_id=?");
-        }
-        if (filterCorrelation) {
-            conditions.add("correlation_id=?");
+        KeysetCursor.Position after = KeysetCursor.decodeNumeric(cursor);
+        Filter filter = new Filter(status, type, source, branchId, ignoredReason, correlationId);
+        try {
+            return KeysetCursor.Slice.of(fetch(filter, after, lim + 1), lim, DlqRecord::updatedAt, r -> String.valueOf(r.id()));
+        } catch (Exception e) {
+            log.warn("DLQ list query failed: status={}, type={}, source={}, branchId={}, ignoredReason={}, correlationId={}, limit={}",
+                    filter.status, filter.type, filter.source, filter.branchId, filter.ignoredReason, filter.correlationId, lim, e);
+            return new KeysetCursor.Slice<>(List.of(), null);
         }
-        if (!conditions.isEmpty()) {
-            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+    }
+
+    /**
+     * Потоково выгрузить все записи DLQ по фильтрам (в порядке списка), не загружая выборку в память целиком.
+     *
+     * @return количество выгруженных записей
+     */
+    public long export(String status,
+                       String type,
+                       String source,
+                       String branchId,
+                       String ignoredReason,
+                       String correlationId,
+                       java.util.function.Consumer<? super DlqRecord> sink) {
+        return KeysetCursor.walk(
+                (after, lim) -> fetch(new Filter(status, type, source, branchId, ignoredReason, correlationId), after, lim),
+                DlqRecord::updatedAt, r -> String.valueOf(r.id()), sink);
+    }
+
+    private List<DlqRecord> fetch(Filter filter, KeysetCursor.Position after, int limit) throws java.sql.SQLException {
+        if (after != null) {
+            filter.after(after);
         }
-        sql.append(" ORDER BY updated_at DESC LIMIT ?");
+        String sql = "SELECT id, status, created_at, updated_at, kind, type, message_id, correlation_id, branch_id, user_id, idem_key, attempts, max_attempts, last_error_at, error_code, error_message, replayed_at FROM ib_inbound_dlq"
+                + filter.where() + " ORDER BY updated_at DESC, id DESC LIMIT ?";
 
         List<DlqRecord> out = new ArrayList<>();
         try (Connection c = dataSource.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql.toString())) {
-
-            int idx = 1;
-            if (filterStatus) {
-                ps.setString(idx++, normalizedStatus);
-            }
-            if (filterType) {
-                ps.setString(idx++, normalizedType);
-            }
-            if (filterBranch) {
-                ps.setString(idx++, normalizedBranchId);
-            }
-            if (filterCorrelation) {
-                ps.setString(idx++, normalizedCorrelationId);
-            }
-            ps.setInt(idx, lim);
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            int idx = filter.bind(ps, 1);
+            ps.setInt(idx, limit);
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -453,18 +531,6 @@ public class InboundDlqService {
                     String errorCode = rs.getString(15);
                     String errorMessage = rs.getString(16);
                     Timestamp replayedAt = rs.getTimestamp(17);
-                    String sourceMetaJson = rs.getString(18);
-
-                    if (filterSource && !Objects.equals(normalizedSource, extractSource(sourceMetaJson))) {
-                        continue;
-                    }
-                    if (filterIgnoredReason) {
-                        boolean ignoredByAdmin = "IGNORED_BY_ADMIN".equals(errorCode);
-                        String msg = errorMessage == null ? "" : errorMessage;
-                        if (!ignoredByAdmin || !msg.toLowerCase(java.util.Locale.ROOT).contains(normalizedIgnoredReason.toLowerCase(java.util.Locale.ROOT))) {
-                            continue;
-                        }
-                    }
 
                     out.add(new DlqRecord(
                             id, st,
@@ -481,9 +547,6 @@ public class InboundDlqService {
                     ));
                 }
             }
-        } catch (Exception e) {
-            log.warn("DLQ list query failed: status={}, type={}, source={}, branchId={}, ignoredReason={}, correlationId={}, limit={}",
-                    normalizedStatus, normalizedType, normalizedSource, normalizedBranchId, normalizedIgnoredReason, normalizedCorrelationId, lim, e);
         }
         return out;
     }
@@ -496,9 +559,11 @@ public class InboundDlqService {
         return trimmed.isEmpty() ? null : trimmed;
     }
 
-    private String extractSource(String sourceMetaJson) {
-        Map<String, Object> sourceMeta = fromJsonSafe(sourceMetaJson, new TypeReference<Map<String, Object>>() {
-        });
+    /**
+     * Источник сообщения по sourceMeta ({@code source}, иначе {@code sourceSystem}, иначе {@code system}) —
+     * значение колонки {@code source}.
+     */
+    public static String sourceOf(Map<String, ?> sourceMeta) {
         if (sourceMeta == null || sourceMeta.isEmpty()) {
             return null;
         }
@@ -512,6 +577,86 @@ public class InboundDlqService {
         return source == null ? null : String.valueOf(source);
     }
 
+    /**
+     * Фильтры Admin API, выполняемые в SQL (колонка {@code source} заполняется при {@link #put}, см. миграцию V8).
+     * Пустые значения не фильтруют; значения обрезаются по краям.
+     */
+    private static final class Filter {
+        private final String status;
+        private final String type;
+        private final String source;
+        private final String branchId;
+        private final String ignoredReason;
+        private final String correlationId;
+        private final List<String> conditions = new ArrayList<>();
+        private final List<Object> params = new ArrayList<>();
+        private KeysetCursor.Position after;
+
+        private Filter(String status, String type, String source, String branchId, String ignoredReason, String correlationId) {
+            this.status = normalizeFilter(status);
+            this.type = normalizeFilter(type);
+            this.source = normalizeFilter(source);
+            this.branchId = normalizeFilter(branchId);
+            this.ignoredReason = normalizeFilter(ignoredReason);
+            this.correlationId = normalizeFilter(correlationId);
+            add("status=?", this.status);
+            add("type=?", this.type);
+            add("source=?", this.source);
+            add("branch_id=?", this.branchId);
+            add("correlation_id=?", this.correlationId);
+            if (this.ignoredReason != null) {
+                // Ignored-записи: поиск причины без учёта регистра по тексту error_message.
+                conditions.add("error_code=?");
+                params.add("IGNORED_BY_ADMIN");
+                conditions.add("LOWER(error_message) LIKE ? ESCAPE '\\'");
+                params.add("%" + escapeLike(this.ignoredReason.toLowerCase(java.util.Locale.ROOT)) + "%");
+            }
+        }
+
+        /**
+         * Добавить условие keyset-курсора «строго после позиции»; условие и его параметры формирует
+         * {@link KeysetCursor.Position}, они идут последними.
+         */
+        private void after(KeysetCursor.Position position) {
+            this.after = position;
+        }
+
+        private void add(String condition, String value) {
+            if (value != null) {
+                conditions.add(condition);
+                params.add(value);
+            }
+        }
+
+        private String where() {
+            List<String> all = conditions;
+            if (after != null) {
+                all = new ArrayList<>(conditions);
+                all.add(KeysetCursor.Position.condition("id"));
+            }
+            return all.isEmpty() ? "" : " WHERE " + String.join(" AND ", all);
+        }
+
+        /**
+         * @return индекс следующего параметра
+         */
+        private int bind(PreparedStatement ps, int first) throws java.sql.SQLException {
+            int idx = first;
+            for (Object p : params) {
+                if (p instanceof Long l) {
+                    ps.setLong(idx++, l);
+                } else {
+                    ps.setString(idx++, (String) p);
+                }
+            }
+            return after == null ? idx : after.bind(ps, idx, true);
+        }
+
+        private static String escapeLike(String s) {
+            return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        }
+    }
+
     /**
      * Зафиксировать неуспешную попытку replay.
      * <p>
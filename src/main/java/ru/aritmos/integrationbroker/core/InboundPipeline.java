@@ -0,0 +1,353 @@
+package ru.aritmos.integrationbroker.core;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Асинхронный приём inbound-сообщений ({@code integrationbroker.inbound.async.enabled=true}).
+ * <p>
+ * REST ingress только проверяет сообщение ({@link InboundProcessingService#admit}) и ставит его в очередь,
+ * а идемпотентность, enrichment, Groovy flow и запись в outbox выполняются воркерами пайплайна — поток HTTP-сервера
+ * не ждёт медленных flow.
+ * <ul>
+ *   <li>пайплайн разбит на {@code partitions} партиций, у каждой своя ограниченная очередь и свой поток;</li>
+ *   <li>партиция выбирается по {@code branchId} (или {@code correlationId}, см. {@code partition-key}); если ключа
+ *   нет — по ключу идемпотентности. Сообщения одного ключа обрабатываются строго по порядку приёма,
+ *   разные ключи — параллельно;</li>
+ *   <li>при переполнении очереди партиции сообщение не принимается (клиент получает отказ и может повторить);</li>
+ *   <li>статус обработки хранится в памяти узла ограниченное время ({@link #status}).</li>
+ * </ul>
+ * Важно: очередь не персистентна. При остановке узел дообрабатывает принятые сообщения (до
+ * {@code shutdown-grace-ms}); сообщения, оставшиеся в очереди после этого, теряются и не фиксируются в идемпотентности,
+ * поэтому их повторная доставка клиентом будет обработана.
+ * <p>
+ * Java 17 не даёт виртуальных потоков, поэтому у каждой партиции один платформенный поток.
+ */
+@Singleton
+public class InboundPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(InboundPipeline.class);
+
+    /**
+     * Ключ распределения сообщений по партициям.
+     */
+    public enum PartitionKey {
+        BRANCH,
+        CORRELATION
+    }
+
+    private final InboundProcessingService processingService;
+    private final boolean enabled;
+    private final int partitions;
+    private final int partitionCapacity;
+    private final PartitionKey partitionKey;
+    private final long statusTtlSec;
+    private final long shutdownGraceMs;
+    private final TtlCache<String, InboundStatus> statuses;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAccumulator queueWaitMaxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile Partition[] lanes;
+    private volatile boolean stopping;
+
+    @Inject
+    public InboundPipeline(InboundProcessingService processingService,
+                           @Value("${integrationbroker.inbound.async.enabled:false}") boolean enabled,
+                           @Value("${integrationbroker.inbound.async.partitions:8}") int partitions,
+                           @Value("${integrationbroker.inbound.async.partition-key:branch}") String partitionKey,
+                           @Value("${integrationbroker.inbound.async.queue-capacity:10000}") int queueCapacity,
+                           @Value("${integrationbroker.inbound.async.status-ttl-sec:900}") long statusTtlSec,
+                           @Value("${integrationbroker.inbound.async.status-max-entries:100000}") int statusMaxEntries,
+                           @Value("${integrationbroker.inbound.async.shutdown-grace-ms:10000}") long shutdownGraceMs) {
+        this.processingService = processingService;
+        this.enabled = enabled;
+        this.partitions = Math.max(1, partitions);
+        this.partitionCapacity = Math.max(1, queueCapacity / this.partitions);
+        this.partitionKey = parsePartitionKey(partitionKey);
+        this.statusTtlSec = Math.max(1, statusTtlSec);
+        this.shutdownGraceMs = Math.max(0, shutdownGraceMs);
+        this.statuses = new TtlCache<>(Clock.systemUTC(), Math.max(1, statusMaxEntries));
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Принять сообщение в очередь.
+     *
+     * @return результат приёма; {@code accepted=false} — очередь партиции переполнена (или узел останавливается)
+     * @throws IllegalArgumentException если сообщение не прошло предварительную проверку (flow не найден и т.п.)
+     */
+    public Admission submit(InboundEnvelope envelope) {
+        String key = processingService.admit(envelope);
+        if (stopping) {
+            rejected.increment();
+            return new Admission(false, key);
+        }
+        Partition lane = lanes()[partitionOf(envelope, key)];
+        String now = Instant.now().toString();
+        // QUEUED пишется до offer: воркер может взять задачу сразу, и его PROCESSING не должен быть перезаписан.
+        // При отказе восстанавливается прежний статус ключа (например, итог предыдущей доставки).
+        InboundStatus previous = statuses.get(key).orElse(null);
+        statuses.put(key, new InboundStatus(key, "QUEUED", now, now, null, null, null, null, null), statusTtlSec);
+        if (!lane.queue.offer(new Task(envelope, key, now, System.nanoTime()))) {
+            if (previous != null) {
+                statuses.put(key, previous, statusTtlSec);
+            } else {
+                statuses.invalidate(key);
+            }
+            rejected.increment();
+            return new Admission(false, key);
+        }
+        accepted.increment();
+        return new Admission(true, key);
+    }
+
+    /**
+     * Статус сообщения, принятого этим узлом (пока запись не истекла по {@code status-ttl-sec}).
+     */
+    public Optional<InboundStatus> status(String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return Optional.empty();
+        }
+        return statuses.get(idempotencyKey.trim());
+    }
+
+    int partitionOf(InboundEnvelope envelope, String idempotencyKey) {
+        String branch = trimToNull(envelope.branchId());
+        String correlation = trimToNull(envelope.correlationId());
+        String key = partitionKey == PartitionKey.CORRELATION
+                ? firstNonNull(correlation, branch, idempotencyKey)
+                : firstNonNull(branch, correlation, idempotencyKey);
+        return key == null ? 0 : Math.floorMod(key.hashCode(), partitions);
+    }
+
+    private void drain(Partition lane) {
+        while (true) {
+            Task task;
+            try {
+                task = lane.queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (task == null) {
+                if (stopping) {
+                    return;
+                }
+                continue;
+            }
+            execute(task);
+        }
+    }
+
+    private void execute(Task task) {
+        long waited = System.nanoTime() - task.enqueuedNanos();
+        queueWaitNanos.add(waited);
+        queueWaitMaxNanos.accumulate(waited);
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(waited);
+        String key = task.idempotencyKey();
+        statuses.put(key, new InboundStatus(key, "PROCESSING", task.acceptedAt(), Instant.now().toString(), waitedMs,
+                null, null, null, null), statusTtlSec);
+        inFlight.incrementAndGet();
+        InboundStatus done;
+        boolean ok = false;
+        try {
+            InboundProcessingService.ProcessingResult res = processingService.process(task.envelope());
+            ok = true;
+            done = new InboundStatus(key, res.outcome(), task.acceptedAt(), Instant.now().toString(), waitedMs,
+                    res.output(), null, null, null);
+        } catch (InboundProcessingService.StoredInDlqException ex) {
+            done = new InboundStatus(key, "DLQ", task.acceptedAt(), Instant.now().toString(), waitedMs,
+                    null, ex.dlqId(), ex.errorCode(), ex.safeMessage());
+        } catch (IllegalArgumentException ex) {
+            done = new InboundStatus(key, "REJECTED", task.acceptedAt(), Instant.now().toString(), waitedMs,
+                    null, null, "BAD_REQUEST", SensitiveDataSanitizer.sanitizeText(ex.getMessage()));
+        } catch (Exception ex) {
+            String safe = SensitiveDataSanitizer.sanitizeText(ex.getMessage());
+            log.warn("[INBOUND] ошибка асинхронной обработки key={}: {}", key, safe);
+            done = new InboundStatus(key, "FAILED", task.acceptedAt(), Instant.now().toString(), waitedMs,
+                    null, null, "INTERNAL_ERROR", safe);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        statuses.put(key, done, statusTtlSec);
+        (ok ? completed : failed).increment();
+    }
+
+    private Partition[] lanes() {
+        Partition[] current = lanes;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (lanes == null) {
+                Partition[] created = new Partition[partitions];
+                for (int i = 0; i < partitions; i++) {
+                    Partition lane = new Partition(new ArrayBlockingQueue<>(partitionCapacity));
+                    Thread t = new Thread(() -> drain(lane), "ib-inbound-" + i);
+                    t.setDaemon(true);
+                    lane.worker = t;
+                    created[i] = lane;
+                }
+                for (Partition lane : created) {
+                    lane.worker.start();
+                }
+                lanes = created;
+            }
+            return lanes;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stopping = true;
+        Partition[] current = lanes;
+        if (current == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + shutdownGraceMs;
+        for (Partition lane : current) {
+            try {
+                lane.worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int lost = 0;
+        for (Partition lane : current) {
+            lane.worker.interrupt();
+            lost += lane.queue.size();
+        }
+        if (lost > 0) {
+            log.warn("[INBOUND] остановка: {} принятых сообщений не обработано", lost);
+        }
+    }
+
+    /**
+     * Снимок метрик пайплайна (gauge-значения на момент вызова).
+     */
+    public Snapshot snapshot() {
+        Partition[] current = lanes;
+        int depth = 0;
+        int maxDepth = 0;
+        if (current != null) {
+            for (Partition lane : current) {
+                int size = lane.queue.size();
+                depth += size;
+                maxDepth = Math.max(maxDepth, size);
+            }
+        }
+        long done = completed.sum() + failed.sum();
+        return new Snapshot(
+                enabled,
+                partitions,
+                partitionCapacity * partitions,
+                depth,
+                maxDepth,
+                inFlight.get(),
+                accepted.sum(),
+                rejected.sum(),
+                completed.sum(),
+                failed.sum(),
+                done == 0 ? 0.0 : queueWaitNanos.sum() / 1_000_000.0 / done,
+                queueWaitMaxNanos.get() / 1_000_000.0);
+    }
+
+    private static PartitionKey parsePartitionKey(String value) {
+        if (value != null && value.trim().toUpperCase(Locale.ROOT).startsWith("CORRELATION")) {
+            return PartitionKey.CORRELATION;
+        }
+        return PartitionKey.BRANCH;
+    }
+
+    private static String firstNonNull(String a, String b, String c) {
+        return a != null ? a : (b != null ? b : c);
+    }
+
+    private static String trimToNull(String s) {
+        if (s == null) {
+            return null;
+        }
+        String t = s.trim();
+        return t.isEmpty() ? null : t;
+    }
+
+    private record Task(InboundEnvelope envelope, String idempotencyKey, String acceptedAt, long enqueuedNanos) {
+    }
+
+    private static final class Partition {
+        private final ArrayBlockingQueue<Task> queue;
+        private Thread worker;
+
+        private Partition(ArrayBlockingQueue<Task> queue) {
+            this.queue = queue;
+        }
+    }
+
+    /**
+     * Результат постановки сообщения в очередь.
+     */
+    public record Admission(boolean accepted, String idempotencyKey) {
+    }
+
+    /**
+     * Статус асинхронной обработки сообщения.
+     * <p>
+     * {@code state}: QUEUED, PROCESSING, затем итог обработки — PROCESSED / SKIP_COMPLETED / LOCKED / DLQ / REJECTED / FAILED.
+     */
+    @Serdeable
+    public record InboundStatus(String idempotencyKey,
+                                String state,
+                                String acceptedAt,
+                                String updatedAt,
+                                Long queueWaitMs,
+                                Map<String, Object> output,
+                                Long dlqId,
+                                String errorCode,
+                                String errorMessage) {
+    }
+
+    /**
+     * Метрики асинхронного пайплайна.
+     */
+    @Serdeable
+    public record Snapshot(boolean enabled,
+                           int partitions,
+                           int queueCapacity,
+                           int queueDepth,
+                           int maxPartitionDepth,
+                           int inFlight,
+                           long accepted,
+                           long rejected,
+                           long completed,
+                           long failed,
+                           double averageQueueWaitMs,
+                           double maxQueueWaitMs) {
+    }
+}
@@ -2,13 +2,23 @@ package ru.aritmos.integrationbroker.core;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 import ru.aritmos.integrationbroker.model.InboundEnvelope;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 /**
  * Основной сервис обработки inbound-сообщений.
@@ -23,10 +33,20 @@ import java.util.Optional;
  * </ul>
  * <p>
  * Следующими итерациями будут добавлены: enrichment, DLQ, outbox, адаптеры, сегментация и предметные сценарии.
+ * <p>
+ * Длительность этапов (разрешение flow, идемпотентность, enrichment, Groovy) пишется в {@link HotPathMetrics}
+ * с тегом flow.
  */
 @Singleton
 public class InboundProcessingService {
 
+    /**
+     * Сколько успешных итогов пачки поток накапливает перед записью в хранилище идемпотентности.
+     */
+    static final int COMPLETION_FLUSH_SIZE = 16;
+
+    private static final Logger log = LoggerFactory.getLogger(InboundProcessingService.class);
+
     private final RuntimeConfigStore configStore;
     private final FlowEngine.FlowResolver flowResolver;
     private final FlowEngine.GroovyFlowEngine groovyFlowEngine;
@@ -34,6 +54,7 @@ public class InboundProcessingService {
     private final InboundDlqService inboundDlqService;
     private final KeycloakProxyEnrichmentService keycloakProxyEnrichmentService;
     private final ObjectMapper objectMapper;
+    private final HotPathMetrics metrics;
 
     public InboundProcessingService(RuntimeConfigStore configStore,
                                    FlowEngine.ConfigBasedFlowResolver flowResolver,
@@ -42,6 +63,19 @@ public class InboundProcessingService {
                                    InboundDlqService inboundDlqService,
                                    KeycloakProxyEnrichmentService keycloakProxyEnrichmentService,
                                    ObjectMapper objectMapper) {
+        this(configStore, flowResolver, groovyFlowEngine, idempotencyService, inboundDlqService,
+                keycloakProxyEnrichmentService, objectMapper, null);
+    }
+
+    @Inject
+    public InboundProcessingService(RuntimeConfigStore configStore,
+                                   FlowEngine.ConfigBasedFlowResolver flowResolver,
+                                   FlowEngine.GroovyFlowEngine groovyFlowEngine,
+                                   IdempotencyService idempotencyService,
+                                   InboundDlqService inboundDlqService,
+                                   KeycloakProxyEnrichmentService keycloakProxyEnrichmentService,
+                                   ObjectMapper objectMapper,
+                                   HotPathMetrics metrics) {
         this.configStore = configStore;
         this.flowResolver = flowResolver;
         this.groovyFlowEngine = groovyFlowEngine;
@@ -49,6 +83,7 @@ public class InboundProcessingService {
         this.inboundDlqService = inboundDlqService;
         this.keycloakProxyEnrichmentService = keycloakProxyEnrichmentService;
         this.objectMapper = objectMapper;
+        this.metrics = metrics == null ? HotPathMetrics.noop() : metrics;
     }
 
     /**
@@ -61,6 +96,15 @@ public class InboundProcessingService {
     ) {
     }
 
+    /**
+     * Результат обработки одного элемента пачки: {@code result} или {@code error}.
+     */
+    public record ItemOutcome(
+            ProcessingResult result,
+            RuntimeException error
+    ) {
+    }
+
     /**
      * Исключение, сигнализирующее о том, что сообщение сохранено в inbound DLQ.
      * <p>
@@ -107,17 +151,164 @@ public class InboundProcessingService {
      */
     public ProcessingResult process(InboundEnvelope envelope) {
         RuntimeConfigStore.RuntimeConfig cfg = configStore.getEffective();
+        RuntimeConfigStore.FlowConfig flow = resolveFlow(envelope, cfg);
+
+        // Идемпотентность применяется на входе, до исполнения flow.
+        long startedAt = System.nanoTime();
+        IdempotencyService.IdempotencyDecision decision = idempotencyService.decide(envelope, cfg.idempotency());
+        metrics.timer(HotPathMetrics.Stage.IDEMPOTENCY_DECIDE, flow.id()).recordSince(startedAt);
+        return complete(envelope, cfg, flow, decision, null);
+    }
+
+    /**
+     * Обработать пачку inbound-сообщений (batch ingress).
+     * <p>
+     * Ошибка одного сообщения не влияет на остальные: для каждого элемента возвращается свой результат
+     * или своя ошибка (в т.ч. {@link StoredInDlqException}, если элемент сохранён в inbound DLQ).
+     * Решения идемпотентности принимаются для всей пачки сразу ({@link IdempotencyService#decideAll}), успешные
+     * итоги записываются обратно группами не более {@value #COMPLETION_FLUSH_SIZE} на поток
+     * ({@link IdempotencyService#markCompletedAll}); если запись группы не удалась — по одному ключу, а ключи,
+     * которые не удалось записать и так, возвращаются ошибкой своего элемента, не затрагивая остальные.
+     * Flow выполняются на {@code executor} не более чем в {@code parallelism} потоков; сообщения с общим
+     * {@code correlationId} выполняются последовательно, в порядке пачки.
+     *
+     * @param envelopes сообщения
+     * @param executor  executor для параллельного выполнения flow ({@code null} — последовательно в текущем потоке)
+     * @param parallelism максимум одновременно выполняемых flow
+     * @return результаты в порядке {@code envelopes}
+     */
+    public List<ItemOutcome> processAll(List<InboundEnvelope> envelopes, Executor executor, int parallelism) {
+        int n = envelopes.size();
+        ItemOutcome[] outcomes = new ItemOutcome[n];
+        RuntimeConfigStore.RuntimeConfig cfg = configStore.getEffective();
+
+        // Проверка каждого элемента отдельно: flow и корректность ключа идемпотентности.
+        RuntimeConfigStore.FlowConfig[] flows = new RuntimeConfigStore.FlowConfig[n];
+        List<Integer> admitted = new ArrayList<>(n);
+        List<InboundEnvelope> admittedEnvelopes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            InboundEnvelope envelope = envelopes.get(i);
+            try {
+                flows[i] = resolveFlow(envelope, cfg);
+                idempotencyService.validateKey(envelope, cfg.idempotency());
+                admitted.add(i);
+                admittedEnvelopes.add(envelope);
+            } catch (RuntimeException e) {
+                outcomes[i] = new ItemOutcome(null, e);
+            }
+        }
+
+        List<IdempotencyService.IdempotencyDecision> decisions;
+        long decideStartedAt = System.nanoTime();
+        try {
+            decisions = idempotencyService.decideAll(admittedEnvelopes, cfg.idempotency());
+            metrics.timer(HotPathMetrics.Stage.IDEMPOTENCY_DECIDE, "_batch").recordSince(decideStartedAt);
+        } catch (RuntimeException e) {
+            for (int i : admitted) {
+                outcomes[i] = new ItemOutcome(null, e);
+            }
+            return Arrays.asList(outcomes);
+        }
+
+        IdempotencyService.IdempotencyDecision[] decided = new IdempotencyService.IdempotencyDecision[n];
+        Map<String, List<Integer>> chains = new LinkedHashMap<>();
+        for (int j = 0; j < admitted.size(); j++) {
+            int i = admitted.get(j);
+            IdempotencyService.IdempotencyDecision decision = decisions.get(j);
+            decided[i] = decision;
+            ProcessingResult skipped = skipped(decision);
+            if (skipped != null) {
+                outcomes[i] = new ItemOutcome(skipped, null);
+                continue;
+            }
+            String corr = envelopes.get(i).correlationId();
+            String chain = (corr == null || corr.isBlank()) ? "\u0000solo-" + i : corr;
+            chains.computeIfAbsent(chain, k -> new ArrayList<>()).add(i);
+        }
+
+        // Успешные итоги записываются небольшими группами по ходу выполнения: запись не остаётся IN_PROGRESS
+        // до конца всей пачки (повторная доставка получила бы LOCKED, падение узла — повторную обработку).
+        ConcurrentLinkedQueue<List<Integer>> queue = new ConcurrentLinkedQueue<>(chains.values());
+        Runnable worker = () -> {
+            Map<String, Object> completions = new LinkedHashMap<>();
+            Map<String, Integer> completionItems = new HashMap<>();
+            List<Integer> chain;
+            while ((chain = queue.poll()) != null) {
+                for (int i : chain) {
+                    try {
+                        outcomes[i] = new ItemOutcome(complete(envelopes.get(i), cfg, flows[i], decided[i], completions), null);
+                        if (decided[i].idemKey() != null && completions.containsKey(decided[i].idemKey())) {
+                            completionItems.put(decided[i].idemKey(), i);
+                        }
+                    } catch (RuntimeException e) {
+                        outcomes[i] = new ItemOutcome(null, e);
+                    }
+                    if (completions.size() >= COMPLETION_FLUSH_SIZE) {
+                        flushCompletions(completions, completionItems, outcomes);
+                    }
+                }
+            }
+            flushCompletions(completions, completionItems, outcomes);
+        };
+        int workers = executor == null ? 1 : Math.min(Math.max(1, parallelism), chains.size());
+        List<CompletableFuture<Void>> running = new ArrayList<>(workers);
+        for (int w = 1; w < workers; w++) {
+            running.add(CompletableFuture.runAsync(worker, executor));
+        }
+        worker.run();
+        for (CompletableFuture<Void> f : running) {
+            f.join();
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    /**
+     * Записать группу итогов; ошибки записи не покидают поток-исполнитель, иначе {@code join()} отбросил бы
+     * результаты всей пачки. Ключ, который не удалось записать ни группой, ни отдельно, помечается ошибкой
+     * своего элемента в {@code outcomes}.
+     */
+    private void flushCompletions(Map<String, Object> completions, Map<String, Integer> completionItems, ItemOutcome[] outcomes) {
+        if (completions.isEmpty()) {
+            return;
+        }
+        boolean written;
+        try {
+            written = idempotencyService.markCompletedAll(completions);
+        } catch (RuntimeException e) {
+            log.warn("[INBOUND][BATCH] групповая запись итогов не удалась, переход на запись по ключу count={}: {}",
+                    completions.size(), SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+            written = false;
+        }
+        if (!written) {
+            completions.forEach((key, output) -> {
+                try {
+                    idempotencyService.markCompleted(key, output);
+                } catch (RuntimeException e) {
+                    Integer i = completionItems.get(key);
+                    if (i != null) {
+                        outcomes[i] = new ItemOutcome(null, e);
+                    }
+                }
+            });
+        }
+        completions.clear();
+        completionItems.clear();
+    }
 
+    private RuntimeConfigStore.FlowConfig resolveFlow(InboundEnvelope envelope, RuntimeConfigStore.RuntimeConfig cfg) {
+        long startedAt = System.nanoTime();
         Optional<RuntimeConfigStore.FlowConfig> flowOpt = flowResolver.resolve(envelope, cfg);
+        metrics.timer(HotPathMetrics.Stage.FLOW_RESOLVE, flowOpt.isEmpty() ? "_unresolved" : flowOpt.get().id()).recordSince(startedAt);
         if (flowOpt.isEmpty()) {
             throw new IllegalArgumentException("Не найден flow для kind=" + envelope.kind() + ", type=" + envelope.type());
         }
+        return flowOpt.get();
+    }
 
-        RuntimeConfigStore.FlowConfig flow = flowOpt.get();
-
-        // Идемпотентность применяется на входе, до исполнения flow.
-        IdempotencyService.IdempotencyDecision decision = idempotencyService.decide(envelope, cfg.idempotency());
-
+    /**
+     * Результат для решений SKIP_COMPLETED/LOCKED или {@code null}, если сообщение нужно обработать.
+     */
+    private ProcessingResult skipped(IdempotencyService.IdempotencyDecision decision) {
         if (decision.decision() == IdempotencyService.Decision.SKIP_COMPLETED) {
             Map<String, Object> out = new HashMap<>();
             if (decision.existingResultJson() != null) {
@@ -139,18 +330,44 @@ public class InboundProcessingService {
         if (decision.decision() == IdempotencyService.Decision.LOCKED) {
             return new ProcessingResult("LOCKED", decision.idemKey(), Map.of("note", "Сообщение уже обрабатывается (LOCKED не является poison message)"));
         }
+        return null;
+    }
+
+    private ProcessingResult complete(InboundEnvelope envelope,
+                                      RuntimeConfigStore.RuntimeConfig cfg,
+                                      RuntimeConfigStore.FlowConfig flow,
+                                      IdempotencyService.IdempotencyDecision decision,
+                                      Map<String, Object> completions) {
+        ProcessingResult skipped = skipped(decision);
+        if (skipped != null) {
+            return skipped;
+        }
 
         Map<String, Object> meta = buildMeta(envelope, cfg, decision.idemKey());
 
         // Enrichment пользователя/контекста через KeycloakProxy.
         // Важно: нельзя логировать и сохранять сырой токен. В кэше используется только хэш токена.
+        long startedAt = System.nanoTime();
         InboundEnvelope enriched = keycloakProxyEnrichmentService.enrichIfEnabled(envelope, cfg, meta);
+        metrics.timer(HotPathMetrics.Stage.ENRICHMENT, flow.id()).recordSince(startedAt);
 
+        HotPathMetrics.Timer executeTimer = metrics.timer(HotPathMetrics.Stage.FLOW_EXECUTE, flow.id());
+        long executeStartedAt = System.nanoTime();
+        boolean executed = false;
         try {
             Map<String, Object> output = groovyFlowEngine.execute(enriched, flow, meta);
-            idempotencyService.markCompleted(decision.idemKey(), output);
+            executeTimer.recordSince(executeStartedAt);
+            executed = true;
+            if (completions != null && decision.idemKey() != null) {
+                completions.put(decision.idemKey(), output);
+            } else {
+                idempotencyService.markCompleted(decision.idemKey(), output);
+            }
             return new ProcessingResult("PROCESSED", decision.idemKey(), output);
         } catch (Exception e) {
+            if (!executed) {
+                executeTimer.recordSince(executeStartedAt);
+            }
             String code = "FLOW_EXECUTION_ERROR";
             String safeMessage = SensitiveDataSanitizer.sanitizeText(e.getMessage());
             idempotencyService.markFailed(decision.idemKey(), code, safeMessage);
@@ -173,6 +390,22 @@ public class InboundProcessingService {
         }
     }
 
+    /**
+     * Предварительная проверка сообщения для асинхронного приёма ({@link InboundPipeline}): flow должен
+     * существовать, ключ идемпотентности — рассчитываться. Ошибки здесь возвращаются клиенту сразу (400),
+     * а не обнаруживаются при обработке из очереди.
+     *
+     * @return ключ идемпотентности сообщения
+     * @throws IllegalArgumentException если flow не найден или ключ идемпотентности некорректен
+     */
+    public String admit(InboundEnvelope envelope) {
+        RuntimeConfigStore.RuntimeConfig cfg = configStore.getEffective();
+        if (flowResolver.resolve(envelope, cfg).isEmpty()) {
+            throw new IllegalArgumentException("Не найден flow для kind=" + envelope.kind() + ", type=" + envelope.type());
+        }
+        return idempotencyService.keyFor(envelope, cfg.idempotency());
+    }
+
     private boolean isDlqReplay(InboundEnvelope envelope) {
         if (envelope == null || envelope.sourceMeta() == null) {
             return false;
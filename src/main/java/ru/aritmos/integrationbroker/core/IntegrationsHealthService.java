@@ -1,11 +1,11 @@
 package ru.aritmos.integrationbroker.core;
 
 import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
@@ -25,11 +25,20 @@ public class IntegrationsHealthService {
 
     private final RuntimeConfigStore runtimeConfigStore;
     private final OAuth2ClientCredentialsService oauth2Service;
+    private final HttpClientRegistry clients;
 
+    @Inject
     public IntegrationsHealthService(RuntimeConfigStore runtimeConfigStore,
-                                     OAuth2ClientCredentialsService oauth2Service) {
+                                     OAuth2ClientCredentialsService oauth2Service,
+                                     HttpClientRegistry clients) {
         this.runtimeConfigStore = runtimeConfigStore;
         this.oauth2Service = oauth2Service;
+        this.clients = clients == null ? HttpClientRegistry.standalone() : clients;
+    }
+
+    public IntegrationsHealthService(RuntimeConfigStore runtimeConfigStore,
+                                     OAuth2ClientCredentialsService oauth2Service) {
+        this(runtimeConfigStore, oauth2Service, null);
     }
 
     public List<IntegrationHealthRow> health() {
@@ -67,13 +76,12 @@ public class IntegrationsHealthService {
             return new IntegrationHealthRow(system, "DOWN", 0, "Invalid baseUrl");
         }
 
-        HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
         HttpRequest.Builder builder = HttpRequest.newBuilder().GET().uri(uri).timeout(TIMEOUT);
         applyAuth(connector.auth(), builder);
 
         long startedAt = System.nanoTime();
         try {
-            HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            HttpResponse<String> response = clients.send(connectorId, connector, builder.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
             long latencyMs = (System.nanoTime() - startedAt) / 1_000_000;
             int statusCode = response.statusCode();
             if (statusCode >= 200 && statusCode < 300) {
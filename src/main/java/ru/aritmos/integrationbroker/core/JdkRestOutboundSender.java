@@ -1,15 +1,16 @@
 package ru.aritmos.integrationbroker.core;
 
 import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 /**
  * REST sender на базе стандартного JDK {@link java.net.http.HttpClient}.
@@ -20,22 +21,36 @@ import java.util.Map;
  *   <li>предсказуемость поведения в закрытых контурах;</li>
  *   <li>простота тестирования и замены на более сложную реализацию позже.</li>
  * </ul>
+ * <p>
+ * HTTP-клиенты берутся из общего {@link HttpClientRegistry}: по одному на REST-коннектор (keep-alive пул, HTTP/2
+ * с откатом на HTTP/1.1, общий IO-executor Micronaut), поэтому {@link #sendAsync} не создаёт собственных потоков,
+ * а повторные отправки в один коннектор не повторяют TCP/TLS-рукопожатие. Таймаут запроса — из политики коннектора,
+ * иначе {@code integrationbroker.rest-outbox.http-timeout-ms}. Тело ответа не читается
+ * ({@link HttpResponse.BodyHandlers#discarding()}): для outbox важен только HTTP-статус.
  */
 @Singleton
 public class JdkRestOutboundSender implements RestOutboundSender {
 
-    private final HttpClient client;
+    private final HttpClientRegistry clients;
     private final Duration requestTimeout;
 
+    @Inject
     public JdkRestOutboundSender(
-            @Value("${integrationbroker.rest-outbox.http-timeout-ms:8000}") long httpTimeoutMs
+            @Value("${integrationbroker.rest-outbox.http-timeout-ms:8000}") long httpTimeoutMs,
+            HttpClientRegistry clients
     ) {
-        this.client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofMillis(Math.max(1000, httpTimeoutMs)))
-                .build();
+        this.clients = clients;
         this.requestTimeout = Duration.ofMillis(Math.max(1000, httpTimeoutMs));
     }
 
+    public JdkRestOutboundSender(long httpTimeoutMs, ExecutorService executor) {
+        this(httpTimeoutMs, new HttpClientRegistry(null, executor, (int) Math.min(Integer.MAX_VALUE, Math.max(1000, httpTimeoutMs)), true));
+    }
+
+    public JdkRestOutboundSender(long httpTimeoutMs) {
+        this(httpTimeoutMs, (ExecutorService) null);
+    }
+
     @Override
     public Result send(String method,
                        String url,
@@ -43,50 +58,114 @@ public class JdkRestOutboundSender implements RestOutboundSender {
                        String bodyJson,
                        String idempotencyHeaderName,
                        String idempotencyKey) {
+        return send(null, method, url, headers, bodyJson, idempotencyHeaderName, idempotencyKey);
+    }
+
+    @Override
+    public Result send(String connectorId,
+                       String method,
+                       String url,
+                       Map<String, String> headers,
+                       String bodyJson,
+                       String idempotencyHeaderName,
+                       String idempotencyKey) {
         try {
-            String m = method == null ? "POST" : method.trim().toUpperCase();
-            URI uri = URI.create(url);
+            HttpResponse<Void> resp = clients.send(
+                    connectorId,
+                    null,
+                    buildRequest(connectorId, method, url, headers, bodyJson, idempotencyHeaderName, idempotencyKey),
+                    HttpResponse.BodyHandlers.discarding());
+            return toResult(resp.statusCode());
+        } catch (Exception e) {
+            return Result.fail("HTTP_CLIENT_ERROR", e.getMessage(), -1);
+        }
+    }
 
-            Map<String, String> hdrs = new HashMap<>();
-            if (headers != null) {
-                hdrs.putAll(headers);
-            }
-            if (idempotencyHeaderName != null && !idempotencyHeaderName.isBlank() && idempotencyKey != null && !idempotencyKey.isBlank()) {
-                hdrs.put(idempotencyHeaderName, idempotencyKey);
-            }
+    @Override
+    public CompletableFuture<Result> sendAsync(String method,
+                                               String url,
+                                               Map<String, String> headers,
+                                               String bodyJson,
+                                               String idempotencyHeaderName,
+                                               String idempotencyKey) {
+        return sendAsync(null, method, url, headers, bodyJson, idempotencyHeaderName, idempotencyKey);
+    }
+
+    @Override
+    public CompletableFuture<Result> sendAsync(String connectorId,
+                                               String method,
+                                               String url,
+                                               Map<String, String> headers,
+                                               String bodyJson,
+                                               String idempotencyHeaderName,
+                                               String idempotencyKey) {
+        HttpRequest request;
+        CompletableFuture<HttpResponse<Void>> call;
+        try {
+            request = buildRequest(connectorId, method, url, headers, bodyJson, idempotencyHeaderName, idempotencyKey);
+            call = clients.sendAsync(connectorId, request, HttpResponse.BodyHandlers.discarding());
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(Result.fail("HTTP_CLIENT_ERROR", e.getMessage(), -1));
+        }
+        return call.handle((resp, ex) -> {
+                    if (ex != null) {
+                        Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                        return Result.fail("HTTP_CLIENT_ERROR", cause.getMessage(), -1);
+                    }
+                    return toResult(resp.statusCode());
+                });
+    }
 
-            HttpRequest.Builder b = HttpRequest.newBuilder()
-                    .uri(uri)
-                    .timeout(requestTimeout);
+    private HttpRequest buildRequest(String connectorId,
+                                     String method,
+                                     String url,
+                                     Map<String, String> headers,
+                                     String bodyJson,
+                                     String idempotencyHeaderName,
+                                     String idempotencyKey) {
+        String m = method == null ? "POST" : method.trim().toUpperCase();
+        HttpRequest.Builder b = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(clients.requestTimeout(connectorId, requestTimeout));
 
-            for (Map.Entry<String, String> e : hdrs.entrySet()) {
-                if (e.getKey() == null || e.getKey().isBlank()) {
+        boolean hasIdempotencyKey = idempotencyHeaderName != null && !idempotencyHeaderName.isBlank()
+                && idempotencyKey != null && !idempotencyKey.isBlank();
+        boolean hasContentType = false;
+        if (headers != null) {
+            for (Map.Entry<String, String> e : headers.entrySet()) {
+                String name = e.getKey();
+                if (name == null || name.isBlank()) {
                     continue;
                 }
-                String v = e.getValue() == null ? "" : e.getValue();
-                b.header(e.getKey(), v);
-            }
-
-            if ("GET".equals(m) || "DELETE".equals(m)) {
-                b.method(m, HttpRequest.BodyPublishers.noBody());
-            } else {
-                String body = bodyJson == null ? "" : bodyJson;
-                b.method(m, HttpRequest.BodyPublishers.ofString(body));
-                if (!hdrs.containsKey("Content-Type")) {
-                    b.header("Content-Type", "application/json");
+                // Ключ идемпотентности имеет приоритет над одноимённым сохранённым заголовком.
+                if (hasIdempotencyKey && name.equals(idempotencyHeaderName)) {
+                    continue;
+                }
+                if ("Content-Type".equals(name)) {
+                    hasContentType = true;
                 }
+                b.header(name, e.getValue() == null ? "" : e.getValue());
             }
+        }
+        if (hasIdempotencyKey) {
+            b.header(idempotencyHeaderName, idempotencyKey);
+        }
 
-            HttpResponse<String> resp = client.send(b.build(), HttpResponse.BodyHandlers.ofString());
-            int status = resp.statusCode();
-
-            if (status >= 200 && status < 300) {
-                return Result.ok(status);
+        if ("GET".equals(m) || "DELETE".equals(m)) {
+            b.method(m, HttpRequest.BodyPublishers.noBody());
+        } else {
+            b.method(m, HttpRequest.BodyPublishers.ofString(bodyJson == null ? "" : bodyJson));
+            if (!hasContentType) {
+                b.header("Content-Type", "application/json");
             }
+        }
+        return b.build();
+    }
 
-            return Result.fail("HTTP_" + status, "HTTP вызов завершился неуспешно: статус=" + status, status);
-        } catch (Exception e) {
-            return Result.fail("HTTP_CLIENT_ERROR", e.getMessage(), -1);
+    private static Result toResult(int status) {
+        if (status >= 200 && status < 300) {
+            return Result.ok(status);
         }
+        return Result.fail("HTTP_" + status, "HTTP вызов завершился неуспешно: статус=" + status, status);
     }
 }
@@ -3,12 +3,12 @@ package ru.aritmos.integrationbroker.core;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
@@ -26,13 +26,16 @@ import java.util.Optional;
 public class KeycloakProxyClient {
 
     private final ObjectMapper objectMapper;
-    private final HttpClient httpClient;
+    private final HttpClientRegistry clients;
 
-    public KeycloakProxyClient(ObjectMapper objectMapper) {
+    @Inject
+    public KeycloakProxyClient(ObjectMapper objectMapper, HttpClientRegistry clients) {
         this.objectMapper = objectMapper;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(3))
-                .build();
+        this.clients = clients == null ? HttpClientRegistry.standalone() : clients;
+    }
+
+    public KeycloakProxyClient(ObjectMapper objectMapper) {
+        this(objectMapper, null);
     }
 
     /**
@@ -90,7 +93,8 @@ public class KeycloakProxyClient {
         String normalizedPath = p.startsWith("/") ? p : ("/" + p);
 
         URI uri = URI.create(baseUrl + normalizedPath);
-        HttpRequest.Builder b = HttpRequest.newBuilder().GET().uri(uri).timeout(Duration.ofSeconds(5));
+        HttpRequest.Builder b = HttpRequest.newBuilder().GET().uri(uri)
+                .timeout(HttpClientRegistry.requestTimeout(connector, Duration.ofSeconds(5)));
 
         // Service-to-service авторизация (из коннектора).
         applyConnectorAuthHeaders(connector.auth(), b);
@@ -106,7 +110,7 @@ public class KeycloakProxyClient {
 
         HttpRequest req = b.build();
         try {
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            HttpResponse<String> resp = clients.send(connectorId, connector, req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
             if (resp.statusCode() >= 200 && resp.statusCode() < 300) {
                 JsonNode node = objectMapper.readTree(resp.body());
                 Map<String, Object> map = objectMapper.convertValue(node, new TypeReference<Map<String, Object>>() {
@@ -38,8 +38,6 @@ public class KeycloakProxyEnrichmentService {
     private final KeycloakProxyClient client;
     private final TtlCache<String, Map<String, Object>> cache;
 
-    private final AtomicLong cacheHits = new AtomicLong();
-    private final AtomicLong cacheMisses = new AtomicLong();
     private final AtomicLong errors = new AtomicLong();
 
     public KeycloakProxyEnrichmentService(KeycloakProxyClient client) {
@@ -84,15 +82,8 @@ public class KeycloakProxyEnrichmentService {
                         continue;
                     }
                     String cacheKey = "uid:" + userIdCandidate;
-                    userOpt = cache.get(cacheKey);
-                    if (userOpt.isPresent()) {
-                        cacheHits.incrementAndGet();
-                    } else {
-                        cacheMisses.incrementAndGet();
-                        userOpt = client.fetchUserById(cfg, userIdCandidate);
-                        userOpt = userOpt.map(u -> sanitizeUser(u, kc.stripTokensFromResponse()));
-                        userOpt.ifPresent(u -> cache.put(cacheKey, u, kc.cacheTtlSeconds()));
-                    }
+                    userOpt = cache.getOrLoad(cacheKey, kc.cacheTtlSeconds(), k -> client.fetchUserById(cfg, userIdCandidate)
+                            .map(u -> sanitizeUser(u, kc.stripTokensFromResponse())));
                 }
 
                 if (mode == RuntimeConfigStore.KeycloakProxyFetchMode.BEARER_TOKEN) {
@@ -101,15 +92,8 @@ public class KeycloakProxyEnrichmentService {
                     }
                     String tokenHash = sha256Hex(tokenCandidate);
                     String cacheKey = "tok:" + tokenHash;
-                    userOpt = cache.get(cacheKey);
-                    if (userOpt.isPresent()) {
-                        cacheHits.incrementAndGet();
-                    } else {
-                        cacheMisses.incrementAndGet();
-                        userOpt = client.fetchUserByToken(cfg, tokenCandidate);
-                        userOpt = userOpt.map(u -> sanitizeUser(u, kc.stripTokensFromResponse()));
-                        userOpt.ifPresent(u -> cache.put(cacheKey, u, kc.cacheTtlSeconds()));
-                    }
+                    userOpt = cache.getOrLoad(cacheKey, kc.cacheTtlSeconds(), k -> client.fetchUserByToken(cfg, tokenCandidate)
+                            .map(u -> sanitizeUser(u, kc.stripTokensFromResponse())));
                 }
 
                 if (userOpt.isPresent()) {
@@ -133,14 +117,21 @@ public class KeycloakProxyEnrichmentService {
      * @return число попаданий в кэш enrichment
      */
     public long cacheHits() {
-        return cacheHits.get();
+        return cache.stats().hits();
     }
 
     /**
      * @return число промахов кэша enrichment
      */
     public long cacheMisses() {
-        return cacheMisses.get();
+        return cache.stats().misses();
+    }
+
+    /**
+     * @return статистика кэша enrichment (размер, вытеснения, истечения, загрузки)
+     */
+    public TtlCache.Stats cacheStats() {
+        return cache.stats();
     }
 
     /**
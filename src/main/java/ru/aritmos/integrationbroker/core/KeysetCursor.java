@@ -0,0 +1,175 @@
+package ru.aritmos.integrationbroker.core;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Непрозрачный курсор keyset-пагинации административных списков.
+ * <p>
+ * Списки Admin API упорядочены по {@code (updated_at DESC, <ключ> DESC)}, где ключ — {@code id}
+ * (для идемпотентности — {@code idem_key}). Следующая страница выбирается условием
+ * «строго после последней строки предыдущей страницы», а не через OFFSET: стоимость запроса не растёт с номером
+ * страницы и опирается на индексы из миграции V9.
+ * <p>
+ * Курсор — base64url от {@code <updated_at в ISO-8601>|<ключ>}; клиент не должен разбирать его сам.
+ * Записи, изменённые во время обхода, «уезжают» в начало списка и могут быть пропущены, но не дублируются.
+ */
+public final class KeysetCursor {
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * Позиция последней строки страницы.
+     */
+    public record Position(Instant updatedAt, String key) {
+
+        /**
+         * Условие «строго после позиции» для порядка {@code updated_at DESC, keyColumn DESC}.
+         */
+        public static String condition(String keyColumn) {
+            return "(updated_at < ? OR (updated_at = ? AND " + keyColumn + " < ?))";
+        }
+
+        /**
+         * Привязать параметры {@link #condition(String)}.
+         *
+         * @param numericKey ключ — числовой {@code id}
+         * @return индекс следующего параметра
+         */
+        public int bind(PreparedStatement ps, int first, boolean numericKey) throws SQLException {
+            Timestamp ts = Timestamp.from(updatedAt);
+            ps.setTimestamp(first, ts);
+            ps.setTimestamp(first + 1, ts);
+            if (numericKey) {
+                ps.setLong(first + 2, Long.parseLong(key));
+            } else {
+                ps.setString(first + 2, key);
+            }
+            return first + 3;
+        }
+    }
+
+    /**
+     * Страница списка.
+     *
+     * @param nextCursor курсор следующей страницы; {@code null}, если страница последняя
+     */
+    public record Slice<T>(List<T> items, String nextCursor) {
+
+        /**
+         * Собрать страницу из {@code limit + 1} выбранных строк: лишняя строка только сигнализирует о продолжении.
+         */
+        public static <T> Slice<T> of(List<T> rows, int limit, Function<T, String> updatedAt, Function<T, String> key) {
+            if (rows.size() <= limit) {
+                return new Slice<>(rows, null);
+            }
+            List<T> items = rows.subList(0, limit);
+            T last = items.get(limit - 1);
+            return new Slice<>(items, encode(updatedAt.apply(last), key.apply(last)));
+        }
+    }
+
+    /**
+     * Выборка одной страницы «после позиции» ({@code after == null} — с начала).
+     */
+    @FunctionalInterface
+    public interface Fetcher<T> {
+        List<T> fetch(Position after, int limit) throws SQLException;
+    }
+
+    /**
+     * Размер страницы, которыми потоковый экспорт обходит выборку.
+     */
+    public static final int EXPORT_PAGE_SIZE = 500;
+
+    /**
+     * Обойти всю выборку страницами по {@link #EXPORT_PAGE_SIZE}, передавая строки в {@code sink}.
+     * <p>
+     * В памяти одновременно находится не больше одной страницы; каждая страница — отдельный короткий запрос,
+     * поэтому долгий экспорт не держит соединение/транзакцию открытыми.
+     *
+     * @return количество переданных строк
+     * @throws IllegalStateException ошибка БД (часть строк к этому моменту уже передана)
+     */
+    public static <T> long walk(Fetcher<T> fetcher,
+                                Function<T, String> updatedAt,
+                                Function<T, String> key,
+                                Consumer<? super T> sink) {
+        Position after = null;
+        long total = 0;
+        while (true) {
+            List<T> rows;
+            try {
+                rows = fetcher.fetch(after, EXPORT_PAGE_SIZE);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Ошибка выборки страницы экспорта", e);
+            }
+            for (T row : rows) {
+                sink.accept(row);
+            }
+            total += rows.size();
+            if (rows.size() < EXPORT_PAGE_SIZE) {
+                return total;
+            }
+            T last = rows.get(rows.size() - 1);
+            after = new Position(Instant.parse(updatedAt.apply(last)), key.apply(last));
+        }
+    }
+
+    public static String encode(String updatedAt, String key) {
+        if (updatedAt == null || key == null) {
+            return null;
+        }
+        String raw = updatedAt + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разобрать курсор.
+     *
+     * @return позиция или {@code null} для пустого курсора (первая страница)
+     * @throws IllegalArgumentException курсор повреждён
+     */
+    public static Position decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String raw;
+        Instant updatedAt;
+        int sep;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            sep = raw.indexOf('|');
+            updatedAt = sep <= 0 ? null : Instant.parse(raw.substring(0, sep));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный cursor", e);
+        }
+        if (updatedAt == null || sep == raw.length() - 1) {
+            throw new IllegalArgumentException("Некорректный cursor");
+        }
+        return new Position(updatedAt, raw.substring(sep + 1));
+    }
+
+    /**
+     * Проверить, что ключ курсора — число (для таблиц с ключом {@code id}).
+     */
+    public static Position decodeNumeric(String cursor) {
+        Position p = decode(cursor);
+        if (p != null) {
+            try {
+                Long.parseLong(p.key());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректный cursor", e);
+            }
+        }
+        return p;
+    }
+}
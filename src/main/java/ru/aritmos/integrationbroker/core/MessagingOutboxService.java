@@ -4,20 +4,26 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micronaut.context.annotation.Value;
 import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Сервис messaging outbox.
@@ -46,21 +52,51 @@ public class MessagingOutboxService {
         ALWAYS
     }
 
+    private static final Logger log = LoggerFactory.getLogger(MessagingOutboxService.class);
+
+    private static final String RECORD_COLUMNS =
+            "id, status, provider, destination, message_key, headers_json, payload_json, source_message_id, correlation_id, idem_key, attempts, max_attempts, next_attempt_at, last_error_code, last_error_message, updated_at";
+
     private final DataSource dataSource;
     private final ObjectMapper objectMapper;
     private final MessagingProviderRegistry providerRegistry;
     private final OutboundDryRunState outboundDryRunState;
+    private final OutboxWakeup wakeup;
+    private final HotPathMetrics metrics;
+    private volatile Boolean skipLockedSupported;
+    private final LongAdder dispatchRoundTrips = new LongAdder();
+    private final LongAdder staleOutcomes = new LongAdder();
     @Value("${integrationbroker.outbound.dry-run:false}")
     protected boolean outboundDryRun;
 
+    @Inject
     public MessagingOutboxService(DataSource dataSource,
                                  ObjectMapper objectMapper,
                                  MessagingProviderRegistry providerRegistry,
-                                 OutboundDryRunState outboundDryRunState) {
+                                 OutboundDryRunState outboundDryRunState,
+                                 OutboxWakeup wakeup,
+                                 HotPathMetrics metrics) {
         this.dataSource = dataSource;
         this.objectMapper = objectMapper;
         this.providerRegistry = providerRegistry;
         this.outboundDryRunState = outboundDryRunState;
+        this.wakeup = wakeup;
+        this.metrics = metrics == null ? HotPathMetrics.noop() : metrics;
+    }
+
+    public MessagingOutboxService(DataSource dataSource,
+                                 ObjectMapper objectMapper,
+                                 MessagingProviderRegistry providerRegistry,
+                                 OutboundDryRunState outboundDryRunState,
+                                 OutboxWakeup wakeup) {
+        this(dataSource, objectMapper, providerRegistry, outboundDryRunState, wakeup, null);
+    }
+
+    public MessagingOutboxService(DataSource dataSource,
+                                 ObjectMapper objectMapper,
+                                 MessagingProviderRegistry providerRegistry,
+                                 OutboundDryRunState outboundDryRunState) {
+        this(dataSource, objectMapper, providerRegistry, outboundDryRunState, null);
     }
 
     public MessagingOutboxService(DataSource dataSource,
@@ -156,6 +192,21 @@ public class MessagingOutboxService {
                         String correlationId,
                         String idempotencyKey,
                         int maxAttempts) {
+        long startedAt = System.nanoTime();
+        long id = insert(providerId, destination, messageKey, headers, payload, sourceMessageId, correlationId, idempotencyKey, maxAttempts);
+        metrics.timer(HotPathMetrics.Stage.OUTBOX_ENQUEUE, "msg:" + (providerId == null ? "-" : providerId)).recordSince(startedAt);
+        return id;
+    }
+
+    private long insert(String providerId,
+                        String destination,
+                        String messageKey,
+                        Map<String, String> headers,
+                        Object payload,
+                        String sourceMessageId,
+                        String correlationId,
+                        String idempotencyKey,
+                        int maxAttempts) {
         Instant now = Instant.now();
         String hdr = toJson(SensitiveDataSanitizer.sanitizeHeaders(headers));
         String payloadJson = toJson(payload);
@@ -180,11 +231,16 @@ public class MessagingOutboxService {
             ps.setTimestamp(13, Timestamp.from(now));
 
             ps.executeUpdate();
+            long id = 0;
             try (ResultSet keys = ps.getGeneratedKeys()) {
                 if (keys.next()) {
-                    return keys.getLong(1);
+                    id = keys.getLong(1);
                 }
             }
+            if (wakeup != null) {
+                wakeup.enqueued(c, OutboxWakeup.Kind.MESSAGING);
+            }
+            return id;
         } catch (Exception e) {
             // Outbox не должен ломать основной сценарий.
         }
@@ -219,7 +275,39 @@ public class MessagingOutboxService {
     }
 
     public List<OutboxListItem> list(String status, String correlationId, int limit) {
+        return page(status, correlationId, null, limit).items();
+    }
+
+    /**
+     * Страница списка outbox (keyset по {@code (updated_at, id)}, см. {@link KeysetCursor}).
+     *
+     * @param cursor курсор из предыдущей страницы ({@code null} — первая страница)
+     * @throws IllegalArgumentException курсор повреждён
+     */
+    public KeysetCursor.Slice<OutboxListItem> page(String status, String correlationId, String cursor, int limit) {
         int lim = Math.min(Math.max(1, limit), 200);
+        KeysetCursor.Position after = KeysetCursor.decodeNumeric(cursor);
+        try {
+            return KeysetCursor.Slice.of(fetch(status, correlationId, after, lim + 1), lim,
+                    OutboxListItem::updatedAt, r -> String.valueOf(r.id()));
+        } catch (Exception e) {
+            // no-op
+            return new KeysetCursor.Slice<>(List.of(), null);
+        }
+    }
+
+    /**
+     * Потоково выгрузить все записи outbox по фильтрам (в порядке списка), не загружая выборку в память целиком.
+     *
+     * @return количество выгруженных записей
+     */
+    public long export(String status, String correlationId, java.util.function.Consumer<? super OutboxListItem> sink) {
+        return KeysetCursor.walk((after, lim) -> fetch(status, correlationId, after, lim),
+                OutboxListItem::updatedAt, r -> String.valueOf(r.id()), sink);
+    }
+
+    private List<OutboxListItem> fetch(String status, String correlationId, KeysetCursor.Position after, int limit)
+            throws java.sql.SQLException {
         String normalizedStatus = normalizeFilter(status);
         String normalizedCorrelation = normalizeFilter(correlationId);
         boolean filterStatus = normalizedStatus != null;
@@ -234,10 +322,13 @@ public class MessagingOutboxService {
         if (filterCorrelation) {
             conditions.add("correlation_id=?");
         }
+        if (after != null) {
+            conditions.add(KeysetCursor.Position.condition("id"));
+        }
         if (!conditions.isEmpty()) {
             sql.append(" WHERE ").append(String.join(" AND ", conditions));
         }
-        sql.append(" ORDER BY updated_at DESC LIMIT ?");
+        sql.append(" ORDER BY updated_at DESC, id DESC LIMIT ?");
 
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(sql.toString())) {
@@ -248,7 +339,10 @@ public class MessagingOutboxService {
             if (filterCorrelation) {
                 ps.setString(idx++, normalizedCorrelation);
             }
-            ps.setInt(idx, lim);
+            if (after != null) {
+                idx = after.bind(ps, idx, true);
+            }
+            ps.setInt(idx, limit);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     out.add(new OutboxListItem(
@@ -263,8 +357,6 @@ public class MessagingOutboxService {
                     ));
                 }
             }
-        } catch (Exception e) {
-            // no-op
         }
         return out;
     }
@@ -318,26 +410,159 @@ public class MessagingOutboxService {
             ps.setTimestamp(2, Timestamp.from(now));
             ps.setLong(3, id);
             ps.setString(4, Status.PENDING.name());
+            dispatchRoundTrips.increment();
             return ps.executeUpdate() == 1;
         } catch (Exception e) {
             return false;
         }
     }
 
+    /**
+     * Атомарно захватить пачку записей для отправки (claim + lease).
+     * <p>
+     * PostgreSQL: один оператор {@code UPDATE ... WHERE id IN (SELECT ... FOR UPDATE SKIP LOCKED) RETURNING ...},
+     * поэтому реплики брокера разбирают непересекающиеся строки и не конкурируют за {@link #markSending(long)}.
+     * Прочие БД (H2 в тестах/локально): выборка кандидатов и JDBC-batch условных UPDATE {@code PENDING -> SENDING}
+     * в одном соединении; возвращаются только действительно захваченные записи.
+     *
+     * @param limit размер пачки (не больше 200)
+     * @param owner владелец lease (идентификатор узла брокера)
+     * @param leaseSec срок lease; по его истечении {@link #reapExpiredLeases()} вернёт запись в PENDING
+     * @return захваченные записи в статусе SENDING, в порядке id
+     */
+    public List<OutboxRecord> claimDue(int limit, String owner, int leaseSec) {
+        int lim = Math.min(Math.max(1, limit), 200);
+        Instant now = Instant.now();
+        Timestamp nowTs = Timestamp.from(now);
+        Timestamp leaseUntil = Timestamp.from(now.plusSeconds(Math.max(1, leaseSec)));
+        String leaseOwner = safeShort(owner, 128, "unknown");
+        List<OutboxRecord> out = new ArrayList<>();
+        try (Connection c = dataSource.getConnection()) {
+            if (supportsSkipLocked(c)) {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE ib_messaging_outbox SET status=?, updated_at=?, lease_owner=?, lease_until=? " +
+                                "WHERE id IN (SELECT id FROM ib_messaging_outbox WHERE status=? AND next_attempt_at<=? ORDER BY id ASC LIMIT ? FOR UPDATE SKIP LOCKED) " +
+                                "RETURNING " + RECORD_COLUMNS)) {
+                    ps.setString(1, Status.SENDING.name());
+                    ps.setTimestamp(2, nowTs);
+                    ps.setString(3, leaseOwner);
+                    ps.setTimestamp(4, leaseUntil);
+                    ps.setString(5, Status.PENDING.name());
+                    ps.setTimestamp(6, nowTs);
+                    ps.setInt(7, lim);
+                    dispatchRoundTrips.increment();
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            out.add(mapRecord(rs));
+                        }
+                    }
+                }
+                out.sort(Comparator.comparingLong(OutboxRecord::id));
+                return out;
+            }
+
+            List<OutboxRecord> candidates = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT " + RECORD_COLUMNS + " FROM ib_messaging_outbox WHERE status=? AND next_attempt_at<=? ORDER BY id ASC LIMIT ?")) {
+                ps.setString(1, Status.PENDING.name());
+                ps.setTimestamp(2, nowTs);
+                ps.setInt(3, lim);
+                dispatchRoundTrips.increment();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        candidates.add(mapRecord(rs));
+                    }
+                }
+            }
+            if (candidates.isEmpty()) {
+                return out;
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE ib_messaging_outbox SET status=?, updated_at=?, lease_owner=?, lease_until=? WHERE id=? AND status=?")) {
+                for (OutboxRecord r : candidates) {
+                    ps.setString(1, Status.SENDING.name());
+                    ps.setTimestamp(2, nowTs);
+                    ps.setString(3, leaseOwner);
+                    ps.setTimestamp(4, leaseUntil);
+                    ps.setLong(5, r.id());
+                    ps.setString(6, Status.PENDING.name());
+                    ps.addBatch();
+                }
+                int[] updated = ps.executeBatch();
+                dispatchRoundTrips.increment();
+                for (int i = 0; i < candidates.size(); i++) {
+                    if (i < updated.length && updated[i] == 1) {
+                        out.add(asSending(candidates.get(i), now));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // no-op
+        }
+        return out;
+    }
+
+    /**
+     * Вернуть в {@code PENDING} записи, чей lease истёк (узел-владелец упал или завис, не завершив отправку).
+     *
+     * @return количество возвращённых записей
+     */
+    public int reapExpiredLeases() {
+        Instant now = Instant.now();
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "UPDATE ib_messaging_outbox SET status=?, updated_at=?, lease_owner=NULL, lease_until=NULL WHERE status=? AND lease_until<?")) {
+            ps.setString(1, Status.PENDING.name());
+            ps.setTimestamp(2, Timestamp.from(now));
+            ps.setString(3, Status.SENDING.name());
+            ps.setTimestamp(4, Timestamp.from(now));
+            return ps.executeUpdate();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private boolean supportsSkipLocked(Connection c) throws Exception {
+        Boolean v = skipLockedSupported;
+        if (v == null) {
+            String product = c.getMetaData().getDatabaseProductName();
+            v = product != null && product.toLowerCase().contains("postgresql");
+            skipLockedSupported = v;
+        }
+        return v;
+    }
+
+    private static OutboxRecord asSending(OutboxRecord r, Instant now) {
+        return new OutboxRecord(r.id(), Status.SENDING.name(), r.provider(), r.destination(), r.messageKey(),
+                r.headersJson(), r.payloadJson(), r.sourceMessageId(), r.correlationId(), r.idempotencyKey(),
+                r.attempts(), r.maxAttempts(), r.nextAttemptAt(), r.lastErrorCode(), r.lastErrorMessage(), now.toString());
+    }
+
     /**
      * Отметить отправку как успешную.
      */
     public void markSent(long id) {
+        markSent(id, null);
+    }
+
+    /**
+     * Отметить отправку как успешную, если запись всё ещё в {@code SENDING} под lease этого владельца.
+     *
+     * @param leaseOwner владелец lease из {@link #claimDue(int, String, int)}; {@code null} — запись захвачена без lease
+     */
+    public void markSent(long id, String leaseOwner) {
         Instant now = Instant.now();
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(
-                     "UPDATE ib_messaging_outbox SET status=?, updated_at=?, last_error_at=NULL, last_error_code=NULL, last_error_message=NULL WHERE id=?")) {
+                     "UPDATE ib_messaging_outbox SET status=?, updated_at=?, lease_owner=NULL, lease_until=NULL, last_error_at=NULL, last_error_code=NULL, last_error_message=NULL WHERE id=?" + leaseGuard(leaseOwner))) {
             ps.setString(1, Status.SENT.name());
             ps.setTimestamp(2, Timestamp.from(now));
             ps.setLong(3, id);
-            ps.executeUpdate();
+            bindLeaseGuard(ps, 4, leaseOwner);
+            dispatchRoundTrips.increment();
+            countStale(1, ps.executeUpdate());
         } catch (Exception e) {
-            // no-op
+            log.warn("[OUTBOX][MSG] не удалось записать результат отправки id={}: {}", id, SensitiveDataSanitizer.sanitizeText(e.getMessage()));
         }
     }
 
@@ -351,10 +576,26 @@ public class MessagingOutboxService {
                            String errorCode,
                            String errorMessage,
                            boolean dead) {
+        markFailed(id, attemptsAlready, maxAttempts, nextAttemptAt, errorCode, errorMessage, dead, null);
+    }
+
+    /**
+     * Отметить ошибку, если запись всё ещё в {@code SENDING} под lease этого владельца.
+     *
+     * @param leaseOwner владелец lease из {@link #claimDue(int, String, int)}; {@code null} — запись захвачена без lease
+     */
+    public void markFailed(long id,
+                           int attemptsAlready,
+                           int maxAttempts,
+                           Instant nextAttemptAt,
+                           String errorCode,
+                           String errorMessage,
+                           boolean dead,
+                           String leaseOwner) {
         Instant now = Instant.now();
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(
-                     "UPDATE ib_messaging_outbox SET status=?, updated_at=?, attempts=?, max_attempts=?, next_attempt_at=?, last_error_at=?, last_error_code=?, last_error_message=? WHERE id=?")) {
+                     "UPDATE ib_messaging_outbox SET status=?, updated_at=?, attempts=?, max_attempts=?, next_attempt_at=?, lease_owner=NULL, lease_until=NULL, last_error_at=?, last_error_code=?, last_error_message=? WHERE id=?" + leaseGuard(leaseOwner))) {
             ps.setString(1, dead ? Status.DEAD.name() : Status.PENDING.name());
             ps.setTimestamp(2, Timestamp.from(now));
             ps.setInt(3, attemptsAlready);
@@ -364,12 +605,150 @@ public class MessagingOutboxService {
             ps.setString(7, safeShort(errorCode, 64, "SEND_ERROR"));
             ps.setString(8, safeShort(errorMessage, 1000, ""));
             ps.setLong(9, id);
-            ps.executeUpdate();
+            bindLeaseGuard(ps, 10, leaseOwner);
+            dispatchRoundTrips.increment();
+            countStale(1, ps.executeUpdate());
         } catch (Exception e) {
-            // no-op
+            log.warn("[OUTBOX][MSG] не удалось записать результат отправки id={}: {}", id, SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+        }
+    }
+
+    /**
+     * Записать результаты отправки пачкой.
+     * <p>
+     * Все успешные записи переводятся в {@code SENT} одним {@code UPDATE ... WHERE id = ANY(?)},
+     * ошибки — одним JDBC-batch. Используется одно соединение из пула вместо соединения на каждую запись.
+     * <p>
+     * Каждый UPDATE условен: запись должна оставаться в {@code SENDING} под lease владельца из
+     * {@link Outcome#leaseOwner()}. Если lease истёк и запись уже перехвачена другим узлом, результат
+     * отбрасывается и учитывается в {@link #staleOutcomes()}.
+     * <p>
+     * SENT и ошибки пишутся независимо: сбой одного оператора логируется (WARN) и его записи
+     * дописываются построчно через {@code markSent}/{@code markFailed}, не затрагивая остальные.
+     *
+     * @param outcomes результаты отправки
+     */
+    public void applyOutcomes(List<Outcome> outcomes) {
+        if (outcomes == null || outcomes.isEmpty()) {
+            return;
+        }
+        Map<String, List<Outcome>> sentByOwner = new java.util.LinkedHashMap<>();
+        Map<String, List<Outcome>> failedByOwner = new java.util.LinkedHashMap<>();
+        for (Outcome o : outcomes) {
+            if (o.sent()) {
+                sentByOwner.computeIfAbsent(o.leaseOwner(), k -> new ArrayList<>()).add(o);
+            } else {
+                failedByOwner.computeIfAbsent(o.leaseOwner(), k -> new ArrayList<>()).add(o);
+            }
+        }
+        Instant now = Instant.now();
+        List<Outcome> unwritten = new ArrayList<>();
+        try (Connection c = dataSource.getConnection()) {
+            for (Map.Entry<String, List<Outcome>> e : sentByOwner.entrySet()) {
+                String owner = e.getKey();
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE ib_messaging_outbox SET status=?, updated_at=?, lease_owner=NULL, lease_until=NULL, last_error_at=NULL, last_error_code=NULL, last_error_message=NULL WHERE id = ANY(?)" + leaseGuard(owner))) {
+                    ps.setString(1, Status.SENT.name());
+                    ps.setTimestamp(2, Timestamp.from(now));
+                    ps.setArray(3, c.createArrayOf("BIGINT", e.getValue().stream().map(Outcome::id).toArray()));
+                    bindLeaseGuard(ps, 4, owner);
+                    dispatchRoundTrips.increment();
+                    countStale(e.getValue().size(), ps.executeUpdate());
+                } catch (Exception ex) {
+                    log.warn("[OUTBOX][MSG] пакетная запись SENT не удалась, переход на построчную запись count={}: {}",
+                            e.getValue().size(), SensitiveDataSanitizer.sanitizeText(ex.getMessage()));
+                    unwritten.addAll(e.getValue());
+                }
+            }
+            for (Map.Entry<String, List<Outcome>> e : failedByOwner.entrySet()) {
+                String owner = e.getKey();
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE ib_messaging_outbox SET status=?, updated_at=?, attempts=?, max_attempts=?, next_attempt_at=?, lease_owner=NULL, lease_until=NULL, last_error_at=?, last_error_code=?, last_error_message=? WHERE id=?" + leaseGuard(owner))) {
+                    for (Outcome o : e.getValue()) {
+                        ps.setString(1, o.dead() ? Status.DEAD.name() : Status.PENDING.name());
+                        ps.setTimestamp(2, Timestamp.from(now));
+                        ps.setInt(3, o.attempts());
+                        ps.setInt(4, o.maxAttempts());
+                        ps.setTimestamp(5, Timestamp.from(o.nextAttemptAt() == null ? now : o.nextAttemptAt()));
+                        ps.setTimestamp(6, Timestamp.from(now));
+                        ps.setString(7, safeShort(o.errorCode(), 64, "SEND_ERROR"));
+                        ps.setString(8, safeShort(o.errorMessage(), 1000, ""));
+                        ps.setLong(9, o.id());
+                        bindLeaseGuard(ps, 10, owner);
+                        ps.addBatch();
+                    }
+                    dispatchRoundTrips.increment();
+                    countStale(e.getValue().size(), updatedRows(ps.executeBatch()));
+                } catch (Exception ex) {
+                    log.warn("[OUTBOX][MSG] пакетная запись ошибок отправки не удалась, переход на построчную запись count={}: {}",
+                            e.getValue().size(), SensitiveDataSanitizer.sanitizeText(ex.getMessage()));
+                    unwritten.addAll(e.getValue());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[OUTBOX][MSG] не удалось получить соединение для записи результатов отправки count={}: {}",
+                    outcomes.size(), SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+            unwritten = new ArrayList<>(outcomes);
+        }
+        // Построчный fallback: неудачный пакет не должен оставлять все его записи в SENDING до истечения lease.
+        // Если не удалась и построчная запись, запись вернётся в PENDING через reapExpiredLeases().
+        for (Outcome o : unwritten) {
+            applyOutcome(o);
+        }
+    }
+
+    private void applyOutcome(Outcome o) {
+        if (o.sent()) {
+            markSent(o.id(), o.leaseOwner());
+        } else {
+            markFailed(o.id(), o.attempts(), o.maxAttempts(), o.nextAttemptAt() == null ? Instant.now() : o.nextAttemptAt(),
+                    o.errorCode(), o.errorMessage(), o.dead(), o.leaseOwner());
+        }
+    }
+
+    /**
+     * @return число результатов отправки, отброшенных из-за потери lease (запись уже не в {@code SENDING}
+     * или перехвачена другим владельцем после {@link #reapExpiredLeases()})
+     */
+    public long staleOutcomes() {
+        return staleOutcomes.sum();
+    }
+
+    private void countStale(int expected, int updated) {
+        int stale = expected - updated;
+        if (stale > 0) {
+            staleOutcomes.add(stale);
+            log.warn("[OUTBOX][MSG] результаты отправки отброшены: lease истёк или перехвачен другим узлом count={}", stale);
+        }
+    }
+
+    private static String leaseGuard(String leaseOwner) {
+        return leaseOwner == null ? " AND status=?" : " AND status=? AND lease_owner=?";
+    }
+
+    private static void bindLeaseGuard(PreparedStatement ps, int index, String leaseOwner) throws SQLException {
+        ps.setString(index, Status.SENDING.name());
+        if (leaseOwner != null) {
+            ps.setString(index + 1, leaseOwner);
         }
     }
 
+    private static int updatedRows(int[] counts) {
+        int updated = 0;
+        for (int n : counts) {
+            // SUCCESS_NO_INFO: драйвер не сообщает число строк — считаем строку обновлённой.
+            updated += n == java.sql.Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, n);
+        }
+        return updated;
+    }
+
+    /**
+     * @return число обращений к БД диспетчерского пути (claim/mark*) с момента старта
+     */
+    public long dispatchRoundTrips() {
+        return dispatchRoundTrips.sum();
+    }
+
     /**
      * Переотправка записи outbox.
      * <p>
@@ -609,6 +988,38 @@ public class MessagingOutboxService {
     ) {
     }
 
+    /**
+     * Результат одной попытки отправки для {@link #applyOutcomes(List)}.
+     */
+    public record Outcome(long id,
+                          boolean sent,
+                          int attempts,
+                          int maxAttempts,
+                          Instant nextAttemptAt,
+                          String errorCode,
+                          String errorMessage,
+                          boolean dead,
+                          String leaseOwner) {
+
+        public static Outcome sent(long id) {
+            return sent(id, null);
+        }
+
+        public static Outcome sent(long id, String leaseOwner) {
+            return new Outcome(id, true, 0, 0, null, null, null, false, leaseOwner);
+        }
+
+        public static Outcome failed(long id, int attempts, int maxAttempts, Instant nextAttemptAt,
+                                     String errorCode, String errorMessage, boolean dead) {
+            return failed(id, attempts, maxAttempts, nextAttemptAt, errorCode, errorMessage, dead, null);
+        }
+
+        public static Outcome failed(long id, int attempts, int maxAttempts, Instant nextAttemptAt,
+                                     String errorCode, String errorMessage, boolean dead, String leaseOwner) {
+            return new Outcome(id, false, attempts, maxAttempts, nextAttemptAt, errorCode, errorMessage, dead, leaseOwner);
+        }
+    }
+
     /**
      * Элемент списка (без payload).
      */
@@ -0,0 +1,106 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.scheduling.TaskExecutors;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый NDJSON-экспорт административных выборок.
+ * <p>
+ * Выборка обходится постранично ({@link KeysetCursor#walk}) в фоновом потоке; строки пишутся в pipe, который
+ * REST-слой отдаёт клиенту как тело ответа. Память не зависит от размера выборки: пишущий поток блокируется,
+ * пока клиент не вычитает буфер. Ошибка посреди экспорта (заголовки ответа уже отправлены) фиксируется
+ * последней строкой {@code {"errorCode":"EXPORT_FAILED",...}}.
+ */
+@Singleton
+public class NdjsonExportStreamer {
+
+    private static final Logger log = LoggerFactory.getLogger(NdjsonExportStreamer.class);
+
+    private static final int PIPE_BUFFER = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+
+    @Inject
+    public NdjsonExportStreamer(ObjectMapper objectMapper, @Named(TaskExecutors.IO) ExecutorService executor) {
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+    }
+
+    /**
+     * Источник экспорта: передаёт строки в {@code sink} и возвращает их количество.
+     */
+    @FunctionalInterface
+    public interface Source {
+        long export(Consumer<Object> sink);
+    }
+
+    /**
+     * Запустить экспорт в фоне.
+     *
+     * @param name имя выгрузки (для логов)
+     * @return поток NDJSON для тела ответа
+     */
+    public InputStream stream(String name, Source source) throws IOException {
+        PipedInputStream body = new PipedInputStream(PIPE_BUFFER);
+        PipedOutputStream pipe = new PipedOutputStream(body);
+        executor.execute(() -> {
+            try (OutputStream out = new BufferedOutputStream(pipe, PIPE_BUFFER)) {
+                write(name, source, out);
+            } catch (IOException e) {
+                log.debug("[EXPORT] {}: клиент закрыл соединение", name);
+            }
+        });
+        return body;
+    }
+
+    /**
+     * Синхронно записать экспорт в {@code out}.
+     *
+     * @return количество выгруженных строк
+     */
+    public long write(String name, Source source, OutputStream out) throws IOException {
+        long rows;
+        try {
+            rows = source.export(row -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(row));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            String safe = SensitiveDataSanitizer.sanitizeText(e.getMessage());
+            log.warn("[EXPORT] {}: выгрузка прервана: {}", name, safe);
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("errorCode", "EXPORT_FAILED");
+            error.put("errorMessage", safe);
+            out.write(objectMapper.writeValueAsBytes(error));
+            out.write('\n');
+            out.flush();
+            return -1;
+        }
+        out.flush();
+        return rows;
+    }
+}
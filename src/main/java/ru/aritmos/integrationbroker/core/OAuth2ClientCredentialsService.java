@@ -2,32 +2,102 @@ package ru.aritmos.integrationbroker.core;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Получение OAuth2 access token по grant type client_credentials с коротким in-memory кэшем.
+ * Получение OAuth2 access token по grant type client_credentials с in-memory кэшем.
+ * <p>
+ * Токены кэшируются по ключу {@code (tokenUrl, clientId, scope, audience)}:
+ * <ul>
+ *   <li>обновление single-flight: одновременно по ключу выполняется не больше одного запроса к token endpoint,
+ *   остальные вызывающие ждут его результат;</li>
+ *   <li>после доли {@code refresh-ratio} от {@code expires_in} токен обновляется в фоне, а вызывающие до конца
+ *   обновления получают прежний, ещё действующий токен;</li>
+ *   <li>после неудачного обновления следующая попытка откладывается (экспоненциально, от {@code failure-backoff-ms}
+ *   до {@code max-failure-backoff-ms}); без действующего токена в этот период возвращается {@code null}
+ *   без обращения к token endpoint.</li>
+ * </ul>
+ * Метрики ({@link #snapshot()}): латентность обновлений и число вызовов, которым пришлось ждать получения токена.
  */
 @Singleton
 public class OAuth2ClientCredentialsService {
 
+    /**
+     * Ключ HTTP-клиента token endpoint в {@link HttpClientRegistry} (token endpoint не является REST-коннектором).
+     */
+    static final String TOKEN_CLIENT = "_oauth2-token";
+
+    /**
+     * Токен считается истёкшим за столько миллисекунд до {@code expires_in} (запас на передачу и рассинхрон часов).
+     */
+    private static final long EXPIRY_SKEW_MS = 10_000;
+
+    /**
+     * Предел ожидания вызывающим результата чужого запроса к token endpoint.
+     */
+    private static final long MAX_WAIT_MS = 15_000;
+
     private final ObjectMapper objectMapper;
-    private final HttpClient httpClient;
-    private final Map<String, CachedToken> cache = new ConcurrentHashMap<>();
+    private final HttpClientRegistry clients;
+    private final Executor refreshExecutor;
+    private final double refreshRatio;
+    private final long failureBackoffMs;
+    private final long maxFailureBackoffMs;
+    private final Map<String, TokenEntry> cache = new ConcurrentHashMap<>();
 
-    public OAuth2ClientCredentialsService(ObjectMapper objectMapper) {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder callerWaits = new LongAdder();
+    private final LongAdder callerWaitNanos = new LongAdder();
+    private final LongAdder backgroundRefreshes = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder refreshNanos = new LongAdder();
+    private final LongAccumulator refreshMaxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder backoffRejects = new LongAdder();
+
+    @Inject
+    public OAuth2ClientCredentialsService(ObjectMapper objectMapper,
+                                          HttpClientRegistry clients,
+                                          @Named(TaskExecutors.IO) ExecutorService refreshExecutor,
+                                          @Value("${integrationbroker.oauth2.refresh-ratio:0.75}") double refreshRatio,
+                                          @Value("${integrationbroker.oauth2.failure-backoff-ms:1000}") long failureBackoffMs,
+                                          @Value("${integrationbroker.oauth2.max-failure-backoff-ms:30000}") long maxFailureBackoffMs) {
         this.objectMapper = objectMapper;
-        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(3)).build();
+        this.clients = clients == null ? HttpClientRegistry.standalone() : clients;
+        this.refreshExecutor = refreshExecutor == null ? ForkJoinPool.commonPool() : refreshExecutor;
+        this.refreshRatio = refreshRatio > 0 && refreshRatio <= 1 ? refreshRatio : 0.75;
+        this.failureBackoffMs = Math.max(0, failureBackoffMs);
+        this.maxFailureBackoffMs = Math.max(this.failureBackoffMs, maxFailureBackoffMs);
+    }
+
+    public OAuth2ClientCredentialsService(ObjectMapper objectMapper, HttpClientRegistry clients) {
+        this(objectMapper, clients, null, 0.75, 1000, 30_000);
+    }
+
+    public OAuth2ClientCredentialsService(ObjectMapper objectMapper) {
+        this(objectMapper, null);
     }
 
     public String resolveAccessToken(RuntimeConfigStore.RestConnectorAuth auth) {
@@ -42,38 +112,122 @@ public class OAuth2ClientCredentialsService {
         }
 
         String key = tokenUrl + "|" + clientId + "|" + normalize(auth.oauth2Scope()) + "|" + normalize(auth.oauth2Audience());
-        CachedToken existing = cache.get(key);
+        TokenEntry entry = cache.computeIfAbsent(key, k -> new TokenEntry());
+        entry.auth = auth;
         long now = System.currentTimeMillis();
-        if (existing != null && existing.expiresAtEpochMs() - now > 10_000) {
-            return existing.accessToken();
+
+        CachedToken current = entry.token;
+        if (current != null && current.expiresAtEpochMs() - now > EXPIRY_SKEW_MS) {
+            hits.increment();
+            if (now >= current.refreshAtEpochMs() && now >= entry.retryAtEpochMs) {
+                CompletableFuture<CachedToken> started = entry.startRefresh();
+                if (started != null) {
+                    backgroundRefreshes.increment();
+                    refreshExecutor.execute(() -> refresh(entry, started));
+                }
+            }
+            return current.accessToken();
+        }
+
+        if (now < entry.retryAtEpochMs) {
+            backoffRejects.increment();
+            return null;
+        }
+
+        callerWaits.increment();
+        long waitStarted = System.nanoTime();
+        try {
+            CompletableFuture<CachedToken> started = entry.startRefresh();
+            CompletableFuture<CachedToken> pending;
+            if (started != null) {
+                refresh(entry, started);
+                pending = started;
+            } else {
+                pending = entry.inFlight;
+            }
+            CachedToken fresh = pending == null ? entry.token : pending.get(MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+            return fresh == null ? null : fresh.accessToken();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception ignored) {
+            return null;
+        } finally {
+            callerWaitNanos.add(System.nanoTime() - waitStarted);
+        }
+    }
+
+    /**
+     * Метрики кэша токенов.
+     */
+    public Snapshot snapshot() {
+        long refreshCount = refreshes.sum();
+        long waits = callerWaits.sum();
+        return new Snapshot(
+                cache.size(),
+                hits.sum(),
+                waits,
+                waits == 0 ? 0.0 : callerWaitNanos.sum() / 1_000_000.0 / waits,
+                refreshCount,
+                backgroundRefreshes.sum(),
+                refreshFailures.sum(),
+                refreshCount == 0 ? 0.0 : refreshNanos.sum() / 1_000_000.0 / refreshCount,
+                refreshMaxNanos.get() / 1_000_000.0,
+                backoffRejects.sum());
+    }
+
+    /**
+     * Запрос к token endpoint и публикация результата; {@code future} завершается новым токеном или {@code null}.
+     */
+    private void refresh(TokenEntry entry, CompletableFuture<CachedToken> future) {
+        long started = System.nanoTime();
+        CachedToken fresh = null;
+        try {
+            fresh = fetch(entry.auth);
+        } catch (Exception ignored) {
+            // ошибка token endpoint учитывается как неудачное обновление
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            refreshes.increment();
+            refreshNanos.add(elapsed);
+            refreshMaxNanos.accumulate(elapsed);
+            if (fresh != null) {
+                entry.token = fresh;
+                entry.failures = 0;
+                entry.retryAtEpochMs = 0;
+            } else {
+                refreshFailures.increment();
+                int failures = ++entry.failures;
+                long backoff = Math.min(maxFailureBackoffMs, failureBackoffMs << Math.min(failures - 1, 20));
+                entry.retryAtEpochMs = System.currentTimeMillis() + backoff;
+            }
+            entry.inFlight = null;
+            future.complete(fresh);
         }
+    }
 
+    private CachedToken fetch(RuntimeConfigStore.RestConnectorAuth auth) throws Exception {
         String body = buildBody(auth);
         HttpRequest req = HttpRequest.newBuilder()
-                .uri(URI.create(tokenUrl))
+                .uri(URI.create(normalize(auth.oauth2TokenUrl())))
                 .timeout(Duration.ofSeconds(5))
                 .header("Content-Type", "application/x-www-form-urlencoded")
                 .header("Accept", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
                 .build();
 
-        try {
-            HttpResponse<String> resp = httpClient.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-            if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
-                return null;
-            }
-            JsonNode node = objectMapper.readTree(resp.body());
-            String accessToken = normalize(node.path("access_token").asText(null));
-            if (accessToken == null) {
-                return null;
-            }
-            long expiresIn = node.path("expires_in").asLong(60);
-            long expiresAt = now + Math.max(15, expiresIn) * 1000L;
-            cache.put(key, new CachedToken(accessToken, expiresAt));
-            return accessToken;
-        } catch (Exception ignored) {
+        long now = System.currentTimeMillis();
+        HttpResponse<String> resp = clients.send(TOKEN_CLIENT, null, req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (resp.statusCode() < 200 || resp.statusCode() >= 300) {
+            return null;
+        }
+        JsonNode node = objectMapper.readTree(resp.body());
+        String accessToken = normalize(node.path("access_token").asText(null));
+        if (accessToken == null) {
             return null;
         }
+        long lifetimeMs = Math.max(15, node.path("expires_in").asLong(60)) * 1000L;
+        return new CachedToken(accessToken, now + (long) (lifetimeMs * refreshRatio), now + lifetimeMs);
     }
 
     private String buildBody(RuntimeConfigStore.RestConnectorAuth auth) {
@@ -101,6 +255,45 @@ public class OAuth2ClientCredentialsService {
         return t.isEmpty() ? null : t;
     }
 
-    private record CachedToken(String accessToken, long expiresAtEpochMs) {
+    private record CachedToken(String accessToken, long refreshAtEpochMs, long expiresAtEpochMs) {
+    }
+
+    /**
+     * Состояние ключа кэша: текущий токен, запрос к token endpoint «в полёте» и backoff после ошибок.
+     */
+    private static final class TokenEntry {
+        private volatile RuntimeConfigStore.RestConnectorAuth auth;
+        private volatile CachedToken token;
+        private volatile CompletableFuture<CachedToken> inFlight;
+        private volatile long retryAtEpochMs;
+        private volatile int failures;
+
+        /**
+         * Занять обновление ключа; {@code null}, если обновление уже выполняется другим потоком.
+         */
+        private synchronized CompletableFuture<CachedToken> startRefresh() {
+            if (inFlight != null) {
+                return null;
+            }
+            CompletableFuture<CachedToken> f = new CompletableFuture<>();
+            inFlight = f;
+            return f;
+        }
+    }
+
+    /**
+     * Метрики кэша OAuth2 токенов.
+     */
+    @Serdeable
+    public record Snapshot(int cachedTokens,
+                           long hits,
+                           long callerWaits,
+                           double averageCallerWaitMs,
+                           long refreshes,
+                           long backgroundRefreshes,
+                           long refreshFailures,
+                           double averageRefreshMs,
+                           double maxRefreshMs,
+                           long backoffRejects) {
     }
 }
@@ -0,0 +1,378 @@
+package ru.aritmos.integrationbroker.core;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Пул параллельной отправки записей outbox.
+ * <p>
+ * Используется {@link OutboxDispatcher} в режиме {@code integrationbroker.dispatcher.mode=parallel}.
+ * Порядок обработки одной пачки {@code claimDue}:
+ * <ul>
+ *   <li>записи группируются по {@code correlation_id}; внутри группы отправка строго последовательная,
+ *   в порядке id (записи без correlation_id образуют отдельные группы из одной записи);</li>
+ *   <li>группы раскладываются по «дорожкам» лимита (коннектор REST / провайдер messaging) по первой записи группы;</li>
+ *   <li>на дорожку запускается не больше {@code per-connector-concurrency}/{@code per-provider-concurrency} задач,
+ *   каждая задача забирает группы из очереди дорожки, поэтому воркеры почти не простаивают в ожидании permit;</li>
+ *   <li>каждая отправка дополнительно берёт permit своей дорожки: если цепочка correlation_id затрагивает другой
+ *   коннектор, лимит этого коннектора всё равно соблюдается (поток держит не больше одного permit, взаимоблокировок нет).</li>
+ * </ul>
+ * Вызов {@link #dispatch} дожидается завершения всех задач пачки: следующий тик {@code @Scheduled}
+ * не пересекается с текущим, как и в последовательном режиме.
+ * <p>
+ * Важно: Java 17 не даёт виртуальных потоков, поэтому используется ограниченный {@link ThreadPoolExecutor}
+ * с политикой {@code CallerRuns} (при переполнении очереди задача выполняется потоком планировщика).
+ */
+@Singleton
+public class OutboxDispatchPool {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatchPool.class);
+
+    /**
+     * Режим работы диспетчера outbox.
+     */
+    public enum Mode {
+        SEQUENTIAL,
+        PARALLEL
+    }
+
+    private final Mode mode;
+    private final int workers;
+    private final int perConnectorConcurrency;
+    private final int perProviderConcurrency;
+    private final ConcurrentHashMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private volatile ThreadPoolExecutor executor;
+
+    @Inject
+    public OutboxDispatchPool(@Value("${integrationbroker.dispatcher.mode:sequential}") String mode,
+                              @Value("${integrationbroker.dispatcher.parallel.workers:8}") int workers,
+                              @Value("${integrationbroker.dispatcher.parallel.per-connector-concurrency:4}") int perConnectorConcurrency,
+                              @Value("${integrationbroker.dispatcher.parallel.per-provider-concurrency:4}") int perProviderConcurrency) {
+        this.mode = parseMode(mode);
+        this.workers = Math.max(1, workers);
+        this.perConnectorConcurrency = Math.max(1, perConnectorConcurrency);
+        this.perProviderConcurrency = Math.max(1, perProviderConcurrency);
+    }
+
+    /**
+     * Пул в последовательном режиме (для ручного создания диспетчера в тестах и утилитах).
+     */
+    public static OutboxDispatchPool sequential() {
+        return new OutboxDispatchPool("sequential", 1, 1, 1);
+    }
+
+    public boolean isParallel() {
+        return mode == Mode.PARALLEL;
+    }
+
+    public int perConnectorConcurrency() {
+        return perConnectorConcurrency;
+    }
+
+    public int perProviderConcurrency() {
+        return perProviderConcurrency;
+    }
+
+    /**
+     * Отправить пачку записей.
+     *
+     * @param due записи в порядке выборки (id ASC)
+     * @param correlationId извлечение correlation_id записи (null/пусто — запись без цепочки)
+     * @param laneKey ключ лимита параллелизма (например, {@code rest:<connectorId>} или {@code msg:<provider>})
+     * @param laneLimit лимит одновременных задач на ключ
+     * @param handler отправка одной записи (исключения обрабатываются внутри handler)
+     */
+    public <T> void dispatch(List<T> due,
+                             Function<T, String> correlationId,
+                             Function<T, String> laneKey,
+                             int laneLimit,
+                             Consumer<T> handler) {
+        if (due == null || due.isEmpty()) {
+            return;
+        }
+        if (!isParallel()) {
+            for (T r : due) {
+                runTracked(laneKey.apply(r), r, handler);
+            }
+            return;
+        }
+
+        int limit = Math.max(1, laneLimit);
+        Map<String, ConcurrentLinkedQueue<List<T>>> lanes = partition(due, correlationId, laneKey);
+        ConcurrentHashMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+        ThreadPoolExecutor pool = executor();
+        List<Future<?>> futures = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentLinkedQueue<List<T>>> lane : lanes.entrySet()) {
+            int tasks = Math.min(limit, lane.getValue().size());
+            for (int i = 0; i < tasks; i++) {
+                futures.add(pool.submit(() -> drainLane(lane.getValue(), laneKey, permits, limit, handler)));
+            }
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("[OUTBOX] ошибка параллельной отправки: {}", SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Отправить пачку асинхронно: на дорожку держится до {@code laneLimit} запросов «в полёте»,
+     * потоки пула не используются (ожидание ответа не занимает поток).
+     * <p>
+     * Цепочки correlation_id отправляются последовательно: следующая запись цепочки стартует после завершения
+     * предыдущей. Вся цепочка занимает окно дорожки своей первой записи. Метод дожидается завершения всей пачки.
+     *
+     * @param handler асинхронная отправка одной записи (future не должен завершаться исключением)
+     */
+    public <T> void dispatchAsync(List<T> due,
+                                  Function<T, String> correlationId,
+                                  Function<T, String> laneKey,
+                                  int laneLimit,
+                                  Function<T, CompletableFuture<?>> handler) {
+        if (due == null || due.isEmpty()) {
+            return;
+        }
+        int limit = Math.max(1, laneLimit);
+        Map<String, ConcurrentLinkedQueue<List<T>>> lanes = partition(due, correlationId, laneKey);
+        List<CompletableFuture<Void>> windows = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentLinkedQueue<List<T>>> lane : lanes.entrySet()) {
+            int slots = Math.min(limit, lane.getValue().size());
+            for (int i = 0; i < slots; i++) {
+                windows.add(drainLaneAsync(lane.getKey(), lane.getValue(), handler));
+            }
+        }
+        try {
+            CompletableFuture.allOf(windows.toArray(new CompletableFuture[0])).join();
+        } catch (Exception e) {
+            log.warn("[OUTBOX] ошибка асинхронной отправки: {}", SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+        }
+    }
+
+    private <T> CompletableFuture<Void> drainLaneAsync(String lane,
+                                                      ConcurrentLinkedQueue<List<T>> chains,
+                                                      Function<T, CompletableFuture<?>> handler) {
+        List<T> chain = chains.poll();
+        if (chain == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return sendChainAsync(lane, chain, 0, handler)
+                .thenCompose(ignored -> drainLaneAsync(lane, chains, handler));
+    }
+
+    private <T> CompletableFuture<Void> sendChainAsync(String lane,
+                                                      List<T> chain,
+                                                      int index,
+                                                      Function<T, CompletableFuture<?>> handler) {
+        if (index >= chain.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        AtomicInteger counter = inFlight.computeIfAbsent(lane == null ? "-" : lane, k -> new AtomicInteger());
+        counter.incrementAndGet();
+        CompletableFuture<?> sent;
+        try {
+            sent = handler.apply(chain.get(index));
+        } catch (Exception e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        return sent.handle((r, ex) -> {
+            counter.decrementAndGet();
+            dispatched.increment();
+            if (ex != null) {
+                log.warn("[OUTBOX] необработанная ошибка отправки lane={}: {}", lane, SensitiveDataSanitizer.sanitizeText(ex.getMessage()));
+            }
+            return null;
+        }).thenCompose(ignored -> sendChainAsync(lane, chain, index + 1, handler));
+    }
+
+    /**
+     * Разбить пачку на дорожки лимита и цепочки correlation_id с сохранением исходного порядка.
+     */
+    static <T> Map<String, ConcurrentLinkedQueue<List<T>>> partition(List<T> due,
+                                                                     Function<T, String> correlationId,
+                                                                     Function<T, String> laneKey) {
+        Map<String, List<T>> chains = new LinkedHashMap<>();
+        Map<String, String> chainLane = new LinkedHashMap<>();
+        int solo = 0;
+        for (T r : due) {
+            String corr = correlationId.apply(r);
+            String chain = (corr == null || corr.isBlank()) ? "\u0000solo-" + (solo++) : corr;
+            List<T> list = chains.get(chain);
+            if (list == null) {
+                list = new ArrayList<>();
+                chains.put(chain, list);
+                chainLane.put(chain, laneKey.apply(r));
+            }
+            list.add(r);
+        }
+        Map<String, ConcurrentLinkedQueue<List<T>>> lanes = new LinkedHashMap<>();
+        for (Map.Entry<String, List<T>> e : chains.entrySet()) {
+            lanes.computeIfAbsent(chainLane.get(e.getKey()), k -> new ConcurrentLinkedQueue<>()).add(e.getValue());
+        }
+        return lanes;
+    }
+
+    private <T> void drainLane(ConcurrentLinkedQueue<List<T>> chains,
+                               Function<T, String> laneKey,
+                               ConcurrentHashMap<String, Semaphore> permits,
+                               int limit,
+                               Consumer<T> handler) {
+        List<T> chain;
+        while ((chain = chains.poll()) != null) {
+            for (T r : chain) {
+                String lane = laneKey.apply(r);
+                Semaphore permit = permits.computeIfAbsent(lane == null ? "-" : lane, k -> new Semaphore(limit));
+                try {
+                    permit.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    runTracked(lane, r, handler);
+                } finally {
+                    permit.release();
+                }
+            }
+        }
+    }
+
+    private <T> void runTracked(String lane, T record, Consumer<T> handler) {
+        AtomicInteger counter = inFlight.computeIfAbsent(lane == null ? "-" : lane, k -> new AtomicInteger());
+        counter.incrementAndGet();
+        try {
+            handler.accept(record);
+        } catch (Exception e) {
+            log.warn("[OUTBOX] необработанная ошибка отправки lane={}: {}", lane, SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+        } finally {
+            counter.decrementAndGet();
+            dispatched.increment();
+        }
+    }
+
+    private ThreadPoolExecutor executor() {
+        ThreadPoolExecutor ex = executor;
+        if (ex != null) {
+            return ex;
+        }
+        synchronized (this) {
+            if (executor == null) {
+                AtomicInteger seq = new AtomicInteger();
+                ThreadPoolExecutor created = new ThreadPoolExecutor(
+                        workers,
+                        workers,
+                        60L,
+                        TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(Math.max(64, workers * 8)),
+                        r -> {
+                            Thread t = new Thread(r, "ib-outbox-worker-" + seq.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        },
+                        (r, pool) -> {
+                            callerRuns.increment();
+                            if (!pool.isShutdown()) {
+                                r.run();
+                            }
+                        });
+                created.allowCoreThreadTimeOut(true);
+                executor = created;
+            }
+            return executor;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ThreadPoolExecutor ex = executor;
+        if (ex != null) {
+            ex.shutdown();
+        }
+    }
+
+    /**
+     * Снимок метрик пула (gauge-значения на момент вызова).
+     */
+    public Snapshot snapshot() {
+        ThreadPoolExecutor ex = executor;
+        int active = ex == null ? 0 : ex.getActiveCount();
+        int queued = ex == null ? 0 : ex.getQueue().size();
+        Map<String, Integer> perLane = new TreeMap<>();
+        for (Map.Entry<String, AtomicInteger> e : inFlight.entrySet()) {
+            perLane.put(e.getKey(), e.getValue().get());
+        }
+        return new Snapshot(
+                mode.name(),
+                workers,
+                active,
+                queued,
+                (double) active / workers,
+                dispatched.sum(),
+                callerRuns.sum(),
+                Map.copyOf(perLane)
+        );
+    }
+
+    private static Mode parseMode(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return Mode.SEQUENTIAL;
+        }
+        try {
+            return Mode.valueOf(raw.trim().toUpperCase());
+        } catch (Exception e) {
+            return Mode.SEQUENTIAL;
+        }
+    }
+
+    /**
+     * Метрики пула отправки outbox.
+     *
+     * @param mode режим диспетчера (SEQUENTIAL/PARALLEL)
+     * @param workers размер пула
+     * @param activeWorkers занятые воркеры
+     * @param queuedTasks задачи в очереди пула
+     * @param saturation загрузка пула (activeWorkers / workers)
+     * @param dispatchedTotal обработано записей с момента старта
+     * @param callerRunsTotal сколько раз очередь была переполнена и задача выполнялась потоком планировщика
+     * @param inFlight отправки «в полёте» по ключу лимита (rest:connectorId / msg:provider)
+     */
+    @Serdeable
+    public record Snapshot(String mode,
+                           int workers,
+                           int activeWorkers,
+                           int queuedTasks,
+                           double saturation,
+                           long dispatchedTotal,
+                           long callerRunsTotal,
+                           Map<String, Integer> inFlight) {
+    }
+}
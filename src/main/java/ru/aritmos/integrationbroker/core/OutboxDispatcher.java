@@ -2,21 +2,31 @@ package ru.aritmos.integrationbroker.core;
 
 import io.micronaut.context.annotation.Requires;
 import io.micronaut.context.annotation.Value;
+import io.micronaut.context.event.ApplicationEventListener;
+import io.micronaut.runtime.event.ApplicationStartupEvent;
 import io.micronaut.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 
+import java.lang.management.ManagementFactory;
+import java.net.URI;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
 /**
  * Диспетчер outbox.
  * <p>
- * Периодически выбирает записи со статусом {@code PENDING} и сроком {@code next_attempt_at <= now},
+ * Выбирает записи со статусом {@code PENDING} и сроком {@code next_attempt_at <= now},
  * пытается отправить и переводит запись в:
  * <ul>
  *   <li>{@code SENT} — при успехе;</li>
@@ -24,11 +34,24 @@ import java.util.Map;
  *   <li>{@code DEAD} — при исчерпании попыток.</li>
  * </ul>
  * <p>
- * Важно: конкурентная обработка защищена переводом {@code PENDING -> SENDING} через атомарный UPDATE.
+ * Важно: пачка захватывается одним оператором ({@code claimDue}) с lease на текущий узел: несколько реплик брокера
+ * разбирают непересекающиеся записи. Записи, чей lease истёк (узел упал во время отправки), reaper возвращает в PENDING.
+ * <p>
+ * В режиме {@code integrationbroker.dispatcher.mode=parallel} записи пачки отправляются через {@link OutboxDispatchPool}
+ * с лимитами на коннектор/провайдер; записи с общим {@code correlation_id} отправляются по порядку.
+ * При {@code integrationbroker.dispatcher.rest-async=true} REST outbox отправляется неблокирующе
+ * ({@link RestOutboundSender#sendAsync}): на коннектор держится до {@code per-connector-concurrency} запросов в полёте.
+ * <p>
+ * Запуск тиков: при {@code integrationbroker.dispatcher.wakeup.enabled=true} (по умолчанию) каждый outbox
+ * обслуживается своим потоком, который просыпается по {@link OutboxWakeup} сразу после {@code enqueue}
+ * (локально или через PostgreSQL NOTIFY с других узлов). Пока выборка приносит записи, тики идут подряд;
+ * на пустой выборке пауза растёт от {@code min-delay-ms} до {@code max-delay-ms} — это страховочный опрос
+ * для повторных попыток по {@code next_attempt_at} и пропущенных сигналов.
+ * При {@code wakeup.enabled=false} используется прежний опрос {@code @Scheduled} с {@code fixed-delay}.
  */
 @Singleton
 @Requires(property = "integrationbroker.dispatcher.enabled", notEquals = "false")
-public class OutboxDispatcher {
+public class OutboxDispatcher implements ApplicationEventListener<ApplicationStartupEvent> {
 
     private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
 
@@ -37,19 +60,73 @@ public class OutboxDispatcher {
     private final RestOutboxService restOutboxService;
     private final MessagingProviderRegistry providerRegistry;
     private final OutboundDryRunState outboundDryRunState;
+    private final OutboxDispatchPool dispatchPool;
+    private final OutboxWakeup wakeup;
+    private final HotPathMetrics metrics;
     @Value("${integrationbroker.outbound.dry-run:false}")
     protected boolean outboundDryRun;
+    @Value("${integrationbroker.dispatcher.lease.owner:}")
+    protected String leaseOwner;
+    @Value("${integrationbroker.dispatcher.lease.duration-sec:120}")
+    protected int leaseDurationSec = 120;
+    @Value("${integrationbroker.dispatcher.outcome-flush-size:50}")
+    protected int outcomeFlushSize = 50;
+    @Value("${integrationbroker.dispatcher.rest-async:false}")
+    protected boolean restAsync;
+    @Value("${integrationbroker.dispatcher.wakeup.enabled:true}")
+    protected boolean wakeupEnabled = true;
+    @Value("${integrationbroker.dispatcher.wakeup.min-delay-ms:50}")
+    protected long wakeupMinDelayMs = 50;
+    @Value("${integrationbroker.dispatcher.wakeup.max-delay-ms:5000}")
+    protected long wakeupMaxDelayMs = 5000;
 
+    private final List<Thread> wakeupThreads = new ArrayList<>();
+    private volatile boolean wakeupRunning;
+
+    @Inject
     public OutboxDispatcher(RuntimeConfigStore configStore,
                             MessagingOutboxService messagingOutboxService,
                             RestOutboxService restOutboxService,
                             MessagingProviderRegistry providerRegistry,
-                            OutboundDryRunState outboundDryRunState) {
+                            OutboundDryRunState outboundDryRunState,
+                            OutboxDispatchPool dispatchPool,
+                            OutboxWakeup wakeup,
+                            HotPathMetrics metrics) {
         this.configStore = configStore;
         this.messagingOutboxService = messagingOutboxService;
         this.restOutboxService = restOutboxService;
         this.providerRegistry = providerRegistry;
         this.outboundDryRunState = outboundDryRunState;
+        this.dispatchPool = dispatchPool == null ? OutboxDispatchPool.sequential() : dispatchPool;
+        this.wakeup = wakeup == null ? new OutboxWakeup() : wakeup;
+        this.metrics = metrics == null ? HotPathMetrics.noop() : metrics;
+    }
+
+    public OutboxDispatcher(RuntimeConfigStore configStore,
+                            MessagingOutboxService messagingOutboxService,
+                            RestOutboxService restOutboxService,
+                            MessagingProviderRegistry providerRegistry,
+                            OutboundDryRunState outboundDryRunState,
+                            OutboxDispatchPool dispatchPool,
+                            OutboxWakeup wakeup) {
+        this(configStore, messagingOutboxService, restOutboxService, providerRegistry, outboundDryRunState, dispatchPool, wakeup, null);
+    }
+
+    public OutboxDispatcher(RuntimeConfigStore configStore,
+                            MessagingOutboxService messagingOutboxService,
+                            RestOutboxService restOutboxService,
+                            MessagingProviderRegistry providerRegistry,
+                            OutboundDryRunState outboundDryRunState,
+                            OutboxDispatchPool dispatchPool) {
+        this(configStore, messagingOutboxService, restOutboxService, providerRegistry, outboundDryRunState, dispatchPool, null);
+    }
+
+    public OutboxDispatcher(RuntimeConfigStore configStore,
+                            MessagingOutboxService messagingOutboxService,
+                            RestOutboxService restOutboxService,
+                            MessagingProviderRegistry providerRegistry,
+                            OutboundDryRunState outboundDryRunState) {
+        this(configStore, messagingOutboxService, restOutboxService, providerRegistry, outboundDryRunState, null);
     }
 
     public OutboxDispatcher(RuntimeConfigStore configStore,
@@ -59,56 +136,152 @@ public class OutboxDispatcher {
         this(configStore, messagingOutboxService, restOutboxService, providerRegistry, new OutboundDryRunState(false, null));
     }
 
+    @Override
+    public void onApplicationEvent(ApplicationStartupEvent event) {
+        if (wakeupEnabled) {
+            startWakeupLoops();
+        }
+    }
+
     /**
-     * Диспетчеризация messaging outbox.
+     * Запустить потоки outbox, работающие по сигналам {@link OutboxWakeup}.
+     */
+    synchronized void startWakeupLoops() {
+        if (wakeupRunning) {
+            return;
+        }
+        wakeupRunning = true;
+        wakeupThreads.add(startWakeupLoop("ib-outbox-msg", OutboxWakeup.Kind.MESSAGING, this::dispatchMessaging));
+        wakeupThreads.add(startWakeupLoop("ib-outbox-rest", OutboxWakeup.Kind.REST, this::dispatchRest));
+    }
+
+    @PreDestroy
+    synchronized void stopWakeupLoops() {
+        wakeupRunning = false;
+        for (Thread t : wakeupThreads) {
+            t.interrupt();
+        }
+        wakeupThreads.clear();
+    }
+
+    private Thread startWakeupLoop(String name, OutboxWakeup.Kind kind, IntSupplier tick) {
+        Thread t = new Thread(() -> wakeupLoop(kind, tick), name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private void wakeupLoop(OutboxWakeup.Kind kind, IntSupplier tick) {
+        AdaptiveBackoff backoff = new AdaptiveBackoff(wakeupMinDelayMs, wakeupMaxDelayMs);
+        while (wakeupRunning) {
+            long delay;
+            try {
+                delay = backoff.next(tick.getAsInt());
+            } catch (Exception e) {
+                log.warn("[OUTBOX] ошибка тика {}: {}", kind, SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+                delay = backoff.next(0);
+            }
+            if (delay <= 0) {
+                continue;
+            }
+            try {
+                if (wakeup.await(kind, delay)) {
+                    backoff.reset();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Опрос messaging outbox по расписанию (только при выключенных сигналах пробуждения).
+     */
+    @Scheduled(fixedDelay = "${integrationbroker.dispatcher.fixed-delay:2s}")
+    void pollMessaging() {
+        if (!wakeupEnabled) {
+            dispatchMessaging();
+        }
+    }
+
+    /**
+     * Опрос REST outbox по расписанию (только при выключенных сигналах пробуждения).
      */
     @Scheduled(fixedDelay = "${integrationbroker.dispatcher.fixed-delay:2s}")
-    public void dispatchMessaging() {
+    void pollRest() {
+        if (!wakeupEnabled) {
+            dispatchRest();
+        }
+    }
+
+    /**
+     * Диспетчеризация messaging outbox (один тик).
+     *
+     * @return число захваченных записей
+     */
+    public int dispatchMessaging() {
         if (outboundDryRunState.isDryRun(outboundDryRun)) {
-            return;
+            return 0;
         }
         RuntimeConfigStore.RuntimeConfig cfg = configStore.getEffective();
         RuntimeConfigStore.MessagingOutboxConfig oc = cfg.messagingOutbox();
         if (oc == null || !oc.enabled()) {
-            return;
+            return 0;
         }
 
         int batch = Math.max(1, oc.batchSize());
-        List<MessagingOutboxService.OutboxRecord> due = messagingOutboxService.pickDue(batch);
-        for (MessagingOutboxService.OutboxRecord r : due) {
-            if (!messagingOutboxService.markSending(r.id())) {
-                continue;
-            }
+        List<MessagingOutboxService.OutboxRecord> due = messagingOutboxService.claimDue(batch, leaseOwner(), leaseDurationSec);
+        OutcomeBuffer<MessagingOutboxService.Outcome> outcomes =
+                new OutcomeBuffer<>(outcomeFlushSize, messagingOutboxService::applyOutcomes);
+        try {
+            dispatchPool.dispatch(due,
+                    MessagingOutboxService.OutboxRecord::correlationId,
+                    r -> "msg:" + (r.provider() == null ? "-" : r.provider()),
+                    dispatchPool.perProviderConcurrency(),
+                    r -> sendMessaging(r, oc, outcomes));
+        } finally {
+            outcomes.flush();
+        }
+        return due.size();
+    }
 
-            try {
-                Map<String, String> headers = messagingOutboxService.parseHeaders(r.headersJson());
-                MessagingProvider provider = providerRegistry.get(r.provider());
-                MessagingProvider.SendResult sr = provider.send(
-                        new MessagingProvider.OutboundMessage(
-                                r.destination(),
-                                r.messageKey(),
-                                headers,
-                                r.payloadJson(),
-                                r.correlationId(),
-                                r.sourceMessageId(),
-                                r.idempotencyKey()
-                        )
-                );
-
-                if (sr.success()) {
-                    messagingOutboxService.markSent(r.id());
-                    continue;
-                }
+    private void sendMessaging(MessagingOutboxService.OutboxRecord r,
+                               RuntimeConfigStore.MessagingOutboxConfig oc,
+                               OutcomeBuffer<MessagingOutboxService.Outcome> outcomes) {
+        HotPathMetrics.Timer timer = metrics.timer(HotPathMetrics.Stage.OUTBOX_DISPATCH, "msg:" + (r.provider() == null ? "-" : r.provider()));
+        long startedAt = System.nanoTime();
+        try {
+            Map<String, String> headers = messagingOutboxService.parseHeaders(r.headersJson());
+            MessagingProvider provider = providerRegistry.get(r.provider());
+            MessagingProvider.SendResult sr = provider.send(
+                    new MessagingProvider.OutboundMessage(
+                            r.destination(),
+                            r.messageKey(),
+                            headers,
+                            r.payloadJson(),
+                            r.correlationId(),
+                            r.sourceMessageId(),
+                            r.idempotencyKey()
+                    )
+            );
+            timer.recordSince(startedAt);
 
-                onMessagingFailure(r, oc, sr.errorCode(), sr.errorMessage());
-            } catch (Exception e) {
-                onMessagingFailure(r, oc, "DISPATCH_ERROR", e.getMessage());
+            if (sr.success()) {
+                outcomes.add(MessagingOutboxService.Outcome.sent(r.id(), leaseOwner()));
+                return;
             }
+
+            onMessagingFailure(r, oc, outcomes, sr.errorCode(), sr.errorMessage());
+        } catch (Exception e) {
+            timer.recordSince(startedAt);
+            onMessagingFailure(r, oc, outcomes, "DISPATCH_ERROR", e.getMessage());
         }
     }
 
     private void onMessagingFailure(MessagingOutboxService.OutboxRecord r,
                                     RuntimeConfigStore.MessagingOutboxConfig oc,
+                                    OutcomeBuffer<MessagingOutboxService.Outcome> outcomes,
                                     String errorCode,
                                     String errorMessage) {
         int nextAttempts = r.attempts() + 1;
@@ -116,7 +289,7 @@ public class OutboxDispatcher {
         boolean dead = nextAttempts >= maxAttempts;
         Instant next = computeNextAttempt(oc.baseDelaySec(), oc.maxDelaySec(), nextAttempts);
 
-        messagingOutboxService.markFailed(r.id(), nextAttempts, maxAttempts, next, errorCode, errorMessage, dead);
+        outcomes.add(MessagingOutboxService.Outcome.failed(r.id(), nextAttempts, maxAttempts, next, errorCode, errorMessage, dead, leaseOwner()));
 
         if (dead) {
             log.warn("[OUTBOX][MSG] запись переведена в DEAD id={} provider={} destination={} attempts={}/{} errorCode={}",
@@ -125,42 +298,125 @@ public class OutboxDispatcher {
     }
 
     /**
-     * Диспетчеризация REST outbox.
+     * Диспетчеризация REST outbox (один тик).
+     *
+     * @return число захваченных записей
      */
-    @Scheduled(fixedDelay = "${integrationbroker.dispatcher.fixed-delay:2s}")
-    public void dispatchRest() {
+    public int dispatchRest() {
         if (outboundDryRunState.isDryRun(outboundDryRun)) {
-            return;
+            return 0;
         }
         RuntimeConfigStore.RuntimeConfig cfg = configStore.getEffective();
         RuntimeConfigStore.RestOutboxConfig oc = cfg.restOutbox();
         if (oc == null || !oc.enabled()) {
-            return;
+            return 0;
         }
 
         int batch = Math.max(1, oc.batchSize());
-        List<RestOutboxService.RestRecord> due = restOutboxService.pickDue(batch);
-        for (RestOutboxService.RestRecord r : due) {
-            if (!restOutboxService.markSending(r.id())) {
-                continue;
+        List<RestOutboxService.RestRecord> due = restOutboxService.claimDue(batch, leaseOwner(), leaseDurationSec);
+        OutcomeBuffer<RestOutboxService.Outcome> outcomes =
+                new OutcomeBuffer<>(outcomeFlushSize, restOutboxService::applyOutcomes);
+        try {
+            if (restAsync) {
+                dispatchPool.dispatchAsync(due,
+                        RestOutboxService.RestRecord::correlationId,
+                        OutboxDispatcher::restLaneKey,
+                        dispatchPool.perConnectorConcurrency(),
+                        r -> sendRestAsync(r, oc, cfg, outcomes));
+            } else {
+                dispatchPool.dispatch(due,
+                        RestOutboxService.RestRecord::correlationId,
+                        OutboxDispatcher::restLaneKey,
+                        dispatchPool.perConnectorConcurrency(),
+                        r -> sendRest(r, oc, cfg, outcomes));
             }
+        } finally {
+            outcomes.flush();
+        }
+        return due.size();
+    }
 
-            try {
-                RestOutboundSender.Result rr = restOutboxService.sendOnce(r, oc.idempotencyHeaderName(), cfg);
-                if (rr.success()) {
-                    restOutboxService.markSent(r.id(), rr.httpStatus());
-                    continue;
-                }
-                onRestFailure(r, oc, cfg, rr.errorCode(), rr.errorMessage(), rr.httpStatus());
-            } catch (Exception e) {
-                onRestFailure(r, oc, cfg, "DISPATCH_ERROR", e.getMessage(), -1);
+    private void sendRest(RestOutboxService.RestRecord r,
+                          RuntimeConfigStore.RestOutboxConfig oc,
+                          RuntimeConfigStore.RuntimeConfig cfg,
+                          OutcomeBuffer<RestOutboxService.Outcome> outcomes) {
+        HotPathMetrics.Timer timer = metrics.timer(HotPathMetrics.Stage.OUTBOX_DISPATCH, restLaneKey(r));
+        long startedAt = System.nanoTime();
+        try {
+            RestOutboundSender.Result rr = restOutboxService.sendOnce(r, oc.idempotencyHeaderName(), cfg);
+            timer.recordSince(startedAt);
+            if (rr.success()) {
+                outcomes.add(RestOutboxService.Outcome.sent(r.id(), rr.httpStatus(), leaseOwner()));
+                return;
             }
+            onRestFailure(r, oc, cfg, outcomes, rr.errorCode(), rr.errorMessage(), rr.httpStatus());
+        } catch (Exception e) {
+            timer.recordSince(startedAt);
+            onRestFailure(r, oc, cfg, outcomes, "DISPATCH_ERROR", e.getMessage(), -1);
+        }
+    }
+
+    private CompletableFuture<Void> sendRestAsync(RestOutboxService.RestRecord r,
+                                                  RuntimeConfigStore.RestOutboxConfig oc,
+                                                  RuntimeConfigStore.RuntimeConfig cfg,
+                                                  OutcomeBuffer<RestOutboxService.Outcome> outcomes) {
+        HotPathMetrics.Timer timer = metrics.timer(HotPathMetrics.Stage.OUTBOX_DISPATCH, restLaneKey(r));
+        long startedAt = System.nanoTime();
+        return restOutboxService.sendOnceAsync(r, oc.idempotencyHeaderName(), cfg)
+                .handle((rr, ex) -> {
+                    timer.recordSince(startedAt);
+                    if (ex != null) {
+                        onRestFailure(r, oc, cfg, outcomes, "DISPATCH_ERROR", ex.getMessage(), -1);
+                    } else if (rr.success()) {
+                        outcomes.add(RestOutboxService.Outcome.sent(r.id(), rr.httpStatus(), leaseOwner()));
+                    } else {
+                        onRestFailure(r, oc, cfg, outcomes, rr.errorCode(), rr.errorMessage(), rr.httpStatus());
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Возврат записей с истёкшим lease в {@code PENDING}.
+     */
+    @Scheduled(fixedDelay = "${integrationbroker.dispatcher.lease.reaper-interval:30s}")
+    public void reapExpiredLeases() {
+        int msg = messagingOutboxService.reapExpiredLeases();
+        int rest = restOutboxService.reapExpiredLeases();
+        if (msg > 0 || rest > 0) {
+            log.warn("[OUTBOX] возвращены записи с истёкшим lease: messaging={} rest={}", msg, rest);
+        }
+    }
+
+    private String leaseOwner() {
+        String owner = leaseOwner;
+        if (owner == null || owner.isBlank()) {
+            // pid@host: уникален для узла и стабилен в пределах процесса.
+            owner = ManagementFactory.getRuntimeMXBean().getName();
+            leaseOwner = owner;
+        }
+        return owner;
+    }
+
+    /**
+     * Ключ лимита параллелизма для REST-записи: коннектор, а для прямых вызовов — хост URL.
+     */
+    static String restLaneKey(RestOutboxService.RestRecord r) {
+        if (r.connectorId() != null && !r.connectorId().isBlank()) {
+            return "rest:" + r.connectorId();
+        }
+        try {
+            String host = URI.create(r.url() == null ? "" : r.url()).getHost();
+            return "rest-host:" + (host == null ? "-" : host);
+        } catch (Exception e) {
+            return "rest-host:-";
         }
     }
 
     private void onRestFailure(RestOutboxService.RestRecord r,
                                RuntimeConfigStore.RestOutboxConfig oc,
                                RuntimeConfigStore.RuntimeConfig cfg,
+                               OutcomeBuffer<RestOutboxService.Outcome> outcomes,
                                String errorCode,
                                String errorMessage,
                                int httpStatus) {
@@ -185,7 +441,7 @@ public class OutboxDispatcher {
         boolean dead = nextAttempts >= maxAttempts;
         Instant next = computeNextAttempt(baseDelay, maxDelay, nextAttempts);
 
-        restOutboxService.markFailed(r.id(), nextAttempts, maxAttempts, next, errorCode, errorMessage, httpStatus, dead);
+        outcomes.add(RestOutboxService.Outcome.failed(r.id(), nextAttempts, maxAttempts, next, errorCode, errorMessage, httpStatus, dead, leaseOwner()));
 
         if (dead) {
             log.warn("[OUTBOX][REST] запись переведена в DEAD id={} method={} url={} attempts={}/{} httpStatus={} errorCode={}",
@@ -204,6 +460,84 @@ public class OutboxDispatcher {
         return connector.retryPolicy();
     }
 
+    /**
+     * Пауза между тиками потока пробуждения.
+     * <p>
+     * Выборка принесла записи — следующий тик сразу (разбор backlog без пауз); пустая выборка — пауза
+     * удваивается от {@code minDelayMs} до {@code maxDelayMs}. Сигнал {@link OutboxWakeup} сбрасывает паузу.
+     */
+    static final class AdaptiveBackoff {
+
+        private final long minDelayMs;
+        private final long maxDelayMs;
+        private long currentMs;
+
+        AdaptiveBackoff(long minDelayMs, long maxDelayMs) {
+            this.minDelayMs = Math.max(1, minDelayMs);
+            this.maxDelayMs = Math.max(this.minDelayMs, maxDelayMs);
+            this.currentMs = this.minDelayMs;
+        }
+
+        long next(int claimed) {
+            if (claimed > 0) {
+                currentMs = minDelayMs;
+                return 0;
+            }
+            long delay = currentMs;
+            currentMs = Math.min(maxDelayMs, currentMs * 2);
+            return delay;
+        }
+
+        void reset() {
+            currentMs = minDelayMs;
+        }
+    }
+
+    /**
+     * Буфер результатов отправки одного тика.
+     * <p>
+     * Результаты записываются в БД пачкой: при достижении {@code flushSize} и в конце тика.
+     * До записи запись остаётся в {@code SENDING} под lease, поэтому падение узла приводит к повторной отправке,
+     * а не к потере результата (семантика at-least-once сохраняется).
+     */
+    static final class OutcomeBuffer<O> {
+
+        private final int flushSize;
+        private final Consumer<List<O>> writer;
+        private List<O> pending = new ArrayList<>();
+
+        OutcomeBuffer(int flushSize, Consumer<List<O>> writer) {
+            this.flushSize = Math.max(1, flushSize);
+            this.writer = writer;
+        }
+
+        void add(O outcome) {
+            List<O> full = null;
+            synchronized (this) {
+                pending.add(outcome);
+                if (pending.size() >= flushSize) {
+                    full = pending;
+                    pending = new ArrayList<>();
+                }
+            }
+            if (full != null) {
+                writer.accept(full);
+            }
+        }
+
+        void flush() {
+            List<O> rest;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                rest = pending;
+                pending = new ArrayList<>();
+            }
+            writer.accept(rest);
+        }
+    }
+
     private static Instant computeNextAttempt(int baseDelaySec, int maxDelaySec, int attempts) {
         int base = Math.max(1, baseDelaySec);
         int max = Math.max(base, maxDelaySec);
@@ -0,0 +1,132 @@
+package ru.aritmos.integrationbroker.core;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.context.event.ApplicationEventListener;
+import io.micronaut.runtime.event.ApplicationStartupEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Приём PostgreSQL {@code NOTIFY} о новых записях outbox от других узлов брокера.
+ * <p>
+ * Держит одно выделенное соединение пула с {@code LISTEN <channel>} и переводит уведомления в
+ * {@link OutboxWakeup#signal(OutboxWakeup.Kind)}. На других СУБД (H2 в dev/тестах) слушатель сразу завершается:
+ * диспетчер работает на локальных сигналах и опросе.
+ * <p>
+ * После (пере)подключения будятся оба диспетчера: уведомления, пришедшие во время разрыва, не доставляются.
+ */
+@Singleton
+@Requires(property = "integrationbroker.dispatcher.enabled", notEquals = "false")
+@Requires(property = "integrationbroker.dispatcher.wakeup.enabled", notEquals = "false")
+@Requires(property = "integrationbroker.dispatcher.wakeup.listen-notify", notEquals = "false")
+public class OutboxNotifyListener implements ApplicationEventListener<ApplicationStartupEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxNotifyListener.class);
+
+    private final DataSource dataSource;
+    private final OutboxWakeup wakeup;
+    private final LongAdder received = new LongAdder();
+    @Value("${integrationbroker.dispatcher.wakeup.listen-poll-ms:1000}")
+    protected int pollMs = 1000;
+    @Value("${integrationbroker.dispatcher.wakeup.reconnect-delay-ms:5000}")
+    protected long reconnectDelayMs = 5000;
+
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    public OutboxNotifyListener(DataSource dataSource, OutboxWakeup wakeup) {
+        this.dataSource = dataSource;
+        this.wakeup = wakeup;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationStartupEvent event) {
+        start();
+    }
+
+    synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        Thread t = new Thread(this::listenLoop, "ib-outbox-listen");
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+    }
+
+    @PreDestroy
+    synchronized void stop() {
+        running = false;
+        Thread t = thread;
+        thread = null;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    /**
+     * Число принятых уведомлений.
+     */
+    public long receivedTotal() {
+        return received.sum();
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection c = dataSource.getConnection()) {
+                String product = c.getMetaData().getDatabaseProductName();
+                if (product == null || !product.toLowerCase().contains("postgresql")) {
+                    log.info("[OUTBOX] LISTEN/NOTIFY не поддерживается СУБД {}: диспетчер работает на локальных сигналах и опросе", product);
+                    return;
+                }
+                try (Statement st = c.createStatement()) {
+                    st.execute("LISTEN " + wakeup.channel());
+                }
+                PGConnection pg = c.unwrap(PGConnection.class);
+                wakeup.signal(OutboxWakeup.Kind.MESSAGING);
+                wakeup.signal(OutboxWakeup.Kind.REST);
+                log.info("[OUTBOX] подписка LISTEN {} активна", wakeup.channel());
+
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(Math.max(100, pollMs));
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification n : notifications) {
+                        received.increment();
+                        OutboxWakeup.Kind kind = OutboxWakeup.Kind.fromPayload(n.getParameter());
+                        if (kind == null) {
+                            wakeup.signal(OutboxWakeup.Kind.MESSAGING);
+                            wakeup.signal(OutboxWakeup.Kind.REST);
+                        } else {
+                            wakeup.signal(kind);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("[OUTBOX] ошибка LISTEN {}, переподключение через {} мс: {}",
+                        wakeup.channel(), reconnectDelayMs, SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+                try {
+                    Thread.sleep(Math.max(100, reconnectDelayMs));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package ru.aritmos.integrationbroker.core;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Сигналы «в outbox появилась работа» для {@link OutboxDispatcher}.
+ * <p>
+ * Вместо ожидания очередного тика опроса диспетчер просыпается сразу после {@code enqueue}:
+ * <ul>
+ *   <li>внутри процесса — через {@link #signal(Kind)} (без обращения к БД);</li>
+ *   <li>между узлами — через PostgreSQL {@code NOTIFY} в канал {@code integrationbroker.dispatcher.wakeup.channel};
+ *   уведомления принимает {@link OutboxNotifyListener}.</li>
+ * </ul>
+ * Сигналы схлопываются: сколько бы записей ни было добавлено, диспетчер проснётся один раз и заберёт их пачкой.
+ * Пропущенный сигнал не теряет записи — опрос с адаптивным backoff в диспетчере остаётся страховкой.
+ */
+@Singleton
+public class OutboxWakeup {
+
+    /**
+     * Имя канала LISTEN/NOTIFY по умолчанию.
+     */
+    public static final String DEFAULT_CHANNEL = "ib_outbox";
+
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    /**
+     * Вид outbox, в который добавлена запись.
+     */
+    public enum Kind {
+        MESSAGING,
+        REST;
+
+        /**
+         * Полезная нагрузка NOTIFY для этого вида outbox.
+         */
+        public String payload() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Разобрать полезную нагрузку NOTIFY.
+         *
+         * @return вид outbox или {@code null}, если нагрузка неизвестна
+         */
+        public static Kind fromPayload(String payload) {
+            if (payload == null) {
+                return null;
+            }
+            for (Kind k : values()) {
+                if (k.payload().equalsIgnoreCase(payload.trim())) {
+                    return k;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final boolean listenNotify;
+    private final String channel;
+    private final Signal messaging = new Signal();
+    private final Signal rest = new Signal();
+    private volatile Boolean notifySupported;
+
+    @Inject
+    public OutboxWakeup(@Value("${integrationbroker.dispatcher.wakeup.listen-notify:true}") boolean listenNotify,
+                        @Value("${integrationbroker.dispatcher.wakeup.channel:" + DEFAULT_CHANNEL + "}") String channel) {
+        this.listenNotify = listenNotify;
+        String c = channel == null ? "" : channel.trim().toLowerCase(Locale.ROOT);
+        // Имя канала подставляется в LISTEN как идентификатор, поэтому допускаются только безопасные символы.
+        this.channel = CHANNEL_NAME.matcher(c).matches() ? c : DEFAULT_CHANNEL;
+    }
+
+    /**
+     * Только локальные сигналы (без NOTIFY между узлами).
+     */
+    public OutboxWakeup() {
+        this(false, DEFAULT_CHANNEL);
+    }
+
+    /**
+     * Разбудить диспетчер этого процесса.
+     */
+    public void signal(Kind kind) {
+        signalOf(kind).raise();
+    }
+
+    /**
+     * Запись добавлена в outbox: разбудить локальный диспетчер и (на PostgreSQL) диспетчеры других узлов.
+     * <p>
+     * Вызывается после фиксации INSERT на том же соединении. Ошибка NOTIFY не влияет на enqueue:
+     * другие узлы заберут запись по опросу.
+     */
+    public void enqueued(Connection c, Kind kind) {
+        if (listenNotify && c != null) {
+            try {
+                if (isPostgres(c)) {
+                    try (PreparedStatement ps = c.prepareStatement("SELECT pg_notify(?, ?)")) {
+                        ps.setString(1, channel);
+                        ps.setString(2, kind.payload());
+                        ps.execute();
+                    }
+                }
+            } catch (Exception e) {
+                // no-op
+            }
+        }
+        signal(kind);
+    }
+
+    /**
+     * Дождаться сигнала или истечения таймаута.
+     *
+     * @return {@code true}, если был сигнал (в том числе поступивший до вызова)
+     */
+    public boolean await(Kind kind, long timeoutMs) throws InterruptedException {
+        return signalOf(kind).await(timeoutMs);
+    }
+
+    public boolean listenNotify() {
+        return listenNotify;
+    }
+
+    public String channel() {
+        return channel;
+    }
+
+    private Signal signalOf(Kind kind) {
+        return kind == Kind.MESSAGING ? messaging : rest;
+    }
+
+    private boolean isPostgres(Connection c) throws Exception {
+        Boolean v = notifySupported;
+        if (v == null) {
+            String product = c.getMetaData().getDatabaseProductName();
+            v = product != null && product.toLowerCase(Locale.ROOT).contains("postgresql");
+            notifySupported = v;
+        }
+        return v;
+    }
+
+    /**
+     * Схлопывающийся сигнал: флаг «есть работа» + ожидание на мониторе.
+     */
+    static final class Signal {
+
+        private boolean pending;
+
+        synchronized void raise() {
+            pending = true;
+            notifyAll();
+        }
+
+        synchronized boolean await(long timeoutMs) throws InterruptedException {
+            long deadline = System.nanoTime() + Math.max(0, timeoutMs) * 1_000_000L;
+            while (!pending) {
+                long leftMs = (deadline - System.nanoTime()) / 1_000_000L;
+                if (leftMs <= 0) {
+                    return false;
+                }
+                wait(leftMs);
+            }
+            pending = false;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+
+/**
+ * Потоковое SHA-256 хеширование payload в каноническом JSON-представлении.
+ * <p>
+ * Дерево {@link JsonNode} обходится напрямую и сериализуется в компактный JSON, который сразу подаётся в
+ * {@link MessageDigest} через небольшой буфер генератора — полное сериализованное представление payload
+ * (для событий VisionLabs с base64-изображениями это мегабайты) в памяти не создаётся.
+ * <p>
+ * Каноничность: поля объектов записываются в лексикографическом порядке имён, поэтому семантически равные
+ * payload с разным порядком полей дают один хеш. Порядок элементов массивов значим. Для payload, поля которых
+ * уже упорядочены, хеш совпадает с SHA-256 от {@code ObjectMapper#writeValueAsBytes} (прежний способ расчёта).
+ * <p>
+ * {@link MessageDigest} переиспользуется в пределах потока.
+ */
+public final class PayloadHasher {
+
+    private static final JsonFactory JSON = JsonFactory.builder().build();
+    private static final HexFormat HEX = HexFormat.of();
+    private static final ThreadLocal<DigestSink> SINK = ThreadLocal.withInitial(DigestSink::new);
+
+    private PayloadHasher() {
+    }
+
+    /**
+     * SHA-256 (hex) канонического JSON-представления payload.
+     *
+     * @param payload JSON payload; {@code null} хешируется как JSON {@code null}
+     */
+    public static String sha256Hex(JsonNode payload) {
+        return HEX.formatHex(sha256(payload));
+    }
+
+    /**
+     * SHA-256 канонического JSON-представления payload.
+     */
+    public static byte[] sha256(JsonNode payload) {
+        DigestSink sink = SINK.get();
+        MessageDigest md = sink.digest;
+        md.reset();
+        try (JsonGenerator gen = JSON.createGenerator(sink)) {
+            writeCanonical(gen, payload);
+        } catch (IOException e) {
+            md.reset();
+            throw new UncheckedIOException("Не удалось вычислить хеш payload", e);
+        }
+        return md.digest();
+    }
+
+    /**
+     * SHA-256 (hex) строки в UTF-8.
+     */
+    public static String sha256Hex(String input) {
+        MessageDigest md = SINK.get().digest;
+        md.reset();
+        return HEX.formatHex(md.digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void writeCanonical(JsonGenerator gen, JsonNode node) throws IOException {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            gen.writeNull();
+            return;
+        }
+        switch (node.getNodeType()) {
+            case OBJECT -> {
+                String[] names = new String[node.size()];
+                Iterator<String> it = node.fieldNames();
+                int n = 0;
+                while (it.hasNext()) {
+                    names[n++] = it.next();
+                }
+                Arrays.sort(names, 0, n);
+                gen.writeStartObject();
+                for (int i = 0; i < n; i++) {
+                    gen.writeFieldName(names[i]);
+                    writeCanonical(gen, node.get(names[i]));
+                }
+                gen.writeEndObject();
+            }
+            case ARRAY -> {
+                gen.writeStartArray();
+                for (int i = 0; i < node.size(); i++) {
+                    writeCanonical(gen, node.get(i));
+                }
+                gen.writeEndArray();
+            }
+            case STRING -> gen.writeString(node.textValue());
+            case BOOLEAN -> gen.writeBoolean(node.booleanValue());
+            case NUMBER -> writeNumber(gen, node);
+            case BINARY -> gen.writeBinary(node.binaryValue());
+            default -> gen.writeRawValue(node.toString());
+        }
+    }
+
+    private static void writeNumber(JsonGenerator gen, JsonNode node) throws IOException {
+        switch (node.numberType()) {
+            case INT -> gen.writeNumber(node.intValue());
+            case LONG -> gen.writeNumber(node.longValue());
+            case BIG_INTEGER -> gen.writeNumber(node.bigIntegerValue());
+            case FLOAT -> gen.writeNumber(node.floatValue());
+            case DOUBLE -> gen.writeNumber(node.doubleValue());
+            default -> gen.writeNumber(node.decimalValue());
+        }
+    }
+
+    /**
+     * Выход генератора прямо в digest потока.
+     */
+    private static final class DigestSink extends OutputStream {
+        private final MessageDigest digest;
+
+        private DigestSink() {
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Не удалось вычислить SHA-256", e);
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            digest.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ru.aritmos.integrationbroker.core;
+
+import io.micronaut.scheduling.annotation.Scheduled;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Singleton;
+
+import java.time.Instant;
+
+/**
+ * Глубины очередей (идемпотентность, inbound DLQ, messaging/REST outbox) по статусам, снимаемые по расписанию.
+ * <p>
+ * Раньше каждый вызов {@code /api/metrics/integration} выполнял двенадцать {@code COUNT(1)} по служебным таблицам;
+ * при частом опросе мониторингом это заметная нагрузка на БД. Теперь счётчики обновляются раз в
+ * {@code integrationbroker.metrics.depth-sample-interval}, а метрики и {@code /prometheus} отдают последний снимок.
+ * До первого прогона планировщика снимок снимается синхронно при первом обращении.
+ */
+@Singleton
+public class QueueDepthSampler {
+
+    private final IdempotencyService idempotencyService;
+    private final InboundDlqService inboundDlqService;
+    private final MessagingOutboxService messagingOutboxService;
+    private final RestOutboxService restOutboxService;
+
+    private volatile Depths last;
+
+    public QueueDepthSampler(IdempotencyService idempotencyService,
+                             InboundDlqService inboundDlqService,
+                             MessagingOutboxService messagingOutboxService,
+                             RestOutboxService restOutboxService) {
+        this.idempotencyService = idempotencyService;
+        this.inboundDlqService = inboundDlqService;
+        this.messagingOutboxService = messagingOutboxService;
+        this.restOutboxService = restOutboxService;
+    }
+
+    @Scheduled(fixedDelay = "${integrationbroker.metrics.depth-sample-interval:15s}",
+            initialDelay = "${integrationbroker.metrics.depth-sample-initial-delay:5s}")
+    public void sample() {
+        last = query(idempotencyService, inboundDlqService, messagingOutboxService, restOutboxService);
+    }
+
+    /**
+     * Последний снимок глубин (при отсутствии — снимается сейчас).
+     */
+    public Depths current() {
+        Depths d = last;
+        if (d == null) {
+            sample();
+            d = last;
+        }
+        return d;
+    }
+
+    /**
+     * Прямой подсчёт по БД; используется планировщиком и там, где сэмплер недоступен.
+     */
+    public static Depths query(IdempotencyService idempotencyService,
+                               InboundDlqService inboundDlqService,
+                               MessagingOutboxService messagingOutboxService,
+                               RestOutboxService restOutboxService) {
+        return new Depths(
+                idempotencyService.countByStatus(IdempotencyService.Status.IN_PROGRESS),
+                idempotencyService.countByStatus(IdempotencyService.Status.COMPLETED),
+                idempotencyService.countByStatus(IdempotencyService.Status.FAILED),
+                inboundDlqService.countByStatus(InboundDlqService.Status.PENDING),
+                inboundDlqService.countByStatus(InboundDlqService.Status.REPLAYED),
+                inboundDlqService.countByStatus(InboundDlqService.Status.DEAD),
+                messagingOutboxService.countByStatus(MessagingOutboxService.Status.PENDING),
+                messagingOutboxService.countByStatus(MessagingOutboxService.Status.SENT),
+                messagingOutboxService.countByStatus(MessagingOutboxService.Status.DEAD),
+                restOutboxService.countByStatus(RestOutboxService.Status.PENDING),
+                restOutboxService.countByStatus(RestOutboxService.Status.SENT),
+                restOutboxService.countByStatus(RestOutboxService.Status.DEAD),
+                Instant.now().toString()
+        );
+    }
+
+    /**
+     * Снимок глубин очередей.
+     */
+    @Serdeable
+    public record Depths(
+            long idempotencyInProgress,
+            long idempotencyCompleted,
+            long idempotencyFailed,
+            long dlqPending,
+            long dlqReplayed,
+            long dlqDead,
+            long messagingOutboxPending,
+            long messagingOutboxSent,
+            long messagingOutboxDead,
+            long restOutboxPending,
+            long restOutboxSent,
+            long restOutboxDead,
+            String sampledAt
+    ) {
+    }
+}
@@ -1,6 +1,7 @@
 package ru.aritmos.integrationbroker.core;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Отправка REST-запросов для REST outbox.
@@ -31,6 +32,57 @@ public interface RestOutboundSender {
                 String idempotencyHeaderName,
                 String idempotencyKey);
 
+    /**
+     * Выполнить HTTP-запрос асинхронно.
+     * <p>
+     * Реализация по умолчанию выполняет {@link #send} в вызывающем потоке и возвращает завершённый future,
+     * поэтому тестовые и упрощённые реализации достаточно описать одним синхронным методом.
+     * Future не завершается исключением: ошибки транспорта возвращаются как {@link Result#fail}.
+     *
+     * @return future с результатом
+     */
+    default CompletableFuture<Result> sendAsync(String method,
+                                                String url,
+                                                Map<String, String> headers,
+                                                String bodyJson,
+                                                String idempotencyHeaderName,
+                                                String idempotencyKey) {
+        try {
+            return CompletableFuture.completedFuture(send(method, url, headers, bodyJson, idempotencyHeaderName, idempotencyKey));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(Result.fail("HTTP_CLIENT_ERROR", e.getMessage(), -1));
+        }
+    }
+
+    /**
+     * Выполнить HTTP-запрос через REST-коннектор {@code connectorId}.
+     * <p>
+     * Реализация может использовать клиент и таймауты коннектора (см. {@link HttpClientRegistry});
+     * по умолчанию коннектор игнорируется.
+     */
+    default Result send(String connectorId,
+                        String method,
+                        String url,
+                        Map<String, String> headers,
+                        String bodyJson,
+                        String idempotencyHeaderName,
+                        String idempotencyKey) {
+        return send(method, url, headers, bodyJson, idempotencyHeaderName, idempotencyKey);
+    }
+
+    /**
+     * Асинхронный вариант {@link #send(String, String, String, Map, String, String, String)}.
+     */
+    default CompletableFuture<Result> sendAsync(String connectorId,
+                                                String method,
+                                                String url,
+                                                Map<String, String> headers,
+                                                String bodyJson,
+                                                String idempotencyHeaderName,
+                                                String idempotencyKey) {
+        return sendAsync(method, url, headers, bodyJson, idempotencyHeaderName, idempotencyKey);
+    }
+
     /**
      * Результат HTTP-вызова.
      */
@@ -4,22 +4,28 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micronaut.context.annotation.Value;
 import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.security.MessageDigest;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
@@ -49,26 +55,58 @@ public class RestOutboxService {
         ALWAYS
     }
 
+    private static final Logger log = LoggerFactory.getLogger(RestOutboxService.class);
+
+    private static final String RECORD_COLUMNS =
+            "id, status, http_method, url, connector_id, path, headers_json, body_json, idempotency_key, source_message_id, correlation_id, idem_key, attempts, max_attempts, next_attempt_at, treat_4xx_as_success, last_error_code, last_error_message, last_http_status, updated_at";
+
     private final DataSource dataSource;
     private final ObjectMapper objectMapper;
     private final RestOutboundSender sender;
     private final OAuth2ClientCredentialsService oauth2Service;
     private final OutboundDryRunState outboundDryRunState;
+    private final OutboxWakeup wakeup;
+    private final HotPathMetrics metrics;
     private final ConcurrentHashMap<String, CircuitState> connectorCircuits = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, LatencyHistogram> connectorLatency = new ConcurrentHashMap<>();
+    private volatile Boolean skipLockedSupported;
+    private final LongAdder dispatchRoundTrips = new LongAdder();
+    private final LongAdder staleOutcomes = new LongAdder();
     @Value("${integrationbroker.outbound.dry-run:false}")
     protected boolean outboundDryRun;
 
+    @Inject
     public RestOutboxService(DataSource dataSource,
                             ObjectMapper objectMapper,
                             RestOutboundSender sender,
                             OAuth2ClientCredentialsService oauth2Service,
-                            OutboundDryRunState outboundDryRunState) {
+                            OutboundDryRunState outboundDryRunState,
+                            OutboxWakeup wakeup,
+                            HotPathMetrics metrics) {
         this.dataSource = dataSource;
         this.objectMapper = objectMapper;
         this.sender = sender;
         this.oauth2Service = oauth2Service;
         this.outboundDryRunState = outboundDryRunState;
+        this.wakeup = wakeup;
+        this.metrics = metrics == null ? HotPathMetrics.noop() : metrics;
+    }
+
+    public RestOutboxService(DataSource dataSource,
+                            ObjectMapper objectMapper,
+                            RestOutboundSender sender,
+                            OAuth2ClientCredentialsService oauth2Service,
+                            OutboundDryRunState outboundDryRunState,
+                            OutboxWakeup wakeup) {
+        this(dataSource, objectMapper, sender, oauth2Service, outboundDryRunState, wakeup, null);
+    }
+
+    public RestOutboxService(DataSource dataSource,
+                            ObjectMapper objectMapper,
+                            RestOutboundSender sender,
+                            OAuth2ClientCredentialsService oauth2Service,
+                            OutboundDryRunState outboundDryRunState) {
+        this(dataSource, objectMapper, sender, oauth2Service, outboundDryRunState, null);
     }
 
     public RestOutboxService(DataSource dataSource, ObjectMapper objectMapper, RestOutboundSender sender, OAuth2ClientCredentialsService oauth2Service) {
@@ -173,7 +211,7 @@ public long callViaConnector(RuntimeConfigStore.RuntimeConfig effective,
         // outbox выключен — прямой вызов
         String idemHeader = cfg == null ? "Idempotency-Key" : cfg.idempotencyHeaderName();
         RuntimeConfigStore.CircuitBreakerPolicy cb = effectiveCircuitPolicy(connector);
-        RestOutboundSender.Result r = sendWithCircuitBreaker(connectorId, cb, () -> sender.send(method, url, direct, toJson(body), idemHeader, idempotencyKey));
+        RestOutboundSender.Result r = sendWithCircuitBreaker(connectorId, cb, () -> sender.send(connectorId, method, url, direct, toJson(body), idemHeader, idempotencyKey));
         if (r.success() || isTreat4xxAsSuccess(cfg, r.httpStatus())) {
             return 0;
         }
@@ -188,7 +226,7 @@ public long callViaConnector(RuntimeConfigStore.RuntimeConfig effective,
     }
 
     RuntimeConfigStore.CircuitBreakerPolicy cb = effectiveCircuitPolicy(connector);
-    RestOutboundSender.Result r = sendWithCircuitBreaker(connectorId, cb, () -> sender.send(method, url, direct, toJson(body), cfg.idempotencyHeaderName(), idempotencyKey));
+    RestOutboundSender.Result r = sendWithCircuitBreaker(connectorId, cb, () -> sender.send(connectorId, method, url, direct, toJson(body), cfg.idempotencyHeaderName(), idempotencyKey));
     if (r.success() || isTreat4xxAsSuccess(cfg, r.httpStatus())) {
         return 0;
     }
@@ -246,6 +284,25 @@ private static boolean isTreat4xxAsSuccess(RuntimeConfigStore.RestOutboxConfig c
                         String idemKey,
                         int maxAttempts,
                         String treat4xxAsSuccess) {
+        long startedAt = System.nanoTime();
+        long id = insert(method, url, connectorId, path, headers, body, idempotencyKey, sourceMessageId, correlationId,
+                idemKey, maxAttempts, treat4xxAsSuccess);
+        metrics.timer(HotPathMetrics.Stage.OUTBOX_ENQUEUE, "rest:" + (connectorId == null ? "-" : connectorId)).recordSince(startedAt);
+        return id;
+    }
+
+    private long insert(String method,
+                        String url,
+                        String connectorId,
+                        String path,
+                        Map<String, String> headers,
+                        Object body,
+                        String idempotencyKey,
+                        String sourceMessageId,
+                        String correlationId,
+                        String idemKey,
+                        int maxAttempts,
+                        String treat4xxAsSuccess) {
         Instant now = Instant.now();
         String hdr = toJson(SensitiveDataSanitizer.sanitizeHeaders(headers));
         String bodyJson = body == null ? null : toJson(body);
@@ -273,11 +330,16 @@ private static boolean isTreat4xxAsSuccess(RuntimeConfigStore.RestOutboxConfig c
             ps.setString(16, safeShort(treat4xxAsSuccess, 200, null));
 
             ps.executeUpdate();
+            long id = 0;
             try (ResultSet keys = ps.getGeneratedKeys()) {
                 if (keys.next()) {
-                    return keys.getLong(1);
+                    id = keys.getLong(1);
                 }
             }
+            if (wakeup != null) {
+                wakeup.enqueued(c, OutboxWakeup.Kind.REST);
+            }
+            return id;
         } catch (Exception e) {
             // no-op
         }
@@ -310,7 +372,39 @@ private static boolean isTreat4xxAsSuccess(RuntimeConfigStore.RestOutboxConfig c
     }
 
     public List<RestListItem> list(String status, String connectorId, String correlationId, int limit) {
+        return page(status, connectorId, correlationId, null, limit).items();
+    }
+
+    /**
+     * Страница списка REST outbox (keyset по {@code (updated_at, id)}, см. {@link KeysetCursor}).
+     *
+     * @param cursor курсор из предыдущей страницы ({@code null} — первая страница)
+     * @throws IllegalArgumentException курсор повреждён
+     */
+    public KeysetCursor.Slice<RestListItem> page(String status, String connectorId, String correlationId, String cursor, int limit) {
         int lim = Math.min(Math.max(1, limit), 200);
+        KeysetCursor.Position after = KeysetCursor.decodeNumeric(cursor);
+        try {
+            return KeysetCursor.Slice.of(fetch(status, connectorId, correlationId, after, lim + 1), lim,
+                    RestListItem::updatedAt, r -> String.valueOf(r.id()));
+        } catch (Exception e) {
+            // no-op
+            return new KeysetCursor.Slice<>(List.of(), null);
+        }
+    }
+
+    /**
+     * Потоково выгрузить все записи REST outbox по фильтрам (в порядке списка), не загружая выборку в память целиком.
+     *
+     * @return количество выгруженных записей
+     */
+    public long export(String status, String connectorId, String correlationId, java.util.function.Consumer<? super RestListItem> sink) {
+        return KeysetCursor.walk((after, lim) -> fetch(status, connectorId, correlationId, after, lim),
+                RestListItem::updatedAt, r -> String.valueOf(r.id()), sink);
+    }
+
+    private List<RestListItem> fetch(String status, String connectorId, String correlationId, KeysetCursor.Position after, int limit)
+            throws java.sql.SQLException {
         List<RestListItem> out = new ArrayList<>();
         String normalizedStatus = normalizeFilter(status);
         String normalizedConnectorId = normalizeFilter(connectorId);
@@ -330,10 +424,13 @@ private static boolean isTreat4xxAsSuccess(RuntimeConfigStore.RestOutboxConfig c
         if (filterCorrelation) {
             where.add("correlation_id=?");
         }
+        if (after != null) {
+            where.add(KeysetCursor.Position.condition("id"));
+        }
         if (!where.isEmpty()) {
             sql.append(" WHERE ").append(String.join(" AND ", where));
         }
-        sql.append(" ORDER BY updated_at DESC LIMIT ?");
+        sql.append(" ORDER BY updated_at DESC, id DESC LIMIT ?");
 
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(sql.toString())) {
@@ -347,7 +444,10 @@ private static boolean isTreat4xxAsSuccess(RuntimeConfigStore.RestOutboxConfig c
             if (filterCorrelation) {
                 ps.setString(idx++, normalizedCorrelationId);
             }
-            ps.setInt(idx, lim);
+            if (after != null) {
+                idx = after.bind(ps, idx, true);
+            }
+            ps.setInt(idx, limit);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     out.add(new RestListItem(
@@ -364,8 +464,6 @@ private static boolean isTreat4xxAsSuccess(RuntimeConfigStore.RestOutboxConfig c
                     ));
                 }
             }
-        } catch (Exception e) {
-            // no-op
         }
         return out;
     }
@@ -443,23 +541,155 @@ private static boolean isTreat4xxAsSuccess(RuntimeConfigStore.RestOutboxConfig c
             ps.setTimestamp(2, Timestamp.from(now));
             ps.setLong(3, id);
             ps.setString(4, Status.PENDING.name());
+            dispatchRoundTrips.increment();
             return ps.executeUpdate() == 1;
         } catch (Exception e) {
             return false;
         }
     }
 
+    /**
+     * Атомарно захватить пачку записей для отправки (claim + lease).
+     * <p>
+     * PostgreSQL: один оператор {@code UPDATE ... WHERE id IN (SELECT ... FOR UPDATE SKIP LOCKED) RETURNING ...}.
+     * Прочие БД (H2): выборка кандидатов и JDBC-batch условных UPDATE {@code PENDING -> SENDING} в одном соединении.
+     *
+     * @param limit размер пачки (не больше 200)
+     * @param owner владелец lease (идентификатор узла брокера)
+     * @param leaseSec срок lease; по его истечении {@link #reapExpiredLeases()} вернёт запись в PENDING
+     * @return захваченные записи в статусе SENDING, в порядке id
+     */
+    public List<RestRecord> claimDue(int limit, String owner, int leaseSec) {
+        int lim = Math.min(Math.max(1, limit), 200);
+        Instant now = Instant.now();
+        Timestamp nowTs = Timestamp.from(now);
+        Timestamp leaseUntil = Timestamp.from(now.plusSeconds(Math.max(1, leaseSec)));
+        String leaseOwner = safeShort(owner, 128, "unknown");
+        List<RestRecord> out = new ArrayList<>();
+        try (Connection c = dataSource.getConnection()) {
+            if (supportsSkipLocked(c)) {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE ib_rest_outbox SET status=?, updated_at=?, lease_owner=?, lease_until=? " +
+                                "WHERE id IN (SELECT id FROM ib_rest_outbox WHERE status=? AND next_attempt_at<=? ORDER BY id ASC LIMIT ? FOR UPDATE SKIP LOCKED) " +
+                                "RETURNING " + RECORD_COLUMNS)) {
+                    ps.setString(1, Status.SENDING.name());
+                    ps.setTimestamp(2, nowTs);
+                    ps.setString(3, leaseOwner);
+                    ps.setTimestamp(4, leaseUntil);
+                    ps.setString(5, Status.PENDING.name());
+                    ps.setTimestamp(6, nowTs);
+                    ps.setInt(7, lim);
+                    dispatchRoundTrips.increment();
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            out.add(map(rs));
+                        }
+                    }
+                }
+                out.sort(Comparator.comparingLong(RestRecord::id));
+                return out;
+            }
+
+            List<RestRecord> candidates = new ArrayList<>();
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT " + RECORD_COLUMNS + " FROM ib_rest_outbox WHERE status=? AND next_attempt_at<=? ORDER BY id ASC LIMIT ?")) {
+                ps.setString(1, Status.PENDING.name());
+                ps.setTimestamp(2, nowTs);
+                ps.setInt(3, lim);
+                dispatchRoundTrips.increment();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        candidates.add(map(rs));
+                    }
+                }
+            }
+            if (candidates.isEmpty()) {
+                return out;
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE ib_rest_outbox SET status=?, updated_at=?, lease_owner=?, lease_until=? WHERE id=? AND status=?")) {
+                for (RestRecord r : candidates) {
+                    ps.setString(1, Status.SENDING.name());
+                    ps.setTimestamp(2, nowTs);
+                    ps.setString(3, leaseOwner);
+                    ps.setTimestamp(4, leaseUntil);
+                    ps.setLong(5, r.id());
+                    ps.setString(6, Status.PENDING.name());
+                    ps.addBatch();
+                }
+                int[] updated = ps.executeBatch();
+                dispatchRoundTrips.increment();
+                for (int i = 0; i < candidates.size(); i++) {
+                    if (i < updated.length && updated[i] == 1) {
+                        out.add(asSending(candidates.get(i), now));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // no-op
+        }
+        return out;
+    }
+
+    /**
+     * Вернуть в {@code PENDING} записи, чей lease истёк (узел-владелец упал или завис, не завершив отправку).
+     *
+     * @return количество возвращённых записей
+     */
+    public int reapExpiredLeases() {
+        Instant now = Instant.now();
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "UPDATE ib_rest_outbox SET status=?, updated_at=?, lease_owner=NULL, lease_until=NULL WHERE status=? AND lease_until<?")) {
+            ps.setString(1, Status.PENDING.name());
+            ps.setTimestamp(2, Timestamp.from(now));
+            ps.setString(3, Status.SENDING.name());
+            ps.setTimestamp(4, Timestamp.from(now));
+            return ps.executeUpdate();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private boolean supportsSkipLocked(Connection c) throws Exception {
+        Boolean v = skipLockedSupported;
+        if (v == null) {
+            String product = c.getMetaData().getDatabaseProductName();
+            v = product != null && product.toLowerCase().contains("postgresql");
+            skipLockedSupported = v;
+        }
+        return v;
+    }
+
+    private static RestRecord asSending(RestRecord r, Instant now) {
+        return new RestRecord(r.id(), Status.SENDING.name(), r.httpMethod(), r.url(), r.connectorId(), r.path(),
+                r.headersJson(), r.bodyJson(), r.idempotencyKey(), r.sourceMessageId(), r.correlationId(), r.idemKey(),
+                r.attempts(), r.maxAttempts(), r.nextAttemptAt(), r.treat4xxAsSuccess(), r.lastErrorCode(),
+                r.lastErrorMessage(), r.lastHttpStatus(), now.toString());
+    }
+
     public void markSent(long id, int httpStatus) {
+        markSent(id, httpStatus, null);
+    }
+
+    /**
+     * Отметить отправку как успешную, если запись всё ещё в {@code SENDING} под lease этого владельца.
+     *
+     * @param leaseOwner владелец lease из {@link #claimDue(int, String, int)}; {@code null} — запись захвачена без lease
+     */
+    public void markSent(long id, int httpStatus, String leaseOwner) {
         Instant now = Instant.now();
         try (Connection c = dataSource.getConnection();
-             PreparedStatement ps = c.prepareStatement("UPDATE ib_rest_outbox SET status=?, updated_at=?, last_error_at=NULL, last_error_code=NULL, last_error_message=NULL, last_http_status=? WHERE id=?")) {
+             PreparedStatement ps = c.prepareStatement("UPDATE ib_rest_outbox SET status=?, updated_at=?, lease_owner=NULL, lease_until=NULL, last_error_at=NULL, last_error_code=NULL, last_error_message=NULL, last_http_status=? WHERE id=?" + leaseGuard(leaseOwner))) {
             ps.setString(1, Status.SENT.name());
             ps.setTimestamp(2, Timestamp.from(now));
             ps.setInt(3, httpStatus);
             ps.setLong(4, id);
-            ps.executeUpdate();
+            bindLeaseGuard(ps, 5, leaseOwner);
+            dispatchRoundTrips.increment();
+            countStale(1, ps.executeUpdate());
         } catch (Exception e) {
-            // no-op
+            log.warn("[OUTBOX][REST] не удалось записать результат отправки id={}: {}", id, SensitiveDataSanitizer.sanitizeText(e.getMessage()));
         }
     }
 
@@ -471,10 +701,27 @@ private static boolean isTreat4xxAsSuccess(RuntimeConfigStore.RestOutboxConfig c
                            String errorMessage,
                            int httpStatus,
                            boolean dead) {
+        markFailed(id, attemptsAlready, maxAttempts, nextAttemptAt, errorCode, errorMessage, httpStatus, dead, null);
+    }
+
+    /**
+     * Отметить ошибку, если запись всё ещё в {@code SENDING} под lease этого владельца.
+     *
+     * @param leaseOwner владелец lease из {@link #claimDue(int, String, int)}; {@code null} — запись захвачена без lease
+     */
+    public void markFailed(long id,
+                           int attemptsAlready,
+                           int maxAttempts,
+                           Instant nextAttemptAt,
+                           String errorCode,
+                           String errorMessage,
+                           int httpStatus,
+                           boolean dead,
+                           String leaseOwner) {
         Instant now = Instant.now();
         try (Connection c = dataSource.getConnection();
              PreparedStatement ps = c.prepareStatement(
-                     "UPDATE ib_rest_outbox SET status=?, updated_at=?, attempts=?, max_attempts=?, next_attempt_at=?, last_error_at=?, last_error_code=?, last_error_message=?, last_http_status=? WHERE id=?")) {
+                     "UPDATE ib_rest_outbox SET status=?, updated_at=?, attempts=?, max_attempts=?, next_attempt_at=?, lease_owner=NULL, lease_until=NULL, last_error_at=?, last_error_code=?, last_error_message=?, last_http_status=? WHERE id=?" + leaseGuard(leaseOwner))) {
             ps.setString(1, dead ? Status.DEAD.name() : Status.PENDING.name());
             ps.setTimestamp(2, Timestamp.from(now));
             ps.setInt(3, attemptsAlready);
@@ -485,12 +732,156 @@ private static boolean isTreat4xxAsSuccess(RuntimeConfigStore.RestOutboxConfig c
             ps.setString(8, safeShort(errorMessage, 1000, ""));
             ps.setInt(9, httpStatus);
             ps.setLong(10, id);
-            ps.executeUpdate();
+            bindLeaseGuard(ps, 11, leaseOwner);
+            dispatchRoundTrips.increment();
+            countStale(1, ps.executeUpdate());
         } catch (Exception e) {
-            // no-op
+            log.warn("[OUTBOX][REST] не удалось записать результат отправки id={}: {}", id, SensitiveDataSanitizer.sanitizeText(e.getMessage()));
         }
     }
 
+    /**
+     * Записать результаты отправки пачкой.
+     * <p>
+     * Успешные записи переводятся в {@code SENT} через {@code UPDATE ... WHERE id = ANY(?)}
+     * (по одному оператору на встретившийся HTTP-статус, обычно один), ошибки — одним JDBC-batch.
+     * Используется одно соединение из пула вместо соединения на каждую запись.
+     * <p>
+     * Каждый UPDATE условен: запись должна оставаться в {@code SENDING} под lease владельца из
+     * {@link Outcome#leaseOwner()}. Если lease истёк и запись уже перехвачена другим узлом, результат
+     * отбрасывается и учитывается в {@link #staleOutcomes()}.
+     * <p>
+     * SENT и ошибки пишутся независимо: сбой одного оператора логируется (WARN) и его записи
+     * дописываются построчно через {@code markSent}/{@code markFailed}, не затрагивая остальные.
+     *
+     * @param outcomes результаты отправки
+     */
+    public void applyOutcomes(List<Outcome> outcomes) {
+        if (outcomes == null || outcomes.isEmpty()) {
+            return;
+        }
+        Map<SentGroup, List<Outcome>> sentByGroup = new java.util.LinkedHashMap<>();
+        Map<String, List<Outcome>> failedByOwner = new java.util.LinkedHashMap<>();
+        for (Outcome o : outcomes) {
+            if (o.sent()) {
+                sentByGroup.computeIfAbsent(new SentGroup(o.httpStatus(), o.leaseOwner()), k -> new ArrayList<>()).add(o);
+            } else {
+                failedByOwner.computeIfAbsent(o.leaseOwner(), k -> new ArrayList<>()).add(o);
+            }
+        }
+        Instant now = Instant.now();
+        List<Outcome> unwritten = new ArrayList<>();
+        try (Connection c = dataSource.getConnection()) {
+            for (Map.Entry<SentGroup, List<Outcome>> e : sentByGroup.entrySet()) {
+                String owner = e.getKey().leaseOwner();
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE ib_rest_outbox SET status=?, updated_at=?, lease_owner=NULL, lease_until=NULL, last_error_at=NULL, last_error_code=NULL, last_error_message=NULL, last_http_status=? WHERE id = ANY(?)" + leaseGuard(owner))) {
+                    ps.setString(1, Status.SENT.name());
+                    ps.setTimestamp(2, Timestamp.from(now));
+                    ps.setInt(3, e.getKey().httpStatus());
+                    ps.setArray(4, c.createArrayOf("BIGINT", e.getValue().stream().map(Outcome::id).toArray()));
+                    bindLeaseGuard(ps, 5, owner);
+                    dispatchRoundTrips.increment();
+                    countStale(e.getValue().size(), ps.executeUpdate());
+                } catch (Exception ex) {
+                    log.warn("[OUTBOX][REST] пакетная запись SENT не удалась, переход на построчную запись count={}: {}",
+                            e.getValue().size(), SensitiveDataSanitizer.sanitizeText(ex.getMessage()));
+                    unwritten.addAll(e.getValue());
+                }
+            }
+            for (Map.Entry<String, List<Outcome>> e : failedByOwner.entrySet()) {
+                String owner = e.getKey();
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE ib_rest_outbox SET status=?, updated_at=?, attempts=?, max_attempts=?, next_attempt_at=?, lease_owner=NULL, lease_until=NULL, last_error_at=?, last_error_code=?, last_error_message=?, last_http_status=? WHERE id=?" + leaseGuard(owner))) {
+                    for (Outcome o : e.getValue()) {
+                        ps.setString(1, o.dead() ? Status.DEAD.name() : Status.PENDING.name());
+                        ps.setTimestamp(2, Timestamp.from(now));
+                        ps.setInt(3, o.attempts());
+                        ps.setInt(4, o.maxAttempts());
+                        ps.setTimestamp(5, Timestamp.from(o.nextAttemptAt() == null ? now : o.nextAttemptAt()));
+                        ps.setTimestamp(6, Timestamp.from(now));
+                        ps.setString(7, safeShort(o.errorCode(), 64, "HTTP_ERROR"));
+                        ps.setString(8, safeShort(o.errorMessage(), 1000, ""));
+                        ps.setInt(9, o.httpStatus());
+                        ps.setLong(10, o.id());
+                        bindLeaseGuard(ps, 11, owner);
+                        ps.addBatch();
+                    }
+                    dispatchRoundTrips.increment();
+                    countStale(e.getValue().size(), updatedRows(ps.executeBatch()));
+                } catch (Exception ex) {
+                    log.warn("[OUTBOX][REST] пакетная запись ошибок отправки не удалась, переход на построчную запись count={}: {}",
+                            e.getValue().size(), SensitiveDataSanitizer.sanitizeText(ex.getMessage()));
+                    unwritten.addAll(e.getValue());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[OUTBOX][REST] не удалось получить соединение для записи результатов отправки count={}: {}",
+                    outcomes.size(), SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+            unwritten = new ArrayList<>(outcomes);
+        }
+        // Построчный fallback: неудачный пакет не должен оставлять все его записи в SENDING до истечения lease.
+        // Если не удалась и построчная запись, запись вернётся в PENDING через reapExpiredLeases().
+        for (Outcome o : unwritten) {
+            applyOutcome(o);
+        }
+    }
+
+    private void applyOutcome(Outcome o) {
+        if (o.sent()) {
+            markSent(o.id(), o.httpStatus(), o.leaseOwner());
+        } else {
+            markFailed(o.id(), o.attempts(), o.maxAttempts(), o.nextAttemptAt() == null ? Instant.now() : o.nextAttemptAt(),
+                    o.errorCode(), o.errorMessage(), o.httpStatus(), o.dead(), o.leaseOwner());
+        }
+    }
+
+    /**
+     * @return число результатов отправки, отброшенных из-за потери lease (запись уже не в {@code SENDING}
+     * или перехвачена другим владельцем после {@link #reapExpiredLeases()})
+     */
+    public long staleOutcomes() {
+        return staleOutcomes.sum();
+    }
+
+    private void countStale(int expected, int updated) {
+        int stale = expected - updated;
+        if (stale > 0) {
+            staleOutcomes.add(stale);
+            log.warn("[OUTBOX][REST] результаты отправки отброшены: lease истёк или перехвачен другим узлом count={}", stale);
+        }
+    }
+
+    private static String leaseGuard(String leaseOwner) {
+        return leaseOwner == null ? " AND status=?" : " AND status=? AND lease_owner=?";
+    }
+
+    private static void bindLeaseGuard(PreparedStatement ps, int index, String leaseOwner) throws SQLException {
+        ps.setString(index, Status.SENDING.name());
+        if (leaseOwner != null) {
+            ps.setString(index + 1, leaseOwner);
+        }
+    }
+
+    private static int updatedRows(int[] counts) {
+        int updated = 0;
+        for (int n : counts) {
+            // SUCCESS_NO_INFO: драйвер не сообщает число строк — считаем строку обновлённой.
+            updated += n == java.sql.Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, n);
+        }
+        return updated;
+    }
+
+    private record SentGroup(int httpStatus, String leaseOwner) {
+    }
+
+    /**
+     * @return число обращений к БД диспетчерского пути (claim/mark*) с момента старта
+     */
+    public long dispatchRoundTrips() {
+        return dispatchRoundTrips.sum();
+    }
+
     /**
      * Переотправка записи REST outbox.
      *
@@ -611,47 +1002,68 @@ private static boolean isTreat4xxAsSuccess(RuntimeConfigStore.RestOutboxConfig c
 public RestOutboundSender.Result sendOnce(RestRecord record,
                                          String idempotencyHeaderName,
                                          RuntimeConfigStore.RuntimeConfig effective) {
+    PreparedCall call = prepare(record, effective);
+    RestOutboundSender.Result raw = sendWithCircuitBreaker(
+            record.connectorId(),
+            call.circuitBreaker(),
+            () -> sender.send(record.connectorId(), record.httpMethod(), call.url(), call.headers(), record.bodyJson(), idempotencyHeaderName, record.idempotencyKey())
+    );
+    return applyTreat4xx(record, raw);
+}
 
-    Map<String, String> storedHeaders = parseHeaders(record.headersJson());
-    Map<String, String> authHeaders = Collections.emptyMap();
+    /**
+     * Асинхронный вариант {@link #sendOnce}: запрос выполняется через {@link RestOutboundSender#sendAsync},
+     * поток вызывающего не блокируется на время HTTP-вызова. Circuit-breaker и трактовка 4xx — как в {@link #sendOnce}.
+     *
+     * @return future с результатом (не завершается исключением)
+     */
+    public CompletableFuture<RestOutboundSender.Result> sendOnceAsync(RestRecord record,
+                                                                      String idempotencyHeaderName,
+                                                                      RuntimeConfigStore.RuntimeConfig effective) {
+        PreparedCall call;
+        try {
+            call = prepare(record, effective);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(RestOutboundSender.Result.fail("DISPATCH_ERROR", e.getMessage(), -1));
+        }
+        return sendWithCircuitBreakerAsync(
+                record.connectorId(),
+                call.circuitBreaker(),
+                () -> sender.sendAsync(record.connectorId(), record.httpMethod(), call.url(), call.headers(), record.bodyJson(), idempotencyHeaderName, record.idempotencyKey())
+        ).thenApply(raw -> applyTreat4xx(record, raw));
+    }
 
-    String url = record.url();
-    if (record.connectorId() != null && !record.connectorId().isBlank()) {
+    /**
+     * Итоговые URL/заголовки/политика circuit-breaker для записи: если запись привязана к коннектору,
+     * базовый URL и авторизация берутся из runtime-конфига в момент отправки.
+     */
+    private PreparedCall prepare(RestRecord record, RuntimeConfigStore.RuntimeConfig effective) {
+        Map<String, String> storedHeaders = parseHeaders(record.headersJson());
+        if (record.connectorId() == null || record.connectorId().isBlank()) {
+            return new PreparedCall(record.url(), mergeHeaders(storedHeaders, Collections.emptyMap()), null);
+        }
         RuntimeConfigStore.RestConnectorConfig connector = (effective == null || effective.restConnectors() == null)
                 ? null
                 : effective.restConnectors().get(record.connectorId());
-
         String baseUrl = connector == null ? null : connector.baseUrl();
-        url = buildUrl(baseUrl, record.path());
-        authHeaders = buildAuthHeaders(connector == null ? null : connector.auth());
+        Map<String, String> authHeaders = buildAuthHeaders(connector == null ? null : connector.auth());
+        return new PreparedCall(buildUrl(baseUrl, record.path()), mergeHeaders(storedHeaders, authHeaders), effectiveCircuitPolicy(connector));
     }
 
-    Map<String, String> headers = mergeHeaders(storedHeaders, authHeaders);
-
-    RuntimeConfigStore.CircuitBreakerPolicy cb = null;
-    if (record.connectorId() != null && !record.connectorId().isBlank()) {
-        RuntimeConfigStore.RestConnectorConfig connector = (effective == null || effective.restConnectors() == null)
-                ? null
-                : effective.restConnectors().get(record.connectorId());
-        cb = effectiveCircuitPolicy(connector);
+    private static RestOutboundSender.Result applyTreat4xx(RestRecord record, RestOutboundSender.Result raw) {
+        if (!raw.success() && record.treat4xxAsSuccess() != null && !record.treat4xxAsSuccess().isBlank() && raw.httpStatus() >= 400 && raw.httpStatus() < 500) {
+            String s = "," + record.treat4xxAsSuccess().replaceAll("\\s+", "") + ",";
+            if (s.contains("," + raw.httpStatus() + ",")) {
+                return RestOutboundSender.Result.ok(raw.httpStatus());
+            }
+        }
+        return raw;
     }
 
-    final String finalUrl = url;
-    final Map<String, String> finalHeaders = headers;
-    RestOutboundSender.Result raw = sendWithCircuitBreaker(
-            record.connectorId(),
-            cb,
-            () -> sender.send(record.httpMethod(), finalUrl, finalHeaders, record.bodyJson(), idempotencyHeaderName, record.idempotencyKey())
-    );
-
-    if (!raw.success() && record.treat4xxAsSuccess() != null && !record.treat4xxAsSuccess().isBlank() && raw.httpStatus() >= 400 && raw.httpStatus() < 500) {
-        String s = "," + record.treat4xxAsSuccess().replaceAll("\\s+", "") + ",";
-        if (s.contains("," + raw.httpStatus() + ",")) {
-            return RestOutboundSender.Result.ok(raw.httpStatus());
-        }
+    private record PreparedCall(String url,
+                                Map<String, String> headers,
+                                RuntimeConfigStore.CircuitBreakerPolicy circuitBreaker) {
     }
-    return raw;
-}
 
     private RestOutboundSender.Result sendWithCircuitBreaker(String connectorId,
                                                           RuntimeConfigStore.CircuitBreakerPolicy cb,
@@ -659,18 +1071,41 @@ public RestOutboundSender.Result sendOnce(RestRecord record,
         if (connectorId == null || connectorId.isBlank() || cb == null || !cb.enabled()) {
             return senderCall.get();
         }
+        CircuitState state = connectorCircuits.computeIfAbsent(connectorId, k -> new CircuitState());
+        CircuitPermit permit = acquireCircuit(connectorId, cb, state);
+        if (permit.rejected() != null) {
+            return permit.rejected();
+        }
+        long startedAtNs = System.nanoTime();
+        RestOutboundSender.Result result = senderCall.get();
+        return completeCircuit(connectorId, cb, state, permit.probeCall(), startedAtNs, result);
+    }
+
+    private CompletableFuture<RestOutboundSender.Result> sendWithCircuitBreakerAsync(String connectorId,
+                                                                                   RuntimeConfigStore.CircuitBreakerPolicy cb,
+                                                                                   Supplier<CompletableFuture<RestOutboundSender.Result>> senderCall) {
+        if (connectorId == null || connectorId.isBlank() || cb == null || !cb.enabled()) {
+            return senderCall.get();
+        }
+        CircuitState state = connectorCircuits.computeIfAbsent(connectorId, k -> new CircuitState());
+        CircuitPermit permit = acquireCircuit(connectorId, cb, state);
+        if (permit.rejected() != null) {
+            return CompletableFuture.completedFuture(permit.rejected());
+        }
+        long startedAtNs = System.nanoTime();
+        return senderCall.get().thenApply(result -> completeCircuit(connectorId, cb, state, permit.probeCall(), startedAtNs, result));
+    }
 
-        int threshold = cb.failureThreshold() == null ? 3 : Math.max(1, cb.failureThreshold());
+    private static CircuitPermit acquireCircuit(String connectorId,
+                                                RuntimeConfigStore.CircuitBreakerPolicy cb,
+                                                CircuitState state) {
         int openSec = cb.openTimeoutSec() == null ? 30 : Math.max(1, cb.openTimeoutSec());
         int halfOpenMaxProbes = cb.halfOpenMaxProbes() == null ? 1 : Math.max(1, cb.halfOpenMaxProbes());
-
-        CircuitState state = connectorCircuits.computeIfAbsent(connectorId, k -> new CircuitState());
         Instant now = Instant.now();
-        boolean probeCall = false;
 
         synchronized (state) {
             if (state.openUntil != null && now.isBefore(state.openUntil)) {
-                return RestOutboundSender.Result.fail("CIRCUIT_OPEN", "Circuit breaker open for connector " + connectorId, 503);
+                return new CircuitPermit(RestOutboundSender.Result.fail("CIRCUIT_OPEN", "Circuit breaker open for connector " + connectorId, 503), false);
             }
 
             if (state.openUntil != null && !now.isBefore(state.openUntil)) {
@@ -680,15 +1115,23 @@ public RestOutboundSender.Result sendOnce(RestRecord record,
                 }
                 if (state.remainingHalfOpenProbes <= 0) {
                     state.openUntil = Instant.now().plusSeconds(openSec);
-                    return RestOutboundSender.Result.fail("CIRCUIT_OPEN", "Circuit breaker open for connector " + connectorId, 503);
+                    return new CircuitPermit(RestOutboundSender.Result.fail("CIRCUIT_OPEN", "Circuit breaker open for connector " + connectorId, 503), false);
                 }
                 state.remainingHalfOpenProbes--;
-                probeCall = true;
+                return new CircuitPermit(null, true);
             }
         }
+        return new CircuitPermit(null, false);
+    }
 
-        long startedAtNs = System.nanoTime();
-        RestOutboundSender.Result result = senderCall.get();
+    private RestOutboundSender.Result completeCircuit(String connectorId,
+                                                      RuntimeConfigStore.CircuitBreakerPolicy cb,
+                                                      CircuitState state,
+                                                      boolean probeCall,
+                                                      long startedAtNs,
+                                                      RestOutboundSender.Result result) {
+        int threshold = cb.failureThreshold() == null ? 3 : Math.max(1, cb.failureThreshold());
+        int openSec = cb.openTimeoutSec() == null ? 30 : Math.max(1, cb.openTimeoutSec());
         long elapsedMs = Math.max(0L, (System.nanoTime() - startedAtNs) / 1_000_000L);
         connectorLatency.computeIfAbsent(connectorId, k -> new LatencyHistogram()).record(elapsedMs);
 
@@ -721,6 +1164,26 @@ public RestOutboundSender.Result sendOnce(RestRecord record,
         return result;
     }
 
+    /**
+     * Коннекторы, circuit breaker которых сейчас открыт (вызовы отклоняются без отправки).
+     */
+    public List<String> openCircuits() {
+        Instant now = Instant.now();
+        List<String> out = new ArrayList<>();
+        for (Map.Entry<String, CircuitState> e : connectorCircuits.entrySet()) {
+            CircuitState state = e.getValue();
+            synchronized (state) {
+                if (state.openUntil != null && now.isBefore(state.openUntil)) {
+                    out.add(e.getKey());
+                }
+            }
+        }
+        return out;
+    }
+
+    private record CircuitPermit(RestOutboundSender.Result rejected, boolean probeCall) {
+    }
+
     private static final class CircuitState {
         private int failureCount;
         private Instant openUntil;
@@ -959,6 +1422,40 @@ private Map<String, String> buildAuthHeaders(RuntimeConfigStore.RestConnectorAut
     ) {
     }
 
+    /**
+     * Результат одной попытки отправки для {@link #applyOutcomes(List)}.
+     */
+    public record Outcome(long id,
+                          boolean sent,
+                          int httpStatus,
+                          int attempts,
+                          int maxAttempts,
+                          Instant nextAttemptAt,
+                          String errorCode,
+                          String errorMessage,
+                          boolean dead,
+                          String leaseOwner) {
+
+        public static Outcome sent(long id, int httpStatus) {
+            return sent(id, httpStatus, null);
+        }
+
+        public static Outcome sent(long id, int httpStatus, String leaseOwner) {
+            return new Outcome(id, true, httpStatus, 0, 0, null, null, null, false, leaseOwner);
+        }
+
+        public static Outcome failed(long id, int attempts, int maxAttempts, Instant nextAttemptAt,
+                                     String errorCode, String errorMessage, int httpStatus, boolean dead) {
+            return failed(id, attempts, maxAttempts, nextAttemptAt, errorCode, errorMessage, httpStatus, dead, null);
+        }
+
+        public static Outcome failed(long id, int attempts, int maxAttempts, Instant nextAttemptAt,
+                                     String errorCode, String errorMessage, int httpStatus, boolean dead,
+                                     String leaseOwner) {
+            return new Outcome(id, false, httpStatus, attempts, maxAttempts, nextAttemptAt, errorCode, errorMessage, dead, leaseOwner);
+        }
+    }
+
     @Serdeable
     public record DedupFingerprintPreview(
             long id,
@@ -0,0 +1,587 @@
+package ru.aritmos.integrationbroker.core;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.annotation.Scheduled;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Очистка служебных таблиц по сроку хранения (retention).
+ * <p>
+ * Для каждой пары «таблица + конечный статус» задаётся TTL по {@code updated_at}: завершённые записи
+ * идемпотентности, отправленные/DEAD записи outbox, переигранные/DEAD записи DLQ. Незавершённые статусы
+ * (IN_PROGRESS, PENDING, SENDING) не удаляются никогда. TTL {@code 0} отключает очистку статуса.
+ * <p>
+ * Удаление идёт пачками по {@code batch-size} (самые старые первыми) с бюджетом {@code rows-per-second}:
+ * после каждой пачки поток выдерживает паузу, чтобы фоновая очистка не конкурировала с рабочей нагрузкой
+ * за WAL/IO. Прогон ограничен {@code max-rows-per-run}; остаток удаляется следующим прогоном. На PostgreSQL
+ * одновременно выполняется один прогон на кластер (advisory lock), на других СУБД — один на узел.
+ * <p>
+ * Партиционирование (опционально, только PostgreSQL): если таблица уже разбита {@code PARTITION BY RANGE (created_at)}
+ * (преобразование таблицы — задача DBA: первичный ключ партиционированной таблицы должен включать {@code created_at}),
+ * заранее создаются партиции на {@code premake} периодов вперёд, а партиция целиком удаляется ({@code DROP TABLE}),
+ * когда её верхняя граница старше максимального TTL таблицы и в ней нет ни одной записи в незавершённом статусе или
+ * изменённой позже этой границы. Построчное удаление для такой таблицы остаётся только там, где DROP не успевает:
+ * для статусов с TTL короче максимального и для всех статусов, если хотя бы одна просроченная партиция не удалена
+ * (в ней остались живые записи или DROP не прошёл).
+ */
+@Singleton
+public class RetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    /**
+     * Ключ advisory lock прогона retention (PostgreSQL).
+     */
+    private static final long ADVISORY_LOCK_KEY = 0x1B_5E7E_0001L;
+
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int rowsPerSecond;
+    private final long maxRowsPerRun;
+    private final boolean partitioningEnabled;
+    private final ChronoUnit partitionUnit;
+    private final int premake;
+    private final List<Policy> policies;
+    private final Map<String, TableCounters> counters = new LinkedHashMap<>();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopping;
+    private volatile Boolean postgres;
+    private volatile RunSummary lastRun;
+    private final AtomicLong throttledMs = new AtomicLong();
+
+    @Inject
+    public RetentionService(DataSource dataSource,
+                            @Value("${integrationbroker.retention.enabled:false}") boolean enabled,
+                            @Value("${integrationbroker.retention.batch-size:1000}") int batchSize,
+                            @Value("${integrationbroker.retention.rows-per-second:5000}") int rowsPerSecond,
+                            @Value("${integrationbroker.retention.max-rows-per-run:1000000}") long maxRowsPerRun,
+                            @Value("${integrationbroker.retention.ttl.idempotency-completed:7d}") Duration idempotencyCompleted,
+                            @Value("${integrationbroker.retention.ttl.idempotency-failed:30d}") Duration idempotencyFailed,
+                            @Value("${integrationbroker.retention.ttl.messaging-outbox-sent:7d}") Duration messagingSent,
+                            @Value("${integrationbroker.retention.ttl.messaging-outbox-dead:30d}") Duration messagingDead,
+                            @Value("${integrationbroker.retention.ttl.rest-outbox-sent:7d}") Duration restSent,
+                            @Value("${integrationbroker.retention.ttl.rest-outbox-dead:30d}") Duration restDead,
+                            @Value("${integrationbroker.retention.ttl.dlq-replayed:30d}") Duration dlqReplayed,
+                            @Value("${integrationbroker.retention.ttl.dlq-dead:90d}") Duration dlqDead,
+                            @Value("${integrationbroker.retention.partitioning.enabled:false}") boolean partitioningEnabled,
+                            @Value("${integrationbroker.retention.partitioning.interval:month}") String partitionInterval,
+                            @Value("${integrationbroker.retention.partitioning.premake:2}") int premake) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.rowsPerSecond = Math.max(0, rowsPerSecond);
+        this.maxRowsPerRun = Math.max(1, maxRowsPerRun);
+        this.partitioningEnabled = partitioningEnabled;
+        this.partitionUnit = "day".equalsIgnoreCase(partitionInterval == null ? "" : partitionInterval.trim())
+                ? ChronoUnit.DAYS : ChronoUnit.MONTHS;
+        this.premake = Math.max(0, premake);
+
+        List<Policy> p = new ArrayList<>();
+        p.add(new Policy("ib_idempotency", "idem_key", IdempotencyService.Status.COMPLETED.name(), idempotencyCompleted));
+        p.add(new Policy("ib_idempotency", "idem_key", IdempotencyService.Status.FAILED.name(), idempotencyFailed));
+        p.add(new Policy("ib_messaging_outbox", "id", MessagingOutboxService.Status.SENT.name(), messagingSent));
+        p.add(new Policy("ib_messaging_outbox", "id", MessagingOutboxService.Status.DEAD.name(), messagingDead));
+        p.add(new Policy("ib_rest_outbox", "id", RestOutboxService.Status.SENT.name(), restSent));
+        p.add(new Policy("ib_rest_outbox", "id", RestOutboxService.Status.DEAD.name(), restDead));
+        p.add(new Policy("ib_inbound_dlq", "id", InboundDlqService.Status.REPLAYED.name(), dlqReplayed));
+        p.add(new Policy("ib_inbound_dlq", "id", InboundDlqService.Status.DEAD.name(), dlqDead));
+        this.policies = List.copyOf(p);
+        for (Policy policy : policies) {
+            counters.computeIfAbsent(policy.table(), t -> new TableCounters());
+        }
+    }
+
+    /**
+     * Политика хранения: записи {@code table} в статусе {@code status} удаляются через {@code ttl} после
+     * последнего изменения.
+     */
+    public record Policy(String table, String keyColumn, String status, Duration ttl) {
+
+        boolean active() {
+            return ttl != null && !ttl.isZero() && !ttl.isNegative();
+        }
+    }
+
+    @Scheduled(fixedDelay = "${integrationbroker.retention.interval:10m}",
+            initialDelay = "${integrationbroker.retention.initial-delay:1m}")
+    public void scheduledRun() {
+        if (enabled) {
+            runOnce();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+    }
+
+    /**
+     * Выполнить один прогон очистки.
+     *
+     * @return итог прогона; {@code null}, если прогон уже выполняется (на этом узле или, для PostgreSQL, на другом)
+     */
+    public RunSummary runOnce() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try (Connection lockConnection = dataSource.getConnection()) {
+            boolean pg = isPostgres(lockConnection);
+            if (pg && !tryAdvisoryLock(lockConnection)) {
+                return null;
+            }
+            try {
+                RunSummary summary = purge(pg);
+                lastRun = summary;
+                if (summary.deletedRows() > 0 || summary.droppedPartitions() > 0) {
+                    log.info("[RETENTION] удалено строк={} партиций={} за {} мс", summary.deletedRows(),
+                            summary.droppedPartitions(), summary.durationMs());
+                }
+                return summary;
+            } finally {
+                if (pg) {
+                    advisoryUnlock(lockConnection);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[RETENTION] прогон прерван: {}", SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+            return null;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private RunSummary purge(boolean pg) {
+        long started = System.nanoTime();
+        Instant startedAt = Instant.now();
+        long deleted = 0;
+        long dropped = 0;
+        Map<String, Boolean> partitioned = new LinkedHashMap<>();
+        Set<String> undropped = new HashSet<>();
+        for (String table : counters.keySet()) {
+            boolean isPartitioned = pg && partitioningEnabled && isPartitioned(table);
+            partitioned.put(table, isPartitioned);
+            if (isPartitioned) {
+                premakePartitions(table, startedAt);
+                dropped += dropExpiredPartitions(table, startedAt, undropped);
+            }
+        }
+        for (Policy policy : policies) {
+            if (stopping || deleted >= maxRowsPerRun) {
+                break;
+            }
+            if (!policy.active()) {
+                continue;
+            }
+            // Партиционированная таблица чистится DROP-ом; построчно — только то, что DROP не покрывает.
+            if (partitioned.get(policy.table()) && !undropped.contains(policy.table())
+                    && policy.ttl().compareTo(maxTtl(policy.table())) >= 0) {
+                continue;
+            }
+            deleted += purgeRows(policy, startedAt.minus(policy.ttl()), maxRowsPerRun - deleted);
+        }
+        long durationMs = Math.max(0, (System.nanoTime() - started) / 1_000_000);
+        double rate = durationMs == 0 ? deleted : deleted * 1000.0 / durationMs;
+        return new RunSummary(startedAt.toString(), durationMs, deleted, dropped, rate);
+    }
+
+    /**
+     * Построчное удаление по политике пачками с соблюдением бюджета {@code rows-per-second}.
+     */
+    private long purgeRows(Policy policy, Instant cutoff, long budget) {
+        String sql = "DELETE FROM " + policy.table() + " WHERE " + policy.keyColumn() + " IN (SELECT " + policy.keyColumn()
+                + " FROM " + policy.table() + " WHERE status=? AND updated_at<? ORDER BY updated_at ASC LIMIT ?)";
+        long total = 0;
+        TableCounters tc = counters.get(policy.table());
+        while (!stopping && total < budget) {
+            int lim = (int) Math.min(batchSize, budget - total);
+            long batchStarted = System.nanoTime();
+            int n;
+            try (Connection c = dataSource.getConnection();
+                 PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, policy.status());
+                ps.setTimestamp(2, Timestamp.from(cutoff));
+                ps.setInt(3, lim);
+                n = ps.executeUpdate();
+            } catch (SQLException e) {
+                log.warn("[RETENTION] ошибка очистки {} ({}): {}", policy.table(), policy.status(),
+                        SensitiveDataSanitizer.sanitizeText(e.getMessage()));
+                break;
+            }
+            total += n;
+            tc.deletedRows.add(n);
+            if (n < lim) {
+                break;
+            }
+            throttle(n, batchStarted);
+        }
+        return total;
+    }
+
+    private void throttle(int rows, long batchStartedNanos) {
+        if (rowsPerSecond <= 0) {
+            return;
+        }
+        long spentMs = (System.nanoTime() - batchStartedNanos) / 1_000_000;
+        long pauseMs = rows * 1000L / rowsPerSecond - spentMs;
+        if (pauseMs <= 0) {
+            return;
+        }
+        throttledMs.addAndGet(pauseMs);
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopping = true;
+        }
+    }
+
+    private boolean isPartitioned(String table) {
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid " +
+                             "WHERE c.relname = ? AND c.relnamespace = to_regnamespace(current_schema())")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                boolean partitioned = rs.next();
+                counters.get(table).partitioned = partitioned;
+                return partitioned;
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Создать партиции на текущий и {@code premake} следующих периодов (если их ещё нет).
+     */
+    private void premakePartitions(String table, Instant now) {
+        LocalDate start = periodStart(LocalDate.ofInstant(now, ZoneOffset.UTC));
+        DateTimeFormatter suffix = DateTimeFormatter.ofPattern(partitionUnit == ChronoUnit.DAYS ? "yyyyMMdd" : "yyyyMM");
+        for (int i = 0; i <= premake; i++) {
+            LocalDate from = start.plus(i, partitionUnit);
+            LocalDate to = from.plus(1, partitionUnit);
+            String name = table + "_p" + from.format(suffix);
+            String ddl = "CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + table
+                    + " FOR VALUES FROM ('" + from + " 00:00:00+00') TO ('" + to + " 00:00:00+00')";
+            try (Connection c = dataSource.getConnection(); Statement st = c.createStatement()) {
+                st.execute(ddl);
+            } catch (SQLException e) {
+                // Пересечение с партицией, созданной вручную с другими границами, — не ошибка retention.
+                log.debug("[RETENTION] партиция {} не создана: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private LocalDate periodStart(LocalDate day) {
+        return partitionUnit == ChronoUnit.DAYS ? day : day.withDayOfMonth(1);
+    }
+
+    /**
+     * Максимальный TTL активных политик таблицы ({@code null}, если активных политик нет).
+     */
+    private Duration maxTtl(String table) {
+        Duration maxTtl = null;
+        for (Policy p : policies) {
+            if (p.table().equals(table) && p.active()) {
+                maxTtl = maxTtl == null || p.ttl().compareTo(maxTtl) > 0 ? p.ttl() : maxTtl;
+            }
+        }
+        return maxTtl;
+    }
+
+    /**
+     * Удалить партиции, целиком вышедшие за срок хранения.
+     *
+     * @param undropped сюда добавляется таблица, если просроченную партицию удалить не удалось
+     * @return количество удалённых партиций
+     */
+    private long dropExpiredPartitions(String table, Instant now, Set<String> undropped) {
+        Duration maxTtl = maxTtl(table);
+        if (maxTtl == null) {
+            return 0;
+        }
+        List<String> statuses = new ArrayList<>();
+        for (Policy p : policies) {
+            if (p.table().equals(table) && p.active()) {
+                statuses.add(p.status());
+            }
+        }
+        Instant cutoff = now.minus(maxTtl);
+        long dropped = 0;
+        for (Map.Entry<String, Instant> partition : partitions(table).entrySet()) {
+            Instant upper = partition.getValue();
+            if (upper == null || !upper.isBefore(cutoff) || stopping) {
+                continue;
+            }
+            String name = partition.getKey();
+            if (hasLiveRows(name, statuses, cutoff)) {
+                undropped.add(table);
+                continue;
+            }
+            try (Connection c = dataSource.getConnection(); Statement st = c.createStatement()) {
+                st.execute("DROP TABLE IF EXISTS " + quote(name));
+                dropped++;
+                counters.get(table).droppedPartitions.increment();
+                log.info("[RETENTION] удалена партиция {} (граница {})", name, upper);
+            } catch (SQLException e) {
+                undropped.add(table);
+                log.warn("[RETENTION] не удалось удалить партицию {}: {}", name, e.getMessage());
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Партиции таблицы и их верхние границы (для партиций без границы RANGE — {@code null}).
+     */
+    private Map<String, Instant> partitions(String table) {
+        Map<String, Instant> out = new LinkedHashMap<>();
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT child.relname, pg_get_expr(child.relpartbound, child.oid) FROM pg_inherits i " +
+                             "JOIN pg_class parent ON parent.oid = i.inhparent JOIN pg_class child ON child.oid = i.inhrelid " +
+                             "WHERE parent.relname = ? AND parent.relnamespace = to_regnamespace(current_schema())")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.put(rs.getString(1), parseUpperBound(rs.getString(2)));
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("[RETENTION] не удалось прочитать партиции {}: {}", table, e.getMessage());
+        }
+        return out;
+    }
+
+    /**
+     * Верхняя граница из выражения {@code FOR VALUES FROM ('...') TO ('...')}.
+     */
+    static Instant parseUpperBound(String bound) {
+        if (bound == null) {
+            return null;
+        }
+        Matcher m = UPPER_BOUND.matcher(bound);
+        if (!m.find()) {
+            return null;
+        }
+        String v = m.group(1).trim().replace(' ', 'T');
+        try {
+            if (v.length() == 10) {
+                return LocalDate.parse(v).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            if (v.matches(".*[+-]\\d{2}$")) {
+                v = v + ":00";
+            }
+            return java.time.OffsetDateTime.parse(v).toInstant();
+        } catch (RuntimeException e) {
+            try {
+                return java.time.LocalDateTime.parse(v).toInstant(ZoneOffset.UTC);
+            } catch (RuntimeException ignore) {
+                return null;
+            }
+        }
+    }
+
+    private boolean hasLiveRows(String partition, List<String> expirableStatuses, Instant cutoff) {
+        String placeholders = String.join(",", java.util.Collections.nCopies(expirableStatuses.size(), "?"));
+        String sql = "SELECT 1 FROM " + quote(partition) + " WHERE status NOT IN (" + placeholders + ") OR updated_at>=? LIMIT 1";
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            int idx = 1;
+            for (String s : expirableStatuses) {
+                ps.setString(idx++, s);
+            }
+            ps.setTimestamp(idx, Timestamp.from(cutoff));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private boolean isPostgres(Connection c) {
+        Boolean pg = postgres;
+        if (pg == null) {
+            try {
+                pg = c.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgresql");
+            } catch (SQLException e) {
+                pg = false;
+            }
+            postgres = pg;
+        }
+        return pg;
+    }
+
+    private static boolean tryAdvisoryLock(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            ps.setLong(1, ADVISORY_LOCK_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private static void advisoryUnlock(Connection c) {
+        try (PreparedStatement ps = c.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            ps.setLong(1, ADVISORY_LOCK_KEY);
+            ps.execute();
+        } catch (SQLException e) {
+            // no-op: lock освободится при закрытии соединения
+        }
+    }
+
+    /**
+     * Размер таблицы (байт, вместе с индексами и партициями) — только PostgreSQL.
+     */
+    private Long sizeBytes(Connection c, String table, boolean pg) {
+        if (!pg) {
+            return null;
+        }
+        String sql = counters.get(table).partitioned
+                ? "SELECT COALESCE(SUM(pg_total_relation_size(inhrelid)), 0) FROM pg_inherits WHERE inhparent = to_regclass(?)"
+                : "SELECT pg_total_relation_size(to_regclass(?))";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Оценка числа строк: на PostgreSQL — статистика планировщика (без сканирования), иначе COUNT(*).
+     */
+    private Long rowEstimate(Connection c, String table, boolean pg) {
+        String sql = pg
+                ? "SELECT COALESCE(SUM(GREATEST(c.reltuples, 0)), 0)::bigint FROM pg_class c WHERE c.oid = to_regclass(?) "
+                + "OR c.oid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = to_regclass(?))"
+                : "SELECT COUNT(*) FROM " + table;
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            if (pg) {
+                ps.setString(1, table);
+                ps.setString(2, table);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Снимок состояния retention (включая размеры таблиц на момент вызова).
+     */
+    public Snapshot snapshot() {
+        List<TableStats> tables = new ArrayList<>();
+        try (Connection c = dataSource.getConnection()) {
+            boolean pg = isPostgres(c);
+            for (Map.Entry<String, TableCounters> e : counters.entrySet()) {
+                TableCounters tc = e.getValue();
+                tables.add(new TableStats(e.getKey(), tc.partitioned, tc.deletedRows.sum(), tc.droppedPartitions.sum(),
+                        sizeBytes(c, e.getKey(), pg), rowEstimate(c, e.getKey(), pg)));
+            }
+        } catch (Exception e) {
+            for (Map.Entry<String, TableCounters> en : counters.entrySet()) {
+                TableCounters tc = en.getValue();
+                tables.add(new TableStats(en.getKey(), tc.partitioned, tc.deletedRows.sum(), tc.droppedPartitions.sum(), null, null));
+            }
+        }
+        List<PolicyView> views = new ArrayList<>();
+        for (Policy p : policies) {
+            views.add(new PolicyView(p.table(), p.status(), p.active() ? p.ttl().toString() : null));
+        }
+        return new Snapshot(enabled, running.get(), batchSize, rowsPerSecond, partitioningEnabled, views, lastRun,
+                throttledMs.get(), tables);
+    }
+
+    private static final class TableCounters {
+        private final LongAdder deletedRows = new LongAdder();
+        private final LongAdder droppedPartitions = new LongAdder();
+        private volatile boolean partitioned;
+    }
+
+    /**
+     * Итог прогона.
+     *
+     * @param rowsPerSec фактическая скорость удаления за прогон (с учётом пауз бюджета)
+     */
+    @Serdeable
+    public record RunSummary(String startedAt,
+                             long durationMs,
+                             long deletedRows,
+                             long droppedPartitions,
+                             double rowsPerSec) {
+    }
+
+    @Serdeable
+    public record PolicyView(String table, String status, String ttl) {
+    }
+
+    /**
+     * @param sizeBytes   размер таблицы с индексами (только PostgreSQL)
+     * @param rowEstimate оценка числа строк
+     */
+    @Serdeable
+    public record TableStats(String table,
+                             boolean partitioned,
+                             long deletedRows,
+                             long droppedPartitions,
+                             Long sizeBytes,
+                             Long rowEstimate) {
+    }
+
+    @Serdeable
+    public record Snapshot(boolean enabled,
+                           boolean running,
+                           int batchSize,
+                           int rowsPerSecond,
+                           boolean partitioningEnabled,
+                           List<PolicyView> policies,
+                           RunSummary lastRun,
+                           long throttledMs,
+                           List<TableStats> tables) {
+    }
+}
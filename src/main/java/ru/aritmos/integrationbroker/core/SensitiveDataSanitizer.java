@@ -1,7 +1,7 @@
 package ru.aritmos.integrationbroker.core;
 
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -129,6 +129,7 @@ public final class SensitiveDataSanitizer {
      * Санитизировать вложенный объект (Map/List/scalar) для debug-preview.
      * <p>
      * Вложенные blob-поля и массивы бинарных данных маскируются.
+     * Если маскировать нечего, возвращается исходный объект (без копирования); результат не следует изменять.
      */
     public static Object sanitizeStructuredData(Object value) {
         return sanitizeStructuredData(value, null, 0);
@@ -143,23 +144,46 @@ public final class SensitiveDataSanitizer {
         }
 
         if (value instanceof Map<?, ?> map) {
-            Map<String, Object> out = new LinkedHashMap<>();
+            Map<String, Object> out = null;
+            int index = 0;
             for (Map.Entry<?, ?> e : map.entrySet()) {
-                if (e.getKey() == null) {
+                Object rawKey = e.getKey();
+                if (rawKey == null) {
+                    if (out == null) {
+                        out = copyPrefix(map, index);
+                    }
+                    index++;
                     continue;
                 }
-                String key = String.valueOf(e.getKey());
-                out.put(key, sanitizeStructuredData(e.getValue(), key, depth + 1));
+                String key = rawKey instanceof String s ? s : String.valueOf(rawKey);
+                Object original = e.getValue();
+                Object sanitized = sanitizeStructuredData(original, key, depth + 1);
+                if (out == null && (sanitized != original || !(rawKey instanceof String))) {
+                    out = copyPrefix(map, index);
+                }
+                if (out != null) {
+                    out.put(key, sanitized);
+                }
+                index++;
             }
-            return out;
+            return out == null ? map : out;
         }
 
         if (value instanceof List<?> list) {
-            List<Object> out = new ArrayList<>(list.size());
+            List<Object> out = null;
+            int index = 0;
             for (Object item : list) {
-                out.add(sanitizeStructuredData(item, keyHint, depth + 1));
+                Object sanitized = sanitizeStructuredData(item, keyHint, depth + 1);
+                if (out == null && sanitized != item) {
+                    out = new ArrayList<>(list.size());
+                    out.addAll(list.subList(0, index));
+                }
+                if (out != null) {
+                    out.add(sanitized);
+                }
+                index++;
             }
-            return out;
+            return out == null ? list : out;
         }
 
         if (value instanceof byte[]) {
@@ -176,6 +200,21 @@ public final class SensitiveDataSanitizer {
         return value;
     }
 
+    /**
+     * Копия первых {@code count} записей карты (ключи — строки, значения не требуют маскирования).
+     */
+    private static Map<String, Object> copyPrefix(Map<?, ?> map, int count) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        int i = 0;
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            if (i++ >= count) {
+                break;
+            }
+            out.put((String) e.getKey(), e.getValue());
+        }
+        return out;
+    }
+
     private static boolean looksLikeBinaryKey(String keyHint) {
         if (keyHint == null || keyHint.isBlank()) {
             return false;
@@ -189,47 +228,255 @@ public final class SensitiveDataSanitizer {
                 || k.endsWith("_data");
     }
 
+    /**
+     * Сколько символов значения проверяется на алфавит base64.
+     */
+    private static final int BINARY_PROBE_CHARS = 256;
+
+    /**
+     * Длина base64 (в символах), начиная с которой декодированные данные заведомо не короче 24 байт.
+     */
+    private static final int BINARY_MIN_LONG_CHARS = 32;
+
+    /**
+     * Похоже ли значение на base64-данные.
+     * <p>
+     * Значение целиком не декодируется: для длинных строк (изображения, файлы) проверяется алфавит base64
+     * в ограниченном префиксе и в «хвосте» (паддинг {@code =} допустим только в конце). Короткие значения
+     * (до {@value #BINARY_MIN_LONG_CHARS} символов) декодируются, чтобы отличить base64 от обычных слов.
+     */
     private static boolean looksLikeBinaryValue(String value) {
         if (value == null) {
             return false;
         }
-        String v = value.trim();
-        if (v.length() < 24) {
-            return false;
+        int from = 0;
+        int to = value.length();
+        while (from < to && value.charAt(from) <= ' ') {
+            from++;
         }
-        if (!v.matches("^[A-Za-z0-9+/=\\r\\n]+$")) {
+        while (to > from && value.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        int len = to - from;
+        if (len < 24) {
             return false;
         }
+        if (len < BINARY_MIN_LONG_CHARS) {
+            return looksLikeShortBinaryValue(value, from, to);
+        }
+        int probeEnd = Math.min(to, from + BINARY_PROBE_CHARS);
+        for (int i = from; i < probeEnd; i++) {
+            if (!isBase64Char(value.charAt(i), i >= to - 2)) {
+                return false;
+            }
+        }
+        for (int i = Math.max(probeEnd, to - 4); i < to; i++) {
+            if (!isBase64Char(value.charAt(i), i >= to - 2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean looksLikeShortBinaryValue(String value, int from, int to) {
+        StringBuilder compact = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            char ch = value.charAt(i);
+            if (ch == '\r' || ch == '\n') {
+                continue;
+            }
+            if (!isBase64Char(ch, true)) {
+                return false;
+            }
+            compact.append(ch);
+        }
         try {
-            byte[] decoded = java.util.Base64.getDecoder().decode(v.replaceAll("\\s+", ""));
-            return decoded.length >= 24 || !new String(decoded, StandardCharsets.UTF_8).chars().allMatch(ch -> ch >= 32 && ch <= 126);
+            byte[] decoded = Base64.getDecoder().decode(compact.toString());
+            if (decoded.length >= 24) {
+                return true;
+            }
+            for (byte b : decoded) {
+                if (b < 32 || b > 126) {
+                    return true;
+                }
+            }
+            return false;
         } catch (IllegalArgumentException e) {
             return false;
         }
     }
 
+    private static boolean isBase64Char(char ch, boolean paddingAllowed) {
+        return (ch >= 'A' && ch <= 'Z')
+                || (ch >= 'a' && ch <= 'z')
+                || (ch >= '0' && ch <= '9')
+                || ch == '+'
+                || ch == '/'
+                || ch == '\r'
+                || ch == '\n'
+                || (paddingAllowed && ch == '=');
+    }
+
+    /**
+     * Ключи правила {@code key=value} (в нижнем регистре).
+     */
+    private static final String[] SECRET_PARAMS = {"client_secret", "access_token", "refresh_token", "sid"};
+
     /**
      * Санитизировать текст (сообщения об ошибках, диагностические строки).
+     * <p>
+     * Текст просматривается за один проход без регулярных выражений; правила:
+     * <ul>
+     *   <li>{@code Bearer <token>} → {@code Bearer ***};</li>
+     *   <li>{@code client_secret|access_token|refresh_token|sid = value} → {@code key=***}
+     *   (значение до пробела, {@code &} или {@code ;}; для {@code sid} в строке {@code Cookie:} — до пробела или {@code ;});</li>
+     *   <li>переводы строк и табуляция заменяются пробелом, края обрезаются.</li>
+     * </ul>
+     * Если менять нечего, возвращается исходная строка (без аллокаций).
      */
     public static String sanitizeText(String text) {
         if (text == null || text.isBlank()) {
             return text;
         }
 
-        String t = text;
+        int len = text.length();
+        StringBuilder out = null;
+        boolean cookieLine = false;
+        int i = 0;
+        while (i < len) {
+            char c = text.charAt(i);
+            char lower = (char) (c | 0x20);
+
+            // Bearer <token>
+            if (lower == 'b') {
+                int end = matchBearer(text, i);
+                if (end > 0) {
+                    out = begin(out, text, i).append("Bearer ").append(MASK);
+                    i = end;
+                    continue;
+                }
+            }
+
+            // Параметры формата key=value (минимальная эвристика), в т.ч. Cookie: sid=...
+            if (lower == 'c' || lower == 'a' || lower == 'r' || lower == 's') {
+                int end = -1;
+                for (String key : SECRET_PARAMS) {
+                    end = matchSecretParam(text, i, key, cookieLine);
+                    if (end > 0) {
+                        out = begin(out, text, i).append(text, i, i + key.length()).append('=').append(MASK);
+                        // Значение, оканчивающееся на "Bearer", маскируется вместе со следующим токеном.
+                        int bearerEnd = end - 6 >= i ? matchBearer(text, end - 6) : -1;
+                        if (bearerEnd > 0) {
+                            out.append(' ').append(MASK);
+                            end = bearerEnd;
+                        }
+                        break;
+                    }
+                }
+                if (end > 0) {
+                    i = end;
+                    continue;
+                }
+                if (lower == 'c' && regionMatchesAscii(text, i, "cookie")) {
+                    int colon = skipWhitespace(text, i + 6);
+                    cookieLine = cookieLine || (colon < len && text.charAt(colon) == ':');
+                }
+            }
+
+            // Избегаем многострочности в сообщениях.
+            if (c == '\r' || c == '\n' || c == '\t') {
+                if (c != '\t') {
+                    cookieLine = false;
+                }
+                out = begin(out, text, i).append(' ');
+                i++;
+                continue;
+            }
+
+            if (out != null) {
+                out.append(c);
+            }
+            i++;
+        }
+        return (out == null ? text : out.toString()).trim();
+    }
+
+    private static StringBuilder begin(StringBuilder out, String text, int pos) {
+        if (out != null) {
+            return out;
+        }
+        return new StringBuilder(text.length() + 16).append(text, 0, pos);
+    }
+
+    /**
+     * {@code bearer\s+\S+} с позиции {@code pos}; возвращает конец совпадения или -1.
+     */
+    private static int matchBearer(String text, int pos) {
+        if (!regionMatchesAscii(text, pos, "bearer")) {
+            return -1;
+        }
+        int tokenStart = skipWhitespace(text, pos + 6);
+        if (tokenStart == pos + 6) {
+            return -1;
+        }
+        int end = tokenStart;
+        while (end < text.length() && !isWhitespace(text.charAt(end))) {
+            end++;
+        }
+        return end == tokenStart ? -1 : end;
+    }
 
-        // Bearer <token>
-        t = t.replaceAll("(?i)bearer\\s+[^\\s]+", "Bearer " + MASK);
+    /**
+     * {@code key\s*=\s*value} с позиции {@code pos}; возвращает конец совпадения или -1.
+     */
+    private static int matchSecretParam(String text, int pos, String key, boolean cookieLine) {
+        if (!regionMatchesAscii(text, pos, key)) {
+            return -1;
+        }
+        int eq = skipWhitespace(text, pos + key.length());
+        if (eq >= text.length() || text.charAt(eq) != '=') {
+            return -1;
+        }
+        int valueStart = skipWhitespace(text, eq + 1);
+        int end = valueStart;
+        while (end < text.length()) {
+            char ch = text.charAt(end);
+            if (isWhitespace(ch) || ch == ';' || (ch == '&' && !(cookieLine && "sid".equals(key)))) {
+                break;
+            }
+            end++;
+        }
+        return end == valueStart ? -1 : end;
+    }
 
-        // Параметры формата key=value (минимальная эвристика)
-        t = t.replaceAll("(?i)(client_secret|access_token|refresh_token|sid)\\s*=\\s*[^\\s&;]+", "$1=" + MASK);
+    /**
+     * Совпадение с {@code lowerWord} без учёта регистра (только ASCII, как {@code (?i)} в regex).
+     */
+    private static boolean regionMatchesAscii(String text, int pos, String lowerWord) {
+        int n = lowerWord.length();
+        if (pos + n > text.length()) {
+            return false;
+        }
+        for (int k = 0; k < n; k++) {
+            char a = text.charAt(pos + k);
+            char b = lowerWord.charAt(k);
+            if (a != b && !(b >= 'a' && b <= 'z' && a == (char) (b - 32))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        // Cookie: sid=...
-        t = t.replaceAll("(?i)(cookie\\s*:\\s*[^\\r\\n]*?sid)\\s*=\\s*[^\\s;]+", "$1=" + MASK);
+    private static int skipWhitespace(String text, int pos) {
+        int i = pos;
+        while (i < text.length() && isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
 
-        // Избегаем многострочности в сообщениях.
-        t = t.replaceAll("[\\r\\n\\t]", " ").trim();
-        return t;
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
     }
 
 }
@@ -1,11 +1,19 @@
 package ru.aritmos.integrationbroker.core;
 
+import io.micronaut.serde.annotation.Serdeable;
+
 import java.time.Clock;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 /**
- * Простой in-memory TTL-кэш.
+ * Ограниченный in-memory TTL-кэш с приближённым вытеснением LRU.
  * <p>
  * Используется для краткоживущих данных (например, enrichment по KeycloakProxy), чтобы:
  * <ul>
@@ -14,15 +22,46 @@ import java.util.concurrent.ConcurrentHashMap;
  *   <li>не хранить чувствительные данные дольше необходимого.</li>
  * </ul>
  * <p>
+ * Поведение:
+ * <ul>
+ *   <li>записи хранятся в {@link ConcurrentHashMap} без общего монитора: чтения и записи разных ключей
+ *   не сериализуются, попадание только обновляет время последнего обращения записи;</li>
+ *   <li>при переполнении вытесняется не весь кэш, а запись с самым давним обращением из выборки
+ *   {@value #EVICTION_SAMPLE} записей (приближённый LRU): всплеск новых ключей не «обнуляет» горячие записи;</li>
+ *   <li>истёкшие записи удаляются при чтении и порционно при каждом {@link #put},
+ *   полная очистка — {@link #cleanUp()};</li>
+ *   <li>{@link #getOrLoad} выполняет одну загрузку на ключ: параллельные промахи по одному ключу ждут её результат;</li>
+ *   <li>{@link #stats()} — попадания, промахи, вытеснения, истечения и время загрузки.</li>
+ * </ul>
+ * <p>
  * Важно: кэш не является источником истины и не заменяет PostgreSQL для outbox/DLQ/idempotency.
  * Redis-кэш может быть добавлен позднее как расширение, но базовая реализация должна работать без него.
  */
 public final class TtlCache<K, V> {
 
+    /**
+     * Сколько записей проверяется на истечение при каждом {@link #put}.
+     */
+    private static final int SWEEP_BATCH = 8;
+
+    /**
+     * Размер выборки, из которой при переполнении вытесняется запись с самым давним обращением.
+     */
+    private static final int EVICTION_SAMPLE = 16;
+
     private final ConcurrentHashMap<K, Entry<V>> map = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<Optional<V>>> loading = new ConcurrentHashMap<>();
     private final Clock clock;
     private final int maxEntries;
 
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadTimeNanos = new LongAdder();
+
     public TtlCache(Clock clock, int maxEntries) {
         this.clock = clock;
         this.maxEntries = Math.max(1, maxEntries);
@@ -35,34 +74,97 @@ public final class TtlCache<K, V> {
         if (key == null) {
             return Optional.empty();
         }
-        Entry<V> e = map.get(key);
+        Entry<V> e = live(key, clock.millis());
         if (e == null) {
+            misses.increment();
             return Optional.empty();
         }
-        long now = clock.millis();
-        if (e.expiresAtMs <= now) {
-            map.remove(key);
-            return Optional.empty();
-        }
+        hits.increment();
         return Optional.ofNullable(e.value);
     }
 
     /**
      * Положить значение в кэш.
      * <p>
-     * При переполнении используется простая стратегия: очищаем кэш целиком.
-     * LRU будет добавлен отдельной итерацией, когда кэш станет критичным для производительности.
+     * При переполнении вытесняется запись с самым давним обращением из выборки.
      */
     public void put(K key, V value, long ttlSeconds) {
         if (key == null) {
             return;
         }
-        if (map.size() > maxEntries) {
-            map.clear();
-        }
-        long ttlMs = Math.max(0, ttlSeconds) * 1000L;
-        long expiresAt = clock.millis() + ttlMs;
+        long now = clock.millis();
+        long expiresAt = now + Math.max(0, ttlSeconds) * 1000L;
         map.put(key, new Entry<>(value, expiresAt));
+        sweepExpired(now, SWEEP_BATCH);
+        while (map.size() > maxEntries) {
+            evictOne(key);
+        }
+    }
+
+    /**
+     * Получить значение или загрузить его (одна загрузка на ключ).
+     * <p>
+     * Если загрузка по ключу уже идёт, вызов дожидается её результата, а не обращается к источнику повторно.
+     * Пустой результат не кэшируется. Исключение загрузчика получают все ожидающие; следующий вызов загрузит заново.
+     *
+     * @param loader загрузчик значения (например, сетевой вызов)
+     */
+    public Optional<V> getOrLoad(K key, long ttlSeconds, Function<? super K, Optional<V>> loader) {
+        Optional<V> cached = get(key);
+        if (cached.isPresent() || key == null) {
+            return cached;
+        }
+        CompletableFuture<Optional<V>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<V>> running = loading.putIfAbsent(key, mine);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            // Между промахом и захватом загрузки предыдущий загрузчик мог успеть положить значение и снять future.
+            Entry<V> loadedMeanwhile = live(key, clock.millis());
+            if (loadedMeanwhile != null) {
+                Optional<V> value = Optional.ofNullable(loadedMeanwhile.value);
+                mine.complete(value);
+                return value;
+            }
+            long started = System.nanoTime();
+            Optional<V> loaded;
+            try {
+                loaded = loader.apply(key);
+            } finally {
+                loads.increment();
+                loadTimeNanos.add(System.nanoTime() - started);
+            }
+            if (loaded == null) {
+                loaded = Optional.empty();
+            }
+            loaded.ifPresent(v -> put(key, v, ttlSeconds));
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    /**
+     * Удалить значение по ключу.
+     */
+    public void invalidate(K key) {
+        if (key == null) {
+            return;
+        }
+        map.remove(key);
+    }
+
+    /**
+     * Удалить все истёкшие записи.
+     */
+    public void cleanUp() {
+        sweepExpired(clock.millis(), Integer.MAX_VALUE);
     }
 
     /**
@@ -72,6 +174,106 @@ public final class TtlCache<K, V> {
         return map.size();
     }
 
-    private record Entry<V>(V value, long expiresAtMs) {
+    /**
+     * Статистика кэша с момента создания.
+     */
+    public Stats stats() {
+        long loadCount = loads.sum();
+        double avgLoadMs = loadCount == 0 ? 0.0 : loadTimeNanos.sum() / 1_000_000.0 / loadCount;
+        return new Stats(size(), maxEntries, hits.sum(), misses.sum(), evictions.sum(), expirations.sum(),
+                loadCount, loadFailures.sum(), avgLoadMs);
+    }
+
+    /**
+     * Живая (не истёкшая) запись с отметкой обращения; истёкшая удаляется.
+     */
+    private Entry<V> live(K key, long now) {
+        Entry<V> e = map.get(key);
+        if (e == null) {
+            return null;
+        }
+        if (e.expiresAtMs <= now) {
+            if (map.remove(key, e)) {
+                expirations.increment();
+            }
+            return null;
+        }
+        e.accessedAtNanos = System.nanoTime();
+        return e;
+    }
+
+    private void sweepExpired(long now, int limit) {
+        Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+        int checked = 0;
+        while (it.hasNext() && checked < limit) {
+            checked++;
+            Map.Entry<K, Entry<V>> e = it.next();
+            if (e.getValue().expiresAtMs <= now && map.remove(e.getKey(), e.getValue())) {
+                expirations.increment();
+            }
+        }
+    }
+
+    /**
+     * Вытеснить запись с самым давним обращением из первых {@value #EVICTION_SAMPLE} записей
+     * (только что записанный ключ не вытесняется, если есть другие кандидаты).
+     */
+    private void evictOne(K justPut) {
+        K victimKey = null;
+        Entry<V> victim = null;
+        int sampled = 0;
+        for (Map.Entry<K, Entry<V>> e : map.entrySet()) {
+            if (sampled++ >= EVICTION_SAMPLE) {
+                break;
+            }
+            if (e.getKey().equals(justPut) && map.size() > 1) {
+                continue;
+            }
+            if (victim == null || e.getValue().accessedAtNanos < victim.accessedAtNanos) {
+                victimKey = e.getKey();
+                victim = e.getValue();
+            }
+        }
+        if (victim != null && map.remove(victimKey, victim)) {
+            evictions.increment();
+        }
+    }
+
+    private static <V> Optional<V> await(CompletableFuture<Optional<V>> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Статистика кэша.
+     */
+    @Serdeable
+    public record Stats(int size,
+                        int maxEntries,
+                        long hits,
+                        long misses,
+                        long evictions,
+                        long expirations,
+                        long loads,
+                        long loadFailures,
+                        double averageLoadMs) {
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAtMs;
+        volatile long accessedAtNanos;
+
+        Entry(V value, long expiresAtMs) {
+            this.value = value;
+            this.expiresAtMs = expiresAtMs;
+            this.accessedAtNanos = System.nanoTime();
+        }
     }
 }
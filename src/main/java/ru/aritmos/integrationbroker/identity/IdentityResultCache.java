@@ -0,0 +1,228 @@
+package ru.aritmos.integrationbroker.identity;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.core.TtlCache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш результатов провайдеров идентификации (opt-in: {@code integrationbroker.identity.cache.enabled}).
+ * <p>
+ * Один и тот же клиент идентифицируется несколько раз за визит (создание талона, киоск, вызов) — повторные обращения
+ * к VisionLabs/CRM для того же идентификатора избыточны. Свойства:
+ * <ul>
+ *   <li>ключ — SHA-256 от (провайдер, тип, нормализованное значение, параметры идентификатора, ревизия конфигурации):
+ *   ни телефон, ни изображение лица в ключах не хранятся;</li>
+ *   <li>TTL задаётся на провайдера ({@code identity.providers.<id>.cacheTtlSec}), отсутствие совпадения (NO_MATCH)
+ *   кэшируется отдельно с более коротким TTL ({@code negativeCacheTtlSec}); 0 — не кэшировать;</li>
+ *   <li>ошибки провайдеров не кэшируются;</li>
+ *   <li>при смене ревизии конфигурации кэш сбрасывается целиком; размер ограничен {@code max-entries} (LRU).</li>
+ * </ul>
+ */
+@Singleton
+public class IdentityResultCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long defaultTtlSec;
+    private final long defaultNegativeTtlSec;
+    private final Clock clock;
+
+    private volatile Generation generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Inject
+    public IdentityResultCache(@Value("${integrationbroker.identity.cache.enabled:false}") boolean enabled,
+                               @Value("${integrationbroker.identity.cache.max-entries:10000}") int maxEntries,
+                               @Value("${integrationbroker.identity.cache.ttl:5m}") Duration ttl,
+                               @Value("${integrationbroker.identity.cache.negative-ttl:30s}") Duration negativeTtl) {
+        this(enabled, maxEntries, ttl, negativeTtl, Clock.systemUTC());
+    }
+
+    IdentityResultCache(boolean enabled, int maxEntries, Duration ttl, Duration negativeTtl, Clock clock) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.defaultTtlSec = ttl == null ? 300 : Math.max(0, ttl.toSeconds());
+        this.defaultNegativeTtlSec = negativeTtl == null ? 30 : Math.max(0, negativeTtl.toSeconds());
+        this.clock = clock;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Найти результат провайдера.
+     *
+     * @return {@code null} — промах; иначе закэшированный результат (профиль или NO_MATCH)
+     */
+    Cached get(RuntimeConfigStore.RuntimeConfig cfg, String providerId, IdentityModels.IdentityAttribute attribute) {
+        if (!enabled || ttlSec(cfg, providerId, false) <= 0 && ttlSec(cfg, providerId, true) <= 0) {
+            return null;
+        }
+        Cached cached = generation(cfg).cache.get(key(cfg, providerId, attribute)).orElse(null);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        if (cached.profile() == null) {
+            negativeHits.increment();
+        } else {
+            hits.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Сохранить результат провайдера ({@code profile == null} — NO_MATCH, с отрицательным TTL).
+     */
+    void put(RuntimeConfigStore.RuntimeConfig cfg, String providerId, IdentityModels.IdentityAttribute attribute,
+             IdentityModels.IdentityProfile profile) {
+        if (!enabled) {
+            return;
+        }
+        long ttl = ttlSec(cfg, providerId, profile == null);
+        if (ttl > 0) {
+            generation(cfg).cache.put(key(cfg, providerId, attribute), new Cached(profile), ttl);
+        }
+    }
+
+    public Snapshot snapshot() {
+        Generation g = generation;
+        TtlCache.Stats stats = g == null ? null : g.cache.stats();
+        return new Snapshot(
+                enabled,
+                stats == null ? 0 : stats.size(),
+                maxEntries,
+                hits.sum(),
+                negativeHits.sum(),
+                misses.sum(),
+                stats == null ? 0L : stats.evictions(),
+                invalidations.sum()
+        );
+    }
+
+    /**
+     * Кэш текущей ревизии; новая ревизия получает пустой кэш (старые записи недостижимы и собираются GC).
+     */
+    private Generation generation(RuntimeConfigStore.RuntimeConfig cfg) {
+        String revision = cfg == null ? null : cfg.revision();
+        Generation g = generation;
+        if (g != null && Objects.equals(g.revision, revision)) {
+            return g;
+        }
+        synchronized (this) {
+            g = generation;
+            if (g == null || !Objects.equals(g.revision, revision)) {
+                if (g != null) {
+                    invalidations.increment();
+                }
+                g = new Generation(revision, new TtlCache<>(clock, maxEntries));
+                generation = g;
+            }
+            return g;
+        }
+    }
+
+    private long ttlSec(RuntimeConfigStore.RuntimeConfig cfg, String providerId, boolean negative) {
+        long def = negative ? defaultNegativeTtlSec : defaultTtlSec;
+        if (cfg == null || cfg.identity() == null || cfg.identity().providers() == null) {
+            return def;
+        }
+        if (!(cfg.identity().providers().get(providerId) instanceof Map<?, ?> m)) {
+            return def;
+        }
+        Object v = m.get(negative ? "negativeCacheTtlSec" : "cacheTtlSec");
+        if (v instanceof Number n) {
+            return Math.max(0L, n.longValue());
+        }
+        if (v != null) {
+            try {
+                return Math.max(0L, Long.parseLong(String.valueOf(v).trim()));
+            } catch (NumberFormatException ignore) {
+                return def;
+            }
+        }
+        return def;
+    }
+
+    /**
+     * Отпечаток вызова провайдера: исходные значения идентификатора в ключ не попадают.
+     */
+    static String key(RuntimeConfigStore.RuntimeConfig cfg, String providerId, IdentityModels.IdentityAttribute attribute) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(providerId).append('\u0000')
+                .append(attribute.type() == null ? "" : attribute.type().trim().toLowerCase(Locale.ROOT)).append('\u0000')
+                .append(normalizeValue(attribute.value())).append('\u0000');
+        if (attribute.attributes() != null && !attribute.attributes().isEmpty()) {
+            // Параметры идентификатора (порог, список и т.п.) влияют на ответ провайдера; порядок ключей не важен.
+            sb.append(new TreeMap<>(attribute.attributes()));
+        }
+        sb.append('\u0000').append(cfg == null ? "" : cfg.revision());
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Нормализация значения для ключа: пробелы по краям и внутри (телефон «+7 999 000 11 22», base64 с переносами строк)
+     * не меняют идентификатор.
+     */
+    private static String normalizeValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Закэшированный результат провайдера; {@code profile == null} — NO_MATCH.
+     */
+    record Cached(IdentityModels.IdentityProfile profile) {
+    }
+
+    private record Generation(String revision, TtlCache<String, Cached> cache) {
+    }
+
+    /**
+     * Метрики кэша результатов идентификации.
+     */
+    @Serdeable
+    public record Snapshot(boolean enabled,
+                           int size,
+                           int maxEntries,
+                           long hits,
+                           long negativeHits,
+                           long misses,
+                           long evictions,
+                           long invalidations) {
+    }
+}
@@ -1,9 +1,14 @@
 package ru.aritmos.integrationbroker.identity;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.scheduling.TaskExecutors;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -11,6 +16,15 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Сервис идентификации клиента.
@@ -25,6 +39,15 @@ import java.util.Objects;
  *   <li>агрегация профиля из нескольких источников;</li>
  *   <li>нормализация сегмента и вычисление priorityWeight.</li>
  * </ul>
+ * <p>
+ * Режим {@code integrationbroker.identity.parallel.enabled=true}: вызовы всех провайдеров по всем идентификаторам
+ * запускаются одновременно на IO-пуле в пределах общего бюджета {@code deadline}. Результаты объединяются строго
+ * в том же порядке, что и при последовательном обходе (порядок идентификаторов, затем приоритет провайдера), поэтому
+ * профиль и evidence совпадают с последовательным режимом; как только выполнено условие остановки политики
+ * ({@code stopOnAnyMatch}/{@code stopOnFirstClientId}), незавершённые вызовы отменяются. Вызовы, не уложившиеся
+ * в бюджет, отменяются и попадают в evidence как ERROR.
+ * <p>
+ * Результаты провайдеров могут переиспользоваться между запросами через {@link IdentityResultCache}.
  */
 @Singleton
 public class IdentityService {
@@ -32,13 +55,45 @@ public class IdentityService {
     private final RuntimeConfigStore configStore;
     private final IdentityProviderRegistry registry;
     private final ObjectMapper objectMapper;
+    private final boolean parallelEnabled;
+    private final Duration parallelDeadline;
+    private final ExecutorService executor;
+    private final IdentityResultCache resultCache;
+
+    private final ConcurrentHashMap<String, LatencyHistogram> providerLatency = new ConcurrentHashMap<>();
 
     public IdentityService(RuntimeConfigStore configStore,
                            IdentityProviderRegistry registry,
                            ObjectMapper objectMapper) {
+        this(configStore, registry, objectMapper, false, Duration.ofSeconds(5), null, null);
+    }
+
+    IdentityService(RuntimeConfigStore configStore,
+                    IdentityProviderRegistry registry,
+                    ObjectMapper objectMapper,
+                    boolean parallelEnabled,
+                    Duration parallelDeadline,
+                    ExecutorService executor) {
+        this(configStore, registry, objectMapper, parallelEnabled, parallelDeadline, executor, null);
+    }
+
+    @Inject
+    public IdentityService(RuntimeConfigStore configStore,
+                           IdentityProviderRegistry registry,
+                           ObjectMapper objectMapper,
+                           @Value("${integrationbroker.identity.parallel.enabled:false}") boolean parallelEnabled,
+                           @Value("${integrationbroker.identity.parallel.deadline:5s}") Duration parallelDeadline,
+                           @Named(TaskExecutors.IO) ExecutorService executor,
+                           IdentityResultCache resultCache) {
         this.configStore = configStore;
         this.registry = registry;
         this.objectMapper = objectMapper;
+        this.parallelEnabled = parallelEnabled && executor != null;
+        this.parallelDeadline = parallelDeadline == null || parallelDeadline.isNegative() || parallelDeadline.isZero()
+                ? Duration.ofSeconds(5)
+                : parallelDeadline;
+        this.executor = executor;
+        this.resultCache = resultCache;
     }
 
     /**
@@ -57,85 +112,43 @@ public class IdentityService {
         IdentityModels.IdentityRequest req = normalizeRequest(request);
         SegmentNormalizer segmentNormalizer = new SegmentNormalizer(cfg.identity());
 
-        List<IdentityModels.IdentityEvidence> evidences = new ArrayList<>();
-        IdentityModels.IdentityProfile aggregated = null;
-        boolean anyMatch = false;
-
-        List<IdentityModels.IdentityAttribute> attrs = orderAttributes(req.attributes(), req.policy());
-
-        for (IdentityModels.IdentityAttribute attr : attrs) {
+        Map<String, Object> safeMeta = meta == null ? Map.of() : meta;
+        List<ProviderCall> calls = new ArrayList<>();
+        for (IdentityModels.IdentityAttribute attr : orderAttributes(req.attributes(), req.policy())) {
             if (attr == null || isBlank(attr.type()) || isBlank(attr.value())) {
                 continue;
             }
-
             String type = attr.type().trim();
             List<IdentityProvider> providers = registry.providersForType(type).stream()
                     .filter(p -> isProviderEnabled(cfg, p.id()))
                     .toList();
             if (providers.isEmpty()) {
-                evidences.add(new IdentityModels.IdentityEvidence(
-                        "registry",
-                        type,
-                        safeValuePreview(attr.value()),
-                        "NO_MATCH",
-                        Map.of("reason", "Нет провайдера, поддерживающего данный type")
-                ));
+                calls.add(new ProviderCall(attr, type, null));
                 continue;
             }
-
-            boolean matchedForAttr = false;
             for (IdentityProvider provider : providers) {
-                try {
-                    IdentityProvider.ProviderContext ctx = new IdentityProvider.ProviderContext(cfg, meta == null ? Map.of() : meta);
-                    var resOpt = provider.resolve(attr, req, ctx);
-                    if (resOpt.isEmpty()) {
-                        evidences.add(new IdentityModels.IdentityEvidence(
-                                provider.id(),
-                                type,
-                                safeValuePreview(attr.value()),
-                                "NO_MATCH",
-                                Map.of()
-                        ));
-                        continue;
-                    }
-
-                    IdentityModels.IdentityProfile prof = normalizeProfile(resOpt.get(), segmentNormalizer);
-                    aggregated = mergeProfiles(aggregated, prof, segmentNormalizer);
-                    matchedForAttr = true;
-                    anyMatch = true;
-                    evidences.add(new IdentityModels.IdentityEvidence(
-                            provider.id(),
-                            type,
-                            safeValuePreview(attr.value()),
-                            "MATCH",
-                            Map.of("clientId", prof.clientId() == null ? "" : prof.clientId())
-                    ));
-
-                    if (req.policy().stopOnAnyMatch()) {
-                        break;
-                    }
-                    if (req.policy().stopOnFirstClientId() && aggregated != null && !isBlank(aggregated.clientId())) {
-                        break;
-                    }
-                } catch (Exception e) {
-                    evidences.add(new IdentityModels.IdentityEvidence(
-                            provider.id(),
-                            type,
-                            safeValuePreview(attr.value()),
-                            "ERROR",
-                            Map.of("error", sanitizeError(e.getMessage()))
-                    ));
-                }
+                calls.add(new ProviderCall(attr, type, provider));
             }
+        }
 
-            if (req.policy().stopOnAnyMatch() && matchedForAttr) {
-                break;
-            }
-            if (req.policy().stopOnFirstClientId() && aggregated != null && !isBlank(aggregated.clientId())) {
-                break;
+        Accumulator acc = new Accumulator(req.policy(), segmentNormalizer);
+        Map<String, Object> diagnostics = new HashMap<>();
+        if (parallelEnabled && calls.stream().filter(c -> c.provider() != null).count() > 1) {
+            resolveParallel(calls, req, new IdentityProvider.ProviderContext(cfg, safeMeta), acc, diagnostics);
+        } else {
+            for (ProviderCall call : calls) {
+                CallOutcome outcome = call.provider() == null ? null : invoke(call, req, new IdentityProvider.ProviderContext(cfg, safeMeta));
+                if (acc.apply(call, outcome)) {
+                    break;
+                }
             }
+            diagnostics.put("mode", "sequential");
         }
 
+        List<IdentityModels.IdentityEvidence> evidences = acc.evidences;
+        boolean anyMatch = acc.anyMatch;
+        IdentityModels.IdentityProfile aggregated = acc.aggregated;
+
         IdentityModels.IdentityProfile finalProfile = aggregated;
         if (finalProfile == null) {
             // Безопасный дефолт: не «выдумываем» clientId, но возвращаем нормализованный каркас профиля.
@@ -152,13 +165,130 @@ public class IdentityService {
             );
         }
 
-        Map<String, Object> diagnostics = new HashMap<>();
         diagnostics.put("resolved", anyMatch);
         diagnostics.put("providersUsed", evidences.stream().map(IdentityModels.IdentityEvidence::providerId).distinct().toList());
+        diagnostics.put("providerLatencyMs", acc.latencies);
 
         return new IdentityModels.IdentityResolution(finalProfile, evidences, diagnostics);
     }
 
+    /**
+     * Параллельный обход: все вызовы стартуют сразу, результаты применяются в исходном порядке.
+     * <p>
+     * Ожидание идёт по порядку вызовов с остатком общего бюджета. Если бюджет исчерпан, уже завершённые вызовы
+     * всё равно применяются (порядок сохраняется), незавершённые — отменяются и отражаются как ERROR.
+     */
+    private void resolveParallel(List<ProviderCall> calls,
+                                 IdentityModels.IdentityRequest req,
+                                 IdentityProvider.ProviderContext ctx,
+                                 Accumulator acc,
+                                 Map<String, Object> diagnostics) {
+        long deadlineNs = System.nanoTime() + parallelDeadline.toNanos();
+        List<Future<CallOutcome>> futures = new ArrayList<>(calls.size());
+        for (ProviderCall call : calls) {
+            Future<CallOutcome> f = null;
+            if (call.provider() != null) {
+                try {
+                    f = executor.submit(() -> invoke(call, req, ctx));
+                } catch (RejectedExecutionException e) {
+                    // Пул перегружен: вызов будет выполнен в текущем потоке в порядке применения.
+                }
+            }
+            futures.add(f);
+        }
+
+        boolean deadlineExceeded = false;
+        int applied = 0;
+        try {
+            for (int i = 0; i < calls.size(); i++) {
+                ProviderCall call = calls.get(i);
+                Future<CallOutcome> f = futures.get(i);
+                CallOutcome outcome = null;
+                if (call.provider() != null) {
+                    if (deadlineExceeded && (f == null || !f.isDone())) {
+                        outcome = CallOutcome.deadline(parallelDeadline);
+                    } else if (f == null) {
+                        outcome = invoke(call, req, ctx);
+                    } else {
+                        try {
+                            outcome = f.get(Math.max(0L, deadlineNs - System.nanoTime()), TimeUnit.NANOSECONDS);
+                        } catch (TimeoutException e) {
+                            deadlineExceeded = true;
+                            outcome = CallOutcome.deadline(parallelDeadline);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            deadlineExceeded = true;
+                            outcome = CallOutcome.deadline(parallelDeadline);
+                        } catch (ExecutionException e) {
+                            outcome = new CallOutcome(null, e.getCause() instanceof Exception ex ? ex : e, 0L, false, false);
+                        }
+                    }
+                }
+                applied++;
+                if (acc.apply(call, outcome)) {
+                    break;
+                }
+            }
+        } finally {
+            int cancelled = 0;
+            for (Future<CallOutcome> f : futures) {
+                if (f != null && !f.isDone() && f.cancel(true)) {
+                    cancelled++;
+                }
+            }
+            diagnostics.put("mode", "parallel");
+            diagnostics.put("deadlineMs", parallelDeadline.toMillis());
+            diagnostics.put("deadlineExceeded", deadlineExceeded);
+            diagnostics.put("cancelledCalls", cancelled);
+            diagnostics.put("skippedCalls", calls.size() - applied);
+        }
+    }
+
+    /**
+     * Вызвать провайдера с замером времени; исключение провайдера — часть результата, а не сбой идентификации.
+     * При включённом кэше сначала проверяется {@link IdentityResultCache}, успешный ответ (в т.ч. NO_MATCH) сохраняется.
+     */
+    private CallOutcome invoke(ProviderCall call, IdentityModels.IdentityRequest req, IdentityProvider.ProviderContext ctx) {
+        boolean cacheable = resultCache != null && resultCache.enabled();
+        if (cacheable) {
+            IdentityResultCache.Cached cached = resultCache.get(ctx.cfg(), call.provider().id(), call.attr());
+            if (cached != null) {
+                return new CallOutcome(cached.profile(), null, 0L, false, true);
+            }
+        }
+        long startedAt = System.nanoTime();
+        IdentityModels.IdentityProfile profile = null;
+        Exception error = null;
+        try {
+            Optional<IdentityModels.IdentityProfile> res = call.provider().resolve(call.attr(), req, ctx);
+            profile = res.isEmpty() ? null : res.get();
+        } catch (Exception e) {
+            error = e;
+        }
+        long elapsedMs = Math.max(0L, (System.nanoTime() - startedAt) / 1_000_000L);
+        providerLatency.computeIfAbsent(call.provider().id(), k -> new LatencyHistogram()).record(elapsedMs);
+        if (cacheable && error == null) {
+            resultCache.put(ctx.cfg(), call.provider().id(), call.attr(), profile);
+        }
+        return new CallOutcome(profile, error, elapsedMs, false, false);
+    }
+
+    /**
+     * @return гистограмма длительности вызовов по провайдерам (накопительно с момента старта);
+     * экспортируется в {@code /prometheus}, а в диагностику запроса попадают только его собственные вызовы
+     * ({@code providerLatencyMs})
+     */
+    public Map<String, Map<String, Long>> providerLatencyHistogram() {
+        if (providerLatency.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Map<String, Long>> out = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> e : providerLatency.entrySet()) {
+            out.put(e.getKey(), e.getValue().snapshot());
+        }
+        return Map.copyOf(out);
+    }
+
     /**
      * Проверить, включён ли провайдер в runtime-config.
      * <p>
@@ -382,4 +512,142 @@ public class IdentityService {
         }
         return v.substring(0, 4) + "…" + v.substring(v.length() - 2);
     }
+
+    /**
+     * Один вызов провайдера по идентификатору; {@code provider == null} — для типа нет ни одного провайдера.
+     */
+    private record ProviderCall(IdentityModels.IdentityAttribute attr, String type, IdentityProvider provider) {
+    }
+
+    private record CallOutcome(IdentityModels.IdentityProfile profile,
+                               Exception error,
+                               long elapsedMs,
+                               boolean timedOut,
+                               boolean cached) {
+        static CallOutcome deadline(Duration deadline) {
+            return new CallOutcome(null, null, deadline.toMillis(), true, false);
+        }
+    }
+
+    /**
+     * Применение результатов вызовов в порядке обхода: evidence, агрегированный профиль и условия остановки.
+     */
+    private final class Accumulator {
+        private final IdentityModels.IdentityResolutionPolicy policy;
+        private final SegmentNormalizer segmentNormalizer;
+        private final List<IdentityModels.IdentityEvidence> evidences = new ArrayList<>();
+        private final List<Map<String, Object>> latencies = new ArrayList<>();
+        private IdentityModels.IdentityProfile aggregated;
+        private boolean anyMatch;
+
+        private Accumulator(IdentityModels.IdentityResolutionPolicy policy, SegmentNormalizer segmentNormalizer) {
+            this.policy = policy;
+            this.segmentNormalizer = segmentNormalizer;
+        }
+
+        /**
+         * @return true, если политика требует остановить обход
+         */
+        private boolean apply(ProviderCall call, CallOutcome outcome) {
+            String preview = safeValuePreview(call.attr().value());
+            if (call.provider() == null) {
+                evidences.add(new IdentityModels.IdentityEvidence(
+                        "registry",
+                        call.type(),
+                        preview,
+                        "NO_MATCH",
+                        Map.of("reason", "Нет провайдера, поддерживающего данный type")
+                ));
+                return false;
+            }
+            String providerId = call.provider().id();
+            if (outcome.timedOut()) {
+                evidences.add(new IdentityModels.IdentityEvidence(
+                        providerId,
+                        call.type(),
+                        preview,
+                        "ERROR",
+                        Map.of("error", "Превышен бюджет времени идентификации (" + outcome.elapsedMs() + " мс)", "deadlineExceeded", true)
+                ));
+                return false;
+            }
+            if (!outcome.cached()) {
+                latencies.add(Map.of("providerId", providerId, "type", call.type(), "latencyMs", outcome.elapsedMs()));
+            }
+            try {
+                if (outcome.error() != null) {
+                    throw outcome.error();
+                }
+                if (outcome.profile() == null) {
+                    evidences.add(new IdentityModels.IdentityEvidence(
+                            providerId,
+                            call.type(),
+                            preview,
+                            "NO_MATCH",
+                            outcome.cached() ? Map.of("cached", true) : Map.of()
+                    ));
+                    return false;
+                }
+
+                IdentityModels.IdentityProfile prof = normalizeProfile(outcome.profile(), segmentNormalizer);
+                aggregated = mergeProfiles(aggregated, prof, segmentNormalizer);
+                anyMatch = true;
+                evidences.add(new IdentityModels.IdentityEvidence(
+                        providerId,
+                        call.type(),
+                        preview,
+                        "MATCH",
+                        outcome.cached()
+                                ? Map.of("clientId", prof.clientId() == null ? "" : prof.clientId(), "cached", true)
+                                : Map.of("clientId", prof.clientId() == null ? "" : prof.clientId())
+                ));
+
+                if (policy.stopOnAnyMatch()) {
+                    return true;
+                }
+                return policy.stopOnFirstClientId() && aggregated != null && !isBlank(aggregated.clientId());
+            } catch (Exception e) {
+                evidences.add(new IdentityModels.IdentityEvidence(
+                        providerId,
+                        call.type(),
+                        preview,
+                        "ERROR",
+                        Map.of("error", sanitizeError(e.getMessage()))
+                ));
+                return false;
+            }
+        }
+    }
+
+    private static final class LatencyHistogram {
+        private final LongAdder lt100ms = new LongAdder();
+        private final LongAdder lt300ms = new LongAdder();
+        private final LongAdder lt1000ms = new LongAdder();
+        private final LongAdder gte1000ms = new LongAdder();
+
+        private void record(long latencyMs) {
+            if (latencyMs < 100) {
+                lt100ms.increment();
+                return;
+            }
+            if (latencyMs < 300) {
+                lt300ms.increment();
+                return;
+            }
+            if (latencyMs < 1000) {
+                lt1000ms.increment();
+                return;
+            }
+            gte1000ms.increment();
+        }
+
+        private Map<String, Long> snapshot() {
+            return Map.of(
+                    "lt100ms", lt100ms.sum(),
+                    "lt300ms", lt300ms.sum(),
+                    "lt1000ms", lt1000ms.sum(),
+                    "gte1000ms", gte1000ms.sum()
+            );
+        }
+    }
 }
@@ -111,7 +111,7 @@ public class VisionLabsCarsIdentityProvider implements IdentityProvider {
         }
 
         Map<String, Object> body = pc.buildRequestBody(value, attribute.attributes());
-        VisionLabsClient.Response resp = client.postJson(connector, pc.recognizePath, body, pc.timeoutMs);
+        VisionLabsClient.Response resp = client.postJson(pc.connectorId, connector, pc.recognizePath, body, pc.timeoutMs);
 
         if (resp.httpStatus() == 404 || resp.httpStatus() == 204) {
             return Optional.empty();
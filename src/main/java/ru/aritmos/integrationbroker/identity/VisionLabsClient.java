@@ -3,11 +3,12 @@ package ru.aritmos.integrationbroker.identity;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.core.HttpClientRegistry;
 
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
@@ -20,7 +21,8 @@ import java.time.Duration;
  * <ul>
  *   <li>использует REST-коннекторы из runtime-config (baseUrl + auth);</li>
  *   <li>не логирует секреты и не возвращает их в исключениях;</li>
- *   <li>предназначен только для синхронных вызовов в рамках идентификации (identity).</li>
+ *   <li>предназначен только для синхронных вызовов в рамках идентификации (identity);</li>
+ *   <li>использует общий HTTP-клиент коннектора ({@link HttpClientRegistry}), без рукопожатия на каждый запрос.</li>
  * </ul>
  * <p>
  * Примечание: конкретные endpoint'ы и форматы запроса/ответа зависят от установленного решения VisionLabs.
@@ -30,21 +32,30 @@ import java.time.Duration;
 public class VisionLabsClient {
 
     private final ObjectMapper objectMapper;
+    private final HttpClientRegistry clients;
 
-    public VisionLabsClient(ObjectMapper objectMapper) {
+    @Inject
+    public VisionLabsClient(ObjectMapper objectMapper, HttpClientRegistry clients) {
         this.objectMapper = objectMapper;
+        this.clients = clients == null ? HttpClientRegistry.standalone() : clients;
+    }
+
+    public VisionLabsClient(ObjectMapper objectMapper) {
+        this(objectMapper, null);
     }
 
     /**
      * Выполнить POST (JSON) к заданному REST-коннектору.
      *
+     * @param connectorId идентификатор коннектора (ключ общего HTTP-клиента)
      * @param connector конфигурация коннектора
      * @param path путь (относительный), например "/api/identify"
      * @param body тело запроса (будет сериализовано в JSON)
      * @param timeoutMs таймаут запроса
      * @return пара: httpStatus + JSON body (может быть null, если тело пустое)
      */
-    public Response postJson(RuntimeConfigStore.RestConnectorConfig connector,
+    public Response postJson(String connectorId,
+                             RuntimeConfigStore.RestConnectorConfig connector,
                              String path,
                              Object body,
                              int timeoutMs) {
@@ -74,10 +85,6 @@ public class VisionLabsClient {
             return new Response(0, null);
         }
 
-        HttpClient client = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofMillis(Math.max(200, timeoutMs)))
-                .build();
-
         HttpRequest.Builder b = HttpRequest.newBuilder()
                 .uri(uri)
                 .timeout(Duration.ofMillis(Math.max(200, timeoutMs)))
@@ -88,7 +95,7 @@ public class VisionLabsClient {
         applyConnectorAuthHeaders(connector.auth(), b);
 
         try {
-            HttpResponse<String> resp = client.send(b.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            HttpResponse<String> resp = clients.send(connectorId, connector, b.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
             int sc = resp.statusCode();
             String bodyText = resp.body();
             if (bodyText == null || bodyText.isBlank()) {
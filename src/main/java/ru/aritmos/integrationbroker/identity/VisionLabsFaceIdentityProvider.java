@@ -116,7 +116,7 @@ public class VisionLabsFaceIdentityProvider implements IdentityProvider {
         }
 
         Map<String, Object> body = pc.buildRequestBody(value, attribute.attributes());
-        VisionLabsClient.Response resp = client.postJson(connector, pc.identifyPath, body, pc.timeoutMs);
+        VisionLabsClient.Response resp = client.postJson(pc.connectorId, connector, pc.identifyPath, body, pc.timeoutMs);
 
         // Типовая политика: 404/204 трактуем как «нет совпадения», остальные не-2xx — как ошибка.
         if (resp.httpStatus() == 404 || resp.httpStatus() == 204) {
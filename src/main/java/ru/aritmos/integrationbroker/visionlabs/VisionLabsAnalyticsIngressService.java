@@ -5,14 +5,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.inject.Singleton;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 import ru.aritmos.integrationbroker.core.InboundProcessingService;
+import ru.aritmos.integrationbroker.core.PayloadHasher;
 import ru.aritmos.integrationbroker.core.SensitiveDataSanitizer;
 import ru.aritmos.integrationbroker.model.InboundEnvelope;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -64,7 +65,50 @@ public class VisionLabsAnalyticsIngressService {
                                                                JsonNode jsonPayload,
                                                                Map<String, String> headers,
                                                                Map<String, Object> sourceMeta) {
+        return processingService.process(toEnvelope(configStore.getEffective(), callbackType, jsonPayload, headers, sourceMeta));
+    }
+
+    /**
+     * Принять пачку событий аналитики одного источника (например, страницу событий из Events).
+     * <p>
+     * Решения идемпотентности и запись итогов выполняются пачкой ({@link InboundProcessingService#processAll}),
+     * события обрабатываются последовательно; ошибка события не прерывает обработку остальных.
+     *
+     * @param callbackType тип источника
+     * @param payloads JSON событий
+     * @param sourceMetas служебная информация источника по каждому событию (в том же порядке)
+     * @return результаты в порядке {@code payloads}
+     */
+    public List<InboundProcessingService.ItemOutcome> ingestAll(String callbackType,
+                                                               List<JsonNode> payloads,
+                                                               List<Map<String, Object>> sourceMetas) {
         RuntimeConfigStore.RuntimeConfig cfg = configStore.getEffective();
+        int n = payloads.size();
+        InboundProcessingService.ItemOutcome[] outcomes = new InboundProcessingService.ItemOutcome[n];
+        List<Integer> admitted = new ArrayList<>(n);
+        List<InboundEnvelope> envelopes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            try {
+                envelopes.add(toEnvelope(cfg, callbackType, payloads.get(i), Map.of(), sourceMetas.get(i)));
+                admitted.add(i);
+            } catch (RuntimeException e) {
+                outcomes[i] = new InboundProcessingService.ItemOutcome(null, e);
+            }
+        }
+        if (!envelopes.isEmpty()) {
+            List<InboundProcessingService.ItemOutcome> processed = processingService.processAll(envelopes, null, 1);
+            for (int j = 0; j < admitted.size(); j++) {
+                outcomes[admitted.get(j)] = processed.get(j);
+            }
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    private InboundEnvelope toEnvelope(RuntimeConfigStore.RuntimeConfig cfg,
+                                       String callbackType,
+                                       JsonNode jsonPayload,
+                                       Map<String, String> headers,
+                                       Map<String, Object> sourceMeta) {
         RuntimeConfigStore.VisionLabsAnalyticsConfig vcfg = cfg.visionLabsAnalytics();
         if (vcfg == null || !vcfg.enabled()) {
             throw new IllegalArgumentException("Приём VisionLabs аналитики отключён (visionLabsAnalytics.enabled=false)");
@@ -85,7 +129,7 @@ public class VisionLabsAnalyticsIngressService {
         String branchId = pickFirstString(jsonPayload, "branchId", "branch_id", "officeId");
         String userId = pickFirstString(jsonPayload, "userId", "user_id", "operatorId");
 
-        InboundEnvelope env = new InboundEnvelope(
+        return new InboundEnvelope(
                 InboundEnvelope.Kind.EVENT,
                 type,
                 jsonPayload,
@@ -96,8 +140,6 @@ public class VisionLabsAnalyticsIngressService {
                 userId,
                 meta
         );
-
-        return processingService.process(env);
     }
 
     /**
@@ -149,8 +191,7 @@ public class VisionLabsAnalyticsIngressService {
             return "visionlabs:" + callbackType + ":" + id.trim();
         }
         // Fallback: хэш payload -> устойчиво для повторной доставки.
-        String text = payload == null ? "" : payload.toString();
-        return "visionlabs:" + callbackType + ":hash:" + sha256Short(text);
+        return "visionlabs:" + callbackType + ":hash:" + sha256Short(payload);
     }
 
     private String pickCorrelationId(JsonNode payload) {
@@ -177,11 +218,10 @@ public class VisionLabsAnalyticsIngressService {
         return null;
     }
 
-    private String sha256Short(String text) {
+    private String sha256Short(JsonNode payload) {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] dig = md.digest(text.getBytes(StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(dig).substring(0, 16);
+            // Потоковый канонический хеш: base64-изображения не сериализуются в промежуточную строку.
+            return PayloadHasher.sha256Hex(payload).substring(0, 16);
         } catch (Exception e) {
             return "na";
         }
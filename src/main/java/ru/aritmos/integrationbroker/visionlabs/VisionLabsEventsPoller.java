@@ -7,6 +7,7 @@ import jakarta.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.core.HttpClientRegistry;
 import ru.aritmos.integrationbroker.core.InboundDlqService;
 import ru.aritmos.integrationbroker.core.InboundProcessingService;
 import ru.aritmos.integrationbroker.core.SensitiveDataSanitizer;
@@ -14,7 +15,6 @@ import ru.aritmos.integrationbroker.model.InboundEnvelope;
 
 import javax.sql.DataSource;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.sql.Connection;
@@ -52,10 +52,7 @@ public class VisionLabsEventsPoller {
     private final InboundDlqService inboundDlqService;
     private final DataSource dataSource;
     private final ObjectMapper objectMapper;
-
-    private final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(5))
-            .build();
+    private final HttpClientRegistry httpClients;
 
     private volatile Instant lastPoll = Instant.EPOCH;
 
@@ -63,12 +60,14 @@ public class VisionLabsEventsPoller {
                                  VisionLabsAnalyticsIngressService ingressService,
                                  InboundDlqService inboundDlqService,
                                  DataSource dataSource,
-                                 ObjectMapper objectMapper) {
+                                 ObjectMapper objectMapper,
+                                 HttpClientRegistry httpClients) {
         this.configStore = configStore;
         this.ingressService = ingressService;
         this.inboundDlqService = inboundDlqService;
         this.dataSource = dataSource;
         this.objectMapper = objectMapper;
+        this.httpClients = httpClients;
     }
 
     /**
@@ -119,7 +118,7 @@ public class VisionLabsEventsPoller {
 
         try {
             String url = buildEventsUrl(connector.baseUrl(), vcfg.events(), streamId, lastEventId);
-            String body = httpGet(url, connector);
+            String body = httpGet(vcfg.events().connectorId(), url, connector);
 
             JsonNode root = objectMapper.readTree(body);
             JsonNode listNode = root.at(safePointer(vcfg.events().listJsonPointer(), "/events"));
@@ -135,6 +134,8 @@ public class VisionLabsEventsPoller {
             }
 
             String maxId = lastEventId;
+            List<String> eventIds = new ArrayList<>(events.size());
+            List<Map<String, Object>> sourceMetas = new ArrayList<>(events.size());
             for (JsonNode ev : events) {
                 String evId = ev.at(safePointer(vcfg.events().idJsonPointer(), "/id")).asText(null);
                 if (evId != null) {
@@ -146,16 +147,32 @@ public class VisionLabsEventsPoller {
                 if (evId != null) {
                     sourceMeta.put("eventId", evId);
                 }
+                eventIds.add(evId);
+                sourceMetas.add(sourceMeta);
+            }
 
-                try {
-                    ingressService.ingestJson("luna-event", ev, Map.of(), sourceMeta);
-                } catch (InboundProcessingService.StoredInDlqException ex) {
-                    // Уже сохранено в DLQ — можно продолжать.
-                } catch (IllegalArgumentException ex) {
+            // Страница событий обрабатывается пачкой: решения идемпотентности и запись итогов — пачкой.
+            List<InboundProcessingService.ItemOutcome> outcomes = events.isEmpty()
+                    ? List.of()
+                    : ingressService.ingestAll("luna-event", events, sourceMetas);
+            RuntimeException unexpected = null;
+            for (int i = 0; i < outcomes.size(); i++) {
+                RuntimeException error = outcomes.get(i).error();
+                if (error == null || error instanceof InboundProcessingService.StoredInDlqException) {
+                    // Обработано или уже сохранено в DLQ — можно продолжать.
+                    continue;
+                }
+                if (error instanceof IllegalArgumentException) {
                     // Например, нет flow. Чтобы не потерять событие, пытаемся сохранить в DLQ вручную.
-                    storeNoFlowToDlq(vcfg, ev, streamId, evId, ex.getMessage());
+                    storeNoFlowToDlq(vcfg, events.get(i), streamId, eventIds.get(i), error.getMessage());
+                } else if (unexpected == null) {
+                    unexpected = error;
                 }
             }
+            if (unexpected != null) {
+                // Checkpoint не продвигаем: страница будет перечитана, обработанные события отсеет идемпотентность.
+                throw unexpected;
+            }
 
             // Продвигаем checkpoint после прохода, чтобы исключить бесконечные повторы.
             if (maxId != null && (lastEventId == null || !maxId.equals(lastEventId))) {
@@ -223,10 +240,10 @@ public class VisionLabsEventsPoller {
         return base + p + "?" + q;
     }
 
-    private String httpGet(String url, RuntimeConfigStore.RestConnectorConfig connector) throws Exception {
+    private String httpGet(String connectorId, String url, RuntimeConfigStore.RestConnectorConfig connector) throws Exception {
         HttpRequest.Builder b = HttpRequest.newBuilder()
                 .uri(URI.create(url))
-                .timeout(Duration.ofSeconds(10))
+                .timeout(HttpClientRegistry.requestTimeout(connector, Duration.ofSeconds(10)))
                 .GET();
 
         Map<String, String> authHeaders = buildAuthHeaders(connector);
@@ -234,7 +251,7 @@ public class VisionLabsEventsPoller {
             b.header(e.getKey(), e.getValue());
         }
 
-        HttpResponse<String> resp = httpClient.send(b.build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> resp = httpClients.send(connectorId, connector, b.build(), HttpResponse.BodyHandlers.ofString());
         int sc = resp.statusCode();
         if (sc < 200 || sc >= 300) {
             throw new IllegalStateException("HTTP_" + sc);
@@ -2,16 +2,17 @@ package ru.aritmos.integrationbroker.visitmanager;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 import ru.aritmos.integrationbroker.core.CorrelationContext;
+import ru.aritmos.integrationbroker.core.HttpClientRegistry;
 import ru.aritmos.integrationbroker.core.RestOutboxService;
 import ru.aritmos.integrationbroker.core.OAuth2ClientCredentialsService;
 import ru.aritmos.integrationbroker.core.SensitiveDataSanitizer;
 
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
@@ -43,19 +44,29 @@ public class VisitManagerClient {
     private final RuntimeConfigStore configStore;
     private final RestOutboxService restOutboxService;
     private final ObjectMapper objectMapper;
-    private final HttpClient httpClient;
+    private final HttpClientRegistry httpClients;
     private final OAuth2ClientCredentialsService oauth2Service;
 
-    public VisitManagerClient(RuntimeConfigStore configStore, RestOutboxService restOutboxService, ObjectMapper objectMapper, OAuth2ClientCredentialsService oauth2Service) {
+    @Inject
+    public VisitManagerClient(RuntimeConfigStore configStore,
+                              RestOutboxService restOutboxService,
+                              ObjectMapper objectMapper,
+                              OAuth2ClientCredentialsService oauth2Service,
+                              HttpClientRegistry httpClients) {
         this.configStore = configStore;
         this.restOutboxService = restOutboxService;
         this.objectMapper = objectMapper;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(5))
-                .build();
+        this.httpClients = httpClients == null ? HttpClientRegistry.standalone() : httpClients;
         this.oauth2Service = oauth2Service;
     }
 
+    public VisitManagerClient(RuntimeConfigStore configStore,
+                              RestOutboxService restOutboxService,
+                              ObjectMapper objectMapper,
+                              OAuth2ClientCredentialsService oauth2Service) {
+        this(configStore, restOutboxService, objectMapper, oauth2Service, null);
+    }
+
     /**
      * Создать визит через REST API VisitManager.
      *
@@ -119,14 +130,14 @@ public class VisitManagerClient {
 
         try {
             HttpRequest.Builder rb = HttpRequest.newBuilder().uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(10))
+                    .timeout(HttpClientRegistry.requestTimeout(conn, Duration.ofSeconds(10)))
                     .POST(HttpRequest.BodyPublishers.ofString(bodyJson));
             for (Map.Entry<String, String> h : directHeaders.entrySet()) {
                 if (h.getKey() != null && h.getValue() != null) {
                     rb.header(h.getKey(), h.getValue());
                 }
             }
-            HttpResponse<String> resp = httpClient.send(rb.build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> resp = httpClients.send(connectorId, conn, rb.build(), HttpResponse.BodyHandlers.ofString());
             int status = resp.statusCode();
             if (status >= 200 && status < 300) {
                 JsonNode node;
@@ -197,14 +208,14 @@ public class VisitManagerClient {
 
         try {
             HttpRequest.Builder rb = HttpRequest.newBuilder().uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(10))
+                    .timeout(HttpClientRegistry.requestTimeout(conn, Duration.ofSeconds(10)))
                     .POST(HttpRequest.BodyPublishers.ofString(bodyJson));
             for (Map.Entry<String, String> h : directHeaders.entrySet()) {
                 if (h.getKey() != null && h.getValue() != null) {
                     rb.header(h.getKey(), h.getValue());
                 }
             }
-            HttpResponse<String> resp = httpClient.send(rb.build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> resp = httpClients.send(connectorId, conn, rb.build(), HttpResponse.BodyHandlers.ofString());
             int status = resp.statusCode();
             if (status >= 200 && status < 300) {
                 JsonNode node;
@@ -271,14 +282,14 @@ public class VisitManagerClient {
 
         try {
             HttpRequest.Builder rb = HttpRequest.newBuilder().uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(10))
+                    .timeout(HttpClientRegistry.requestTimeout(conn, Duration.ofSeconds(10)))
                     .PUT(HttpRequest.BodyPublishers.ofString(bodyJson));
             for (Map.Entry<String, String> h : directHeaders.entrySet()) {
                 if (h.getKey() != null && h.getValue() != null) {
                     rb.header(h.getKey(), h.getValue());
                 }
             }
-            HttpResponse<String> resp = httpClient.send(rb.build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> resp = httpClients.send(connectorId, conn, rb.build(), HttpResponse.BodyHandlers.ofString());
             int status = resp.statusCode();
             if (status >= 200 && status < 300) {
                 JsonNode node;
@@ -331,7 +342,7 @@ public class VisitManagerClient {
 
         try {
             HttpRequest.Builder rb = HttpRequest.newBuilder().uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(10))
+                    .timeout(HttpClientRegistry.requestTimeout(conn, Duration.ofSeconds(10)))
                     .GET();
             for (Map.Entry<String, String> h : directHeaders.entrySet()) {
                 if (h.getKey() != null && h.getValue() != null) {
@@ -339,7 +350,7 @@ public class VisitManagerClient {
                 }
             }
 
-            HttpResponse<String> resp = httpClient.send(rb.build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> resp = httpClients.send(connectorId, conn, rb.build(), HttpResponse.BodyHandlers.ofString());
             int status = resp.statusCode();
             if (status >= 200 && status < 300) {
                 JsonNode node;
@@ -543,7 +554,8 @@ public class VisitManagerClient {
         }
 
         try {
-            HttpRequest.Builder rb = HttpRequest.newBuilder().uri(URI.create(url)).timeout(Duration.ofSeconds(10));
+            HttpRequest.Builder rb = HttpRequest.newBuilder().uri(URI.create(url))
+                    .timeout(HttpClientRegistry.requestTimeout(conn, Duration.ofSeconds(10)));
             if ("GET".equals(effMethod)) {
                 rb.GET();
             } else if ("DELETE".equals(effMethod)) {
@@ -559,7 +571,7 @@ public class VisitManagerClient {
                 }
             }
 
-            HttpResponse<String> resp = httpClient.send(rb.build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> resp = httpClients.send(connectorId, conn, rb.build(), HttpResponse.BodyHandlers.ofString());
             int status = resp.statusCode();
             if (status >= 200 && status < 300) {
                 JsonNode node;
@@ -0,0 +1,24 @@
+-- Lease для захвата пачек outbox диспетчером.
+--
+-- Ключевая идея:
+-- 1) Диспетчер захватывает пачку одним оператором (PostgreSQL: FOR UPDATE SKIP LOCKED) и переводит её в SENDING.
+-- 2) В записи фиксируются владелец (узел брокера) и срок lease.
+-- 3) Если узел упал, не завершив отправку, reaper возвращает записи с истёкшим lease в PENDING.
+
+ALTER TABLE ib_messaging_outbox
+    ADD COLUMN IF NOT EXISTS lease_owner VARCHAR(128) NULL;
+
+ALTER TABLE ib_messaging_outbox
+    ADD COLUMN IF NOT EXISTS lease_until TIMESTAMP WITH TIME ZONE NULL;
+
+ALTER TABLE ib_rest_outbox
+    ADD COLUMN IF NOT EXISTS lease_owner VARCHAR(128) NULL;
+
+ALTER TABLE ib_rest_outbox
+    ADD COLUMN IF NOT EXISTS lease_until TIMESTAMP WITH TIME ZONE NULL;
+
+CREATE INDEX IF NOT EXISTS ix_ib_messaging_outbox_status_lease
+    ON ib_messaging_outbox (status, lease_until);
+
+CREATE INDEX IF NOT EXISTS ix_ib_rest_outbox_status_lease
+    ON ib_rest_outbox (status, lease_until);
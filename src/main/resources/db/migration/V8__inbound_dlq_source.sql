@@ -0,0 +1,19 @@
+-- Материализованный источник inbound DLQ и индексы под фильтры Admin API.
+--
+-- Ключевая идея:
+-- 1) Источник (sourceMeta.source / sourceSystem / system) хранится в отдельной колонке и заполняется при put,
+--    поэтому фильтр source выполняется в SQL, а не разбором source_meta_json в приложении.
+-- 2) Существующие записи заполняются из source_meta_json Java-миграцией V8_1 (переносимо: PostgreSQL и H2).
+-- 3) Составные индексы покрывают фильтры status+type, status+branch_id, status+source с сортировкой по updated_at.
+
+ALTER TABLE ib_inbound_dlq
+    ADD COLUMN IF NOT EXISTS source VARCHAR(128) NULL;
+
+CREATE INDEX IF NOT EXISTS ix_ib_inbound_dlq_status_type_updated
+    ON ib_inbound_dlq (status, type, updated_at DESC);
+
+CREATE INDEX IF NOT EXISTS ix_ib_inbound_dlq_status_branch_updated
+    ON ib_inbound_dlq (status, branch_id, updated_at DESC);
+
+CREATE INDEX IF NOT EXISTS ix_ib_inbound_dlq_status_source_updated
+    ON ib_inbound_dlq (status, source, updated_at DESC);
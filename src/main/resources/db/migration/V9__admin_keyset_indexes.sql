@@ -0,0 +1,40 @@
+-- Индексы под keyset-пагинацию списков Admin API.
+--
+-- Ключевая идея:
+-- 1) Списки упорядочены по (updated_at DESC, id DESC) — для идемпотентности (updated_at DESC, idem_key DESC);
+--    следующая страница выбирается условием «после курсора», без OFFSET (см. KeysetCursor).
+-- 2) Индексы содержат ключ как tie-breaker, поэтому и первая, и любая следующая страница читаются
+--    одним диапазоном индекса без сортировки — как без фильтра, так и с фильтром по status.
+-- 3) Прежние индексы (updated_at DESC) и (status, updated_at DESC) покрываются новыми и удаляются.
+
+CREATE INDEX IF NOT EXISTS ix_ib_idempotency_updated_key
+    ON ib_idempotency (updated_at DESC, idem_key DESC);
+
+CREATE INDEX IF NOT EXISTS ix_ib_idempotency_status_updated_key
+    ON ib_idempotency (status, updated_at DESC, idem_key DESC);
+
+DROP INDEX IF EXISTS ix_ib_idempotency_status_updated;
+
+CREATE INDEX IF NOT EXISTS ix_ib_inbound_dlq_updated_id
+    ON ib_inbound_dlq (updated_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS ix_ib_inbound_dlq_status_updated_id
+    ON ib_inbound_dlq (status, updated_at DESC, id DESC);
+
+DROP INDEX IF EXISTS ix_ib_inbound_dlq_status_updated;
+
+CREATE INDEX IF NOT EXISTS ix_ib_messaging_outbox_updated_id
+    ON ib_messaging_outbox (updated_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS ix_ib_messaging_outbox_status_updated_id
+    ON ib_messaging_outbox (status, updated_at DESC, id DESC);
+
+DROP INDEX IF EXISTS ix_ib_messaging_outbox_updated;
+
+CREATE INDEX IF NOT EXISTS ix_ib_rest_outbox_updated_id
+    ON ib_rest_outbox (updated_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS ix_ib_rest_outbox_status_updated_id
+    ON ib_rest_outbox (status, updated_at DESC, id DESC);
+
+DROP INDEX IF EXISTS ix_ib_rest_outbox_updated;
@@ -1,13 +1,16 @@
 package ru.aritmos.integrationbroker.api;
 
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.exceptions.HttpStatusException;
 import org.junit.jupiter.api.Test;
 import ru.aritmos.integrationbroker.core.AdminOperationsMetrics;
 import ru.aritmos.integrationbroker.core.InboundDlqService;
+import ru.aritmos.integrationbroker.core.KeysetCursor;
 
 import java.util.ArrayList;
-import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class AdminInboundDlqControllerListTest {
 
@@ -28,8 +31,42 @@ class AdminInboundDlqControllerListTest {
         assertEquals(25, dlqService.limit);
     }
 
+    @Test
+    void list_shouldPassCursorAndReturnNextCursor() {
+        CapturingDlqService dlqService = new CapturingDlqService();
+        AdminInboundDlqController controller = new AdminInboundDlqController(
+                dlqService,
+                null,
+                null,
+                new AdminOperationsMetrics(),
+                100
+        );
+
+        AdminInboundDlqController.DlqListResponse response =
+                controller.list("PENDING", null, null, null, null, null, "c-1", 10);
+
+        assertEquals("c-1", dlqService.cursor);
+        assertEquals("next", response.nextCursor());
+    }
+
+    @Test
+    void list_shouldRejectMalformedCursorAsBadRequest() {
+        AdminInboundDlqController controller = new AdminInboundDlqController(
+                new InboundDlqService(null, null),
+                null,
+                null,
+                new AdminOperationsMetrics(),
+                100
+        );
+
+        HttpStatusException e = assertThrows(HttpStatusException.class,
+                () -> controller.list(null, null, null, null, null, null, "%%%", 10));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+    }
+
     private static final class CapturingDlqService extends InboundDlqService {
         private String correlationId;
+        private String cursor;
         private int limit;
 
         private CapturingDlqService() {
@@ -37,16 +74,18 @@ class AdminInboundDlqControllerListTest {
         }
 
         @Override
-        public List<DlqRecord> list(String status,
-                                    String type,
-                                    String source,
-                                    String branchId,
-                                    String ignoredReason,
-                                    String correlationId,
-                                    int limit) {
+        public KeysetCursor.Slice<DlqRecord> page(String status,
+                                                  String type,
+                                                  String source,
+                                                  String branchId,
+                                                  String ignoredReason,
+                                                  String correlationId,
+                                                  String cursor,
+                                                  int limit) {
             this.correlationId = correlationId;
+            this.cursor = cursor;
             this.limit = limit;
-            return new ArrayList<>();
+            return new KeysetCursor.Slice<>(new ArrayList<>(), cursor == null ? null : "next");
         }
     }
 }
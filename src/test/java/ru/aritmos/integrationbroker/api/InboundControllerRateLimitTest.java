@@ -31,6 +31,15 @@ class InboundControllerRateLimitTest {
                 null,
                 null,
                 new AdminOperationsMetrics(),
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
                 new ObjectMapper(),
                 true,
                 1
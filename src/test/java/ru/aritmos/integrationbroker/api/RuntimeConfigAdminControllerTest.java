@@ -35,7 +35,7 @@ class RuntimeConfigAdminControllerTest {
                 new RuntimeConfigStore.KeycloakProxyEnrichmentConfig(false, false, "keycloakProxy", List.of(RuntimeConfigStore.KeycloakProxyFetchMode.USER_ID_HEADER), "x-user-id", "Authorization", "/authorization/users/{userName}", "/authentication/userInfo", true, 60, 5000, true, List.of()),
                 new RuntimeConfigStore.MessagingOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50),
                 new RuntimeConfigStore.RestOutboxConfig(true, "ON_FAILURE", 10, 10, 120, 50, "Idempotency-Key", "409"),
-                Map.of("vm", new RuntimeConfigStore.RestConnectorConfig("http://vm", auth, null, null)),
+                Map.of("vm", new RuntimeConfigStore.RestConnectorConfig("http://vm", auth, null, null, null)),
                 RuntimeConfigStore.CrmConfig.disabled(),
                 RuntimeConfigStore.MedicalConfig.disabled(),
                 RuntimeConfigStore.AppointmentConfig.disabled(),
@@ -113,8 +113,8 @@ class RuntimeConfigAdminControllerTest {
                 Map.of(
                         "vm", new RuntimeConfigStore.RestConnectorConfig("http://vm", null,
                                 new RuntimeConfigStore.RetryPolicy(5, 2, 30),
-                                new RuntimeConfigStore.CircuitBreakerPolicy(true, 4, 20, 2)),
-                        "db", new RuntimeConfigStore.RestConnectorConfig("http://db", null, null, null)
+                                new RuntimeConfigStore.CircuitBreakerPolicy(true, 4, 20, 2), null),
+                        "db", new RuntimeConfigStore.RestConnectorConfig("http://db", null, null, null, null)
                 ),
                 RuntimeConfigStore.CrmConfig.disabled(),
                 RuntimeConfigStore.MedicalConfig.disabled(),
@@ -166,12 +166,14 @@ class RuntimeConfigAdminControllerTest {
                                 "http://vm-base",
                                 null,
                                 new RuntimeConfigStore.RetryPolicy(5, 2, 30),
-                                new RuntimeConfigStore.CircuitBreakerPolicy(true, 5, 25, 2)
+                                new RuntimeConfigStore.CircuitBreakerPolicy(true, 5, 25, 2),
+                                null
                         ),
                         "crm", new RuntimeConfigStore.RestConnectorConfig(
                                 "http://crm-base",
                                 null,
                                 null,
+                                null,
                                 null
                         )
                 ),
@@ -198,13 +200,15 @@ class RuntimeConfigAdminControllerTest {
                                 "http://vm-eff",
                                 null,
                                 new RuntimeConfigStore.RetryPolicy(8, 2, 30),
-                                new RuntimeConfigStore.CircuitBreakerPolicy(true, 7, 25, 2)
+                                new RuntimeConfigStore.CircuitBreakerPolicy(true, 7, 25, 2),
+                                null
                         ),
                         "db", new RuntimeConfigStore.RestConnectorConfig(
                                 "http://db-eff",
                                 null,
                                 null,
-                                new RuntimeConfigStore.CircuitBreakerPolicy(false, 4, 15, 1)
+                                new RuntimeConfigStore.CircuitBreakerPolicy(false, 4, 15, 1),
+                                null
                         )
                 ),
                 RuntimeConfigStore.CrmConfig.disabled(),
@@ -272,7 +276,7 @@ class RuntimeConfigAdminControllerTest {
                 new RuntimeConfigStore.KeycloakProxyEnrichmentConfig(false, false, "keycloakProxy", List.of(RuntimeConfigStore.KeycloakProxyFetchMode.USER_ID_HEADER), "x-user-id", "Authorization", "/authorization/users/{userName}", "/authentication/userInfo", true, 60, 5000, true, List.of()),
                 new RuntimeConfigStore.MessagingOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50),
                 new RuntimeConfigStore.RestOutboxConfig(true, "ON_FAILURE", 10, 10, 120, 50, "Idempotency-Key", "409"),
-                Map.of("vm", new RuntimeConfigStore.RestConnectorConfig("http://vm", auth, null, null)),
+                Map.of("vm", new RuntimeConfigStore.RestConnectorConfig("http://vm", auth, null, null, null)),
                 RuntimeConfigStore.CrmConfig.disabled(),
                 RuntimeConfigStore.MedicalConfig.disabled(),
                 RuntimeConfigStore.AppointmentConfig.disabled(),
@@ -522,7 +522,7 @@ class AppointmentClientsTest {
 
         Map<String, RuntimeConfigStore.RestConnectorConfig> connectors = new LinkedHashMap<>(cfg.restConnectors());
         RuntimeConfigStore.RestConnectorConfig old = connectors.get("appointmentGeneric");
-        connectors.put("appointmentGeneric", new RuntimeConfigStore.RestConnectorConfig(baseUrl, old == null ? null : old.auth(), old == null ? null : old.retryPolicy(), old == null ? null : old.circuitBreaker()));
+        connectors.put("appointmentGeneric", new RuntimeConfigStore.RestConnectorConfig(baseUrl, old == null ? null : old.auth(), old == null ? null : old.retryPolicy(), old == null ? null : old.circuitBreaker(), old == null ? null : old.http()));
 
         return new RuntimeConfigStore.RuntimeConfig(
                 cfg.revision(), cfg.flows(), cfg.idempotency(), cfg.inboundDlq(), cfg.keycloakProxy(), cfg.messagingOutbox(), cfg.restOutbox(), connectors,
@@ -150,7 +150,7 @@ class AppointmentCustomClientExamplesSmokeTest {
             connectors.put("appointmentGeneric", new RuntimeConfigStore.RestConnectorConfig(baseUrl,
                     old == null ? null : old.auth(),
                     old == null ? null : old.retryPolicy(),
-                    old == null ? null : old.circuitBreaker()));
+                    old == null ? null : old.circuitBreaker(), old == null ? null : old.http()));
 
             return new RuntimeConfigStore.RuntimeConfig(
                     cfg.revision(), cfg.flows(), cfg.idempotency(), cfg.inboundDlq(), cfg.keycloakProxy(), cfg.messagingOutbox(), cfg.restOutbox(), connectors,
@@ -0,0 +1,92 @@
+package ru.aritmos.integrationbroker.appointment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AppointmentOperationPlanTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void templates_shouldRenderWithPrecompiledTokens() {
+        Map<String, Object> operation = new LinkedHashMap<>();
+        operation.put("method", "get");
+        operation.put("path", "/clients/${keys.clientId}/visits/${keys.clientId}");
+        operation.put("queryTemplate", Map.of("from", "${from:2026-01-01}", "empty", "${context.missing}"));
+        operation.put("headersTemplate", Map.of("X-Branch", "br-${context.branchId}"));
+        operation.put("requestTemplate", Map.of("limit", "${context.limit}", "ids", List.of("${keys.clientId}", 7), "raw", "no tokens"));
+        operation.put("errorMapping", Map.of(404, "OK_EMPTY"));
+        AppointmentOperationPlan plan = AppointmentOperationPlan.compileAll(Map.of("getAppointments", operation, "empty", Map.of()))
+                .get("getAppointments");
+
+        Map<String, Object> vars = new LinkedHashMap<>();
+        vars.put("from", null);
+        vars.put("context", Map.of("branchId", "B1", "limit", 20));
+        vars.put("keys", Map.of("clientId", "c-1"));
+        Map<String, Object> flat = AppointmentOperationPlan.flatten(vars);
+
+        assertEquals("GET", plan.method());
+        assertEquals("/clients/c-1/visits/c-1", plan.path(flat));
+        assertEquals(Map.of("from", "2026-01-01"), plan.query(flat), "TEST_EXPECTED: пустые значения в query не попадают");
+        assertEquals(Map.of("X-Branch", "br-B1"), plan.headers(flat));
+        assertEquals(Map.of("limit", 20, "ids", List.of("c-1", 7), "raw", "no tokens"), plan.requestBody(flat),
+                "TEST_EXPECTED: токен на всё значение сохраняет тип переменной");
+        assertEquals("OK_EMPTY", plan.errorOutcome(404));
+        assertNull(plan.errorOutcome(500));
+        assertNull(AppointmentOperationPlan.compileAll(Map.of("empty", Map.of())).get("empty"));
+    }
+
+    @Test
+    void read_shouldStreamOnlyMappedFields() {
+        AppointmentOperationPlan plan = AppointmentOperationPlan.compileAll(Map.of("getAvailableSlots", Map.of(
+                "path", "/slots",
+                "responseMapping", Map.of("itemsPath", "$.result.slots[*]", "slotId", "$.id", "serviceCode", "$.service")
+        ))).get("getAvailableSlots");
+        String body = """
+                {"meta":{"ignored":[1,2,{"deep":true}]},
+                 "result":{"slots":[
+                   {"id":1.50,"start":"2026-01-01T10:00:00Z","service":{"code":"S1"}},
+                   {"id":"s-2","end":null,"service":"S2"},
+                   "not-an-object"
+                 ]},
+                 "traceId":"t-1"}
+                """;
+
+        AppointmentOperationPlan.Extract extract = plan.slots().read(mapper, body, false);
+
+        assertEquals("t-1", extract.traceId(), "TEST_EXPECTED: traceId после списка тоже читается");
+        assertEquals(3, extract.items().size());
+        assertArrayEquals(new String[]{"1.5", "2026-01-01T10:00:00Z", null, "{\"code\":\"S1\"}"}, extract.items().get(0),
+                "TEST_EXPECTED: текст как у JsonNode.asText(), объект — как JSON");
+        assertArrayEquals(new String[]{"s-2", null, null, "S2"}, extract.items().get(1));
+        assertArrayEquals(new String[4], extract.items().get(2));
+        assertFalse(extract.rootIsArray());
+    }
+
+    @Test
+    void read_shouldReturnRootFieldsAndTolerateBrokenBodies() {
+        AppointmentOperationPlan plan = AppointmentOperationPlan.compileAll(Map.of("bookSlot", Map.of("path", "/book")))
+                .get("bookSlot");
+
+        AppointmentOperationPlan.Extract single = plan.appointments().read(mapper, "{\"id\":\"a-1\",\"doctor\":{\"name\":\"Иванов\"}}", true);
+        assertTrue(single.items().isEmpty());
+        assertEquals("a-1", single.root()[0]);
+        assertEquals("Иванов", single.root()[4]);
+
+        assertTrue(plan.appointments().read(mapper, "[{\"id\":1}]", true).rootIsArray());
+        AppointmentOperationPlan.Extract broken = plan.appointments().read(mapper, "{\"traceId\":\"t\",\"data\":{\"items\":[{\"id\":1}", true);
+        assertTrue(broken.items().isEmpty(), "TEST_EXPECTED: некорректный JSON — пустой результат целиком");
+        assertNull(broken.traceId());
+        assertNull(plan.appointments().read(mapper, " ", true).root()[0]);
+    }
+}
@@ -6,6 +6,7 @@ import ru.aritmos.integrationbroker.model.InboundEnvelope;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -14,14 +15,7 @@ class BranchResolverGroovyAdapterTest {
     @Test
     void resolveOrDefault_shouldReturnDefaultWhenUnresolved() {
         RuntimeConfigStore.BranchResolutionConfig br = RuntimeConfigStore.BranchResolutionConfig.defaultConfig();
-        RuntimeConfigStore.RuntimeConfig runtime = new RuntimeConfigStore.RuntimeConfig(
-                "test", List.of(), new RuntimeConfigStore.IdempotencyConfig(true, RuntimeConfigStore.IdempotencyStrategy.AUTO, 60),
-                new RuntimeConfigStore.InboundDlqConfig(true, 10, true),
-                new RuntimeConfigStore.KeycloakProxyEnrichmentConfig(false, false, "keycloakProxy", List.of(RuntimeConfigStore.KeycloakProxyFetchMode.USER_ID_HEADER), "x-user-id", "Authorization", "/authorization/users/{userName}", "/authentication/userInfo", true, 60, 5000, true, List.of()),
-                new RuntimeConfigStore.MessagingOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50),
-                new RuntimeConfigStore.RestOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50, "Idempotency-Key", "409"),
-                Map.of(), RuntimeConfigStore.CrmConfig.disabled(), RuntimeConfigStore.MedicalConfig.disabled(), RuntimeConfigStore.AppointmentConfig.disabled(), RuntimeConfigStore.IdentityConfig.defaultConfig(), RuntimeConfigStore.VisionLabsAnalyticsConfig.disabled(), br, RuntimeConfigStore.VisitManagerIntegrationConfig.disabled(), RuntimeConfigStore.DataBusIntegrationConfig.disabled()
-        );
+        RuntimeConfigStore.RuntimeConfig runtime = runtime(br);
 
         RuntimeConfigStore store = new RuntimeConfigStore(null, null, null, null, false, null) {
             @Override
@@ -48,4 +42,47 @@ class BranchResolverGroovyAdapterTest {
         assertEquals("B-DEFAULT", out.get("branchId"));
         assertEquals("DEFAULT", out.get("strategy"));
     }
+
+    @Test
+    void resolve_shouldRecompileCameraNameRulesWhenConfigChanges() {
+        Map<String, String> prefixes = Map.of("TVR", "B-TVR", "MSK", "B-MSK");
+        AtomicReference<RuntimeConfigStore.RuntimeConfig> current = new AtomicReference<>(runtime(
+                new RuntimeConfigStore.BranchResolutionConfig(true, "x-branch-id", "x-branch-prefix", prefixes, List.of(
+                        new RuntimeConfigStore.CameraNameRule("prefix", "^([A-Z]{2,5})_.*$", 1, RuntimeConfigStore.CameraNameRuleMode.BRANCH_PREFIX)))));
+        RuntimeConfigStore store = new RuntimeConfigStore(null, null, null, null, false, null) {
+            @Override
+            public RuntimeConfig getEffective() {
+                return current.get();
+            }
+        };
+        BranchResolverGroovyAdapter adapter = new BranchResolverGroovyAdapter(store);
+
+        Map<String, Object> first = adapter.resolve(camera("TVR_CAM_01"));
+        assertEquals("B-TVR", first.get("branchId"));
+        assertEquals("CAMERA_NAME_PREFIX", first.get("strategy"));
+        assertEquals("B-TVR", adapter.resolve(camera("TVR_CAM_01")).get("branchId"), "TEST_EXPECTED: повтор из кэша");
+
+        current.set(runtime(new RuntimeConfigStore.BranchResolutionConfig(true, "x-branch-id", "x-branch-prefix", prefixes, List.of(
+                new RuntimeConfigStore.CameraNameRule("id", "^TVR_(CAM_[0-9]+)$", 1, RuntimeConfigStore.CameraNameRuleMode.BRANCH_ID)))));
+
+        Map<String, Object> second = adapter.resolve(camera("TVR_CAM_01"));
+        assertEquals("CAM_01", second.get("branchId"), "TEST_EXPECTED: новая ревизия правил, кэш прежних правил не используется");
+        assertEquals("CAMERA_NAME_BRANCH_ID", second.get("strategy"));
+    }
+
+    private static InboundEnvelope camera(String cameraName) {
+        return new InboundEnvelope(InboundEnvelope.Kind.EVENT, "identity.requested", null, Map.of(),
+                "m1", "c1", null, null, Map.of("cameraName", cameraName));
+    }
+
+    private static RuntimeConfigStore.RuntimeConfig runtime(RuntimeConfigStore.BranchResolutionConfig br) {
+        return new RuntimeConfigStore.RuntimeConfig(
+                "test", List.of(), new RuntimeConfigStore.IdempotencyConfig(true, RuntimeConfigStore.IdempotencyStrategy.AUTO, 60),
+                new RuntimeConfigStore.InboundDlqConfig(true, 10, true),
+                new RuntimeConfigStore.KeycloakProxyEnrichmentConfig(false, false, "keycloakProxy", List.of(RuntimeConfigStore.KeycloakProxyFetchMode.USER_ID_HEADER), "x-user-id", "Authorization", "/authorization/users/{userName}", "/authentication/userInfo", true, 60, 5000, true, List.of()),
+                new RuntimeConfigStore.MessagingOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50),
+                new RuntimeConfigStore.RestOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50, "Idempotency-Key", "409"),
+                Map.of(), RuntimeConfigStore.CrmConfig.disabled(), RuntimeConfigStore.MedicalConfig.disabled(), RuntimeConfigStore.AppointmentConfig.disabled(), RuntimeConfigStore.IdentityConfig.defaultConfig(), RuntimeConfigStore.VisionLabsAnalyticsConfig.disabled(), br, RuntimeConfigStore.VisitManagerIntegrationConfig.disabled(), RuntimeConfigStore.DataBusIntegrationConfig.disabled()
+        );
+    }
 }
@@ -0,0 +1,105 @@
+package ru.aritmos.integrationbroker.branch;
+
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CameraNameRuleEngineTest {
+
+    @Test
+    void literalPrefix_shouldStopAtFirstNonMandatoryElement() {
+        assertEquals("BR12_cam", CameraNameRuleEngine.literalPrefix("^(BR12)_cam.*$"));
+        assertEquals("", CameraNameRuleEngine.literalPrefix("^([A-Z]{2,5})_.*$"));
+        assertEquals("", CameraNameRuleEngine.literalPrefix("^AB_.*|^CD_.*"), "TEST_EXPECTED: альтернатива верхнего уровня");
+        assertEquals("X", CameraNameRuleEngine.literalPrefix("X(AB|CD)_.*"));
+        assertEquals("X", CameraNameRuleEngine.literalPrefix("X(AB)?_.*"));
+        assertEquals("A", CameraNameRuleEngine.literalPrefix("AB?C"));
+        assertEquals("AB", CameraNameRuleEngine.literalPrefix("AB+C"));
+        assertEquals("A.B", CameraNameRuleEngine.literalPrefix("A\\.B\\d+"));
+        assertEquals("CAM", CameraNameRuleEngine.literalPrefix("CAM(?i)x"));
+        assertEquals("", CameraNameRuleEngine.literalPrefix("(?i)cam"));
+    }
+
+    @Test
+    void match_shouldKeepFirstRuleWinsSemanticsWithEmptyGroupFallthrough() {
+        List<RuntimeConfigStore.CameraNameRule> rules = List.of(
+                rule("empty-group", "^(BR)?(1)_.*$", 1, RuntimeConfigStore.CameraNameRuleMode.BRANCH_ID),
+                rule("broken", "^([A-Z", 1, RuntimeConfigStore.CameraNameRuleMode.BRANCH_ID),
+                rule("no-mode", "^(1)_.*$", 1, null),
+                rule("generic", "^([0-9A-Z]+)_.*$", 1, RuntimeConfigStore.CameraNameRuleMode.BRANCH_PREFIX),
+                rule("literal", "^(1)_cam$", 1, RuntimeConfigStore.CameraNameRuleMode.BRANCH_ID)
+        );
+        CameraNameRuleEngine engine = new CameraNameRuleEngine(rules, 16);
+
+        CameraNameRuleEngine.Match m = engine.match("1_cam");
+        assertEquals("generic", m.rule().name(), "TEST_EXPECTED: пустая группа и правило без режима пропускаются");
+        assertEquals("1", m.extracted());
+        assertEquals("BR", engine.match("BR1_x").extracted());
+        assertNull(engine.match("lower_case"));
+        assertNull(engine.match("lower_case"), "TEST_EXPECTED: отсутствие совпадения тоже кэшируется");
+        assertEquals(1, engine.cacheStats().hits());
+    }
+
+    @Test
+    void match_shouldBeEquivalentToSequentialEvaluation() {
+        Random rnd = new Random(42);
+        List<RuntimeConfigStore.CameraNameRule> rules = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String code = "B" + rnd.nextInt(60);
+            String regex = switch (i % 5) {
+                case 0 -> "^(" + code + ")_.*$";
+                case 1 -> "^" + code + "_(cam[0-9]+)$";
+                case 2 -> "^(" + code + ")?_x.*$";
+                case 3 -> "(" + code + "|Z" + i + ")_.*";
+                default -> "^([A-Z]" + (i % 3) + ")_.*$";
+            };
+            rules.add(rule("r" + i, regex, 1, i % 2 == 0
+                    ? RuntimeConfigStore.CameraNameRuleMode.BRANCH_ID
+                    : RuntimeConfigStore.CameraNameRuleMode.BRANCH_PREFIX));
+        }
+        CameraNameRuleEngine engine = new CameraNameRuleEngine(rules, 0);
+
+        for (int i = 0; i < 2_000; i++) {
+            String name = switch (i % 4) {
+                case 0 -> "B" + rnd.nextInt(70) + "_cam" + rnd.nextInt(10);
+                case 1 -> "_x" + i;
+                case 2 -> "Z" + rnd.nextInt(300) + "_door";
+                default -> "Q" + rnd.nextInt(3) + "_hall";
+            };
+            CameraNameRuleEngine.Match m = engine.match(name);
+            String[] expected = sequential(rules, name);
+            assertEquals(expected == null ? null : expected[0], m == null ? null : m.rule().name(), name);
+            assertEquals(expected == null ? null : expected[1], m == null ? null : m.extracted(), name);
+        }
+    }
+
+    /**
+     * Эталон: прежний последовательный перебор правил из BranchResolverGroovyAdapter.
+     */
+    private static String[] sequential(List<RuntimeConfigStore.CameraNameRule> rules, String cameraName) {
+        for (RuntimeConfigStore.CameraNameRule r : rules) {
+            Matcher m = Pattern.compile(r.regex()).matcher(cameraName);
+            if (!m.matches()) {
+                continue;
+            }
+            String g = m.group(Math.max(0, r.group()));
+            if (g != null && !g.isBlank()) {
+                return new String[]{r.name(), g.trim()};
+            }
+        }
+        return null;
+    }
+
+    private static RuntimeConfigStore.CameraNameRule rule(String name, String regex, int group,
+                                                          RuntimeConfigStore.CameraNameRuleMode mode) {
+        return new RuntimeConfigStore.CameraNameRule(name, regex, group, mode);
+    }
+}
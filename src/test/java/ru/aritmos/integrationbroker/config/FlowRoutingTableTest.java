@@ -0,0 +1,103 @@
+package ru.aritmos.integrationbroker.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.core.FlowEngine;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowRoutingTableTest {
+
+    @Test
+    void shouldMatchFlowIndexSemantics() {
+        RuntimeConfigStore.RuntimeConfig cfg = config("rev-1", List.of(
+                flow("f1", true, "EVENT", "visit.created"),
+                flow("f2", true, "EVENT", "visit.created"),
+                flow("f3", false, "EVENT", "visit.called"),
+                flow("f4", true, "COMMAND", "ticket.call"),
+                flow("f5", true, "event", "visit.updated"),
+                new RuntimeConfigStore.FlowConfig("f6", true, null, Map.of(), "return [:]")
+        ));
+
+        FlowRoutingTable table = FlowRoutingTable.build(cfg);
+
+        assertEquals("f1", table.find(InboundEnvelope.Kind.EVENT, "visit.created").id(),
+                "TEST_EXPECTED: при дублировании selector выигрывает первый flow");
+        assertNull(table.find(InboundEnvelope.Kind.EVENT, "visit.called"), "TEST_EXPECTED: disabled-flow не маршрутизируется");
+        assertNull(table.find(InboundEnvelope.Kind.EVENT, "visit.updated"), "TEST_EXPECTED: kind сравнивается точно, как в flowIndex");
+        assertNull(table.find(InboundEnvelope.Kind.EVENT, "ticket.call"));
+        assertEquals("f4", table.find(InboundEnvelope.Kind.COMMAND, "ticket.call").id());
+        assertEquals(2, table.size());
+        assertSame(cfg, table.config());
+    }
+
+    @Test
+    void shouldSwapRoutingTableTogetherWithManualConfig() {
+        RuntimeConfigStore store = new RuntimeConfigStore(null, new ObjectMapper(), null,
+                "classpath:examples/sample-system-config.json", false, "/configuration/config/system/integrationbroker");
+
+        RuntimeConfigStore.RuntimeConfig applied = store.applyManual(
+                config("rev-route-1", List.of(flow("f1", true, "EVENT", "visit.created"))), "qa", "routing");
+
+        assertSame(applied, store.routingTable().config(), "TEST_EXPECTED: таблица построена для установленной ревизии");
+        assertEquals("f1", store.routingTable().find(InboundEnvelope.Kind.EVENT, "visit.created").id());
+
+        store.applyManual(config("rev-route-2", List.of(flow("f2", true, "EVENT", "visit.called"))), "qa", "routing");
+
+        assertNull(store.routingTable().find(InboundEnvelope.Kind.EVENT, "visit.created"));
+        assertEquals("f2", store.routingTable().find(InboundEnvelope.Kind.EVENT, "visit.called").id());
+    }
+
+    @Test
+    void resolverShouldCountHitsAndMisses() throws Exception {
+        RuntimeConfigStore store = new RuntimeConfigStore(null, new ObjectMapper(), null,
+                "classpath:examples/sample-system-config.json", false, "/configuration/config/system/integrationbroker");
+        RuntimeConfigStore.RuntimeConfig applied = store.applyManual(
+                config("rev-route-3", List.of(flow("f1", true, "EVENT", "visit.created"))), "qa", "routing");
+        FlowEngine.ConfigBasedFlowResolver resolver = new FlowEngine.ConfigBasedFlowResolver(store);
+
+        assertEquals("f1", resolver.resolve(envelope("visit.created"), applied).orElseThrow().id());
+        assertTrue(resolver.resolve(envelope("visit.unknown"), applied).isEmpty());
+
+        // Конфигурация, не установленная в store, тоже разрешается корректно.
+        RuntimeConfigStore.RuntimeConfig other = config("rev-other", List.of(flow("f9", true, "EVENT", "visit.unknown")));
+        assertEquals("f9", resolver.resolve(envelope("visit.unknown"), other).orElseThrow().id());
+
+        assertEquals(2, resolver.hits());
+        assertEquals(1, resolver.misses());
+    }
+
+    private static InboundEnvelope envelope(String type) throws Exception {
+        return new InboundEnvelope(InboundEnvelope.Kind.EVENT, type, new ObjectMapper().readTree("{}"),
+                Map.of(), "m-1", "c-1", null, null, Map.of());
+    }
+
+    private static RuntimeConfigStore.FlowConfig flow(String id, boolean enabled, String kind, String type) {
+        return new RuntimeConfigStore.FlowConfig(id, enabled, new RuntimeConfigStore.Selector(kind, type), Map.of(), "return [:]");
+    }
+
+    private static RuntimeConfigStore.RuntimeConfig config(String revision, List<RuntimeConfigStore.FlowConfig> flows) {
+        return new RuntimeConfigStore.RuntimeConfig(
+                revision,
+                flows,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null
+        ).normalize();
+    }
+}
@@ -0,0 +1,75 @@
+package ru.aritmos.integrationbroker.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroovyFlowEngineBindingTemplateTest {
+
+    @Test
+    void of_shouldUseExportedBeansAndPrebuildFallbacks() {
+        Object visitBean = new Object();
+        Object crmBean = new Object();
+
+        FlowEngine.GroovyFlowEngine.BindingTemplate tpl = FlowEngine.GroovyFlowEngine.BindingTemplate.of(
+                Map.of("visit", visitBean, "crm", crmBean));
+
+        assertSame(crmBean, tpl.variables().get("crm"));
+        assertSame(visitBean, tpl.variables().get("visit"));
+        assertSame(visitBean, tpl.variables().get("visitManager"), "TEST_EXPECTED: visitManager наследует bean visit");
+        assertNotNull(tpl.variables().get("medical"));
+        assertNotNull(tpl.variables().get("bus"));
+        assertSame(tpl.beans(), tpl.variables().get("beans"));
+
+        // msg/rest/identity без экспортированного бина создаются per-message, поэтому в шаблоне их нет.
+        assertFalse(tpl.variables().containsKey("msg"));
+        assertFalse(tpl.hasMsgBean());
+        assertFalse(tpl.hasRestBean());
+        assertFalse(tpl.hasIdentityBean());
+    }
+
+    @Test
+    void of_shouldPreferExportedContextAliasBeans() {
+        Object restBean = new Object();
+
+        FlowEngine.GroovyFlowEngine.BindingTemplate tpl = FlowEngine.GroovyFlowEngine.BindingTemplate.of(Map.of("rest", restBean));
+
+        assertTrue(tpl.hasRestBean());
+        assertSame(restBean, tpl.variables().get("rest"));
+    }
+
+    @Test
+    void of_shouldExposeImmutableBeansMap() {
+        FlowEngine.GroovyFlowEngine.BindingTemplate tpl = FlowEngine.GroovyFlowEngine.BindingTemplate.of(Map.of());
+
+        assertThrows(UnsupportedOperationException.class, () -> tpl.beans().put("x", new Object()));
+        assertThrows(UnsupportedOperationException.class, () -> tpl.variables().put("x", new Object()));
+        assertTrue(tpl.capacity() > tpl.variables().size());
+        assertEquals(9, tpl.variables().size());
+    }
+
+    @Test
+    void newVariables_shouldGiveEachExecutionMutableCopy() {
+        Object crmBean = new Object();
+        FlowEngine.GroovyFlowEngine.BindingTemplate tpl = FlowEngine.GroovyFlowEngine.BindingTemplate.of(Map.of("crm", crmBean));
+
+        Map<String, Object> first = tpl.newVariables();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> firstBeans = (Map<String, Object>) first.get("beans");
+        firstBeans.put("scratch", "x");
+        first.put("crm", "overridden");
+
+        Map<String, Object> second = tpl.newVariables();
+        assertSame(crmBean, second.get("crm"), "TEST_EXPECTED: записи скрипта не попадают в шаблон");
+        assertFalse(((Map<?, ?>) second.get("beans")).containsKey("scratch"));
+        assertFalse(tpl.beans().containsKey("scratch"));
+        assertSame(crmBean, ((Map<?, ?>) second.get("beans")).get("crm"));
+    }
+}
@@ -0,0 +1,80 @@
+package ru.aritmos.integrationbroker.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotPathMetricsTest {
+
+    @Test
+    void bucketIndex_shouldCoverRangeWithBoundedRelativeError() {
+        assertEquals(0, HotPathMetrics.bucketIndex(0));
+        assertEquals(3, HotPathMetrics.bucketIndex(3));
+        assertEquals(HotPathMetrics.BUCKETS - 1, HotPathMetrics.bucketIndex(Long.MAX_VALUE / 1000));
+        long previousUpper = 0;
+        for (int i = 0; i < HotPathMetrics.BUCKETS - 1; i++) {
+            long upper = HotPathMetrics.upperBoundMicros(i);
+            assertTrue(upper > previousUpper, "TEST_EXPECTED: границы корзин возрастают");
+            assertEquals(i, HotPathMetrics.bucketIndex(upper - 1), "TEST_EXPECTED: верхняя граница исключающая");
+            if (previousUpper >= 4) {
+                assertTrue((double) (upper - previousUpper) / previousUpper <= 0.25, "TEST_EXPECTED: ширина корзины не более 25%");
+            }
+            previousUpper = upper;
+        }
+        assertEquals(1L << 26, previousUpper, "TEST_EXPECTED: точные корзины до ~67 с");
+    }
+
+    @Test
+    void snapshot_shouldReportPercentilesPerTagAndCapTagCardinality() {
+        HotPathMetrics metrics = new HotPathMetrics(true, 2);
+        HotPathMetrics.Timer timer = metrics.timer(HotPathMetrics.Stage.FLOW_EXECUTE, "flow-a");
+        for (int i = 1; i <= 100; i++) {
+            timer.record(i * 1_000_000L);
+        }
+        assertSame(timer, metrics.timer(HotPathMetrics.Stage.FLOW_EXECUTE, "flow-a"));
+        metrics.timer(HotPathMetrics.Stage.FLOW_EXECUTE, "flow-b").record(1_000L);
+        metrics.timer(HotPathMetrics.Stage.FLOW_EXECUTE, "flow-c").record(1_000L);
+        metrics.timer(HotPathMetrics.Stage.FLOW_EXECUTE, "flow-d").record(1_000L);
+
+        List<HotPathMetrics.TimerSnapshot> snapshot = metrics.snapshot();
+        assertEquals(List.of("_other", "flow-a", "flow-b"), snapshot.stream().map(HotPathMetrics.TimerSnapshot::tag).toList(),
+                "TEST_EXPECTED: значения тега сверх лимита сводятся в _other");
+        HotPathMetrics.TimerSnapshot a = snapshot.get(1);
+        assertEquals(100, a.count());
+        assertEquals(5050.0, a.sumMs(), 0.001);
+        assertTrue(a.p50Ms() >= 50 && a.p50Ms() <= 50 * 1.25, "TEST_EXPECTED: p50 в пределах погрешности корзины, фактически " + a.p50Ms());
+        assertTrue(a.p99Ms() >= 99 && a.p99Ms() <= 99 * 1.25, "TEST_EXPECTED: p99 в пределах погрешности корзины, фактически " + a.p99Ms());
+        assertEquals(2, snapshot.get(0).count());
+    }
+
+    @Test
+    void writePrometheus_shouldEmitCumulativeHistogramAndNoopShouldRecordNothing() {
+        HotPathMetrics metrics = new HotPathMetrics(true, 10);
+        HotPathMetrics.Timer timer = metrics.timer(HotPathMetrics.Stage.OUTBOX_DISPATCH, "rest:crm\"x");
+        timer.record(3_000L);
+        timer.record(2_000_000L);
+        timer.record(120_000_000_000L);
+
+        StringBuilder out = new StringBuilder();
+        metrics.writePrometheus(out);
+        String text = out.toString();
+
+        assertTrue(text.contains("# TYPE ib_outbox_dispatch_seconds histogram\n"));
+        assertTrue(text.contains("ib_outbox_dispatch_seconds_bucket{connector=\"rest:crm\\\"x\",le=\"0.000004\"} 1\n"),
+                "TEST_EXPECTED: метка экранирована, корзины накопительные");
+        assertTrue(text.contains("ib_outbox_dispatch_seconds_bucket{connector=\"rest:crm\\\"x\",le=\"0.001024\"} 1\n"));
+        assertTrue(text.contains("ib_outbox_dispatch_seconds_bucket{connector=\"rest:crm\\\"x\",le=\"0.002048\"} 2\n"));
+        assertTrue(text.contains("ib_outbox_dispatch_seconds_bucket{connector=\"rest:crm\\\"x\",le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("ib_outbox_dispatch_seconds_count{connector=\"rest:crm\\\"x\"} 3\n"));
+        assertFalse(text.contains("ib_flow_execute_seconds"), "TEST_EXPECTED: этапы без замеров не выводятся");
+
+        HotPathMetrics noop = HotPathMetrics.noop();
+        noop.timer(HotPathMetrics.Stage.FLOW_EXECUTE, "flow-a").record(1_000L);
+        assertTrue(noop.snapshot().isEmpty());
+    }
+}
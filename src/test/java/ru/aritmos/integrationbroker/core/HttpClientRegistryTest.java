@@ -0,0 +1,91 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class HttpClientRegistryTest {
+
+    @Test
+    void shouldReuseClientPerConnectorAndRebuildOnPolicyChange() {
+        HttpClientRegistry registry = HttpClientRegistry.standalone();
+        RuntimeConfigStore.RestConnectorConfig crm = connector(new RuntimeConfigStore.HttpPolicy(1000, null, true));
+
+        HttpClient first = registry.client("crm", crm);
+        assertSame(first, registry.client("crm", crm));
+        assertNotSame(first, registry.client("erp", crm));
+
+        HttpClient rebuilt = registry.client("crm", connector(new RuntimeConfigStore.HttpPolicy(1000, null, false)));
+        assertNotSame(first, rebuilt);
+        assertEquals(HttpClient.Version.HTTP_1_1, rebuilt.version());
+        assertEquals(Duration.ofMillis(1000), rebuilt.connectTimeout().orElseThrow());
+
+        HttpClientRegistry.ConnectorStats stats = registry.snapshot().get(0);
+        assertEquals("crm", stats.connectorId());
+        assertEquals(2, stats.clientsCreated());
+    }
+
+    @Test
+    void shouldResolveRequestTimeoutFromConnectorPolicy() {
+        Duration fallback = Duration.ofSeconds(10);
+
+        assertEquals(fallback, HttpClientRegistry.requestTimeout((RuntimeConfigStore.RestConnectorConfig) null, fallback));
+        assertEquals(fallback, HttpClientRegistry.requestTimeout(connector(null), fallback));
+        assertEquals(Duration.ofMillis(2500),
+                HttpClientRegistry.requestTimeout(connector(new RuntimeConfigStore.HttpPolicy(null, 2500, null)), fallback));
+    }
+
+    @Test
+    void shouldCountRequestsAndResponsesPerConnector() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/ping", exchange -> {
+            byte[] bytes = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.start();
+        try {
+            HttpClientRegistry registry = HttpClientRegistry.standalone();
+            URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/ping");
+            HttpRequest req = HttpRequest.newBuilder(uri).GET().build();
+
+            registry.send("crm", null, req, HttpResponse.BodyHandlers.ofString());
+            registry.sendAsync("crm", req, HttpResponse.BodyHandlers.ofString()).join();
+            registry.send(null, null, req, HttpResponse.BodyHandlers.ofString());
+
+            List<HttpClientRegistry.ConnectorStats> snapshot = registry.snapshot();
+            assertEquals(2, snapshot.size());
+            assertEquals(HttpClientRegistry.SHARED, snapshot.get(0).connectorId());
+
+            HttpClientRegistry.ConnectorStats crm = snapshot.get(1);
+            assertEquals("crm", crm.connectorId());
+            assertEquals(1, crm.clientsCreated());
+            assertEquals(2, crm.requests());
+            assertEquals(0, crm.inFlight());
+            assertEquals(0, crm.failures());
+            assertEquals(2, crm.http1Responses() + crm.http2Responses());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static RuntimeConfigStore.RestConnectorConfig connector(RuntimeConfigStore.HttpPolicy http) {
+        return new RuntimeConfigStore.RestConnectorConfig("http://localhost", null, null, null, http);
+    }
+}
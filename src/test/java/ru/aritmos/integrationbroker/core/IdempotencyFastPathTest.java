@@ -0,0 +1,234 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyFastPathTest {
+
+    private static final RuntimeConfigStore.IdempotencyConfig CONFIG =
+            new RuntimeConfigStore.IdempotencyConfig(true, RuntimeConfigStore.IdempotencyStrategy.MESSAGE_ID, 60);
+
+    @Test
+    void tiered_shouldAnswerRecentDuplicateFromMemoryAndWriteStatusBehind() throws Exception {
+        JdbcDataSource ds = dataSource("idem_tiered");
+        IdempotencyFastPath fastPath = new IdempotencyFastPath(ds, true, false, 1000, 600, 1000, 50, 0);
+        IdempotencyService service = new IdempotencyService(ds, new ObjectMapper(), fastPath);
+
+        IdempotencyService.IdempotencyDecision first = service.decide(envelope("m-1"), CONFIG);
+        assertEquals(IdempotencyService.Decision.PROCESS, first.decision());
+        assertEquals("IN_PROGRESS", status(ds, first.idemKey()), "TEST_EXPECTED: без local-claim новый ключ захватывается INSERT-ом");
+
+        service.markCompleted(first.idemKey(), Map.of("ok", true));
+        assertEquals("IN_PROGRESS", status(ds, first.idemKey()), "TEST_EXPECTED: переход статуса записывается отложенно");
+
+        IdempotencyService.IdempotencyDecision dup = service.decide(envelope("m-1"), CONFIG);
+        assertEquals(IdempotencyService.Decision.SKIP_COMPLETED, dup.decision());
+        assertEquals("{\"ok\":true}", dup.existingResultJson());
+
+        fastPath.flush();
+        assertEquals("COMPLETED", status(ds, first.idemKey()));
+        assertEquals("DUPLICATE", column(ds, first.idemKey(), "skipped_reason"));
+        IdempotencyFastPath.Snapshot snapshot = service.fastPathSnapshot();
+        assertEquals(1, snapshot.localDecisions());
+        assertEquals(0, snapshot.pendingWrites());
+        assertEquals(2, snapshot.flushedWrites());
+    }
+
+    @Test
+    void localClaim_shouldSkipSyncInsertForNewKeysAndNotOverwriteForeignRecords() throws Exception {
+        JdbcDataSource ds = dataSource("idem_local_claim");
+        IdempotencyFastPath fastPath = new IdempotencyFastPath(ds, true, true, 1000, 600, 1000, 50, 0);
+        IdempotencyService service = new IdempotencyService(ds, new ObjectMapper(), fastPath);
+
+        IdempotencyService.IdempotencyDecision d = service.decide(envelope("m-new"), CONFIG);
+        assertEquals(IdempotencyService.Decision.PROCESS, d.decision());
+        assertNull(status(ds, d.idemKey()), "TEST_EXPECTED: новый ключ захвачен локально, INSERT отложен");
+
+        // Тот же ключ успел захватить другой узел до отложенного INSERT.
+        IdempotencyService.IdempotencyDecision foreign = service.decide(envelope("m-foreign"), CONFIG);
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("INSERT INTO ib_idempotency(idem_key,strategy,status,created_at,updated_at,lock_until) VALUES ('"
+                    + foreign.idemKey() + "','MESSAGE_ID','IN_PROGRESS',CURRENT_TIMESTAMP,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP)");
+        }
+        service.markCompleted(d.idemKey(), Map.of("n", 1));
+        service.markCompleted(foreign.idemKey(), Map.of("n", 2));
+        fastPath.flush();
+
+        assertEquals("COMPLETED", status(ds, d.idemKey()));
+        assertEquals("IN_PROGRESS", status(ds, foreign.idemKey()), "TEST_EXPECTED: чужая запись не перезаписывается");
+        assertEquals(1, service.fastPathSnapshot().claimConflicts());
+        assertEquals(2, service.fastPathSnapshot().localClaims());
+    }
+
+    @Test
+    void markFailed_shouldAllowImmediateRetryWithFastPath() throws Exception {
+        for (boolean localClaim : new boolean[]{false, true}) {
+            JdbcDataSource ds = dataSource("idem_fail_retry_" + localClaim);
+            IdempotencyFastPath fastPath = new IdempotencyFastPath(ds, true, localClaim, 1000, 600, 1000, 50, 0);
+            IdempotencyService service = new IdempotencyService(ds, new ObjectMapper(), fastPath);
+
+            IdempotencyService.IdempotencyDecision first = service.decide(envelope("m-fail"), CONFIG);
+            assertEquals(IdempotencyService.Decision.PROCESS, first.decision());
+            service.markFailed(first.idemKey(), "FLOW_ERROR", "boom");
+            assertEquals("FAILED", status(ds, first.idemKey()), "TEST_EXPECTED: FAILED записан в БД без ожидания пачки");
+
+            IdempotencyService.IdempotencyDecision retry = service.decide(envelope("m-fail"), CONFIG);
+            assertEquals(IdempotencyService.Decision.PROCESS, retry.decision(),
+                    "TEST_EXPECTED: повтор сразу после ошибки не блокируется (local-claim=" + localClaim + ")");
+            assertEquals("IN_PROGRESS", status(ds, first.idemKey()));
+
+            service.markCompleted(retry.idemKey(), Map.of("ok", true));
+            fastPath.flush();
+            assertEquals("COMPLETED", status(ds, first.idemKey()));
+            assertNull(column(ds, first.idemKey(), "last_error_code"));
+        }
+    }
+
+    @Test
+    void flush_shouldRetryWholeBatchWithoutTreatingOwnInsertsAsConflicts() throws Exception {
+        JdbcDataSource h2 = dataSource("idem_flush_tx");
+        AtomicBoolean failUpdate = new AtomicBoolean(true);
+        DataSource ds = failingStatusUpdate(h2, failUpdate);
+        IdempotencyFastPath fastPath = new IdempotencyFastPath(ds, true, true, 1000, 600, 1000, 50, 0);
+        IdempotencyService service = new IdempotencyService(ds, new ObjectMapper(), fastPath);
+
+        IdempotencyService.IdempotencyDecision d = service.decide(envelope("m-tx"), CONFIG);
+        service.markCompleted(d.idemKey(), Map.of("ok", true));
+        fastPath.flush();
+        assertNull(status(h2, d.idemKey()), "TEST_EXPECTED: пачка откатывается целиком, INSERT не остаётся без перехода статуса");
+        assertEquals(1, fastPath.snapshot().flushFailures());
+
+        failUpdate.set(false);
+        fastPath.flush();
+        assertEquals("COMPLETED", status(h2, d.idemKey()));
+        assertEquals(0, fastPath.snapshot().claimConflicts(), "TEST_EXPECTED: свой INSERT при повторе не считается чужим захватом");
+    }
+
+    @Test
+    void fullQueue_shouldFallBackToSynchronousClaimAndStatusWrite() throws Exception {
+        JdbcDataSource ds = dataSource("idem_queue_cap");
+        IdempotencyFastPath fastPath = new IdempotencyFastPath(ds, true, true, 1000, 600, 1000, 2, 0, 2);
+        IdempotencyService service = new IdempotencyService(ds, new ObjectMapper(), fastPath);
+
+        IdempotencyService.IdempotencyDecision first = service.decide(envelope("q-1"), CONFIG);
+        service.decide(envelope("q-2"), CONFIG);
+        assertNull(status(ds, first.idemKey()));
+        assertEquals(2, fastPath.snapshot().pendingWrites());
+
+        IdempotencyService.IdempotencyDecision third = service.decide(envelope("q-3"), CONFIG);
+        assertEquals(IdempotencyService.Decision.PROCESS, third.decision());
+        assertEquals("IN_PROGRESS", status(ds, third.idemKey()), "TEST_EXPECTED: при заполненной очереди ключ захватывается синхронным INSERT");
+        assertEquals(2, fastPath.snapshot().pendingWrites(), "TEST_EXPECTED: очередь не растёт сверх max-pending");
+
+        service.markCompleted(third.idemKey(), Map.of("n", 3));
+        assertEquals("COMPLETED", status(ds, third.idemKey()), "TEST_EXPECTED: переход записан синхронно");
+        assertEquals("IN_PROGRESS", status(ds, first.idemKey()), "TEST_EXPECTED: накопленные переходы записаны до синхронного");
+        assertEquals(2, fastPath.snapshot().rejectedWrites());
+    }
+
+    private static DataSource failingStatusUpdate(DataSource delegate, AtomicBoolean fail) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = method.invoke(delegate, args);
+                    if (!(result instanceof Connection c)) {
+                        return result;
+                    }
+                    return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                            (p, m, a) -> {
+                                if (fail.get() && "prepareStatement".equals(m.getName())
+                                        && String.valueOf(a[0]).startsWith("UPDATE ib_idempotency SET status=")) {
+                                    throw new SQLException("deadlock detected");
+                                }
+                                try {
+                                    return m.invoke(c, a);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            });
+                });
+    }
+
+    @Test
+    void bloomFilter_shouldNeverReturnFalseNegatives() {
+        IdempotencyFastPath.BloomFilter bloom = new IdempotencyFastPath.BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            bloom.put("key-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(bloom.mightContain("key-" + i));
+            if (bloom.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "TEST_EXPECTED: доля ложных срабатываний около 1%, получено " + falsePositives);
+        assertFalse(new IdempotencyFastPath.BloomFilter(1000, 0.01).mightContain("key-1"));
+    }
+
+    private static InboundEnvelope envelope(String messageId) throws Exception {
+        return new InboundEnvelope(
+                InboundEnvelope.Kind.EVENT,
+                "visit.created",
+                new ObjectMapper().readTree("{}"),
+                Map.of(),
+                messageId,
+                "corr-" + messageId,
+                "BR-1",
+                "u-1",
+                Map.of()
+        );
+    }
+
+    private static String status(JdbcDataSource ds, String key) throws Exception {
+        return column(ds, key, "status");
+    }
+
+    private static String column(JdbcDataSource ds, String key, String column) throws Exception {
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + column + " FROM ib_idempotency WHERE idem_key='" + key + "'")) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    private static JdbcDataSource dataSource(String name) throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS ib_idempotency (
+                        idem_key VARCHAR(128) PRIMARY KEY,
+                        strategy VARCHAR(32) NOT NULL,
+                        status VARCHAR(32) NOT NULL,
+                        created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        lock_until TIMESTAMP WITH TIME ZONE NOT NULL,
+                        result_json TEXT NULL,
+                        last_error_code VARCHAR(64) NULL,
+                        last_error_message TEXT NULL,
+                        skipped_reason VARCHAR(32) NULL
+                    )
+                    """);
+        }
+        return ds;
+    }
+}
@@ -0,0 +1,207 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceBatchTest {
+
+    private static final RuntimeConfigStore.IdempotencyConfig CONFIG =
+            new RuntimeConfigStore.IdempotencyConfig(true, RuntimeConfigStore.IdempotencyStrategy.MESSAGE_ID, 60);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void decideAll_shouldMatchSequentialDecisions() throws Exception {
+        IdempotencyService service = newService("idem_batch_seq");
+        IdempotencyService.IdempotencyDecision done = service.decide(envelope("m-done"), CONFIG);
+        service.markCompleted(done.idemKey(), Map.of("ok", true));
+        service.decide(envelope("m-busy"), CONFIG);
+
+        List<IdempotencyService.IdempotencyDecision> decisions = service.decideAll(List.of(
+                envelope("m-new"),
+                envelope("m-done"),
+                envelope("m-busy"),
+                envelope("m-new"),
+                envelope("m-done")
+        ), CONFIG);
+
+        assertEquals(5, decisions.size());
+        assertEquals(IdempotencyService.Decision.PROCESS, decisions.get(0).decision());
+        assertEquals(IdempotencyService.Decision.SKIP_COMPLETED, decisions.get(1).decision());
+        assertEquals("{\"ok\":true}", decisions.get(1).existingResultJson());
+        assertEquals(IdempotencyService.Decision.LOCKED, decisions.get(2).decision());
+        assertEquals(IdempotencyService.Decision.LOCKED, decisions.get(3).decision(),
+                "TEST_EXPECTED: повтор ключа внутри пачки ведёт себя как повторная доставка");
+        assertEquals(IdempotencyService.Decision.SKIP_COMPLETED, decisions.get(4).decision());
+        assertEquals(decisions.get(0).idemKey(), decisions.get(3).idemKey());
+
+        assertEquals("IN_PROGRESS", service.get(decisions.get(0).idemKey()).status());
+        assertEquals("DUPLICATE", service.get(decisions.get(1).idemKey()).skippedReason());
+        assertEquals("LOCKED", service.get(decisions.get(2).idemKey()).skippedReason());
+    }
+
+    @Test
+    void decideAll_shouldReclaimFailedKeys() throws Exception {
+        IdempotencyService service = newService("idem_batch_failed");
+        IdempotencyService.IdempotencyDecision failed = service.decide(envelope("m-failed"), CONFIG);
+        service.markFailed(failed.idemKey(), "FLOW_EXECUTION_ERROR", "boom");
+
+        List<IdempotencyService.IdempotencyDecision> decisions = service.decideAll(
+                List.of(envelope("m-failed"), envelope("m-other")), CONFIG);
+
+        assertEquals(IdempotencyService.Decision.PROCESS, decisions.get(0).decision());
+        assertEquals(IdempotencyService.Decision.PROCESS, decisions.get(1).decision());
+        assertEquals("IN_PROGRESS", service.get(failed.idemKey()).status());
+    }
+
+    @Test
+    void decideAll_shouldProcessEverythingWhenIdempotencyDisabled() throws Exception {
+        IdempotencyService service = newService("idem_batch_disabled");
+
+        List<IdempotencyService.IdempotencyDecision> decisions = service.decideAll(
+                List.of(envelope("m-1"), envelope("m-1")),
+                new RuntimeConfigStore.IdempotencyConfig(false, RuntimeConfigStore.IdempotencyStrategy.MESSAGE_ID, 60));
+
+        assertEquals(IdempotencyService.Decision.PROCESS, decisions.get(0).decision());
+        assertEquals(IdempotencyService.Decision.PROCESS, decisions.get(1).decision());
+        assertNull(decisions.get(0).idemKey());
+    }
+
+    @Test
+    void markCompletedAll_shouldWriteOutcomesBackInBatch() throws Exception {
+        IdempotencyService service = newService("idem_batch_complete");
+        List<IdempotencyService.IdempotencyDecision> decisions = service.decideAll(
+                List.of(envelope("c-1"), envelope("c-2")), CONFIG);
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put(decisions.get(0).idemKey(), Map.of("n", 1));
+        results.put(decisions.get(1).idemKey(), Map.of("n", 2));
+        results.put(null, Map.of("ignored", true));
+
+        service.markCompletedAll(results);
+
+        assertEquals("COMPLETED", service.get(decisions.get(0).idemKey()).status());
+        assertEquals("COMPLETED", service.get(decisions.get(1).idemKey()).status());
+        List<IdempotencyService.IdempotencyDecision> again = service.decideAll(
+                List.of(envelope("c-2"), envelope("c-1")), CONFIG);
+        assertEquals(IdempotencyService.Decision.SKIP_COMPLETED, again.get(0).decision());
+        assertEquals("{\"n\":2}", again.get(0).existingResultJson());
+        assertEquals("{\"n\":1}", again.get(1).existingResultJson());
+    }
+
+    @Test
+    void decideAll_shouldNotLockOwnRowsWhenBatchInsertResultIsUnknown() throws Exception {
+        for (boolean throwAfterInsert : new boolean[]{false, true}) {
+            JdbcDataSource ds = dataSource("idem_batch_partial_" + throwAfterInsert);
+            // Пачка применена в БД, но драйвер не сообщил число строк (SUCCESS_NO_INFO) или упал после вставки.
+            IdempotencyService service = new IdempotencyService(partiallyFailingBatch(ds, throwAfterInsert), new ObjectMapper());
+
+            List<IdempotencyService.IdempotencyDecision> decisions = service.decideAll(
+                    List.of(envelope("p-1"), envelope("p-2"), envelope("p-3")), CONFIG);
+
+            for (IdempotencyService.IdempotencyDecision d : decisions) {
+                assertEquals(IdempotencyService.Decision.PROCESS, d.decision(),
+                        "TEST_EXPECTED: свои новые ключи не считаются чужим захватом (throw=" + throwAfterInsert + ")");
+                assertEquals("IN_PROGRESS", service.get(d.idemKey()).status());
+                assertNull(service.get(d.idemKey()).skippedReason());
+            }
+        }
+    }
+
+    private static DataSource partiallyFailingBatch(DataSource delegate, boolean throwAfterInsert) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(delegate, method, args);
+                    return result instanceof Connection c ? connection(c, throwAfterInsert) : result;
+                });
+    }
+
+    private static Connection connection(Connection delegate, boolean throwAfterInsert) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(delegate, method, args);
+                    if (result instanceof PreparedStatement ps && String.valueOf(args[0]).endsWith("ON CONFLICT DO NOTHING")) {
+                        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                                (p, m, a) -> {
+                                    Object r = invoke(ps, m, a);
+                                    if (!"executeBatch".equals(m.getName())) {
+                                        return r;
+                                    }
+                                    if (throwAfterInsert) {
+                                        throw new SQLException("connection reset");
+                                    }
+                                    int[] counts = new int[((int[]) r).length];
+                                    Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                                    return counts;
+                                });
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private InboundEnvelope envelope(String messageId) {
+        return new InboundEnvelope(
+                InboundEnvelope.Kind.EVENT,
+                "visit.created",
+                mapper.createObjectNode(),
+                Map.of(),
+                messageId,
+                null,
+                "BR-1",
+                null,
+                Map.of()
+        );
+    }
+
+    private static IdempotencyService newService(String db) throws Exception {
+        return new IdempotencyService(dataSource(db), new ObjectMapper());
+    }
+
+    private static JdbcDataSource dataSource(String db) throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + db + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS ib_idempotency (
+                        idem_key VARCHAR(128) PRIMARY KEY,
+                        strategy VARCHAR(32) NOT NULL,
+                        status VARCHAR(32) NOT NULL,
+                        created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        lock_until TIMESTAMP WITH TIME ZONE NOT NULL,
+                        result_json TEXT NULL,
+                        last_error_code VARCHAR(64) NULL,
+                        last_error_message TEXT NULL,
+                        skipped_reason VARCHAR(32) NULL
+                    )
+                    """);
+        }
+        return ds;
+    }
+}
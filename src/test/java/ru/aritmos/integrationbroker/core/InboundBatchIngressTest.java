@@ -0,0 +1,285 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class InboundBatchIngressTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void process_shouldIsolateFailuresPerItem() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            InboundBatchIngress ingress = new InboundBatchIngress(processingService("batch_isolation"), mapper, executor, 2, 4, 100);
+            String body = "[" +
+                    envelope("m-1", "{}") + "," +
+                    envelope("m-2", "{\"fail\":true}") + "," +
+                    envelope("m-1", "{}") + "," +
+                    "{\"kind\":\"EVENT\",\"type\":\"unknown.type\",\"payload\":{},\"messageId\":\"m-3\"}," +
+                    envelope("m-4", "{}") +
+                    "]";
+
+            List<JsonNode> lines = run(ingress, body);
+
+            assertEquals(5, lines.size());
+            assertEquals("PROCESSED", lines.get(0).path("outcome").asText());
+            assertEquals("DLQ", lines.get(1).path("outcome").asText());
+            assertEquals(77, lines.get(1).path("dlqId").asLong());
+            assertEquals("SKIP_COMPLETED", lines.get(2).path("outcome").asText(),
+                    "TEST_EXPECTED: повтор messageId в следующей порции пачки не обрабатывается повторно");
+            assertEquals("REJECTED", lines.get(3).path("outcome").asText());
+            assertEquals("PROCESSED", lines.get(4).path("outcome").asText());
+            for (int i = 0; i < lines.size(); i++) {
+                assertEquals(i, lines.get(i).path("index").asInt());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void process_shouldAcceptNdjsonAndSkipMalformedLines() throws Exception {
+        InboundBatchIngress ingress = new InboundBatchIngress(processingService("batch_ndjson"), mapper, null, 100, 1, 100);
+        String body = envelope("n-1", "{}") + "\n" +
+                "{not json\n" +
+                "\n" +
+                envelope("n-2", "{}") + "\n";
+
+        List<JsonNode> lines = run(ingress, body);
+
+        assertEquals(3, lines.size());
+        assertEquals("PROCESSED", lines.get(0).path("outcome").asText());
+        assertEquals("REJECTED", lines.get(1).path("outcome").asText());
+        assertEquals("BAD_JSON", lines.get(1).path("errorCode").asText());
+        assertEquals("PROCESSED", lines.get(2).path("outcome").asText());
+        assertNotNull(lines.get(2).path("idempotencyKey").textValue());
+    }
+
+    @Test
+    void process_shouldStopAtMaxItemsAndApplyAdmissionPredicate() throws Exception {
+        InboundBatchIngress ingress = new InboundBatchIngress(processingService("batch_limits"), mapper, null, 10, 1, 2);
+        String body = "[" + envelope("l-1", "{}") + "," + envelope("l-2", "{}") + "," + envelope("l-3", "{}") + "]";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InboundBatchIngress.Summary summary = ingress.process(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out,
+                env -> env, env -> !"l-2".equals(env.messageId()));
+        List<JsonNode> lines = parse(out);
+
+        assertEquals(3, summary.items());
+        assertEquals("PROCESSED", lines.get(0).path("outcome").asText());
+        assertEquals("RATE_LIMITED", lines.get(1).path("outcome").asText());
+        assertEquals("BATCH_TOO_LARGE", lines.get(2).path("errorCode").asText());
+    }
+
+    @Test
+    void processAll_shouldWriteCompletionsInBoundedGroupsDuringTheBatch() throws Exception {
+        List<Long> seenByLastFlow = new ArrayList<>();
+        IdempotencyService[] idem = new IdempotencyService[1];
+        InboundProcessingService service = processingService("batch_progressive", ds -> {
+            idem[0] = new IdempotencyService(ds, mapper);
+            return idem[0];
+        }, (envelope, result) -> {
+            if ("g-last".equals(envelope.messageId())) {
+                seenByLastFlow.add(idem[0].countByStatus(IdempotencyService.Status.COMPLETED));
+            }
+        });
+        List<InboundEnvelope> batch = new ArrayList<>();
+        for (int i = 0; i < InboundProcessingService.COMPLETION_FLUSH_SIZE; i++) {
+            batch.add(envelopeOf("g-" + i));
+        }
+        batch.add(envelopeOf("g-last"));
+
+        List<InboundProcessingService.ItemOutcome> outcomes = service.processAll(batch, null, 1);
+
+        assertEquals(List.of((long) InboundProcessingService.COMPLETION_FLUSH_SIZE), seenByLastFlow,
+                "TEST_EXPECTED: итоги первой группы записаны до выполнения следующих flow пачки");
+        for (InboundProcessingService.ItemOutcome outcome : outcomes) {
+            assertEquals("COMPLETED", idem[0].get(outcome.result().idempotencyKey()).status());
+        }
+    }
+
+    @Test
+    void processAll_shouldFallBackToPerKeyCompletionWhenBatchWriteFails() throws Exception {
+        IdempotencyService[] idem = new IdempotencyService[1];
+        InboundProcessingService service = processingService("batch_completion_fallback", ds -> {
+            idem[0] = new IdempotencyService(ds, mapper) {
+                @Override
+                public boolean markCompletedAll(Map<String, ?> results) {
+                    return false;
+                }
+            };
+            return idem[0];
+        }, null);
+
+        List<InboundProcessingService.ItemOutcome> outcomes = service.processAll(
+                List.of(envelopeOf("f-1"), envelopeOf("f-2")), null, 1);
+
+        for (InboundProcessingService.ItemOutcome outcome : outcomes) {
+            assertEquals("COMPLETED", idem[0].get(outcome.result().idempotencyKey()).status(),
+                    "TEST_EXPECTED: при ошибке пачки итоги записываются по одному ключу");
+        }
+    }
+
+    @Test
+    void processAll_shouldRecordCompletionWriteFailureOnItemInsteadOfFailingBatch() throws Exception {
+        InboundEnvelope rejected = envelopeOf("e-2");
+        IdempotencyService[] idem = new IdempotencyService[1];
+        InboundProcessingService service = processingService("batch_completion_error", ds -> {
+            idem[0] = new IdempotencyService(ds, mapper) {
+                @Override
+                public boolean markCompletedAll(Map<String, ?> results) {
+                    throw new IllegalStateException("connection reset");
+                }
+
+                @Override
+                public void markCompleted(String idemKey, Object result) {
+                    if (idemKey.equals(keyFor(rejected, new RuntimeConfigStore.IdempotencyConfig(
+                            true, RuntimeConfigStore.IdempotencyStrategy.MESSAGE_ID, 60)))) {
+                        throw new IllegalStateException("connection reset");
+                    }
+                    super.markCompleted(idemKey, result);
+                }
+            };
+            return idem[0];
+        }, null);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<InboundProcessingService.ItemOutcome> outcomes = service.processAll(
+                    List.of(envelopeOf("e-1"), rejected, envelopeOf("e-3")), executor, 2);
+
+            assertEquals(3, outcomes.size(), "TEST_EXPECTED: сбой записи итогов не отбрасывает результаты пачки");
+            assertEquals("IllegalStateException", outcomes.get(1).error().getClass().getSimpleName());
+            for (int i : new int[]{0, 2}) {
+                assertEquals("PROCESSED", outcomes.get(i).result().outcome());
+                assertEquals("COMPLETED", idem[0].get(outcomes.get(i).result().idempotencyKey()).status());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<JsonNode> run(InboundBatchIngress ingress, String body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ingress.process(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out, null, null);
+        return parse(out);
+    }
+
+    private List<JsonNode> parse(ByteArrayOutputStream out) throws Exception {
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                lines.add(mapper.readTree(line));
+            }
+        }
+        return lines;
+    }
+
+    private static String envelope(String messageId, String payload) {
+        return "{\"kind\":\"EVENT\",\"type\":\"visit.created\",\"payload\":" + payload + ",\"messageId\":\"" + messageId + "\"}";
+    }
+
+    private InboundEnvelope envelopeOf(String messageId) throws Exception {
+        return mapper.readValue(envelope(messageId, "{}"), InboundEnvelope.class);
+    }
+
+    private InboundProcessingService processingService(String db) throws Exception {
+        return processingService(db, ds -> new IdempotencyService(ds, mapper), null);
+    }
+
+    private InboundProcessingService processingService(String db,
+                                                       Function<DataSource, IdempotencyService> idempotency,
+                                                       BiConsumer<InboundEnvelope, Map<String, Object>> onExecute) throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + db + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS ib_idempotency (
+                        idem_key VARCHAR(128) PRIMARY KEY,
+                        strategy VARCHAR(32) NOT NULL,
+                        status VARCHAR(32) NOT NULL,
+                        created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        lock_until TIMESTAMP WITH TIME ZONE NOT NULL,
+                        result_json TEXT NULL,
+                        last_error_code VARCHAR(64) NULL,
+                        last_error_message TEXT NULL,
+                        skipped_reason VARCHAR(32) NULL
+                    )
+                    """);
+        }
+
+        RuntimeConfigStore.RuntimeConfig runtime = new RuntimeConfigStore.RuntimeConfig(
+                "test",
+                List.of(new RuntimeConfigStore.FlowConfig("visit-flow", true,
+                        new RuntimeConfigStore.Selector("EVENT", "visit.created"), Map.of(), "return [:]")),
+                new RuntimeConfigStore.IdempotencyConfig(true, RuntimeConfigStore.IdempotencyStrategy.MESSAGE_ID, 60),
+                new RuntimeConfigStore.InboundDlqConfig(true, 3, true),
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null
+        ).normalize();
+        RuntimeConfigStore store = new RuntimeConfigStore(null, null, null, null, false, null) {
+            @Override
+            public RuntimeConfig getEffective() {
+                return runtime;
+            }
+        };
+        FlowEngine.GroovyFlowEngine flowStub = new FlowEngine.GroovyFlowEngine(null, mapper, store, null, null, null, 0) {
+            @Override
+            public Map<String, Object> execute(InboundEnvelope envelope, RuntimeConfigStore.FlowConfig flow, Map<String, Object> meta) {
+                if (envelope.payload().path("fail").asBoolean(false)) {
+                    throw new IllegalStateException("flow failed");
+                }
+                Map<String, Object> out = Map.of("handled", true);
+                if (onExecute != null) {
+                    onExecute.accept(envelope, out);
+                }
+                return out;
+            }
+        };
+        InboundDlqService dlq = new InboundDlqService(ds, mapper) {
+            @Override
+            public long put(InboundEnvelope envelope, String idempotencyKey, String errorCode, String errorMessage,
+                            int maxAttempts, boolean sanitizeHeaders) {
+                return 77;
+            }
+        };
+        return new InboundProcessingService(store, new FlowEngine.ConfigBasedFlowResolver(store), flowStub,
+                idempotency.apply(ds), dlq,
+                new KeycloakProxyEnrichmentService(new KeycloakProxyClient(mapper)), mapper);
+    }
+}
@@ -0,0 +1,272 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InboundDlqReplayJobsTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void start_shouldPageThroughAllRecordsWithKeysetCursor() throws Exception {
+        FakeDlq dlq = new FakeDlq(25);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            InboundDlqReplayJobs jobs = new InboundDlqReplayJobs(dlq, processing(env -> {
+                if (env.payload().path("n").asInt() % 10 == 0) {
+                    throw new IllegalStateException("boom");
+                }
+                return new InboundProcessingService.ProcessingResult("PROCESSED", null, Map.of());
+            }, null), null, mapper, executor, 10, 4, 8, 50, 5);
+
+            InboundDlqReplayJobs.JobStatus started = jobs.start(null, null, null, null, null, null);
+            InboundDlqReplayJobs.JobStatus done = await(jobs, started.jobId());
+
+            assertEquals("COMPLETED", done.state());
+            assertEquals(25, done.scanned());
+            assertEquals(23, done.ok());
+            assertEquals(2, done.failed());
+            assertEquals(25, done.lastId());
+            assertEquals(List.of(0L, 10L, 20L), dlq.cursors, "TEST_EXPECTED: страницы выбираются по курсору id, без OFFSET");
+            assertEquals(2, dlq.failedIds.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void start_shouldPauseWhileCircuitIsOpenAndRejectSecondJob() throws Exception {
+        FakeDlq dlq = new FakeDlq(3);
+        AtomicBoolean open = new AtomicBoolean(true);
+        RestOutboxService rest = new RestOutboxService(null, null, null, null, null) {
+            @Override
+            public List<String> openCircuits() {
+                return open.get() ? List.of("crm") : List.of();
+            }
+        };
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            InboundDlqReplayJobs jobs = new InboundDlqReplayJobs(dlq, processing(env ->
+                    new InboundProcessingService.ProcessingResult("PROCESSED", null, Map.of()), null),
+                    rest, mapper, executor, 10, 2, 8, 20, 5);
+
+            String jobId = jobs.start("PENDING", null, null, null, null, 2).jobId();
+            Thread.sleep(100);
+            InboundDlqReplayJobs.JobStatus throttled = jobs.get(jobId).orElseThrow();
+            assertEquals("THROTTLED", throttled.state());
+            assertEquals(List.of("crm"), throttled.openCircuits());
+            assertEquals(0, throttled.scanned());
+            assertThrows(IllegalStateException.class, () -> jobs.start(null, null, null, null, null, null));
+
+            open.set(false);
+            InboundDlqReplayJobs.JobStatus done = await(jobs, jobId);
+            assertEquals("COMPLETED", done.state());
+            assertEquals(3, done.ok());
+            assertTrue(done.throttledMs() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void cancel_shouldStopAfterCurrentPage() throws Exception {
+        FakeDlq dlq = new FakeDlq(100);
+        CountDownLatch firstPage = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            InboundDlqReplayJobs jobs = new InboundDlqReplayJobs(dlq, processing(env ->
+                    new InboundProcessingService.ProcessingResult("PROCESSED", null, Map.of()), () -> {
+                firstPage.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }), null, mapper, executor, 10, 1, 1, 20, 5);
+
+            String jobId = jobs.start(null, null, null, null, null, null).jobId();
+            assertTrue(firstPage.await(5, TimeUnit.SECONDS));
+            assertTrue(jobs.cancel(jobId).orElseThrow().cancelRequested());
+            release.countDown();
+
+            InboundDlqReplayJobs.JobStatus done = await(jobs, jobId);
+            assertEquals("CANCELLED", done.state());
+            assertEquals(10, done.scanned());
+            assertTrue(jobs.cancel("missing").isEmpty());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void start_shouldFailWithCursorWhenPageQueryFails() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:dlq_replay_page_failure;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        h2.setUser("sa");
+        h2.setPassword("");
+        try (Connection c = h2.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS ib_inbound_dlq (
+                        id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                        status VARCHAR(16) NOT NULL,
+                        created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        kind VARCHAR(32) NOT NULL,
+                        type VARCHAR(128) NOT NULL,
+                        message_id VARCHAR(128),
+                        correlation_id VARCHAR(128),
+                        branch_id VARCHAR(128),
+                        user_id VARCHAR(128),
+                        headers_json TEXT,
+                        payload_json TEXT,
+                        source_meta_json TEXT,
+                        idem_key VARCHAR(128),
+                        attempts INT NOT NULL DEFAULT 0,
+                        max_attempts INT NOT NULL DEFAULT 10,
+                        last_error_at TIMESTAMP WITH TIME ZONE,
+                        error_code VARCHAR(64),
+                        error_message TEXT,
+                        replayed_at TIMESTAMP WITH TIME ZONE,
+                        replay_result_json TEXT,
+                        source VARCHAR(128)
+                    )
+                    """);
+        }
+        // Вторая страница не читается: БД недоступна после первой страницы.
+        AtomicInteger pageQueries = new AtomicInteger();
+        DataSource ds = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = method.invoke(h2, args);
+                    if (!(result instanceof Connection c)) {
+                        return result;
+                    }
+                    return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                            (p, m, a) -> {
+                                if ("prepareStatement".equals(m.getName()) && String.valueOf(a[0]).contains("ORDER BY id ASC LIMIT")
+                                        && pageQueries.incrementAndGet() > 1) {
+                                    throw new SQLException("connection refused");
+                                }
+                                try {
+                                    return m.invoke(c, a);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            });
+                });
+        InboundDlqService dlq = new InboundDlqService(ds, mapper);
+        for (int i = 0; i < 15; i++) {
+            dlq.put(new InboundEnvelope(InboundEnvelope.Kind.EVENT, "visit.created", mapper.createObjectNode().put("n", i),
+                    Map.of(), "m" + i, null, "B1", null, Map.of("source", "crm")), "k" + i, "FLOW_EXECUTION_ERROR", "boom", 5, true);
+        }
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            InboundDlqReplayJobs jobs = new InboundDlqReplayJobs(dlq, processing(env ->
+                    new InboundProcessingService.ProcessingResult("PROCESSED", null, Map.of()), null),
+                    null, mapper, executor, 10, 1, 8, 20, 5);
+
+            InboundDlqReplayJobs.JobStatus done = await(jobs, jobs.start(null, null, null, null, null, null).jobId());
+
+            assertEquals("FAILED", done.state(), "TEST_EXPECTED: ошибка чтения страницы не завершает задание как COMPLETED");
+            assertEquals(10, done.scanned());
+            assertEquals(10, done.ok());
+            assertEquals(10, done.lastId(), "TEST_EXPECTED: курсор указывает на последнюю обработанную запись");
+            assertTrue(done.error().contains("id=10"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private InboundProcessingService processing(java.util.function.Function<InboundEnvelope, InboundProcessingService.ProcessingResult> handler,
+                                                Runnable onPage) {
+        return new InboundProcessingService(null, null, null, null, null, null, mapper) {
+            @Override
+            public List<ItemOutcome> processAll(List<InboundEnvelope> envelopes, java.util.concurrent.Executor executor, int parallelism) {
+                if (onPage != null) {
+                    onPage.run();
+                }
+                List<ItemOutcome> out = new ArrayList<>();
+                for (InboundEnvelope env : envelopes) {
+                    assertTrue(env.sourceMeta().containsKey("dlqReplayId"));
+                    try {
+                        out.add(new ItemOutcome(handler.apply(env), null));
+                    } catch (RuntimeException e) {
+                        out.add(new ItemOutcome(null, e));
+                    }
+                }
+                return out;
+            }
+        };
+    }
+
+    private static InboundDlqReplayJobs.JobStatus await(InboundDlqReplayJobs jobs, String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            InboundDlqReplayJobs.JobStatus s = jobs.get(jobId).orElseThrow();
+            if (s.finishedAt() != null) {
+                return s;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("replay job did not finish in time");
+    }
+
+    private final class FakeDlq extends InboundDlqService {
+        private final int total;
+        private final List<Long> cursors = Collections.synchronizedList(new ArrayList<>());
+        private final List<Long> failedIds = new CopyOnWriteArrayList<>();
+
+        private FakeDlq(int total) {
+            super(null, null);
+            this.total = total;
+        }
+
+        @Override
+        public Page listFullAfter(String status, String type, String source, String branchId, long afterId, int limit) {
+            cursors.add(afterId);
+            List<DlqFull> out = new ArrayList<>();
+            long id = afterId;
+            while (out.size() < limit && id < total) {
+                id++;
+                DlqRecord rec = new DlqRecord(id, "PENDING", null, null, "EVENT", "visit.created", "m" + id, null,
+                        "B1", null, null, 0, 5, null, "FLOW_EXECUTION_ERROR", null, null);
+                out.add(new DlqFull(rec, Map.of(), mapper.createObjectNode().put("n", id), Map.of("source", "crm"), null));
+            }
+            return new Page(out, id, id >= total);
+        }
+
+        @Override
+        public void markReplayed(long id, String replayResultJson) {
+        }
+
+        @Override
+        public void markReplayFailed(long id, String errorCode, String errorMessage) {
+            failedIds.add(id);
+        }
+    }
+}
@@ -42,7 +42,8 @@ class InboundDlqServiceAdminOpsTest {
                         error_code VARCHAR(64),
                         error_message TEXT,
                         replayed_at TIMESTAMP WITH TIME ZONE,
-                        replay_result_json TEXT
+                        replay_result_json TEXT,
+                        source VARCHAR(128)
                     )
                     """);
         }
@@ -113,7 +114,8 @@ class InboundDlqServiceAdminOpsTest {
                         error_code VARCHAR(64),
                         error_message TEXT,
                         replayed_at TIMESTAMP WITH TIME ZONE,
-                        replay_result_json TEXT
+                        replay_result_json TEXT,
+                        source VARCHAR(128)
                     )
                     """);
         }
@@ -156,7 +158,8 @@ class InboundDlqServiceAdminOpsTest {
                         error_code VARCHAR(64),
                         error_message TEXT,
                         replayed_at TIMESTAMP WITH TIME ZONE,
-                        replay_result_json TEXT
+                        replay_result_json TEXT,
+                        source VARCHAR(128)
                     )
                     """);
         }
@@ -172,4 +175,127 @@ class InboundDlqServiceAdminOpsTest {
         assertEquals("corr-1", service.list("PENDING", "visit", "crm", "B1", null, "corr-1", 10).get(0).correlationId());
     }
 
+    @Test
+    void listFullAfter_shouldPageByIdAndFilterSource() throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:dlq_keyset;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS ib_inbound_dlq (
+                        id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                        status VARCHAR(16) NOT NULL,
+                        created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        kind VARCHAR(32) NOT NULL,
+                        type VARCHAR(128) NOT NULL,
+                        message_id VARCHAR(128),
+                        correlation_id VARCHAR(128),
+                        branch_id VARCHAR(128),
+                        user_id VARCHAR(128),
+                        headers_json TEXT,
+                        payload_json TEXT,
+                        source_meta_json TEXT,
+                        idem_key VARCHAR(128),
+                        attempts INT NOT NULL DEFAULT 0,
+                        max_attempts INT NOT NULL DEFAULT 10,
+                        last_error_at TIMESTAMP WITH TIME ZONE,
+                        error_code VARCHAR(64),
+                        error_message TEXT,
+                        replayed_at TIMESTAMP WITH TIME ZONE,
+                        replay_result_json TEXT,
+                        source VARCHAR(128)
+                    )
+                    """);
+        }
+        ObjectMapper om = new ObjectMapper();
+        InboundDlqService service = new InboundDlqService(ds, om);
+        for (int i = 1; i <= 5; i++) {
+            InboundEnvelope env = new InboundEnvelope(InboundEnvelope.Kind.EVENT, "visit", om.readTree("{\"n\":" + i + "}"), Map.of(),
+                    "m" + i, "corr", "B1", null, Map.of("source", i == 2 ? "erp" : "crm"));
+            service.put(env, "k" + i, "E", "msg", 3, true);
+        }
+
+        InboundDlqService.Page first = service.listFullAfter("PENDING", null, "crm", null, 0, 2);
+        assertEquals(2, first.records().size());
+        assertEquals(1, first.records().get(0).payload().path("n").asInt());
+        assertEquals(3, first.records().get(1).payload().path("n").asInt());
+        assertFalse(first.last());
+
+        InboundDlqService.Page second = service.listFullAfter("PENDING", null, "crm", null, first.lastId(), 3);
+        assertEquals(2, second.records().size());
+        assertEquals(4, second.records().get(0).payload().path("n").asInt());
+        assertTrue(second.last());
+    }
+
+    @Test
+    void list_shouldFilterSourceInSqlBeforeLimit() throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:dlq_source_pushdown;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS ib_inbound_dlq (
+                        id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                        status VARCHAR(16) NOT NULL,
+                        created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        kind VARCHAR(32) NOT NULL,
+                        type VARCHAR(128) NOT NULL,
+                        message_id VARCHAR(128),
+                        correlation_id VARCHAR(128),
+                        branch_id VARCHAR(128),
+                        user_id VARCHAR(128),
+                        headers_json TEXT,
+                        payload_json TEXT,
+                        source_meta_json TEXT,
+                        idem_key VARCHAR(128),
+                        attempts INT NOT NULL DEFAULT 0,
+                        max_attempts INT NOT NULL DEFAULT 10,
+                        last_error_at TIMESTAMP WITH TIME ZONE,
+                        error_code VARCHAR(64),
+                        error_message TEXT,
+                        replayed_at TIMESTAMP WITH TIME ZONE,
+                        replay_result_json TEXT,
+                        source VARCHAR(128)
+                    )
+                    """);
+        }
+        ObjectMapper om = new ObjectMapper();
+        InboundDlqService service = new InboundDlqService(ds, om);
+        for (int i = 0; i < 6; i++) {
+            Map<String, Object> meta = i < 3 ? Map.of("sourceSystem", "erp") : Map.of("source", "crm");
+            InboundEnvelope env = new InboundEnvelope(InboundEnvelope.Kind.EVENT, "visit", om.readTree("{}"), Map.of(), "m" + i, "c" + i, "B1", null, meta);
+            service.put(env, "k" + i, "E", "msg", 3, true);
+        }
+
+        assertEquals(3, service.list("PENDING", null, "erp", null, 3).size(),
+                "TEST_EXPECTED: фильтр source применяется до LIMIT и не укорачивает выдачу");
+
+        assertEquals(2, service.markIgnoredBatch("PENDING", null, "erp", null, 2, "noise 100%"));
+        assertEquals(2, service.list("DEAD", null, "erp", null, "100%", 10).size());
+        assertEquals(0, service.list("DEAD", null, "erp", null, "100_", 10).size());
+        assertEquals(2, service.requeueIgnoredBatch(null, "erp", null, "NOISE", 10, "retry"));
+        assertEquals(3, service.list("PENDING", null, "erp", null, 10).size());
+    }
+
+    @Test
+    void replayEnvelope_shouldKeepSourceMetaAndAddReplayMarker() throws Exception {
+        ObjectMapper om = new ObjectMapper();
+        InboundDlqService.DlqRecord rec = new InboundDlqService.DlqRecord(42, "PENDING", null, null, "EVENT", "visit.created",
+                "m1", "c1", "B1", "u1", "k1", 1, 5, null, "E", null, null);
+        Map<String, Object> sourceMeta = new java.util.HashMap<>(Map.of("source", "crm"));
+        InboundDlqService.DlqFull full = new InboundDlqService.DlqFull(rec, Map.of("X-Trace", "t1"), om.readTree("{\"a\":1}"),
+                sourceMeta, null);
+
+        InboundEnvelope env = InboundDlqService.replayEnvelope(full);
+
+        assertEquals(InboundEnvelope.Kind.EVENT, env.kind());
+        assertEquals("visit.created", env.type());
+        assertEquals("c1", env.correlationId());
+        assertEquals(Map.of("source", "crm", "dlqReplayId", 42L), env.sourceMeta());
+        assertEquals(Map.of("source", "crm"), sourceMeta, "TEST_EXPECTED: метаданные сохранённой записи не изменяются");
+    }
 }
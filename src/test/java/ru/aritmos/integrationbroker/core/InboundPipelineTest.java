@@ -0,0 +1,180 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.model.InboundEnvelope;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InboundPipelineTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void submit_shouldKeepOrderPerBranchAndExposeStatus() throws Exception {
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        InboundPipeline pipeline = pipeline(4, 100, env -> {
+            processed.add(env.branchId() + ":" + env.messageId());
+            return new InboundProcessingService.ProcessingResult("PROCESSED", "idem-" + env.messageId(), Map.of("ok", true));
+        });
+        try {
+            for (int i = 0; i < 20; i++) {
+                assertTrue(pipeline.submit(envelope("m" + i, i % 2 == 0 ? "B1" : "B2")).accepted());
+            }
+            awaitDone(pipeline, 20);
+
+            List<String> b1 = processed.stream().filter(s -> s.startsWith("B1:")).toList();
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 20; i += 2) {
+                expected.add("B1:m" + i);
+            }
+            assertEquals(expected, b1, "TEST_EXPECTED: сообщения одного филиала обрабатываются в порядке приёма");
+
+            InboundPipeline.InboundStatus status = pipeline.status("idem-m4").orElseThrow();
+            assertEquals("PROCESSED", status.state());
+            assertEquals(Map.of("ok", true), status.output());
+            assertEquals(20, pipeline.snapshot().accepted());
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void submit_shouldRejectWhenPartitionQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InboundPipeline pipeline = pipeline(1, 1, env -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new InboundProcessingService.ProcessingResult("PROCESSED", "idem-" + env.messageId(), Map.of());
+        });
+        try {
+            assertTrue(pipeline.submit(envelope("m1", "B1")).accepted());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(pipeline.submit(envelope("m2", "B1")).accepted());
+
+            InboundPipeline.Admission overflow = pipeline.submit(envelope("m3", "B1"));
+            assertFalse(overflow.accepted());
+            assertEquals("idem-m3", overflow.idempotencyKey());
+            assertEquals(1, pipeline.snapshot().rejected());
+            assertEquals(1, pipeline.snapshot().queueDepth());
+            assertEquals("QUEUED", pipeline.status("idem-m2").orElseThrow().state());
+
+            release.countDown();
+            awaitDone(pipeline, 2);
+        } finally {
+            release.countDown();
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void submit_shouldKeepPreviousStatusWhenRedeliveryIsRejected() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InboundPipeline pipeline = pipeline(1, 1, env -> {
+            if ("m1".equals(env.messageId())) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new InboundProcessingService.ProcessingResult("PROCESSED", "idem-" + env.messageId(), Map.of("n", env.messageId()));
+        });
+        try {
+            assertTrue(pipeline.submit(envelope("m0", "B1")).accepted());
+            awaitDone(pipeline, 1);
+            assertTrue(pipeline.submit(envelope("m1", "B1")).accepted());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(pipeline.submit(envelope("m2", "B1")).accepted());
+
+            assertFalse(pipeline.submit(envelope("m0", "B1")).accepted());
+            InboundPipeline.InboundStatus status = pipeline.status("idem-m0").orElseThrow();
+            assertEquals("PROCESSED", status.state(), "TEST_EXPECTED: отказ в приёме повтора не стирает итог прошлой доставки");
+            assertEquals(Map.of("n", "m0"), status.output());
+
+            release.countDown();
+            awaitDone(pipeline, 3);
+        } finally {
+            release.countDown();
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void submit_shouldRecordFlowFailureInStatus() throws Exception {
+        InboundPipeline pipeline = pipeline(2, 10, env -> {
+            throw new IllegalStateException("boom token=abc");
+        });
+        try {
+            pipeline.submit(envelope("m1", "B1"));
+            awaitDone(pipeline, 1);
+
+            InboundPipeline.InboundStatus status = pipeline.status("idem-m1").orElseThrow();
+            assertEquals("FAILED", status.state());
+            assertEquals("INTERNAL_ERROR", status.errorCode());
+            assertEquals(1, pipeline.snapshot().failed());
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    private InboundPipeline pipeline(int partitions,
+                                     int capacity,
+                                     Function<InboundEnvelope, InboundProcessingService.ProcessingResult> handler) {
+        InboundProcessingService stub = new InboundProcessingService(null, null, null, null, null, null, mapper) {
+            @Override
+            public String admit(InboundEnvelope envelope) {
+                return "idem-" + envelope.messageId();
+            }
+
+            @Override
+            public ProcessingResult process(InboundEnvelope envelope) {
+                return handler.apply(envelope);
+            }
+        };
+        return new InboundPipeline(stub, true, partitions, "branch", capacity * partitions, 60, 1000, 1000);
+    }
+
+    private InboundEnvelope envelope(String messageId, String branchId) {
+        return new InboundEnvelope(
+                InboundEnvelope.Kind.EVENT,
+                "visit.created",
+                mapper.createObjectNode(),
+                Map.of(),
+                messageId,
+                null,
+                branchId,
+                null,
+                Map.of()
+        );
+    }
+
+    private static void awaitDone(InboundPipeline pipeline, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            InboundPipeline.Snapshot s = pipeline.snapshot();
+            if (s.completed() + s.failed() >= expected) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("pipeline did not finish in time");
+    }
+}
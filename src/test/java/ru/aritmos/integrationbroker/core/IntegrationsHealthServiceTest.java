@@ -52,6 +52,7 @@ class IntegrationsHealthServiceTest {
                 new RuntimeConfigStore.RestConnectorAuth(RuntimeConfigStore.RestConnectorAuthType.NONE,
                         null, null, null, null, null, null, null, null, null, null),
                 null,
+                null,
                 null
         );
         RuntimeConfigStore.VisitManagerIntegrationConfig vm = new RuntimeConfigStore.VisitManagerIntegrationConfig(
@@ -0,0 +1,196 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeysetCursorTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void page_shouldWalkTiesOnUpdatedAtWithoutGapsOrDuplicates() throws Exception {
+        JdbcDataSource ds = outboxDataSource("keyset_outbox_walk");
+        Instant base = Instant.parse("2026-01-01T00:00:00.123456Z");
+        // 7 записей: три группы с одинаковым updated_at, чтобы граница страницы попадала внутрь группы.
+        insert(ds, 7, i -> base.plusSeconds(i / 3));
+        MessagingOutboxService service = new MessagingOutboxService(ds, mapper, null, new OutboundDryRunState(false, null));
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            KeysetCursor.Slice<MessagingOutboxService.OutboxListItem> page = service.page("DEAD", null, cursor, 2);
+            page.items().forEach(i -> seen.add(i.id()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(List.of(7L, 6L, 5L, 4L, 3L, 2L, 1L), seen, "TEST_EXPECTED: порядок updated_at DESC, id DESC");
+        assertEquals(4, pages);
+        assertNull(service.page("DEAD", null, null, 7).nextCursor(), "TEST_EXPECTED: полная страница без продолжения");
+        assertEquals(0, service.page("SENT", null, null, 10).items().size());
+    }
+
+    @Test
+    void export_shouldStreamWholeResultSetAcrossExportPages() throws Exception {
+        JdbcDataSource ds = outboxDataSource("keyset_outbox_export");
+        Instant base = Instant.parse("2026-01-01T00:00:00Z");
+        int total = KeysetCursor.EXPORT_PAGE_SIZE + 37;
+        insert(ds, total, i -> base.plusMillis(i % 10));
+        MessagingOutboxService service = new MessagingOutboxService(ds, mapper, null, new OutboundDryRunState(false, null));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = new NdjsonExportStreamer(mapper, null)
+                .write("test", sink -> service.export("DEAD", null, sink), out);
+
+        Set<Long> ids = new HashSet<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode node = mapper.readTree(line);
+            ids.add(node.path("id").asLong());
+        }
+        assertEquals(total, rows);
+        assertEquals(total, ids.size());
+    }
+
+    @Test
+    void decode_shouldRejectMalformedCursor() {
+        String cursor = KeysetCursor.encode("2026-01-01T00:00:00Z", "42");
+        KeysetCursor.Position position = KeysetCursor.decodeNumeric(cursor);
+
+        assertEquals(Instant.parse("2026-01-01T00:00:00Z"), position.updatedAt());
+        assertEquals("42", position.key());
+        assertNull(KeysetCursor.decode(" "));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(KeysetCursor.encode("yesterday", "1")));
+        assertThrows(IllegalArgumentException.class,
+                () -> KeysetCursor.decodeNumeric(KeysetCursor.encode("2026-01-01T00:00:00Z", "abc")));
+    }
+
+    @Test
+    void dlqPage_shouldBindCursorAfterFilterParameters() throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:keyset_dlq_walk;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        Instant base = Instant.parse("2026-01-01T00:00:00Z");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS ib_inbound_dlq (
+                        id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                        status VARCHAR(16) NOT NULL,
+                        created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        kind VARCHAR(32) NOT NULL,
+                        type VARCHAR(128) NOT NULL,
+                        message_id VARCHAR(128),
+                        correlation_id VARCHAR(128),
+                        branch_id VARCHAR(128),
+                        user_id VARCHAR(128),
+                        headers_json TEXT,
+                        payload_json TEXT,
+                        source_meta_json TEXT,
+                        idem_key VARCHAR(128),
+                        attempts INT NOT NULL DEFAULT 0,
+                        max_attempts INT NOT NULL DEFAULT 10,
+                        last_error_at TIMESTAMP WITH TIME ZONE,
+                        error_code VARCHAR(64),
+                        error_message TEXT,
+                        replayed_at TIMESTAMP WITH TIME ZONE,
+                        replay_result_json TEXT,
+                        source VARCHAR(128)
+                    )
+                    """);
+        }
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "INSERT INTO ib_inbound_dlq(status,created_at,updated_at,kind,type,branch_id) VALUES (?,?,?,'EVENT','visit.created',?)")) {
+            for (int i = 0; i < 8; i++) {
+                Timestamp ts = Timestamp.from(base.plusSeconds(i / 3));
+                ps.setString(1, i % 4 == 3 ? "REPLAYED" : "PENDING");
+                ps.setTimestamp(2, ts);
+                ps.setTimestamp(3, ts);
+                ps.setString(4, "b-1");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        InboundDlqService service = new InboundDlqService(ds, mapper);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetCursor.Slice<InboundDlqService.DlqRecord> page =
+                    service.page("PENDING", "visit.created", null, "b-1", null, null, cursor, 2);
+            page.items().forEach(r -> seen.add(r.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of(7L, 6L, 5L, 3L, 2L, 1L), seen, "TEST_EXPECTED: курсор и фильтры применяются вместе");
+    }
+
+    private static void insert(JdbcDataSource ds, int count, java.util.function.IntFunction<Instant> updatedAt) throws Exception {
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement(
+                     "INSERT INTO ib_messaging_outbox(status,created_at,updated_at,provider,destination,attempts,max_attempts,next_attempt_at) VALUES ('DEAD',?,?,'p','d',1,5,?)")) {
+            for (int i = 0; i < count; i++) {
+                Timestamp ts = Timestamp.from(updatedAt.apply(i));
+                ps.setTimestamp(1, ts);
+                ps.setTimestamp(2, ts);
+                ps.setTimestamp(3, ts);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static JdbcDataSource outboxDataSource(String db) throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + db + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS ib_messaging_outbox (
+                        id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                        status VARCHAR(16) NOT NULL,
+                        created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        provider VARCHAR(80) NOT NULL,
+                        destination VARCHAR(200) NOT NULL,
+                        message_key VARCHAR(120) NULL,
+                        headers_json TEXT NULL,
+                        payload_json TEXT NULL,
+                        source_message_id VARCHAR(128) NULL,
+                        correlation_id VARCHAR(128) NULL,
+                        idem_key VARCHAR(128) NULL,
+                        attempts INT NOT NULL DEFAULT 0,
+                        max_attempts INT NOT NULL DEFAULT 10,
+                        next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        last_error_at TIMESTAMP WITH TIME ZONE NULL,
+                        last_error_code VARCHAR(64) NULL,
+                        last_error_message TEXT NULL
+                    )
+                    """);
+            st.execute("CREATE INDEX IF NOT EXISTS ix_ib_messaging_outbox_status_updated_id ON ib_messaging_outbox (status, updated_at DESC, id DESC)");
+        }
+        return ds;
+    }
+}
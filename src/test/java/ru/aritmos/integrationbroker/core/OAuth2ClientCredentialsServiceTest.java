@@ -1,6 +1,8 @@
 package ru.aritmos.integrationbroker.core;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.Test;
 import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
@@ -8,9 +10,17 @@ import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 class OAuth2ClientCredentialsServiceTest {
 
@@ -56,6 +66,98 @@ class OAuth2ClientCredentialsServiceTest {
         }
     }
 
+    @Test
+    void shouldFetchTokenOnceForConcurrentCallers() throws Exception {
+        AtomicInteger calls = new AtomicInteger(0);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = tokenServer(exchange -> {
+            calls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "{\"access_token\":\"tok-1\",\"expires_in\":120}");
+        });
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            OAuth2ClientCredentialsService service = new OAuth2ClientCredentialsService(new ObjectMapper());
+            RuntimeConfigStore.RestConnectorAuth auth = auth(server);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> service.resolveAccessToken(auth)));
+            }
+            while (calls.get() == 0) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<String> r : results) {
+                assertEquals("tok-1", r.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+            assertEquals(8, service.snapshot().callerWaits() + service.snapshot().hits());
+            assertEquals(1, service.snapshot().refreshes());
+        } finally {
+            callers.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void shouldServeCurrentTokenWhileRefreshingInBackground() throws Exception {
+        AtomicInteger calls = new AtomicInteger(0);
+        HttpServer server = tokenServer(exchange -> {
+            int n = calls.incrementAndGet();
+            respond(exchange, 200, "{\"access_token\":\"tok-" + n + "\",\"expires_in\":60}");
+        });
+        try {
+            // refresh-ratio 0.001: фоновое обновление через 60 мс после получения токена
+            OAuth2ClientCredentialsService service = new OAuth2ClientCredentialsService(
+                    new ObjectMapper(), null, null, 0.001, 1000, 30_000);
+            RuntimeConfigStore.RestConnectorAuth auth = auth(server);
+
+            assertEquals("tok-1", service.resolveAccessToken(auth));
+            Thread.sleep(100);
+            assertEquals("tok-1", service.resolveAccessToken(auth),
+                    "TEST_EXPECTED: во время фонового обновления отдаётся прежний действующий токен");
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (service.snapshot().refreshes() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("tok-2", service.resolveAccessToken(auth));
+            assertEquals(1, service.snapshot().backgroundRefreshes());
+            assertEquals(1, service.snapshot().callerWaits());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void shouldBackOffAfterTokenEndpointFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger(0);
+        HttpServer server = tokenServer(exchange -> {
+            calls.incrementAndGet();
+            respond(exchange, 500, "{}");
+        });
+        try {
+            OAuth2ClientCredentialsService service = new OAuth2ClientCredentialsService(
+                    new ObjectMapper(), null, null, 0.75, 60_000, 60_000);
+            RuntimeConfigStore.RestConnectorAuth auth = auth(server);
+
+            assertNull(service.resolveAccessToken(auth));
+            assertNull(service.resolveAccessToken(auth));
+
+            assertEquals(1, calls.get());
+            assertEquals(1, service.snapshot().refreshFailures());
+            assertEquals(1, service.snapshot().backoffRejects());
+        } finally {
+            server.stop(0);
+        }
+    }
+
     @Test
     void shouldReturnNullWhenAuthConfigIncomplete() {
         OAuth2ClientCredentialsService service = new OAuth2ClientCredentialsService(new ObjectMapper());
@@ -76,4 +178,36 @@ class OAuth2ClientCredentialsServiceTest {
         String token = service.resolveAccessToken(auth);
         assertEquals(null, token);
     }
+
+    private static HttpServer tokenServer(HttpHandler handler) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/oauth/token", handler);
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String response) throws java.io.IOException {
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static RuntimeConfigStore.RestConnectorAuth auth(HttpServer server) {
+        return new RuntimeConfigStore.RestConnectorAuth(
+                RuntimeConfigStore.RestConnectorAuthType.OAUTH2_CLIENT_CREDENTIALS,
+                null,
+                null,
+                null,
+                null,
+                null,
+                "http://localhost:" + server.getAddress().getPort() + "/oauth/token",
+                "ib-client",
+                "ib-secret",
+                null,
+                null
+        );
+    }
 }
@@ -103,7 +103,7 @@ class OutboundDryRunModeTest {
                 new RuntimeConfigStore.KeycloakProxyEnrichmentConfig(false, false, "keycloakProxy", List.of(RuntimeConfigStore.KeycloakProxyFetchMode.USER_ID_HEADER), "x-user-id", "Authorization", "/authorization/users/{userName}", "/authentication/userInfo", true, 60, 5000, true, List.of()),
                 new RuntimeConfigStore.MessagingOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50),
                 new RuntimeConfigStore.RestOutboxConfig(false, "ON_FAILURE", 10, 10, 120, 50, "Idempotency-Key", "409"),
-                Map.of("conn-1", new RuntimeConfigStore.RestConnectorConfig("http://example", auth, null, cb)),
+                Map.of("conn-1", new RuntimeConfigStore.RestConnectorConfig("http://example", auth, null, cb, null)),
                 RuntimeConfigStore.CrmConfig.disabled(),
                 RuntimeConfigStore.MedicalConfig.disabled(),
                 RuntimeConfigStore.AppointmentConfig.disabled(),
@@ -163,7 +163,7 @@ class OutboundDryRunModeTest {
                 new RuntimeConfigStore.KeycloakProxyEnrichmentConfig(false, false, "keycloakProxy", List.of(RuntimeConfigStore.KeycloakProxyFetchMode.USER_ID_HEADER), "x-user-id", "Authorization", "/authorization/users/{userName}", "/authentication/userInfo", true, 60, 5000, true, List.of()),
                 new RuntimeConfigStore.MessagingOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50),
                 new RuntimeConfigStore.RestOutboxConfig(true, "ON_FAILURE", 10, 10, 120, 50, "Idempotency-Key", "409"),
-                Map.of(connectorId, new RuntimeConfigStore.RestConnectorConfig("http://example", auth, retryPolicy, null)),
+                Map.of(connectorId, new RuntimeConfigStore.RestConnectorConfig("http://example", auth, retryPolicy, null, null)),
                 RuntimeConfigStore.CrmConfig.disabled(),
                 RuntimeConfigStore.MedicalConfig.disabled(),
                 RuntimeConfigStore.AppointmentConfig.disabled(),
@@ -251,24 +251,23 @@ class OutboundDryRunModeTest {
         }
 
         @Override
-        public java.util.List<RestRecord> pickDue(int limit) {
+        public java.util.List<RestRecord> claimDue(int limit, String owner, int leaseSec) {
             return List.of(due);
         }
 
-        @Override
-        public boolean markSending(long id) {
-            return true;
-        }
-
         @Override
         public RestOutboundSender.Result sendOnce(RestRecord rec, String idempotencyHeaderName, RuntimeConfigStore.RuntimeConfig effective) {
             return RestOutboundSender.Result.fail("UPSTREAM", "temporary", 503);
         }
 
         @Override
-        public void markFailed(long id, int attempts, int maxAttempts, Instant nextAttemptAt, String errorCode, String errorMessage, int lastHttpStatus, boolean dead) {
-            this.failedNextAttemptAt = nextAttemptAt;
-            this.failedMaxAttempts = maxAttempts;
+        public void applyOutcomes(List<Outcome> outcomes) {
+            for (Outcome o : outcomes) {
+                if (!o.sent()) {
+                    this.failedNextAttemptAt = o.nextAttemptAt();
+                    this.failedMaxAttempts = o.maxAttempts();
+                }
+            }
         }
     }
 
@@ -0,0 +1,140 @@
+package ru.aritmos.integrationbroker.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboxDispatchPoolTest {
+
+    record Rec(long id, String lane, String corr) {
+    }
+
+    @Test
+    void partition_shouldKeepCorrelationChainsInOrderWithinFirstLane() {
+        List<Rec> due = List.of(
+                new Rec(1, "rest:a", "c1"),
+                new Rec(2, "rest:b", null),
+                new Rec(3, "rest:b", "c1"),
+                new Rec(4, "rest:a", ""),
+                new Rec(5, "rest:a", "c1"));
+
+        Map<String, ConcurrentLinkedQueue<List<Rec>>> lanes = OutboxDispatchPool.partition(due, Rec::corr, Rec::lane);
+
+        assertEquals(List.of("rest:a", "rest:b"), new ArrayList<>(lanes.keySet()));
+        List<List<Rec>> laneA = new ArrayList<>(lanes.get("rest:a"));
+        assertEquals(2, laneA.size());
+        assertEquals(List.of(1L, 3L, 5L), laneA.get(0).stream().map(Rec::id).toList(),
+                "TEST_EXPECTED: цепочка correlation_id остаётся в дорожке первой записи и в порядке id");
+        assertEquals(List.of(4L), laneA.get(1).stream().map(Rec::id).toList());
+        assertEquals(1, lanes.get("rest:b").size());
+    }
+
+    @Test
+    void dispatch_shouldRespectLaneLimitAndCorrelationOrder() {
+        OutboxDispatchPool pool = new OutboxDispatchPool("parallel", 8, 2, 2);
+        List<Rec> due = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            due.add(new Rec(i, i % 2 == 0 ? "rest:slow" : "rest:fast", i < 10 ? "chain" : null));
+        }
+
+        ConcurrentHashMap<String, AtomicInteger> current = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, AtomicInteger> peak = new ConcurrentHashMap<>();
+        List<Long> chainOrder = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger handled = new AtomicInteger();
+
+        pool.dispatch(due, Rec::corr, Rec::lane, 2, r -> {
+            int now = current.computeIfAbsent(r.lane(), k -> new AtomicInteger()).incrementAndGet();
+            peak.computeIfAbsent(r.lane(), k -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+            if ("chain".equals(r.corr())) {
+                chainOrder.add(r.id());
+            }
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            current.get(r.lane()).decrementAndGet();
+            handled.incrementAndGet();
+        });
+
+        assertEquals(40, handled.get(), "TEST_EXPECTED: dispatch дожидается обработки всей пачки");
+        peak.values().forEach(p -> assertTrue(p.get() <= 2, "TEST_EXPECTED: лимит на дорожку не превышен"));
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), chainOrder);
+
+        OutboxDispatchPool.Snapshot snapshot = pool.snapshot();
+        assertEquals("PARALLEL", snapshot.mode());
+        assertEquals(40, snapshot.dispatchedTotal());
+        assertEquals(0, snapshot.inFlight().get("rest:slow"));
+        pool.shutdown();
+    }
+
+    @Test
+    void dispatchAsync_shouldKeepLaneWindowAndCorrelationOrderWithoutWorkerThreads() {
+        OutboxDispatchPool pool = new OutboxDispatchPool("parallel", 8, 2, 2);
+        ScheduledExecutorService responder = Executors.newSingleThreadScheduledExecutor();
+        List<Rec> due = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            due.add(new Rec(i, i % 3 == 0 ? "rest:slow" : "rest:fast", i % 3 == 0 && i < 15 ? "chain" : null));
+        }
+
+        ConcurrentHashMap<String, AtomicInteger> current = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, AtomicInteger> peak = new ConcurrentHashMap<>();
+        List<Long> chainOrder = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger handled = new AtomicInteger();
+
+        try {
+            pool.dispatchAsync(due, Rec::corr, Rec::lane, 2, r -> {
+                int now = current.computeIfAbsent(r.lane(), k -> new AtomicInteger()).incrementAndGet();
+                peak.computeIfAbsent(r.lane(), k -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+                if ("chain".equals(r.corr())) {
+                    chainOrder.add(r.id());
+                }
+                CompletableFuture<Void> reply = new CompletableFuture<>();
+                responder.schedule(() -> {
+                    current.get(r.lane()).decrementAndGet();
+                    handled.incrementAndGet();
+                    reply.complete(null);
+                }, 2, TimeUnit.MILLISECONDS);
+                return reply;
+            });
+        } finally {
+            responder.shutdownNow();
+        }
+
+        assertEquals(30, handled.get(), "TEST_EXPECTED: dispatchAsync дожидается ответов по всей пачке");
+        peak.values().forEach(p -> assertTrue(p.get() <= 2, "TEST_EXPECTED: в полёте не больше лимита дорожки"));
+        assertEquals(List.of(0L, 3L, 6L, 9L, 12L), chainOrder);
+        OutboxDispatchPool.Snapshot snapshot = pool.snapshot();
+        assertEquals(30, snapshot.dispatchedTotal());
+        assertEquals(0, snapshot.activeWorkers(), "TEST_EXPECTED: асинхронная отправка не занимает потоки пула");
+        pool.shutdown();
+    }
+
+    @Test
+    void sequential_shouldRunInCallerThread() {
+        OutboxDispatchPool pool = OutboxDispatchPool.sequential();
+        Thread caller = Thread.currentThread();
+        List<Long> seen = new ArrayList<>();
+
+        pool.dispatch(List.of(new Rec(1, "msg:logging", null), new Rec(2, "msg:logging", null)), Rec::corr, Rec::lane, 4, r -> {
+            assertEquals(caller, Thread.currentThread());
+            seen.add(r.id());
+        });
+
+        assertEquals(List.of(1L, 2L), seen);
+        assertEquals(0, pool.snapshot().activeWorkers());
+    }
+}
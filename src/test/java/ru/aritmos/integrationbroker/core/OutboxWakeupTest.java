@@ -0,0 +1,122 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboxWakeupTest {
+
+    @Test
+    void signals_shouldCoalesceAndBeKeptUntilAwait() throws Exception {
+        OutboxWakeup wakeup = new OutboxWakeup();
+
+        wakeup.signal(OutboxWakeup.Kind.REST);
+        wakeup.signal(OutboxWakeup.Kind.REST);
+
+        assertTrue(wakeup.await(OutboxWakeup.Kind.REST, 1000), "TEST_EXPECTED: сигнал до ожидания не теряется");
+        assertFalse(wakeup.await(OutboxWakeup.Kind.REST, 20), "TEST_EXPECTED: повторные сигналы схлопываются");
+        assertFalse(wakeup.await(OutboxWakeup.Kind.MESSAGING, 20), "TEST_EXPECTED: сигналы разных outbox независимы");
+        assertEquals(OutboxWakeup.Kind.MESSAGING, OutboxWakeup.Kind.fromPayload("messaging"));
+        assertNull(OutboxWakeup.Kind.fromPayload("other"));
+        assertEquals(OutboxWakeup.DEFAULT_CHANNEL, new OutboxWakeup(true, "bad channel; DROP").channel());
+    }
+
+    @Test
+    void adaptiveBackoff_shouldRunBacklogWithoutPauseAndGrowWhenIdle() {
+        OutboxDispatcher.AdaptiveBackoff backoff = new OutboxDispatcher.AdaptiveBackoff(50, 300);
+
+        assertEquals(0, backoff.next(10));
+        assertEquals(50, backoff.next(0));
+        assertEquals(100, backoff.next(0));
+        assertEquals(200, backoff.next(0));
+        assertEquals(300, backoff.next(0));
+        assertEquals(300, backoff.next(0));
+        backoff.reset();
+        assertEquals(50, backoff.next(0));
+    }
+
+    @Test
+    void dispatcher_shouldWakeUpOnSignalInsteadOfWaitingForPoll() throws Exception {
+        OutboxWakeup wakeup = new OutboxWakeup();
+        CountingRestOutbox outbox = new CountingRestOutbox();
+        OutboxDispatcher dispatcher = new OutboxDispatcher(store(), new MessagingOutboxService(null, new ObjectMapper(), new MessagingProviderRegistry(List.of())),
+                outbox, new MessagingProviderRegistry(List.of()), new OutboundDryRunState(false, null), null, wakeup);
+        dispatcher.wakeupMinDelayMs = 60_000;
+        dispatcher.wakeupMaxDelayMs = 60_000;
+
+        dispatcher.startWakeupLoops();
+        try {
+            assertTrue(outbox.firstTick.await(5, TimeUnit.SECONDS));
+            assertEquals(1, outbox.claims.get(), "TEST_EXPECTED: без сигнала до истечения паузы опроса нового тика нет");
+
+            wakeup.signal(OutboxWakeup.Kind.REST);
+
+            assertTrue(outbox.secondTick.await(1, TimeUnit.SECONDS), "TEST_EXPECTED: сигнал будит диспетчер сразу");
+        } finally {
+            dispatcher.stopWakeupLoops();
+        }
+    }
+
+    private static RuntimeConfigStore store() {
+        RuntimeConfigStore.RuntimeConfig runtime = new RuntimeConfigStore.RuntimeConfig(
+                "test",
+                List.of(),
+                null,
+                null,
+                null,
+                null,
+                new RuntimeConfigStore.RestOutboxConfig(true, "ALWAYS", 10, 10, 120, 50, "Idempotency-Key", null),
+                Map.of(),
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null
+        ).normalize();
+        return new RuntimeConfigStore(null, null, null, null, false, null) {
+            @Override
+            public RuntimeConfig getEffective() {
+                return runtime;
+            }
+        };
+    }
+
+    static class CountingRestOutbox extends RestOutboxService {
+        final AtomicInteger claims = new AtomicInteger();
+        final CountDownLatch firstTick = new CountDownLatch(1);
+        final CountDownLatch secondTick = new CountDownLatch(1);
+
+        CountingRestOutbox() {
+            super(null, new ObjectMapper(), null, null);
+        }
+
+        @Override
+        public List<RestRecord> claimDue(int limit, String owner, int leaseSec) {
+            int n = claims.incrementAndGet();
+            if (n == 1) {
+                firstTick.countDown();
+            } else {
+                secondTick.countDown();
+            }
+            return List.of();
+        }
+
+        @Override
+        public void applyOutcomes(List<Outcome> outcomes) {
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class PayloadHasherTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void sha256Hex_shouldIgnoreFieldOrder() throws Exception {
+        JsonNode a = mapper.readTree("{\"b\":1,\"a\":{\"y\":[1,2],\"x\":\"v\"},\"c\":null}");
+        JsonNode b = mapper.readTree("{\"c\":null,\"a\":{\"x\":\"v\",\"y\":[1,2]},\"b\":1}");
+
+        assertEquals(PayloadHasher.sha256Hex(a), PayloadHasher.sha256Hex(b));
+    }
+
+    @Test
+    void sha256Hex_shouldKeepArrayOrderAndValueTypes() throws Exception {
+        String base = PayloadHasher.sha256Hex(mapper.readTree("{\"a\":[1,2]}"));
+
+        assertNotEquals(base, PayloadHasher.sha256Hex(mapper.readTree("{\"a\":[2,1]}")));
+        assertNotEquals(base, PayloadHasher.sha256Hex(mapper.readTree("{\"a\":[\"1\",\"2\"]}")));
+    }
+
+    @Test
+    void sha256Hex_shouldMatchSerializedHashForOrderedPayload() throws Exception {
+        JsonNode payload = mapper.readTree(
+                "{\"amount\":12.5,\"big\":123456789012345678901,\"id\":42,\"image\":\"aGVsbG8=\",\"name\":\"Привет \\\"мир\\\"\",\"ok\":true}");
+
+        String expected = HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(mapper.writeValueAsBytes(payload)));
+
+        assertEquals(expected, PayloadHasher.sha256Hex(payload),
+                "TEST_EXPECTED: для упорядоченных полей ключи PAYLOAD_HASH не меняются");
+    }
+}
@@ -0,0 +1,160 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RestOutboxServiceApplyOutcomesTest {
+
+    @Test
+    void applyOutcomes_shouldWriteSentAndFailedInBatchedStatements() throws Exception {
+        JdbcDataSource ds = dataSource("rest_outbox_outcomes", 5);
+
+        RestOutboxService service = new RestOutboxService(ds, new ObjectMapper(), null, null);
+        assertEquals(5, service.claimDue(10, "node-a", 60).size());
+        long before = service.dispatchRoundTrips();
+
+        Instant next = Instant.now().plusSeconds(30);
+        service.applyOutcomes(List.of(
+                RestOutboxService.Outcome.sent(1L, 200),
+                RestOutboxService.Outcome.sent(2L, 200),
+                RestOutboxService.Outcome.sent(3L, 409),
+                RestOutboxService.Outcome.failed(4L, 1, 3, next, "UPSTREAM", "temporary", 503, false),
+                RestOutboxService.Outcome.failed(5L, 3, 3, next, "UPSTREAM", "gone", 500, true)
+        ));
+
+        assertEquals(3, service.dispatchRoundTrips() - before,
+                "TEST_EXPECTED: два UPDATE ... ANY(?) по HTTP-статусам и один JDBC-batch ошибок");
+        assertEquals("SENT", service.get(1L).status());
+        assertEquals(200, service.get(2L).lastHttpStatus());
+        assertEquals(409, service.get(3L).lastHttpStatus());
+        RestOutboxService.RestRecord retry = service.get(4L);
+        assertEquals("PENDING", retry.status());
+        assertEquals(1, retry.attempts());
+        assertEquals("UPSTREAM", retry.lastErrorCode());
+        assertEquals("DEAD", service.get(5L).status());
+        assertNull(service.get(1L).lastErrorCode());
+        assertEquals(0, service.reapExpiredLeases(), "TEST_EXPECTED: запись результатов снимает lease");
+    }
+
+    @Test
+    void applyOutcomes_shouldNotOverwriteRecordReclaimedAfterLeaseExpiry() throws Exception {
+        JdbcDataSource ds = dataSource("rest_outbox_stale_outcomes", 2);
+        RestOutboxService service = new RestOutboxService(ds, new ObjectMapper(), null, null);
+        assertEquals(2, service.claimDue(10, "node-a", 60).size());
+
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("UPDATE ib_rest_outbox SET lease_until=CURRENT_TIMESTAMP - INTERVAL '1' SECOND");
+        }
+        assertEquals(2, service.reapExpiredLeases());
+        assertEquals(2, service.claimDue(10, "node-b", 60).size());
+
+        Instant next = Instant.now().plusSeconds(30);
+        service.applyOutcomes(List.of(
+                RestOutboxService.Outcome.sent(1L, 200, "node-a"),
+                RestOutboxService.Outcome.failed(2L, 3, 3, next, "UPSTREAM", "gone", 500, true, "node-a")
+        ));
+
+        assertEquals(2, service.staleOutcomes(), "TEST_EXPECTED: результаты узла, потерявшего lease, отброшены");
+        assertEquals("SENDING", service.get(1L).status());
+        assertEquals("SENDING", service.get(2L).status(), "TEST_EXPECTED: запись нового владельца не переведена в DEAD");
+
+        service.applyOutcomes(List.of(RestOutboxService.Outcome.sent(1L, 200, "node-b")));
+        assertEquals("SENT", service.get(1L).status());
+        assertEquals(2, service.staleOutcomes());
+    }
+
+    @Test
+    void applyOutcomes_shouldFallBackToPerRowWritesWhenBatchStatementFails() throws Exception {
+        JdbcDataSource ds = dataSource("rest_outbox_outcomes_fallback", 3);
+        RestOutboxService service = new RestOutboxService(rejectingAnyArray(ds), new ObjectMapper(), null, null);
+        assertEquals(3, service.claimDue(10, "node-a", 60).size());
+
+        Instant next = Instant.now().plusSeconds(30);
+        service.applyOutcomes(List.of(
+                RestOutboxService.Outcome.sent(1L, 200, "node-a"),
+                RestOutboxService.Outcome.sent(2L, 201, "node-a"),
+                RestOutboxService.Outcome.failed(3L, 1, 3, next, "UPSTREAM", "temporary", 503, false, "node-a")
+        ));
+
+        assertEquals("SENT", service.get(1L).status(), "TEST_EXPECTED: сбой UPDATE ... ANY(?) дописывается построчно");
+        assertEquals(201, service.get(2L).lastHttpStatus());
+        assertEquals("PENDING", service.get(3L).status(), "TEST_EXPECTED: ошибки пишутся независимо от сбоя SENT");
+        assertEquals(0, service.staleOutcomes());
+    }
+
+    private static DataSource rejectingAnyArray(DataSource delegate) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = method.invoke(delegate, args);
+                    if (!(result instanceof Connection c)) {
+                        return result;
+                    }
+                    return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                            (p, m, a) -> {
+                                if ("prepareStatement".equals(m.getName()) && String.valueOf(a[0]).contains("ANY(?)")) {
+                                    throw new SQLException("array parameters are not supported");
+                                }
+                                try {
+                                    return m.invoke(c, a);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            });
+                });
+    }
+
+    private static JdbcDataSource dataSource(String name, int rows) throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS ib_rest_outbox (
+                        id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                        status VARCHAR(16) NOT NULL,
+                        created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        http_method VARCHAR(16) NOT NULL,
+                        url TEXT NOT NULL,
+                        connector_id VARCHAR(100),
+                        path VARCHAR(2000),
+                        headers_json TEXT NULL,
+                        body_json TEXT NULL,
+                        idempotency_key VARCHAR(128) NULL,
+                        source_message_id VARCHAR(128) NULL,
+                        correlation_id VARCHAR(128) NULL,
+                        idem_key VARCHAR(128) NULL,
+                        attempts INT NOT NULL DEFAULT 0,
+                        max_attempts INT NOT NULL DEFAULT 10,
+                        next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        treat_4xx_as_success TEXT NULL,
+                        last_error_at TIMESTAMP WITH TIME ZONE NULL,
+                        last_error_code VARCHAR(64) NULL,
+                        last_error_message TEXT NULL,
+                        last_http_status INT NULL,
+                        lease_owner VARCHAR(128) NULL,
+                        lease_until TIMESTAMP WITH TIME ZONE NULL
+                    )
+                    """);
+            for (int i = 0; i < rows; i++) {
+                st.execute("INSERT INTO ib_rest_outbox(status,created_at,updated_at,http_method,url,connector_id,path,attempts,max_attempts,next_attempt_at) VALUES ('PENDING',CURRENT_TIMESTAMP,CURRENT_TIMESTAMP,'POST','http://a','c1','/a',0,3,CURRENT_TIMESTAMP - INTERVAL '1' SECOND)");
+            }
+        }
+        return ds;
+    }
+}
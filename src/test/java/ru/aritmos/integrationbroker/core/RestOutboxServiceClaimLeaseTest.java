@@ -0,0 +1,94 @@
+package ru.aritmos.integrationbroker.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RestOutboxServiceClaimLeaseTest {
+
+    @Test
+    void claimDue_shouldLeaseBatchOnceAndReaperShouldReturnExpiredLeases() throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:rest_outbox_claim;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("""
+                    CREATE TABLE IF NOT EXISTS ib_rest_outbox (
+                        id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                        status VARCHAR(16) NOT NULL,
+                        created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        http_method VARCHAR(16) NOT NULL,
+                        url TEXT NOT NULL,
+                        connector_id VARCHAR(100),
+                        path VARCHAR(2000),
+                        headers_json TEXT NULL,
+                        body_json TEXT NULL,
+                        idempotency_key VARCHAR(128) NULL,
+                        source_message_id VARCHAR(128) NULL,
+                        correlation_id VARCHAR(128) NULL,
+                        idem_key VARCHAR(128) NULL,
+                        attempts INT NOT NULL DEFAULT 0,
+                        max_attempts INT NOT NULL DEFAULT 10,
+                        next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL,
+                        treat_4xx_as_success TEXT NULL,
+                        last_error_at TIMESTAMP WITH TIME ZONE NULL,
+                        last_error_code VARCHAR(64) NULL,
+                        last_error_message TEXT NULL,
+                        last_http_status INT NULL,
+                        lease_owner VARCHAR(128) NULL,
+                        lease_until TIMESTAMP WITH TIME ZONE NULL
+                    )
+                    """);
+            for (int i = 0; i < 3; i++) {
+                st.execute("INSERT INTO ib_rest_outbox(status,created_at,updated_at,http_method,url,connector_id,path,attempts,max_attempts,next_attempt_at) VALUES ('PENDING',CURRENT_TIMESTAMP,CURRENT_TIMESTAMP,'POST','http://a','c1','/a',0,3,CURRENT_TIMESTAMP - INTERVAL '1' SECOND)");
+            }
+            st.execute("INSERT INTO ib_rest_outbox(status,created_at,updated_at,http_method,url,connector_id,path,attempts,max_attempts,next_attempt_at) VALUES ('PENDING',CURRENT_TIMESTAMP,CURRENT_TIMESTAMP,'POST','http://a','c1','/later',0,3,CURRENT_TIMESTAMP + INTERVAL '1' HOUR)");
+        }
+
+        RestOutboxService service = new RestOutboxService(ds, new ObjectMapper(), null, null);
+
+        List<RestOutboxService.RestRecord> first = service.claimDue(2, "node-a", 60);
+        List<RestOutboxService.RestRecord> second = service.claimDue(10, "node-b", 60);
+        List<RestOutboxService.RestRecord> third = service.claimDue(10, "node-c", 60);
+
+        assertEquals(List.of(1L, 2L), first.stream().map(RestOutboxService.RestRecord::id).toList());
+        assertEquals("SENDING", first.get(0).status());
+        assertEquals(List.of(3L), second.stream().map(RestOutboxService.RestRecord::id).toList(),
+                "TEST_EXPECTED: узлы получают непересекающиеся записи, будущие попытки не захватываются");
+        assertTrue(third.isEmpty());
+        assertEquals("node-a", leaseOwner(ds, 1L));
+
+        service.markSent(1L, 200);
+        assertNull(leaseOwner(ds, 1L), "TEST_EXPECTED: завершение отправки снимает lease");
+
+        assertEquals(0, service.reapExpiredLeases(), "TEST_EXPECTED: действующие lease не трогаются");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("UPDATE ib_rest_outbox SET lease_until=CURRENT_TIMESTAMP - INTERVAL '1' SECOND WHERE id=2");
+        }
+        assertEquals(1, service.reapExpiredLeases());
+        assertEquals("PENDING", service.get(2L).status());
+        assertEquals(List.of(2L), service.claimDue(10, "node-c", 60).stream().map(RestOutboxService.RestRecord::id).toList());
+        assertTrue(Instant.parse(service.get(2L).updatedAt()).isAfter(Instant.now().minusSeconds(60)));
+    }
+
+    private static String leaseOwner(JdbcDataSource ds, long id) throws Exception {
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT lease_owner FROM ib_rest_outbox WHERE id=" + id)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
@@ -66,7 +66,7 @@ class RestOutboxServiceLatencyHistogramTest {
                 new RuntimeConfigStore.KeycloakProxyEnrichmentConfig(false, false, "keycloakProxy", List.of(RuntimeConfigStore.KeycloakProxyFetchMode.USER_ID_HEADER), "x-user-id", "Authorization", "/authorization/users/{userName}", "/authentication/userInfo", true, 60, 5000, true, List.of()),
                 new RuntimeConfigStore.MessagingOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50),
                 new RuntimeConfigStore.RestOutboxConfig(false, "ON_FAILURE", 10, 10, 120, 50, "Idempotency-Key", "409"),
-                Map.of(connectorId, new RuntimeConfigStore.RestConnectorConfig("http://localhost", auth, null, cb)),
+                Map.of(connectorId, new RuntimeConfigStore.RestConnectorConfig("http://localhost", auth, null, cb, null)),
                 RuntimeConfigStore.CrmConfig.disabled(),
                 RuntimeConfigStore.MedicalConfig.disabled(),
                 RuntimeConfigStore.AppointmentConfig.disabled(),
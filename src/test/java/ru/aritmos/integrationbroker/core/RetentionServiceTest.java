@@ -0,0 +1,128 @@
+package ru.aritmos.integrationbroker.core;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetentionServiceTest {
+
+    @Test
+    void runOnce_shouldDeleteOnlyExpiredTerminalRows() throws Exception {
+        JdbcDataSource ds = dataSource("retention_terminal");
+        Instant old = Instant.now().minus(Duration.ofDays(10));
+        Instant fresh = Instant.now().minus(Duration.ofHours(1));
+        for (int i = 0; i < 5; i++) {
+            outbox(ds, "SENT", old);
+        }
+        outbox(ds, "SENT", fresh);
+        outbox(ds, "PENDING", old);
+        outbox(ds, "DEAD", old);
+        idempotency(ds, "c-old", "COMPLETED", old);
+        idempotency(ds, "p-old", "IN_PROGRESS", old);
+
+        RetentionService service = service(ds, 2, 0, 1_000_000);
+        RetentionService.RunSummary summary = service.runOnce();
+
+        assertEquals(6, summary.deletedRows(), "TEST_EXPECTED: 5 SENT (пачками по 2) + 1 COMPLETED; DEAD ещё в пределах 30d");
+        assertEquals(3, count(ds, "ib_messaging_outbox"));
+        assertEquals(1, count(ds, "ib_idempotency"));
+
+        RetentionService.Snapshot snapshot = service.snapshot();
+        RetentionService.TableStats outboxStats = snapshot.tables().stream()
+                .filter(t -> t.table().equals("ib_messaging_outbox")).findFirst().orElseThrow();
+        assertEquals(5, outboxStats.deletedRows());
+        assertEquals(3L, outboxStats.rowEstimate());
+        assertNull(outboxStats.sizeBytes(), "TEST_EXPECTED: размер таблицы доступен только на PostgreSQL");
+        assertEquals(summary, snapshot.lastRun());
+    }
+
+    @Test
+    void runOnce_shouldRespectRowBudgets() throws Exception {
+        JdbcDataSource ds = dataSource("retention_budget");
+        Instant old = Instant.now().minus(Duration.ofDays(10));
+        for (int i = 0; i < 30; i++) {
+            outbox(ds, "SENT", old);
+        }
+
+        RetentionService capped = service(ds, 10, 0, 15);
+        assertEquals(15, capped.runOnce().deletedRows(), "TEST_EXPECTED: прогон ограничен max-rows-per-run");
+
+        RetentionService throttled = service(ds, 5, 100, 1_000_000);
+        RetentionService.RunSummary summary = throttled.runOnce();
+        assertEquals(15, summary.deletedRows());
+        assertTrue(throttled.snapshot().throttledMs() >= 100, "TEST_EXPECTED: пауза ~50 мс после каждой полной пачки");
+        assertEquals(0, count(ds, "ib_messaging_outbox"));
+    }
+
+    @Test
+    void parseUpperBound_shouldReadPostgresRangeBounds() {
+        assertEquals(Instant.parse("2026-02-01T00:00:00Z"),
+                RetentionService.parseUpperBound("FOR VALUES FROM ('2026-01-01 00:00:00+00') TO ('2026-02-01 00:00:00+00')"));
+        assertEquals(Instant.parse("2026-01-31T21:00:00Z"),
+                RetentionService.parseUpperBound("FOR VALUES FROM ('2026-01-01 00:00:00+03') TO ('2026-02-01 00:00:00+03')"));
+        assertEquals(Instant.parse("2026-02-01T00:00:00Z"),
+                RetentionService.parseUpperBound("FOR VALUES FROM ('2026-01-01') TO ('2026-02-01')"));
+        assertNull(RetentionService.parseUpperBound("DEFAULT"));
+    }
+
+    private static RetentionService service(JdbcDataSource ds, int batchSize, int rowsPerSecond, long maxRowsPerRun) {
+        Duration week = Duration.ofDays(7);
+        Duration month = Duration.ofDays(30);
+        return new RetentionService(ds, true, batchSize, rowsPerSecond, maxRowsPerRun,
+                week, month, week, month, week, month, month, Duration.ofDays(90),
+                false, "month", 0);
+    }
+
+    private static void outbox(JdbcDataSource ds, String status, Instant updatedAt) throws Exception {
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement("INSERT INTO ib_messaging_outbox(status, updated_at) VALUES (?, ?)")) {
+            ps.setString(1, status);
+            ps.setTimestamp(2, Timestamp.from(updatedAt));
+            ps.executeUpdate();
+        }
+    }
+
+    private static void idempotency(JdbcDataSource ds, String key, String status, Instant updatedAt) throws Exception {
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement("INSERT INTO ib_idempotency(idem_key, status, updated_at) VALUES (?, ?, ?)")) {
+            ps.setString(1, key);
+            ps.setString(2, status);
+            ps.setTimestamp(3, Timestamp.from(updatedAt));
+            ps.executeUpdate();
+        }
+    }
+
+    private static long count(JdbcDataSource ds, String table) throws Exception {
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static JdbcDataSource dataSource(String db) throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + db + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            // Для retention важны только ключ, статус и updated_at.
+            st.execute("CREATE TABLE IF NOT EXISTS ib_idempotency (idem_key VARCHAR(128) PRIMARY KEY, status VARCHAR(32) NOT NULL, updated_at TIMESTAMP WITH TIME ZONE NOT NULL)");
+            for (String table : new String[]{"ib_messaging_outbox", "ib_rest_outbox", "ib_inbound_dlq"}) {
+                st.execute("CREATE TABLE IF NOT EXISTS " + table + " (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, status VARCHAR(16) NOT NULL, updated_at TIMESTAMP WITH TIME ZONE NOT NULL)");
+            }
+        }
+        return ds;
+    }
+}
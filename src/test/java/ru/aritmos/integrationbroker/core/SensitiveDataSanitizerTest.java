@@ -78,4 +78,46 @@ class SensitiveDataSanitizerTest {
         assertFalse(sanitized.contains("\n"));
         assertFalse(sanitized.contains("\t"));
     }
+
+    @Test
+    void sanitizeText_shouldReturnSameInstanceWhenNothingToMask() {
+        String clean = "connection refused: http://crm.local/api/visits?id=42";
+
+        assertSame(clean, SensitiveDataSanitizer.sanitizeText(clean));
+    }
+
+    @Test
+    void sanitizeText_shouldMaskWholeCookieSidValueAndKeepOtherParams() {
+        assertEquals("Cookie: lang=ru; sid=***; theme=dark",
+                SensitiveDataSanitizer.sanitizeText("Cookie: lang=ru; sid=a&b; theme=dark"));
+        assertEquals("url?sid=***&page=2", SensitiveDataSanitizer.sanitizeText("url?sid=abc&page=2"));
+        assertEquals("access_token=*** ***", SensitiveDataSanitizer.sanitizeText("access_token=Bearer xyz"));
+    }
+
+    @Test
+    void sanitizeStructuredData_shouldNotCopyCleanPayload() {
+        Map<String, Object> payload = Map.of(
+                "visit", Map.of("id", "V-1", "services", List.of("S-1", "S-2")),
+                "count", 3
+        );
+
+        assertSame(payload, SensitiveDataSanitizer.sanitizeStructuredData(payload));
+    }
+
+    @Test
+    void sanitizeStructuredData_shouldMaskLongBase64ByPrefixAndKeepTextUnderBinaryKeys() {
+        String image = "iVBORw0KGgo" + "A".repeat(1024 * 1024) + "==";
+        Map<String, Object> payload = Map.of(
+                "image_data", image,
+                "data", "this is a plain sentence, not base64",
+                "raw_bytes", "abc=def=ghi=jkl=mno=pqr=stu=vwx=yz01"
+        );
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> out = (Map<String, Object>) SensitiveDataSanitizer.sanitizeStructuredData(payload);
+        assertEquals("***", out.get("image_data"));
+        assertEquals("this is a plain sentence, not base64", out.get("data"));
+        assertEquals("abc=def=ghi=jkl=mno=pqr=stu=vwx=yz01", out.get("raw_bytes"),
+                "TEST_EXPECTED: паддинг в середине значения — не base64");
+    }
 }
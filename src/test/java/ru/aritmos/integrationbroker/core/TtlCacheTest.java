@@ -0,0 +1,169 @@
+package ru.aritmos.integrationbroker.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TtlCacheTest {
+
+    @Test
+    void put_shouldEvictLeastRecentlyUsedInsteadOfClearing() {
+        TtlCache<String, String> cache = new TtlCache<>(new MutableClock(), 3);
+        cache.put("hot", "h", 60);
+        cache.put("a", "a", 60);
+        cache.put("b", "b", 60);
+        cache.get("hot");
+
+        for (int i = 0; i < 10; i++) {
+            cache.put("burst-" + i, "x", 60);
+            cache.get("hot");
+        }
+
+        assertEquals(3, cache.size());
+        assertEquals(Optional.of("h"), cache.get("hot"), "TEST_EXPECTED: горячая запись переживает всплеск новых ключей");
+        assertEquals(Optional.empty(), cache.get("a"));
+        assertEquals(10, cache.stats().evictions());
+    }
+
+    @Test
+    void put_shouldSweepExpiredEntriesWithoutReads() {
+        MutableClock clock = new MutableClock();
+        TtlCache<String, String> cache = new TtlCache<>(clock, 100);
+        for (int i = 0; i < 5; i++) {
+            cache.put("old-" + i, "v", 1);
+        }
+        clock.advanceMs(1500);
+
+        cache.put("fresh", "v", 60);
+
+        assertEquals(1, cache.size(), "TEST_EXPECTED: истёкшие записи удалены при записи, без чтения");
+        assertEquals(5, cache.stats().expirations());
+    }
+
+    @Test
+    void getOrLoad_shouldLoadOncePerKeyForConcurrentMisses() throws Exception {
+        TtlCache<String, String> cache = new TtlCache<>(new MutableClock(), 100);
+        AtomicInteger remoteCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Optional<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> cache.getOrLoad("user-1", 60, k -> {
+                    remoteCalls.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Optional.of("profile");
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<Optional<String>> f : results) {
+                assertEquals(Optional.of("profile"), f.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, remoteCalls.get(), "TEST_EXPECTED: параллельные промахи по ключу дают один удалённый вызов");
+        TtlCache.Stats stats = cache.stats();
+        assertEquals(1, stats.loads());
+        assertTrue(stats.averageLoadMs() > 0);
+        assertEquals(Optional.of("profile"), cache.getOrLoad("user-1", 60, k -> Optional.of("other")));
+    }
+
+    @Test
+    void getOrLoad_shouldNotCacheEmptyOrFailedLoads() {
+        TtlCache<String, String> cache = new TtlCache<>(new MutableClock(), 100);
+
+        assertEquals(Optional.empty(), cache.getOrLoad("k", 60, k -> Optional.empty()));
+        assertThrows(IllegalStateException.class, () -> cache.getOrLoad("k", 60, k -> {
+            throw new IllegalStateException("down");
+        }));
+        assertEquals(Optional.of("v"), cache.getOrLoad("k", 60, k -> Optional.of("v")));
+
+        TtlCache.Stats stats = cache.stats();
+        assertEquals(3, stats.loads());
+        assertEquals(1, stats.loadFailures());
+        assertEquals(1, stats.size());
+    }
+
+    @Test
+    void concurrentPutAndGet_shouldStayBoundedWithoutGlobalLock() throws Exception {
+        TtlCache<Integer, Integer> cache = new TtlCache<>(new MutableClock(), 64);
+        int threads = 8;
+        int opsPerThread = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                running.add(pool.submit(() -> {
+                    for (int i = 0; i < opsPerThread; i++) {
+                        int key = (seed * 31 + i) % 256;
+                        if (cache.get(key).isEmpty()) {
+                            cache.put(key, key, 60);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : running) {
+                f.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        TtlCache.Stats stats = cache.stats();
+        assertTrue(stats.size() <= 64, "TEST_EXPECTED: размер кэша не превышает maxEntries при параллельной записи");
+        assertEquals((long) threads * opsPerThread, stats.hits() + stats.misses());
+        assertTrue(stats.evictions() > 0);
+    }
+
+    static final class MutableClock extends Clock {
+        private long millis = 1_000_000L;
+
+        void advanceMs(long ms) {
+            millis += ms;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+}
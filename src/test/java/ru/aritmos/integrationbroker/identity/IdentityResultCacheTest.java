@@ -0,0 +1,204 @@
+package ru.aritmos.integrationbroker.identity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdentityResultCacheTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void resolve_shouldServeRepeatedLookupsAndNoMatchFromCache() {
+        CountingProvider phone = new CountingProvider("crm", "phone", "c-1");
+        CountingProvider face = new CountingProvider("face", "faceImageBase64", null);
+        IdentityResultCache cache = new IdentityResultCache(true, 100, Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+        IdentityService service = service(new IdentityProviderRegistry(List.of(phone, face)), cache, config("r1", Map.of()));
+
+        service.resolve(request(" +7 999 000 11 22"), Map.of());
+        IdentityModels.IdentityResolution second = service.resolve(request("+79990001122"), Map.of());
+
+        assertEquals(1, phone.calls.get(), "TEST_EXPECTED: нормализованный телефон берётся из кэша");
+        assertEquals(1, face.calls.get(), "TEST_EXPECTED: NO_MATCH тоже кэшируется");
+        assertEquals("c-1", second.profile().clientId());
+        assertEquals(true, second.evidences().get(0).details().get("cached"));
+        assertEquals(List.of("MATCH", "NO_MATCH"), second.evidences().stream().map(IdentityModels.IdentityEvidence::outcome).toList());
+
+        clock.advance(Duration.ofSeconds(31));
+        service.resolve(request("+79990001122"), Map.of());
+        assertEquals(1, phone.calls.get());
+        assertEquals(2, face.calls.get(), "TEST_EXPECTED: отрицательный TTL короче положительного");
+
+        IdentityResultCache.Snapshot snapshot = cache.snapshot();
+        assertEquals(2, snapshot.hits());
+        assertEquals(1, snapshot.negativeHits());
+        assertEquals(3, snapshot.misses());
+    }
+
+    @Test
+    void resolve_shouldDropCacheOnRevisionChangeAndNeverCacheErrors() {
+        CountingProvider phone = new CountingProvider("crm", "phone", "c-1");
+        IdentityResultCache cache = new IdentityResultCache(true, 100, Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+        RuntimeConfigStore.RuntimeConfig[] current = {config("r1", Map.of())};
+        IdentityService service = service(new IdentityProviderRegistry(List.of(phone)), cache, null, current);
+
+        service.resolve(request("+79990001122"), Map.of());
+        service.resolve(request("+79990001122"), Map.of());
+        current[0] = config("r2", Map.of());
+        service.resolve(request("+79990001122"), Map.of());
+        assertEquals(2, phone.calls.get(), "TEST_EXPECTED: новая ревизия конфигурации не видит старые ответы");
+        assertEquals(1, cache.snapshot().invalidations());
+
+        phone.fail = true;
+        current[0] = config("r3", Map.of());
+        service.resolve(request("+79990001122"), Map.of());
+        service.resolve(request("+79990001122"), Map.of());
+        assertEquals(4, phone.calls.get(), "TEST_EXPECTED: ошибки провайдера не кэшируются");
+    }
+
+    @Test
+    void cache_shouldHonourPerProviderTtlAndKeepIdentifiersOutOfKeys() {
+        CountingProvider phone = new CountingProvider("crm", "phone", "c-1");
+        IdentityResultCache cache = new IdentityResultCache(true, 100, Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+        IdentityService service = service(new IdentityProviderRegistry(List.of(phone)), cache,
+                config("r1", Map.of("crm", Map.of("cacheTtlSec", 0))));
+
+        service.resolve(request("+79990001122"), Map.of());
+        service.resolve(request("+79990001122"), Map.of());
+        assertEquals(2, phone.calls.get(), "TEST_EXPECTED: cacheTtlSec=0 отключает кэш для провайдера");
+        assertEquals(0, cache.snapshot().size());
+
+        RuntimeConfigStore.RuntimeConfig cfg = config("r1", Map.of());
+        String key = IdentityResultCache.key(cfg, "crm", new IdentityModels.IdentityAttribute("PHONE", " +79990001122", Map.of()));
+        assertFalse(key.contains("79990001122"));
+        assertEquals(key, IdentityResultCache.key(cfg, "crm", new IdentityModels.IdentityAttribute("phone", "+7999 000 1122", Map.of())));
+        assertNotEquals(key, IdentityResultCache.key(config("r2", Map.of()), "crm",
+                new IdentityModels.IdentityAttribute("phone", "+79990001122", Map.of())));
+
+        IdentityResultCache disabled = new IdentityResultCache(false, 100, Duration.ofMinutes(5), Duration.ofSeconds(30), clock);
+        disabled.put(cfg, "crm", new IdentityModels.IdentityAttribute("phone", "+79990001122", Map.of()), null);
+        assertNull(disabled.get(cfg, "crm", new IdentityModels.IdentityAttribute("phone", "+79990001122", Map.of())));
+        assertTrue(cache.enabled());
+    }
+
+    private IdentityService service(IdentityProviderRegistry registry,
+                                    IdentityResultCache cache,
+                                    RuntimeConfigStore.RuntimeConfig runtime) {
+        return service(registry, cache, runtime, null);
+    }
+
+    private IdentityService service(IdentityProviderRegistry registry,
+                                    IdentityResultCache cache,
+                                    RuntimeConfigStore.RuntimeConfig runtime,
+                                    RuntimeConfigStore.RuntimeConfig[] current) {
+        RuntimeConfigStore store = new RuntimeConfigStore(null, null, null, null, false, null) {
+            @Override
+            public RuntimeConfig getEffective() {
+                return current == null ? runtime : current[0];
+            }
+        };
+        return new IdentityService(store, registry, new ObjectMapper(), false, Duration.ofSeconds(5), null, cache);
+    }
+
+    private static RuntimeConfigStore.RuntimeConfig config(String revision, Map<String, Object> providers) {
+        RuntimeConfigStore.IdentityConfig defaults = RuntimeConfigStore.IdentityConfig.defaultConfig();
+        return new RuntimeConfigStore.RuntimeConfig(
+                revision, List.of(), new RuntimeConfigStore.IdempotencyConfig(true, RuntimeConfigStore.IdempotencyStrategy.AUTO, 60),
+                new RuntimeConfigStore.InboundDlqConfig(true, 10, true),
+                new RuntimeConfigStore.KeycloakProxyEnrichmentConfig(false, false, "keycloakProxy", List.of(RuntimeConfigStore.KeycloakProxyFetchMode.USER_ID_HEADER), "x-user-id", "Authorization", "/authorization/users/{userName}", "/authentication/userInfo", true, 60, 5000, true, List.of()),
+                new RuntimeConfigStore.MessagingOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50),
+                new RuntimeConfigStore.RestOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50, "Idempotency-Key", "409"),
+                Map.of(), RuntimeConfigStore.CrmConfig.disabled(), RuntimeConfigStore.MedicalConfig.disabled(), RuntimeConfigStore.AppointmentConfig.disabled(),
+                new RuntimeConfigStore.IdentityConfig(true, defaults.segmentAliases(), defaults.segmentPriority(), providers),
+                RuntimeConfigStore.VisionLabsAnalyticsConfig.disabled(), RuntimeConfigStore.BranchResolutionConfig.defaultConfig(), RuntimeConfigStore.VisitManagerIntegrationConfig.disabled(), RuntimeConfigStore.DataBusIntegrationConfig.disabled()
+        );
+    }
+
+    private static IdentityModels.IdentityRequest request(String phone) {
+        return new IdentityModels.IdentityRequest(List.of(
+                new IdentityModels.IdentityAttribute("phone", phone, Map.of()),
+                new IdentityModels.IdentityAttribute("faceImageBase64", "aGVsbG8gd29ybGQ=", Map.of())
+        ), Map.of(), IdentityModels.IdentityResolutionPolicy.defaultPolicy());
+    }
+
+    private static final class CountingProvider implements IdentityProvider {
+        private final String id;
+        private final String type;
+        private final String clientId;
+        final AtomicInteger calls = new AtomicInteger();
+        volatile boolean fail;
+
+        CountingProvider(String id, String type, String clientId) {
+            this.id = id;
+            this.type = type;
+            this.clientId = clientId;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+
+        @Override
+        public int priority() {
+            return 10;
+        }
+
+        @Override
+        public boolean supportsType(String type) {
+            return this.type.equals(type);
+        }
+
+        @Override
+        public Optional<IdentityModels.IdentityProfile> resolve(IdentityModels.IdentityAttribute attribute,
+                                                              IdentityModels.IdentityRequest request,
+                                                              ProviderContext ctx) {
+            calls.incrementAndGet();
+            if (fail) {
+                throw new IllegalStateException("CRM недоступна");
+            }
+            if (clientId == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new IdentityModels.IdentityProfile(clientId, Map.of(), null, null, null, List.of(), Map.of(), Map.of()));
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
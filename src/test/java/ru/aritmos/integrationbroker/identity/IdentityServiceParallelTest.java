@@ -0,0 +1,176 @@
+package ru.aritmos.integrationbroker.identity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.aritmos.integrationbroker.config.RuntimeConfigStore;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdentityServiceParallelTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void resolve_shouldMatchSequentialResultWhileCallingProvidersConcurrently() {
+        IdentityProviderRegistry registry = new IdentityProviderRegistry(List.of(
+                new SlowProvider("static", 10, "phone", 300, null, null),
+                new SlowProvider("face", 10, "faceImageBase64", 300, "c-1", "VIP"),
+                new SlowProvider("cars", 10, "carPlate", 300, "c-1", null),
+                new SlowProvider("broken", 5, "carPlate", 10, null, null) {
+                    @Override
+                    public Optional<IdentityModels.IdentityProfile> resolve(IdentityModels.IdentityAttribute attribute,
+                                                                          IdentityModels.IdentityRequest request,
+                                                                          ProviderContext ctx) {
+                        throw new IllegalStateException("Authorization=Bearer secret");
+                    }
+                }
+        ));
+        IdentityModels.IdentityRequest request = request(IdentityModels.IdentityResolutionPolicy.defaultPolicy());
+
+        IdentityModels.IdentityResolution sequential = service(registry, false, Duration.ofSeconds(5)).resolve(request, Map.of());
+        long startedAt = System.nanoTime();
+        IdentityService parallelService = service(registry, true, Duration.ofSeconds(5));
+        IdentityModels.IdentityResolution parallel = parallelService.resolve(request, Map.of());
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000L;
+
+        assertEquals(sequential.evidences(), parallel.evidences(), "TEST_EXPECTED: evidence объединяется в порядке обхода");
+        assertEquals(sequential.profile(), parallel.profile());
+        assertEquals("ERROR", parallel.evidences().get(3).outcome());
+        assertTrue(elapsedMs < 800, "TEST_EXPECTED: три вызова по 300 мс выполняются одновременно, фактически " + elapsedMs);
+        assertEquals("parallel", parallel.diagnostics().get("mode"));
+        assertEquals(4, ((List<?>) parallel.diagnostics().get("providerLatencyMs")).size());
+        assertFalse(parallel.diagnostics().containsKey("providerLatencyHistogram"),
+                "TEST_EXPECTED: в диагностике запроса только его собственные длительности");
+        assertTrue(parallelService.providerLatencyHistogram().containsKey("face"));
+    }
+
+    @Test
+    void resolve_shouldCancelOutstandingCallsOnceStopPolicyIsSatisfied() throws Exception {
+        SlowProvider hanging = new SlowProvider("cars", 10, "carPlate", 10_000, "c-2", null);
+        IdentityProviderRegistry registry = new IdentityProviderRegistry(List.of(
+                new SlowProvider("static", 10, "phone", 20, null, null),
+                new SlowProvider("face", 10, "faceImageBase64", 50, "c-1", null),
+                hanging
+        ));
+
+        IdentityModels.IdentityResolution out = service(registry, true, Duration.ofSeconds(5))
+                .resolve(request(new IdentityModels.IdentityResolutionPolicy(List.of(), true, false)), Map.of());
+
+        assertEquals("c-1", out.profile().clientId());
+        assertEquals(List.of("NO_MATCH", "MATCH"), out.evidences().stream().map(IdentityModels.IdentityEvidence::outcome).toList());
+        assertEquals(1, out.diagnostics().get("cancelledCalls"));
+        assertTrue(hanging.interrupted.await(2, TimeUnit.SECONDS), "TEST_EXPECTED: незавершённый вызов прерван");
+    }
+
+    @Test
+    void resolve_shouldReportCallsOutsideDeadlineBudgetAsErrors() {
+        IdentityProviderRegistry registry = new IdentityProviderRegistry(List.of(
+                new SlowProvider("static", 10, "phone", 1_000, "c-1", null),
+                new SlowProvider("face", 10, "faceImageBase64", 10, null, "VIP"),
+                new SlowProvider("cars", 10, "carPlate", 1_000, null, null)
+        ));
+
+        IdentityModels.IdentityResolution out = service(registry, true, Duration.ofMillis(200))
+                .resolve(request(IdentityModels.IdentityResolutionPolicy.defaultPolicy()), Map.of());
+
+        assertEquals(List.of("ERROR", "MATCH", "ERROR"), out.evidences().stream().map(IdentityModels.IdentityEvidence::outcome).toList(),
+                "TEST_EXPECTED: уже завершённый вызов применяется и после исчерпания бюджета");
+        assertEquals(true, out.evidences().get(0).details().get("deadlineExceeded"));
+        assertEquals(true, out.diagnostics().get("deadlineExceeded"));
+        assertEquals("VIP", out.profile().segment());
+    }
+
+    private IdentityService service(IdentityProviderRegistry registry, boolean parallel, Duration deadline) {
+        RuntimeConfigStore.RuntimeConfig runtime = new RuntimeConfigStore.RuntimeConfig(
+                "test", List.of(), new RuntimeConfigStore.IdempotencyConfig(true, RuntimeConfigStore.IdempotencyStrategy.AUTO, 60),
+                new RuntimeConfigStore.InboundDlqConfig(true, 10, true),
+                new RuntimeConfigStore.KeycloakProxyEnrichmentConfig(false, false, "keycloakProxy", List.of(RuntimeConfigStore.KeycloakProxyFetchMode.USER_ID_HEADER), "x-user-id", "Authorization", "/authorization/users/{userName}", "/authentication/userInfo", true, 60, 5000, true, List.of()),
+                new RuntimeConfigStore.MessagingOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50),
+                new RuntimeConfigStore.RestOutboxConfig(false, "ON_FAILURE", 10, 5, 600, 50, "Idempotency-Key", "409"),
+                Map.of(), RuntimeConfigStore.CrmConfig.disabled(), RuntimeConfigStore.MedicalConfig.disabled(), RuntimeConfigStore.AppointmentConfig.disabled(), RuntimeConfigStore.IdentityConfig.defaultConfig(), RuntimeConfigStore.VisionLabsAnalyticsConfig.disabled(), RuntimeConfigStore.BranchResolutionConfig.defaultConfig(), RuntimeConfigStore.VisitManagerIntegrationConfig.disabled(), RuntimeConfigStore.DataBusIntegrationConfig.disabled()
+        );
+        RuntimeConfigStore store = new RuntimeConfigStore(null, null, null, null, false, null) {
+            @Override
+            public RuntimeConfig getEffective() {
+                return runtime;
+            }
+        };
+        return new IdentityService(store, registry, new ObjectMapper(), parallel, deadline, executor);
+    }
+
+    private static IdentityModels.IdentityRequest request(IdentityModels.IdentityResolutionPolicy policy) {
+        return new IdentityModels.IdentityRequest(List.of(
+                new IdentityModels.IdentityAttribute("phone", "+79990001122", Map.of()),
+                new IdentityModels.IdentityAttribute("faceImageBase64", "aGVsbG8gd29ybGQ=", Map.of()),
+                new IdentityModels.IdentityAttribute("carPlate", "A123BC77", Map.of())
+        ), Map.of(), policy);
+    }
+
+    private static class SlowProvider implements IdentityProvider {
+        private final String id;
+        private final int priority;
+        private final String type;
+        private final long delayMs;
+        private final String clientId;
+        private final String segment;
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        SlowProvider(String id, int priority, String type, long delayMs, String clientId, String segment) {
+            this.id = id;
+            this.priority = priority;
+            this.type = type;
+            this.delayMs = delayMs;
+            this.clientId = clientId;
+            this.segment = segment;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+
+        @Override
+        public int priority() {
+            return priority;
+        }
+
+        @Override
+        public boolean supportsType(String type) {
+            return this.type.equals(type);
+        }
+
+        @Override
+        public Optional<IdentityModels.IdentityProfile> resolve(IdentityModels.IdentityAttribute attribute,
+                                                              IdentityModels.IdentityRequest request,
+                                                              ProviderContext ctx) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+            if (clientId == null && segment == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new IdentityModels.IdentityProfile(clientId, Map.of(), null, segment, null, List.of(), Map.of(), Map.of()));
+        }
+    }
+}
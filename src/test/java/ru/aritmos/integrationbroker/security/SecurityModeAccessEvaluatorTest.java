@@ -32,6 +32,16 @@ class SecurityModeAccessEvaluatorTest {
         assertEquals(SecurityModeAccessEvaluator.Decision.REQUIRE_AUTH, evaluator.evaluate("/admin/idempotency", props));
     }
 
+    @Test
+    void shouldRequireAuthForInboundStatusWithDefaultAnonymousPaths() {
+        IntegrationBrokerSecurityProperties props = new IntegrationBrokerSecurityProperties();
+        props.setMode(IntegrationBrokerSecurityProperties.Mode.KEYCLOAK_OPTIONAL);
+
+        assertEquals(SecurityModeAccessEvaluator.Decision.ALLOW, evaluator.evaluate("/api/inbound/batch", props));
+        assertEquals(SecurityModeAccessEvaluator.Decision.REQUIRE_AUTH, evaluator.evaluate("/api/inbound/status/abc", props),
+                "TEST_EXPECTED: статус содержит output flow и текст ошибки, анонимно не отдаётся");
+    }
+
     @Test
     void shouldRequireAuthInRequiredModeForBusinessEndpoints() {
         IntegrationBrokerSecurityProperties props = new IntegrationBrokerSecurityProperties();